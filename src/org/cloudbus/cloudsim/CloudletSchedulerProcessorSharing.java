@@ -0,0 +1,521 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * CloudletSchedulerProcessorSharing computes the same schedule as
+ * {@link CloudletSchedulerTimeShared}, without going through all the running cloudlets on each
+ * update.
+ * <p>
+ * In a time-shared VM all the running cloudlets with the same number of PEs progress by the same
+ * amount of instructions in an update. So the cloudlets are put in lanes by number of PEs, and each
+ * lane counts the work done by any of its cloudlets since the lane was created (its virtual time).
+ * A cloudlet finishes once the virtual time of its lane passes the value it had when the cloudlet
+ * was submitted, plus the work left, so each lane keeps its cloudlets in a priority queue by that
+ * value. An update then costs O(k log n) for the k cloudlets that finish, instead of O(n). The
+ * work done by a cloudlet is only written to its {@link ResCloudlet} when the cloudlet leaves the
+ * scheduler or the exec list is asked for.
+ * <p>
+ * The arithmetic is that of {@link CloudletSchedulerTimeShared}, and the finished cloudlets are
+ * reported in the order they were submitted, so the results are identical.
+ *
+ * @see CloudletSchedulerTimeShared
+ */
+public class CloudletSchedulerProcessorSharing extends CloudletSchedulerTimeShared {
+
+	/** The running cloudlets, in the order they were submitted. */
+	private final Map<ResCloudlet, Entry> execEntries = new LinkedHashMap<ResCloudlet, Entry>();
+
+	/** The lanes of running cloudlets, by number of PEs. */
+	private final List<Lane> lanes = new ArrayList<Lane>();
+
+	/** The number of PEs used by the running cloudlets. */
+	private int pesInUse;
+
+	/** The submission order of the next running cloudlet. */
+	private long nextOrder;
+
+	/**
+	 * Creates a new CloudletSchedulerProcessorSharing object. This method must be invoked before
+	 * starting the actual simulation.
+	 *
+	 * @pre $none
+	 * @post $none
+	 */
+	public CloudletSchedulerProcessorSharing() {
+		super();
+	}
+
+	/**
+	 * Updates the processing of cloudlets running under management of this scheduler.
+	 *
+	 * @param currentTime current simulation time
+	 * @param mipsShare array with MIPS share of each processor available to the scheduler
+	 * @return time predicted completion time of the earliest finishing cloudlet, or 0 if there is
+	 *         no next events
+	 * @pre currentTime >= 0
+	 * @post $none
+	 */
+	@Override
+	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
+		setCurrentMipsShare(mipsShare);
+		double timeSpam = currentTime - getPreviousTime();
+
+		if (execEntries.isEmpty()) {
+			setPreviousTime(currentTime);
+			return 0.0;
+		}
+
+		double capacity = getCapacity(mipsShare);
+		List<Entry> finished = null;
+		for (Lane lane : lanes) {
+			lane.work += (long) (capacity * timeSpam * lane.pes * Consts.MILLION);
+			while (!lane.entries.isEmpty() && lane.entries.peek().key < lane.work) {
+				if (finished == null) {
+					finished = new ArrayList<Entry>();
+				}
+				finished.add(lane.entries.poll());
+			}
+		}
+
+		// finished: remove from the exec list, in the order of the exec list
+		if (finished != null) {
+			Collections.sort(finished, SUBMISSION_ORDER);
+			for (Entry entry : finished) {
+				remove(entry);
+				cloudletFinish(entry.rcl);
+			}
+		}
+
+		// estimate finish time of cloudlets
+		double nextEvent = Double.MAX_VALUE;
+		if (execEntries.isEmpty()) {
+			setPreviousTime(currentTime);
+			return nextEvent;
+		}
+		capacity = getCapacity(mipsShare);
+		for (Lane lane : lanes) {
+			if (lane.entries.isEmpty()) {
+				continue;
+			}
+			// the first cloudlet of a lane is the one with the least remaining length
+			long remainingLength = remainingLength(lane.entries.peek());
+			double estimatedFinishTime = currentTime + (remainingLength / (capacity * lane.pes));
+			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
+				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
+			}
+
+			if (estimatedFinishTime < nextEvent) {
+				nextEvent = estimatedFinishTime;
+			}
+		}
+
+		setPreviousTime(currentTime);
+		return nextEvent;
+	}
+
+	/**
+	 * Gets the capacity.
+	 *
+	 * @param mipsShare the mips share
+	 * @return the capacity
+	 */
+	@Override
+	protected double getCapacity(List<Double> mipsShare) {
+		double capacity = 0.0;
+		int cpus = 0;
+		for (Double mips : mipsShare) {
+			capacity += mips;
+			if (mips > 0.0) {
+				cpus++;
+			}
+		}
+		currentCPUs = cpus;
+
+		if (pesInUse > currentCPUs) {
+			capacity /= pesInUse;
+		} else {
+			capacity /= currentCPUs;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Cancels execution of a cloudlet.
+	 *
+	 * @param cloudletId ID of the cloudlet being cancealed
+	 * @return the canceled cloudlet, $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public Cloudlet cloudletCancel(int cloudletId) {
+		// First, looks in the finished queue
+		int position = 0;
+		for (ResCloudlet rcl : getCloudletFinishedList()) {
+			if (rcl.getCloudletId() == cloudletId) {
+				return getCloudletFinishedList().remove(position).getCloudlet();
+			}
+			position++;
+		}
+
+		// Then searches in the exec list
+		Entry entry = findExec(cloudletId);
+		if (entry != null) {
+			entry.lane.entries.remove(entry);
+			remove(entry);
+			ResCloudlet rcl = entry.rcl;
+			if (rcl.getRemainingCloudletLength() == 0) {
+				cloudletFinish(rcl);
+			} else {
+				rcl.setCloudletStatus(Cloudlet.CANCELED);
+			}
+			return rcl.getCloudlet();
+		}
+
+		// Now, looks in the paused queue
+		position = 0;
+		for (ResCloudlet rcl : getCloudletPausedList()) {
+			if (rcl.getCloudletId() == cloudletId) {
+				rcl.setCloudletStatus(Cloudlet.CANCELED);
+				return getCloudletPausedList().remove(position).getCloudlet();
+			}
+			position++;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Pauses execution of a cloudlet.
+	 *
+	 * @param cloudletId ID of the cloudlet being paused
+	 * @return $true if cloudlet paused, $false otherwise
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public boolean cloudletPause(int cloudletId) {
+		Entry entry = findExec(cloudletId);
+		if (entry == null) {
+			return false;
+		}
+
+		// remove cloudlet from the exec list and put it in the paused list
+		entry.lane.entries.remove(entry);
+		remove(entry);
+		ResCloudlet rcl = entry.rcl;
+		if (rcl.getRemainingCloudletLength() == 0) {
+			cloudletFinish(rcl);
+		} else {
+			rcl.setCloudletStatus(Cloudlet.PAUSED);
+			getCloudletPausedList().add(rcl);
+		}
+		return true;
+	}
+
+	/**
+	 * Resumes execution of a paused cloudlet.
+	 *
+	 * @param cloudletId ID of the cloudlet being resumed
+	 * @return expected finish time of the cloudlet, 0.0 if queued
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public double cloudletResume(int cloudletId) {
+		int position = 0;
+
+		// look for the cloudlet in the paused list
+		for (ResCloudlet rcl : getCloudletPausedList()) {
+			if (rcl.getCloudletId() == cloudletId) {
+				ResCloudlet rgl = getCloudletPausedList().remove(position);
+				rgl.setCloudletStatus(Cloudlet.INEXEC);
+				add(rgl);
+
+				// calculate the expected time for cloudlet completion
+				double remainingLength = rgl.getRemainingCloudletLength();
+				return CloudSim.clock()
+						+ (remainingLength / (getCapacity(getCurrentMipsShare()) * rgl.getNumberOfPes()));
+			}
+			position++;
+		}
+
+		return 0.0;
+	}
+
+	/**
+	 * Receives an cloudlet to be executed in the VM managed by this scheduler.
+	 *
+	 * @param cloudlet the submited cloudlet
+	 * @param fileTransferTime time required to move the required files from the SAN to the VM
+	 * @return expected finish time of this cloudlet
+	 * @pre gl != null
+	 * @post $none
+	 */
+	@Override
+	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
+		ResCloudlet rcl = new ResCloudlet(cloudlet);
+		rcl.setCloudletStatus(Cloudlet.INEXEC);
+		for (int i = 0; i < cloudlet.getNumberOfPes(); i++) {
+			rcl.setMachineAndPeId(0, i);
+		}
+
+		Entry entry = add(rcl);
+
+		// use the current capacity to estimate the extra amount of
+		// time to file transferring. It must be added to the cloudlet length
+		double extraSize = getCapacity(getCurrentMipsShare()) * fileTransferTime;
+		long length = (long) (cloudlet.getCloudletLength() + extraSize);
+		cloudlet.setCloudletLength(length);
+		// the length changed, so does the work the cloudlet finishes at
+		entry.lane.entries.remove(entry);
+		entry.key = finishKey(rcl, entry.lane);
+		entry.lane.entries.add(entry);
+		return cloudlet.getCloudletLength() / getCapacity(getCurrentMipsShare());
+	}
+
+	/**
+	 * Gets the status of a cloudlet.
+	 *
+	 * @param cloudletId ID of the cloudlet
+	 * @return status of the cloudlet, -1 if cloudlet not found
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public int getCloudletStatus(int cloudletId) {
+		Entry entry = findExec(cloudletId);
+		if (entry != null) {
+			return entry.rcl.getCloudletStatus();
+		}
+		for (ResCloudlet rcl : getCloudletPausedList()) {
+			if (rcl.getCloudletId() == cloudletId) {
+				return rcl.getCloudletStatus();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get utilization created by all cloudlets.
+	 *
+	 * @param time the time
+	 * @return total utilization
+	 */
+	@Override
+	public double getTotalUtilizationOfCpu(double time) {
+		double totalUtilization = 0;
+		for (ResCloudlet gl : execEntries.keySet()) {
+			totalUtilization += gl.getCloudlet().getUtilizationOfCpu(time);
+		}
+		return totalUtilization;
+	}
+
+	/**
+	 * Returns the number of cloudlets runnning in the virtual machine.
+	 *
+	 * @return number of cloudlets runnning
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public int runningCloudlets() {
+		return execEntries.size();
+	}
+
+	/**
+	 * Returns one cloudlet to migrate to another vm.
+	 *
+	 * @return one running cloudlet
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public Cloudlet migrateCloudlet() {
+		Iterator<Entry> it = execEntries.values().iterator();
+		Entry entry = it.next();
+		entry.lane.entries.remove(entry);
+		remove(entry);
+		entry.rcl.finalizeCloudlet();
+		return entry.rcl.getCloudlet();
+	}
+
+	/**
+	 * Gets a copy of the cloudlet exec list, with the work done by each cloudlet up to date.
+	 * Changing it does not change the cloudlets running.
+	 *
+	 * @param <T> the generic type
+	 * @return the cloudlet exec list
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <T extends ResCloudlet> List<T> getCloudletExecList() {
+		List<T> list = new ArrayList<T>(execEntries.size());
+		for (Entry entry : execEntries.values()) {
+			update(entry);
+			list.add((T) entry.rcl);
+		}
+		return list;
+	}
+
+	@Override
+	public double getCurrentRequestedUtilizationOfRam() {
+		double ram = 0;
+		for (ResCloudlet cloudlet : execEntries.keySet()) {
+			ram += cloudlet.getCloudlet().getUtilizationOfRam(CloudSim.clock());
+		}
+		return ram;
+	}
+
+	@Override
+	public double getCurrentRequestedUtilizationOfBw() {
+		double bw = 0;
+		for (ResCloudlet cloudlet : execEntries.keySet()) {
+			bw += cloudlet.getCloudlet().getUtilizationOfBw(CloudSim.clock());
+		}
+		return bw;
+	}
+
+	/**
+	 * Adds a cloudlet at the end of the exec list.
+	 *
+	 * @param rcl the cloudlet
+	 * @return its entry
+	 */
+	private Entry add(ResCloudlet rcl) {
+		Lane lane = null;
+		for (Lane l : lanes) {
+			if (l.pes == rcl.getNumberOfPes()) {
+				lane = l;
+				break;
+			}
+		}
+		if (lane == null) {
+			lane = new Lane(rcl.getNumberOfPes());
+			lanes.add(lane);
+		}
+		Entry entry = new Entry(rcl, lane, nextOrder++);
+		entry.key = finishKey(rcl, lane);
+		lane.entries.add(entry);
+		execEntries.put(rcl, entry);
+		pesInUse += rcl.getNumberOfPes();
+		return entry;
+	}
+
+	/**
+	 * Removes a cloudlet, already taken out of its lane, from the exec list.
+	 *
+	 * @param entry its entry
+	 */
+	private void remove(Entry entry) {
+		update(entry);
+		execEntries.remove(entry.rcl);
+		pesInUse -= entry.rcl.getNumberOfPes();
+	}
+
+	private Entry findExec(int cloudletId) {
+		for (Entry entry : execEntries.values()) {
+			if (entry.rcl.getCloudletId() == cloudletId) {
+				update(entry);
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the work done by a cloudlet since it was last written.
+	 */
+	private static void update(Entry entry) {
+		entry.rcl.updateCloudletFinishedSoFar(entry.lane.work - entry.workWritten);
+		entry.workWritten = entry.lane.work;
+	}
+
+	/**
+	 * The virtual time of the lane past which the cloudlet has less than one MI left, i.e. its
+	 * remaining length is 0.
+	 */
+	private static long finishKey(ResCloudlet rcl, Lane lane) {
+		return rcl.getCloudlet().getCloudletTotalLength() * Consts.MILLION - Consts.MILLION
+				- rcl.getCloudletFinishedSoFar() + lane.work;
+	}
+
+	private static long remainingLength(Entry entry) {
+		long length = entry.key + Consts.MILLION - entry.lane.work;
+		return (long) Math.floor(length / Consts.MILLION);
+	}
+
+	/** Orders the entries by submission. */
+	private static final Comparator<Entry> SUBMISSION_ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			return Long.compare(a.order, b.order);
+		}
+	};
+
+	/** Orders the entries by the virtual time they finish at. */
+	private static final Comparator<Entry> FINISH_ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			int c = Long.compare(a.key, b.key);
+			return c != 0 ? c : Long.compare(a.order, b.order);
+		}
+	};
+
+	/**
+	 * The running cloudlets with a given number of PEs, all progressing at the same rate.
+	 */
+	private static class Lane {
+		private final int pes;
+
+		/** Work done by any cloudlet of the lane, in instructions, since the lane was created. */
+		private long work;
+
+		private final PriorityQueue<Entry> entries = new PriorityQueue<Entry>(11, FINISH_ORDER);
+
+		Lane(int pes) {
+			this.pes = pes;
+		}
+	}
+
+	/**
+	 * A running cloudlet.
+	 */
+	private static class Entry {
+		private final ResCloudlet rcl;
+		private final Lane lane;
+		private final long order;
+
+		/** Virtual time of the lane past which the cloudlet is finished. */
+		private long key;
+
+		/** Virtual time of the lane up to which the work of the cloudlet is written to it. */
+		private long workWritten;
+
+		Entry(ResCloudlet rcl, Lane lane, long order) {
+			this.rcl = rcl;
+			this.lane = lane;
+			this.order = order;
+			workWritten = lane.work;
+		}
+	}
+
+}
@@ -17,6 +17,7 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 
 /**
@@ -726,8 +727,8 @@ public class Datacenter extends SimEntity {
 				/*	edited by HARSHIT	*/
 				//if(getName().equals("gateway-3"))
 				//System.out.println(getName()+" : ESTIMATED FINISH TIME ON "+((StreamOperator)vm).getName()+": "+estimatedFinishTime);
-				send(getId(), CloudSim.getMinTimeBetweenEvents()
-						+estimatedFinishTime, CloudSimTags.VM_DATACENTER_EVENT);
+				scheduleProcessingEvent(CloudSim.getMinTimeBetweenEvents()
+						+estimatedFinishTime);
 				/*	edit done	*/
 			}
 
@@ -794,7 +795,7 @@ public class Datacenter extends SimEntity {
 		if (eventTime > 0.0) { // if this cloudlet is in the exec queue
 			status = true;
 			if (eventTime > CloudSim.clock()) {
-				schedule(getId(), eventTime, CloudSimTags.VM_DATACENTER_EVENT);
+				scheduleProcessingEvent(eventTime);
 			}
 		}
 
@@ -884,12 +885,30 @@ public class Datacenter extends SimEntity {
 				smallerTime = CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01;
 			}
 			if (smallerTime != Double.MAX_VALUE) {
-				schedule(getId(), (smallerTime - CloudSim.clock()), CloudSimTags.VM_DATACENTER_EVENT);
+				scheduleProcessingEvent(smallerTime - CloudSim.clock());
 			}
 			setLastProcessTime(CloudSim.clock());
 		}
 	}
 
+	/**
+	 * Schedules a {@link CloudSimTags#VM_DATACENTER_EVENT} to this datacenter, which updates the
+	 * processing of its cloudlets.
+	 * 
+	 * @param delay how long from the current simulation time the event should be processed
+	 */
+	protected void scheduleProcessingEvent(double delay) {
+		send(getId(), delay, CloudSimTags.VM_DATACENTER_EVENT);
+	}
+
+	/**
+	 * Cancels the {@link CloudSimTags#VM_DATACENTER_EVENT}s scheduled by
+	 * {@link #scheduleProcessingEvent(double)} and not processed yet.
+	 */
+	protected void cancelProcessingEvents() {
+		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
+	}
+
 	/**
 	 * Verifies if some cloudlet inside this PowerDatacenter already finished. If yes, send it to
 	 * the User/Broker
@@ -11,6 +11,8 @@ package org.cloudbus.cloudsim;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 /**
  * The Log class used for performing loggin of the simulation process. It provides the ability to
  * substitute the output stream by any OutputStream subclass.
@@ -36,6 +38,7 @@ public class Log {
 	 */
 	public static void print(String message) {
 		if (!isDisabled()) {
+			CloudSim.awaitTurn();
 			try {
 				getOutput().write(message.getBytes());
 			} catch (IOException e) {
@@ -480,6 +480,15 @@ public class ResCloudlet {
 		cloudletFinishedSoFar += miLength;
 	}
 
+	/**
+	 * Gets the length of cloudlet that has been completed.
+	 * 
+	 * @return cloudlet length completed in Instructions (I)
+	 */
+	public long getCloudletFinishedSoFar() {
+		return cloudletFinishedSoFar;
+	}
+
 	/**
 	 * Gets arrival time of a cloudlet.
 	 * 
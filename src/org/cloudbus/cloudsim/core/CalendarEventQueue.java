@@ -0,0 +1,358 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A calendar queue (R. Brown, "Calendar Queues: A Fast O(1) Priority Queue Implementation for the
+ * Simulation Event Set Problem", CACM 1988). Events are hashed by time into a circular array of
+ * "day" buckets of a fixed width; each bucket is kept sorted so that events with equal times come
+ * out in exactly the same order as from a sorted set. The number of buckets follows the queue
+ * size and the bucket width is re-estimated from the event spacing on every resize.
+ *
+ * @see EventQueue
+ */
+public class CalendarEventQueue implements EventQueue {
+
+	/** The minimum number of buckets. */
+	private static final int MIN_BUCKETS = 16;
+
+	/** The number of leading events sampled to estimate the bucket width. */
+	private static final int WIDTH_SAMPLE = 25;
+
+	/** The buckets; their number is always a power of two. */
+	private Bucket[] buckets;
+
+	/** The bucket index mask. */
+	private int mask;
+
+	/** The width of a bucket (a "day"). */
+	private double width = 1.0;
+
+	/** The virtual bucket number no pending event is earlier than. */
+	private long currentDay = 0;
+
+	/** The bucket holding the earliest event, or -1 if it has to be searched again. */
+	private int firstBucket = -1;
+
+	/** The number of events in the queue. */
+	private int size = 0;
+
+	/**
+	 * Creates a new calendar queue.
+	 */
+	public CalendarEventQueue() {
+		allocate(MIN_BUCKETS);
+	}
+
+	@Override
+	public void add(SimEvent event) {
+		long day = day(event.eventTime());
+		if (size == 0 || day < currentDay) {
+			currentDay = day;
+		}
+		buckets[(int) (day & mask)].add(event);
+		firstBucket = -1;
+		if (++size > buckets.length << 1) {
+			resize(buckets.length << 1);
+		}
+	}
+
+	@Override
+	public SimEvent peek() {
+		int b = locateFirst();
+		return b < 0 ? null : buckets[b].first();
+	}
+
+	@Override
+	public SimEvent poll() {
+		int b = locateFirst();
+		if (b < 0) {
+			return null;
+		}
+		SimEvent first = buckets[b].pollFirst();
+		if (--size < buckets.length >> 1 && buckets.length > MIN_BUCKETS) {
+			resize(buckets.length >> 1);
+		} else if (buckets[b].isEmpty() || day(buckets[b].first().eventTime()) != currentDay) {
+			// the rest of today's events, if any, are all in this bucket
+			firstBucket = -1;
+		}
+		return first;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		if (!buckets[(int) (day(event.eventTime()) & mask)].remove(event)) {
+			return false;
+		}
+		size--;
+		firstBucket = -1;
+		return true;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int bucket = 0;
+
+			private int index = buckets.length > 0 ? buckets[0].head : 0;
+
+			@Override
+			public boolean hasNext() {
+				while (bucket < buckets.length) {
+					if (index < buckets[bucket].tail) {
+						return true;
+					}
+					if (++bucket < buckets.length) {
+						index = buckets[bucket].head;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return buckets[bucket].events[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		allocate(MIN_BUCKETS);
+		width = 1.0;
+		currentDay = 0;
+		firstBucket = -1;
+		size = 0;
+	}
+
+	/**
+	 * Gets the virtual bucket number ("day") of a time.
+	 *
+	 * @param time the time
+	 * @return the day
+	 */
+	private long day(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	/**
+	 * Finds the bucket that holds the earliest event. The scan walks one "year" of days starting at
+	 * {@link #currentDay}; if no bucket holds an event of its day, the heads of all buckets are
+	 * compared directly.
+	 *
+	 * @return the bucket index, or -1 if the queue is empty
+	 */
+	private int locateFirst() {
+		if (firstBucket >= 0 || size == 0) {
+			return size == 0 ? -1 : firstBucket;
+		}
+		for (int k = 0; k < buckets.length; k++) {
+			long day = currentDay + k;
+			int b = (int) (day & mask);
+			if (!buckets[b].isEmpty() && day(buckets[b].first().eventTime()) == day) {
+				currentDay = day;
+				firstBucket = b;
+				return b;
+			}
+		}
+
+		SimEvent min = null;
+		for (int b = 0; b < buckets.length; b++) {
+			if (!buckets[b].isEmpty() && (min == null || buckets[b].first().compareTo(min) < 0)) {
+				min = buckets[b].first();
+				firstBucket = b;
+			}
+		}
+		currentDay = day(min.eventTime());
+		return firstBucket;
+	}
+
+	/**
+	 * Rebuilds the calendar with a new number of buckets and a re-estimated bucket width.
+	 *
+	 * @param bucketCount the new number of buckets, a power of two
+	 */
+	private void resize(int bucketCount) {
+		SimEvent[] all = new SimEvent[size];
+		int n = 0;
+		for (Bucket bucket : buckets) {
+			for (int i = bucket.head; i < bucket.tail; i++) {
+				all[n++] = bucket.events[i];
+			}
+		}
+		Arrays.sort(all, 0, n);
+
+		width = estimateWidth(all, n);
+		allocate(bucketCount);
+		for (int i = 0; i < n; i++) {
+			buckets[(int) (day(all[i].eventTime()) & mask)].append(all[i]);
+		}
+		currentDay = n > 0 ? day(all[0].eventTime()) : 0;
+		firstBucket = -1;
+	}
+
+	/**
+	 * Estimates the bucket width as three times the average separation of the earliest events,
+	 * ignoring separations that are more than twice the first average (Brown's heuristic).
+	 *
+	 * @param sorted the events in ascending order
+	 * @param n the number of events
+	 * @return the new width, or the current one if no separation could be measured
+	 */
+	private double estimateWidth(SimEvent[] sorted, int n) {
+		int samples = Math.min(n, WIDTH_SAMPLE);
+		double total = 0;
+		int gaps = 0;
+		for (int i = 1; i < samples; i++) {
+			double gap = sorted[i].eventTime() - sorted[i - 1].eventTime();
+			if (gap > 0 && !Double.isInfinite(gap)) {
+				total += gap;
+				gaps++;
+			}
+		}
+		if (gaps == 0) {
+			return width;
+		}
+		double average = total / gaps;
+		total = 0;
+		gaps = 0;
+		for (int i = 1; i < samples; i++) {
+			double gap = sorted[i].eventTime() - sorted[i - 1].eventTime();
+			if (gap > 0 && gap <= 2 * average) {
+				total += gap;
+				gaps++;
+			}
+		}
+		return gaps == 0 ? 3 * average : 3 * total / gaps;
+	}
+
+	/**
+	 * Allocates a new, empty set of buckets.
+	 *
+	 * @param bucketCount the number of buckets, a power of two
+	 */
+	private void allocate(int bucketCount) {
+		buckets = new Bucket[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			buckets[i] = new Bucket();
+		}
+		mask = bucketCount - 1;
+	}
+
+	/**
+	 * A sorted run of events backed by an array, consumed from the head and usually appended at
+	 * the tail.
+	 */
+	private static final class Bucket {
+
+		/** The events; the live ones are in [head, tail). */
+		SimEvent[] events = new SimEvent[4];
+
+		/** The index of the first live event. */
+		int head = 0;
+
+		/** The index after the last live event. */
+		int tail = 0;
+
+		boolean isEmpty() {
+			return head == tail;
+		}
+
+		SimEvent first() {
+			return events[head];
+		}
+
+		SimEvent pollFirst() {
+			SimEvent first = events[head];
+			events[head++] = null;
+			if (head == tail) {
+				head = 0;
+				tail = 0;
+			}
+			return first;
+		}
+
+		/**
+		 * Appends an event that is not smaller than any event in the bucket.
+		 */
+		void append(SimEvent event) {
+			ensureTailRoom();
+			events[tail++] = event;
+		}
+
+		/**
+		 * Inserts an event at its sorted position.
+		 */
+		void add(SimEvent event) {
+			ensureTailRoom();
+			int pos = tail;
+			while (pos > head && events[pos - 1].compareTo(event) > 0) {
+				pos--;
+			}
+			System.arraycopy(events, pos, events, pos + 1, tail - pos);
+			events[pos] = event;
+			tail++;
+		}
+
+		boolean remove(SimEvent event) {
+			int low = head;
+			int high = tail - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int cmp = events[mid].compareTo(event);
+				if (cmp < 0) {
+					low = mid + 1;
+				} else if (cmp > 0) {
+					high = mid - 1;
+				} else {
+					System.arraycopy(events, mid + 1, events, mid, tail - mid - 1);
+					events[--tail] = null;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void ensureTailRoom() {
+			if (tail < events.length) {
+				return;
+			}
+			int live = tail - head;
+			if (head > 0 && live < events.length >> 1) {
+				System.arraycopy(events, head, events, 0, live);
+				Arrays.fill(events, live, tail, null);
+			} else {
+				SimEvent[] grown = new SimEvent[events.length << 1];
+				System.arraycopy(events, head, grown, 0, live);
+				events = grown;
+			}
+			head = 0;
+			tail = live;
+		}
+	}
+
+}
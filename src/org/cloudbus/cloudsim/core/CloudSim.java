@@ -9,6 +9,7 @@
 package org.cloudbus.cloudsim.core;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -64,6 +65,15 @@ public class CloudSim {
 
 	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
 	private static double minTimeBetweenEvents = 0.1;
+
+	/** The engine type of the future event queue. */
+	private static int futureQueueType = EventQueueFactory.QUATERNARY_HEAP;
+
+	/** The number of threads running the entities of a clock tick. */
+	private static int parallelism = 1;
+
+	/** Runs the entities in parallel, or <tt>null</tt> in the (default) sequential mode. */
+	private static ParallelEntityExecutor executor = null;
 	
 	/**
 	 * Initialises all the common attributes.
@@ -258,6 +268,26 @@ public class CloudSim {
 	    return minTimeBetweenEvents;
 	}
 
+	/**
+	 * Selects the engine used by the future event queue. This method should be called before
+	 * {@link #init(int, Calendar, boolean)}; all engines deliver the events in the same order.
+	 * 
+	 * @param type one of the {@link EventQueueFactory} constants
+	 */
+	public static void setFutureQueueType(int type) {
+		new EventQueueFactory().getEventQueue(type);
+		futureQueueType = type;
+	}
+
+	/**
+	 * Returns the engine type of the future event queue.
+	 * 
+	 * @return the engine type
+	 */
+	public static int getFutureQueueType() {
+		return futureQueueType;
+	}
+
 	/**
 	 * Gets a new copy of initial simulation Calendar.
 	 * 
@@ -325,6 +355,9 @@ public class CloudSim {
 	/** The entities by name. */
 	private static Map<String, SimEntity> entitiesByName;
 
+	/** The ids of the entities that may have events to process in the next clock tick. */
+	private static BitSet readyEntities;
+
 	// The predicates used in entity wait methods
 	/** The wait predicates. */
 	private static Map<Integer, Predicate> waitPredicates;
@@ -346,7 +379,12 @@ public class CloudSim {
 		Log.printLine("Initialising...");
 		entities = new ArrayList<SimEntity>();
 		entitiesByName = new LinkedHashMap<String, SimEntity>();
-		future = new FutureQueue();
+		readyEntities = new BitSet();
+		if (executor != null) {
+			executor.shutdown();
+		}
+		executor = parallelism > 1 ? new ParallelEntityExecutor(parallelism) : null;
+		future = new FutureQueue(futureQueueType);
 		deferred = new DeferredQueue();
 		waitPredicates = new HashMap<Integer, Predicate>();
 		clock = 0;
@@ -472,6 +510,7 @@ public class CloudSim {
 	 */
 	public static void addEntity(SimEntity e) {
 		SimEvent evt;
+		awaitTurn();
 		if (running) {
 			// Post an event to make this entity
 			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
@@ -484,6 +523,19 @@ public class CloudSim {
 			e.setId(id);
 			entities.add(e);
 			entitiesByName.put(e.getName(), e);
+			readyEntities.set(id);
+		}
+	}
+
+	/**
+	 * Marks an entity as having events to process, so that it is run in the next clock tick. This
+	 * is done whenever an event is deferred for the entity or the entity becomes RUNNABLE.
+	 * 
+	 * @param id the entity id
+	 */
+	static void markReady(int id) {
+		if (readyEntities != null && id >= 0) {
+			readyEntities.set(id);
 		}
 	}
 
@@ -511,42 +563,34 @@ public class CloudSim {
 	public static boolean runClockTick() {
 		SimEntity ent;
 		boolean queue_empty;
-		
-		int entities_size = entities.size();
 
-		for (int i = 0; i < entities_size; i++) {
-			ent = entities.get(i);
-			if (ent.getState() == SimEntity.RUNNABLE) {
-				ent.run();
+		// Only entities that received an event or were woken up have anything to do; they are
+		// run in id order, as if all the entities were scanned.
+		if (executor != null) {
+			executor.runReadyEntities(readyEntities, entities, deferred);
+		} else {
+			for (int i = readyEntities.nextSetBit(0); i >= 0; i = readyEntities.nextSetBit(i + 1)) {
+				readyEntities.clear(i);
+				ent = entities.get(i);
+				if (ent.getState() == SimEntity.RUNNABLE) {
+					ent.run();
+				}
 			}
 		}
 				
 		// If there are more future events then deal with them
 		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
 			queue_empty = false;
-			SimEvent first = fit.next();
+			SimEvent first = future.poll();
 			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
 
 			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
+			SimEvent next = future.peek();
+			while (next != null && next.eventTime() == first.eventTime()) {
+				processEvent(future.poll());
+				next = future.peek();
 			}
 
-			future.removeAll(toRemove);
-
 		} else {
 			queue_empty = true;
 			running = false;
@@ -570,6 +614,7 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void hold(int src, long delay) {
+		awaitTurn();
 		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
 		future.addEvent(e);
 		entities.get(src).setState(SimEntity.HOLDING);
@@ -582,6 +627,7 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void pause(int src, double delay) {
+		awaitTurn();
 		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
 		future.addEvent(e);
 		entities.get(src).setState(SimEntity.HOLDING);
@@ -597,12 +643,33 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void send(int src, int dest, double delay, int tag, Object data) {
+		sendFrom(src, dest, clock, delay, tag, data);
+	}
+
+	/**
+	 * Used to send an event from one entity to another, to be received a delay after a time not
+	 * before the current one, such as the time a link becomes free. The event time is computed
+	 * as {@link #send(int, int, double, int, Object)} would compute it at that time.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param from the time the delay counts from
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public static void sendFrom(int src, int dest, double from, double delay, int tag, Object data) {
 		if (delay < 0) {
 			throw new IllegalArgumentException("Send delay can't be negative.");
 		}
+		if (from < clock) {
+			throw new IllegalArgumentException("Send time can't be in the past.");
+		}
 
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEvent(e);
+		SimEvent e = new SimEvent(SimEvent.SEND, from + delay, src, dest, tag, data);
+		if (executor == null || !executor.defer(e)) {
+			future.addEvent(e);
+		}
 	}
 
 	/**
@@ -619,6 +686,7 @@ public class CloudSim {
 			throw new IllegalArgumentException("Send delay can't be negative.");
 		}
 
+		awaitTurn();
 		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
 		future.addEventFirst(e);
 	}
@@ -632,6 +700,7 @@ public class CloudSim {
 	 * @param p the p
 	 */
 	public static void wait(int src, Predicate p) {
+		awaitTurn();
 		entities.get(src).setState(SimEntity.WAITING);
 		if (p != SIM_ANY) {
 			// If a predicate has been used store it in order to check it
@@ -647,16 +716,7 @@ public class CloudSim {
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
-		int count = 0;
-		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
-				count++;
-			}
-		}
-		return count;
+		return deferred.count(d, p);
 	}
 
 	/**
@@ -664,19 +724,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no event matches
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				iterator.remove();
-				break;
-			}
-		}
-		return ev;
+		return deferred.select(src, p);
 	}
 
 	/**
@@ -684,18 +735,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no event matches
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
-			}
-		}
-		return ev;
+		return deferred.findFirst(src, p);
 	}
 
 	/**
@@ -706,15 +749,18 @@ public class CloudSim {
 	 * @return the sim event
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
+		awaitTurn();
 		SimEvent ev = null;
 		Iterator<SimEvent> iter = future.iterator();
 		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
+			SimEvent next = iter.next();
+			if (next.getSource() == src && p.match(next) && (ev == null || next.compareTo(ev) < 0)) {
+				ev = next;
 			}
 		}
+		if (ev != null) {
+			future.remove(ev);
+		}
 
 		return ev;
 	}
@@ -728,18 +774,73 @@ public class CloudSim {
 	 * @return true, if successful
 	 */
 	public static boolean cancelAll(int src, Predicate p) {
+		awaitTurn();
 		SimEvent ev = null;
 		int previousSize = future.size();
+		List<SimEvent> toRemove = new ArrayList<SimEvent>();
 		Iterator<SimEvent> iter = future.iterator();
 		while (iter.hasNext()) {
 			ev = iter.next();
 			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
+				toRemove.add(ev);
 			}
 		}
+		future.removeAll(toRemove);
 		return previousSize < future.size();
 	}
 
+	/**
+	 * Sets the number of threads that run the entities of a clock tick. With more than one thread,
+	 * entities that are {@link SimEntity#isParallelSafe() parallel safe} process their events of the
+	 * same time concurrently; the results are exactly those of the sequential run. It takes effect
+	 * when the simulation is initialised.
+	 * 
+	 * @param threads the number of threads; 1 (the default) runs the entities sequentially
+	 */
+	public static void setParallelism(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1, but is:" + threads);
+		}
+		parallelism = threads;
+	}
+
+	/**
+	 * Gets the number of threads that run the entities of a clock tick.
+	 * 
+	 * @return the number of threads
+	 */
+	public static int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Waits until the current entity may act on state shared with other entities, i.e. until all
+	 * the entities that precede it in the current clock tick have run. It must be called before
+	 * reading or changing shared (static) state from an event handler; it returns at once in the
+	 * sequential mode or outside an event handler.
+	 */
+	public static void awaitTurn() {
+		ParallelEntityExecutor ex = executor;
+		if (ex != null) {
+			ex.awaitTurn();
+		}
+	}
+
+	/**
+	 * Runs an action on shared state at the point of the current entity in the sequential order of
+	 * the clock tick. In the parallel mode the action may be delayed until all the entities that
+	 * precede the current one have run; use it for updates whose result is not needed at once, such
+	 * as accumulating statistics.
+	 * 
+	 * @param action the action
+	 */
+	public static void runInOrder(Runnable action) {
+		ParallelEntityExecutor ex = executor;
+		if (ex == null || !ex.defer(action)) {
+			action.run();
+		}
+	}
+
 	//
 	// Private internal methods
 	//
@@ -788,6 +889,7 @@ public class CloudSim {
 						}
 					} else {
 						deferred.addEvent(e);
+						markReady(dest);
 					}
 				}
 				break;
@@ -894,8 +996,7 @@ public class CloudSim {
 			}
 
 			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.peek().eventTime()) || future.size() == 0 && pauseAt <= clock)) {
 				pauseSimulation();
 				clock = pauseAt;
 			}
@@ -939,6 +1040,11 @@ public class CloudSim {
 		// Private data members
 		entities = null;
 		entitiesByName = null;
+		readyEntities = null;
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
 		future = null;
 		deferred = null;
 		clock = 0L;
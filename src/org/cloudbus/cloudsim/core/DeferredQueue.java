@@ -8,15 +8,19 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link Simulation}. The events are kept
+ * in one mailbox per destination entity, indexed by entity id, so that an entity only ever looks
+ * at its own events. Each mailbox is a ring buffer in temporal order, which gives the same
+ * per-entity order as a single time-ordered list of all the deferred events.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
@@ -24,65 +28,263 @@ import java.util.ListIterator;
  */
 public class DeferredQueue {
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
-
-	/** The max time. */
-	private double maxTime = -1;
+	/** The mailboxes, indexed by destination entity id. */
+	private Mailbox[] mailboxes = new Mailbox[16];
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
-		// The event has to be inserted as the last of all events
-		// with the same event_time(). Yes, this matters.
-		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
-			list.add(newEvent);
-			maxTime = eventTime;
-			return;
-		}
+		mailbox(newEvent.getDestination()).add(newEvent);
+	}
 
-		ListIterator<SimEvent> iterator = list.listIterator();
-		SimEvent event;
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if (event.eventTime() > eventTime) {
-				iterator.previous();
-				iterator.add(newEvent);
-				return;
+	/**
+	 * Counts the events for an entity that match a predicate.
+	 *
+	 * @param dest the destination entity id
+	 * @param p the predicate
+	 * @return the number of matching events
+	 */
+	public int count(int dest, Predicate p) {
+		Mailbox mailbox = existingMailbox(dest);
+		if (mailbox == null) {
+			return 0;
+		}
+		if (p instanceof PredicateAny) {
+			return mailbox.size;
+		}
+		int count = 0;
+		for (int i = 0; i < mailbox.size; i++) {
+			if (p.match(mailbox.get(i))) {
+				count++;
 			}
 		}
+		return count;
+	}
+
+	/**
+	 * Finds the first event for an entity that matches a predicate.
+	 *
+	 * @param dest the destination entity id
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if none matches
+	 */
+	public SimEvent findFirst(int dest, Predicate p) {
+		Mailbox mailbox = existingMailbox(dest);
+		int index = mailbox == null ? -1 : mailbox.indexOf(p);
+		return index < 0 ? null : mailbox.get(index);
+	}
+
+	/**
+	 * Removes and returns the first event for an entity that matches a predicate.
+	 *
+	 * @param dest the destination entity id
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if none matches
+	 */
+	public SimEvent select(int dest, Predicate p) {
+		Mailbox mailbox = existingMailbox(dest);
+		int index = mailbox == null ? -1 : mailbox.indexOf(p);
+		if (index < 0) {
+			return null;
+		}
+		return mailbox.removeAt(index);
+	}
 
-		list.add(newEvent);
+	/**
+	 * Gets an event for an entity by its position in temporal order.
+	 *
+	 * @param dest the destination entity id
+	 * @param index the position, less than <tt>count(dest, CloudSim.SIM_ANY)</tt>
+	 * @return the event
+	 */
+	SimEvent get(int dest, int index) {
+		return mailboxes[dest].get(index);
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
-	 * 
+	 * Returns an iterator to the events in the queue. The events are grouped by destination and
+	 * are in temporal order within each destination.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		return new Iterator<SimEvent>() {
+
+			private int dest = 0;
+
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (dest < mailboxes.length) {
+					if (mailboxes[dest] != null && index < mailboxes[dest].size) {
+						return true;
+					}
+					dest++;
+					index = 0;
+				}
+				return false;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return mailboxes[dest].get(index++);
+			}
+
+			@Override
+			public void remove() {
+				if (index == 0) {
+					throw new IllegalStateException();
+				}
+				mailboxes[dest].removeAt(--index);
+			}
+		};
 	}
 
 	/**
-	 * Returns the size of this event queue.
-	 * 
+	 * Returns the size of this event queue. The mailboxes are counted on demand, as entities may
+	 * take events out of their own mailboxes concurrently (see {@link CloudSim#setParallelism(int)}).
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		int size = 0;
+		for (Mailbox mailbox : mailboxes) {
+			if (mailbox != null) {
+				size += mailbox.size;
+			}
+		}
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		Arrays.fill(mailboxes, null);
+	}
+
+	/**
+	 * Gets the mailbox of an entity, creating it if needed.
+	 *
+	 * @param dest the destination entity id
+	 * @return the mailbox
+	 */
+	private Mailbox mailbox(int dest) {
+		if (dest >= mailboxes.length) {
+			mailboxes = Arrays.copyOf(mailboxes, Math.max(dest + 1, mailboxes.length << 1));
+		}
+		Mailbox mailbox = mailboxes[dest];
+		if (mailbox == null) {
+			mailbox = new Mailbox();
+			mailboxes[dest] = mailbox;
+		}
+		return mailbox;
+	}
+
+	/**
+	 * Gets the mailbox of an entity if it has one.
+	 *
+	 * @param dest the destination entity id
+	 * @return the mailbox, or <tt>null</tt>
+	 */
+	private Mailbox existingMailbox(int dest) {
+		return dest >= 0 && dest < mailboxes.length ? mailboxes[dest] : null;
+	}
+
+	/**
+	 * A ring buffer of the deferred events for one entity, in temporal order.
+	 */
+	private static final class Mailbox {
+
+		/** The buffer; its length is always a power of two. */
+		private SimEvent[] events = new SimEvent[8];
+
+		/** The position of the first event. */
+		private int head = 0;
+
+		/** The number of events. */
+		private int size = 0;
+
+		/** The largest event time added so far. */
+		private double maxTime = -1;
+
+		SimEvent get(int i) {
+			return events[(head + i) & (events.length - 1)];
+		}
+
+		/**
+		 * Adds an event after all the events with the same or an earlier time.
+		 */
+		void add(SimEvent event) {
+			if (size == events.length) {
+				grow();
+			}
+			int mask = events.length - 1;
+			double eventTime = event.eventTime();
+			// The event has to be inserted as the last of all events
+			// with the same event_time(). Yes, this matters.
+			if (eventTime >= maxTime) {
+				events[(head + size) & mask] = event;
+				size++;
+				maxTime = eventTime;
+				return;
+			}
+			int pos = size;
+			while (pos > 0 && get(pos - 1).eventTime() > eventTime) {
+				events[(head + pos) & mask] = get(pos - 1);
+				pos--;
+			}
+			events[(head + pos) & mask] = event;
+			size++;
+		}
+
+		/**
+		 * Finds the first event matching a predicate.
+		 */
+		int indexOf(Predicate p) {
+			if (p instanceof PredicateAny) {
+				return size > 0 ? 0 : -1;
+			}
+			for (int i = 0; i < size; i++) {
+				if (p.match(get(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		SimEvent removeAt(int index) {
+			int mask = events.length - 1;
+			SimEvent removed = get(index);
+			if (index == 0) {
+				events[head] = null;
+				head = (head + 1) & mask;
+			} else {
+				for (int i = index; i < size - 1; i++) {
+					events[(head + i) & mask] = get(i + 1);
+				}
+				events[(head + size - 1) & mask] = null;
+			}
+			size--;
+			return removed;
+		}
+
+		private void grow() {
+			SimEvent[] grown = new SimEvent[events.length << 1];
+			for (int i = 0; i < size; i++) {
+				grown[i] = get(i);
+			}
+			events = grown;
+			head = 0;
+		}
 	}
 
-}
\ No newline at end of file
+}
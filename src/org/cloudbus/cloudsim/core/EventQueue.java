@@ -0,0 +1,75 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Iterator;
+
+/**
+ * Storage engine behind the {@link FutureQueue}. Implementations keep the pending events ordered by
+ * {@link SimEvent#compareTo(SimEvent)}, i.e. by time, then serial, then insertion sequence, so that
+ * {@link #poll()} always returns the same event the original sorted set would have returned.
+ * <p>
+ * Serials and insertion sequences are assigned by the {@link FutureQueue} before an event reaches
+ * the engine.
+ *
+ * @see FutureQueue
+ * @see EventQueueFactory
+ */
+public interface EventQueue {
+
+	/**
+	 * Adds an event to the queue.
+	 *
+	 * @param event the event, with its serial already set
+	 */
+	void add(SimEvent event);
+
+	/**
+	 * Returns the earliest event without removing it.
+	 *
+	 * @return the earliest event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent peek();
+
+	/**
+	 * Removes and returns the earliest event.
+	 *
+	 * @return the earliest event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent poll();
+
+	/**
+	 * Removes the given event from the queue.
+	 *
+	 * @param event the event
+	 * @return true, if the event was in the queue
+	 */
+	boolean remove(SimEvent event);
+
+	/**
+	 * Returns a read-only iterator over the events in the queue. The iteration order is
+	 * <b>not</b> the event order.
+	 *
+	 * @return the iterator
+	 */
+	Iterator<SimEvent> iterator();
+
+	/**
+	 * Returns the number of events in the queue.
+	 *
+	 * @return the size
+	 */
+	int size();
+
+	/**
+	 * Removes all the events from the queue.
+	 */
+	void clear();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+/**
+ * Creates the {@link EventQueue} engine selected with {@link CloudSim#setFutureQueueType(int)}.
+ * All engines deliver events in exactly the same order; they only differ in speed and memory use.
+ *
+ * @see EventQueue
+ * @see FutureQueue
+ */
+public class EventQueueFactory {
+
+	/** A binary array heap. */
+	public static final int BINARY_HEAP = 1;
+
+	/** A 4-ary array heap; the default. */
+	public static final int QUATERNARY_HEAP = 2;
+
+	/** A calendar queue, O(1) on average for evenly spread event times. */
+	public static final int CALENDAR_QUEUE = 3;
+
+	/** A ladder queue, O(1) on average and robust to skewed event time distributions. */
+	public static final int LADDER_QUEUE = 4;
+
+	/**
+	 * Creates a new event queue engine.
+	 *
+	 * @param type the engine type
+	 * @return the engine
+	 * @throws IllegalArgumentException if the type is unknown
+	 */
+	public EventQueue getEventQueue(int type) {
+		switch (type) {
+			case BINARY_HEAP:
+				return new HeapEventQueue(2);
+			case QUATERNARY_HEAP:
+				return new HeapEventQueue(4);
+			case CALENDAR_QUEUE:
+				return new CalendarEventQueue();
+			case LADDER_QUEUE:
+				return new LadderEventQueue();
+			default:
+				throw new IllegalArgumentException("Unknown event queue type:" + type);
+		}
+	}
+
+}
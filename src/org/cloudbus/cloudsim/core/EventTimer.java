@@ -0,0 +1,139 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The wakeups an entity sends itself with one tag, such as the cloudlet completion events of a
+ * datacenter. Only the wakeups of the earliest time are in the future event queue; the later ones
+ * wait in the timer and are put in the queue when those fire. Cancelling them removes the queued
+ * ones by their handle in logarithmic time, instead of scanning the future queue as
+ * {@link CloudSim#cancelAll(int, Predicate)} does.
+ * <p>
+ * A wakeup is given its serial and sequence when it is scheduled, so the events are processed in
+ * the same order as if they were all sent to the future queue. The queue is changed in the
+ * sequential event order (see {@link CloudSim#runInOrder(Runnable)}), so an entity run in
+ * parallel does not have to wait for its turn.
+ *
+ * @see CloudSim#cancelAll(int, Predicate)
+ */
+public class EventTimer {
+
+	/** The entity the wakeups are sent to and from. */
+	private final int entityId;
+
+	/** The tag of the wakeups. */
+	private final int tag;
+
+	/** The wakeups in the future queue, all of the same time. */
+	private final List<SimEvent> queued = new ArrayList<SimEvent>();
+
+	/** The wakeups later than the queued ones. */
+	private final PriorityQueue<SimEvent> waiting = new PriorityQueue<SimEvent>();
+
+	/**
+	 * Creates a timer.
+	 *
+	 * @param entityId the id of the entity the wakeups are sent to
+	 * @param tag the tag of the wakeups
+	 */
+	public EventTimer(int entityId, int tag) {
+		this.entityId = entityId;
+		this.tag = tag;
+	}
+
+	/**
+	 * Schedules a wakeup, as {@link SimEntity#send(int, double, int)} would send it: a negative
+	 * delay is taken as 0, and nothing is scheduled if the simulation is not running.
+	 *
+	 * @param delay how long from the current simulation time the wakeup should fire
+	 */
+	public void schedule(double delay) {
+		if (delay < 0) {
+			delay = 0;
+		}
+		if (Double.isInfinite(delay)) {
+			throw new IllegalArgumentException("The specified delay is infinite value");
+		}
+		if (!CloudSim.running()) {
+			return;
+		}
+		final SimEvent e = new SimEvent(SimEvent.SEND, CloudSim.clock() + delay, entityId, entityId, tag, null);
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				CloudSim.future.stamp(e);
+				if (queued.isEmpty() || e.eventTime() == queued.get(0).eventTime()) {
+					queue(e);
+				} else if (e.eventTime() < queued.get(0).eventTime()) {
+					for (SimEvent q : queued) {
+						CloudSim.future.remove(q);
+						waiting.add(q);
+					}
+					queued.clear();
+					queue(e);
+				} else {
+					waiting.add(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Cancels all the wakeups not fired yet.
+	 */
+	public void cancelAll() {
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				for (SimEvent q : queued) {
+					CloudSim.future.remove(q);
+				}
+				queued.clear();
+				waiting.clear();
+			}
+		});
+	}
+
+	/**
+	 * Must be called by the entity when it receives a wakeup, so that the next ones are queued once
+	 * all those of its time have fired.
+	 *
+	 * @param ev the wakeup received
+	 */
+	public void fired(final SimEvent ev) {
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = queued.size() - 1; i >= 0; i--) {
+					SimEvent q = queued.get(i);
+					// a past wakeup was received, possibly as a copy
+					if (q == ev || q.eventTime() < CloudSim.clock()) {
+						queued.remove(i);
+					}
+				}
+				if (queued.isEmpty() && !waiting.isEmpty()) {
+					double next = waiting.peek().eventTime();
+					while (!waiting.isEmpty() && waiting.peek().eventTime() == next) {
+						queue(waiting.poll());
+					}
+				}
+			}
+		});
+	}
+
+	private void queue(SimEvent e) {
+		CloudSim.future.addStamped(e);
+		queued.add(e);
+	}
+
+}
@@ -10,26 +10,44 @@ package org.cloudbus.cloudsim.core;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
- * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link TreeSet} in order to store the events.
+ * This class implements the future event queue used by {@link Simulation}. The events are stored
+ * in a pluggable {@link EventQueue} engine, which keeps them ordered by time, serial and insertion
+ * sequence.
  * 
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
- * @see java.util.TreeSet
+ * @see EventQueueFactory
  */
 public class FutureQueue {
 
-	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+	/** The event queue engine. */
+	private final EventQueue queue;
 
 	/** The serial. */
 	private long serial = 0;
 
+	/** The insertion sequence. */
+	private long sequence = 0;
+
+	/**
+	 * Creates a future queue backed by the default engine, a 4-ary heap.
+	 */
+	public FutureQueue() {
+		this(EventQueueFactory.QUATERNARY_HEAP);
+	}
+
+	/**
+	 * Creates a future queue backed by the given engine type.
+	 * 
+	 * @param type the engine type, one of the {@link EventQueueFactory} constants
+	 */
+	public FutureQueue(int type) {
+		queue = new EventQueueFactory().getEventQueue(type);
+	}
+
 	/**
 	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
 	 * the events in the queue.
@@ -38,7 +56,29 @@ public class FutureQueue {
 	 */
 	public void addEvent(SimEvent newEvent) {
 		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
+		newEvent.setSequence(sequence++);
+		queue.add(newEvent);
+	}
+
+	/**
+	 * Gives an event the serial and insertion sequence it would get if it was added now, without
+	 * adding it, for an event to be added later with {@link #addStamped(SimEvent)} but ordered as
+	 * if it had been added now.
+	 * 
+	 * @param newEvent the event
+	 */
+	void stamp(SimEvent newEvent) {
+		newEvent.setSerial(serial++);
+		newEvent.setSequence(sequence++);
+	}
+
+	/**
+	 * Adds an event given its serial and insertion sequence by {@link #stamp(SimEvent)}.
+	 * 
+	 * @param newEvent the event
+	 */
+	void addStamped(SimEvent newEvent) {
+		queue.add(newEvent);
 	}
 
 	/**
@@ -48,16 +88,36 @@ public class FutureQueue {
 	 */
 	public void addEventFirst(SimEvent newEvent) {
 		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
+		newEvent.setSequence(sequence++);
+		queue.add(newEvent);
+	}
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent peek() {
+		return queue.peek();
+	}
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent poll() {
+		return queue.poll();
 	}
 
 	/**
-	 * Returns an iterator to the queue.
+	 * Returns a read-only iterator to the queue. The events are <b>not</b> returned in temporal
+	 * order.
 	 * 
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return sortedSet.iterator();
+		return queue.iterator();
 	}
 
 	/**
@@ -66,7 +126,7 @@ public class FutureQueue {
 	 * @return the size
 	 */
 	public int size() {
-		return sortedSet.size();
+		return queue.size();
 	}
 
 	/**
@@ -76,7 +136,7 @@ public class FutureQueue {
 	 * @return true, if successful
 	 */
 	public boolean remove(SimEvent event) {
-		return sortedSet.remove(event);
+		return queue.remove(event);
 	}
 
 	/**
@@ -86,14 +146,18 @@ public class FutureQueue {
 	 * @return true, if successful
 	 */
 	public boolean removeAll(Collection<SimEvent> events) {
-		return sortedSet.removeAll(events);
+		boolean removed = false;
+		for (SimEvent event : events) {
+			removed |= queue.remove(event);
+		}
+		return removed;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		sortedSet.clear();
+		queue.clear();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implicit d-ary min-heap stored in a plain array. With an arity of 2 this is the classic
+ * binary heap; an arity of 4 halves the height of the tree and keeps the children of a node in
+ * the same cache line, which usually pays off for large queues.
+ *
+ * @see EventQueue
+ */
+public class HeapEventQueue implements EventQueue {
+
+	/** The initial capacity of the heap array. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The number of children per node. */
+	private final int arity;
+
+	/** The heap array; only the first {@link #size} slots are used. */
+	private SimEvent[] heap = new SimEvent[INITIAL_CAPACITY];
+
+	/** The number of events in the heap. */
+	private int size = 0;
+
+	/**
+	 * Creates a new heap.
+	 *
+	 * @param arity the number of children per node, at least 2
+	 */
+	public HeapEventQueue(int arity) {
+		if (arity < 2) {
+			throw new IllegalArgumentException("Heap arity must be at least 2, but is:" + arity);
+		}
+		this.arity = arity;
+	}
+
+	@Override
+	public void add(SimEvent event) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length << 1);
+		}
+		siftUp(size++, event);
+	}
+
+	@Override
+	public SimEvent peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public SimEvent poll() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	/**
+	 * Removes the event in logarithmic time, using the position it keeps in the heap.
+	 */
+	@Override
+	public boolean remove(SimEvent event) {
+		int i = event.heapIndex;
+		if (i < 0 || i >= size || heap[i] != event) {
+			return false;
+		}
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return heap[next++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			heap[i].heapIndex = -1;
+		}
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Removes the event at the given heap position and restores the heap property.
+	 *
+	 * @param index the position
+	 */
+	private void removeAt(int index) {
+		heap[index].heapIndex = -1;
+		SimEvent last = heap[--size];
+		heap[size] = null;
+		if (index == size) {
+			return;
+		}
+		siftDown(index, last);
+		if (heap[index] == last) {
+			siftUp(index, last);
+		}
+	}
+
+	/**
+	 * Moves an event up from the given position until its parent is smaller.
+	 *
+	 * @param index the starting position
+	 * @param event the event to place
+	 */
+	private void siftUp(int index, SimEvent event) {
+		while (index > 0) {
+			int parent = (index - 1) / arity;
+			SimEvent p = heap[parent];
+			if (event.compareTo(p) >= 0) {
+				break;
+			}
+			heap[index] = p;
+			p.heapIndex = index;
+			index = parent;
+		}
+		heap[index] = event;
+		event.heapIndex = index;
+	}
+
+	/**
+	 * Moves an event down from the given position until all its children are larger.
+	 *
+	 * @param index the starting position
+	 * @param event the event to place
+	 */
+	private void siftDown(int index, SimEvent event) {
+		while (true) {
+			int child = index * arity + 1;
+			if (child >= size) {
+				break;
+			}
+			int end = Math.min(child + arity, size);
+			int min = child;
+			for (int c = child + 1; c < end; c++) {
+				if (heap[c].compareTo(heap[min]) < 0) {
+					min = c;
+				}
+			}
+			if (event.compareTo(heap[min]) <= 0) {
+				break;
+			}
+			heap[index] = heap[min];
+			heap[index].heapIndex = index;
+			index = min;
+		}
+		heap[index] = event;
+		event.heapIndex = index;
+	}
+
+}
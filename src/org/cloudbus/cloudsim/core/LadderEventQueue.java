@@ -0,0 +1,358 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A ladder queue (W. T. Tang, R. S. M. Goh and I. L.-J. Thng, "Ladder Queue: An O(1) Priority
+ * Queue Structure for Large-Scale Discrete Event Simulation", ACM TOMACS 2005). Far-future events
+ * are appended unsorted to the <i>top</i>; when the near future runs dry they are spread over the
+ * buckets of a <i>rung</i>, crowded buckets are split into finer rungs, and only a small bucket at
+ * a time is sorted into the <i>bottom</i> list the events are dequeued from.
+ * <p>
+ * Events are routed by bucket number, which never decreases with time, so events with the same
+ * time always share a bucket and are finally ordered by {@link SimEvent#compareTo(SimEvent)}.
+ *
+ * @see EventQueue
+ */
+public class LadderEventQueue implements EventQueue {
+
+	/** A bucket with more events than this is split into a new rung instead of being sorted. */
+	private static final int THRESHOLD = 50;
+
+	/** The maximum number of rungs. */
+	private static final int MAX_RUNGS = 8;
+
+	/** The unsorted far-future events. */
+	private final List<SimEvent> top = new ArrayList<SimEvent>();
+
+	/** The smallest time in the top. */
+	private double topMin;
+
+	/** The largest time in the top. */
+	private double topMax;
+
+	/** Events not earlier than this go to the top; everything below it is in the rungs or bottom. */
+	private double topStart = Double.NEGATIVE_INFINITY;
+
+	/** The rungs, coarsest first. */
+	private final List<Rung> rungs = new ArrayList<Rung>();
+
+	/** The near-future events, sorted in descending order so the earliest one is last. */
+	private SimEvent[] bottom = new SimEvent[THRESHOLD];
+
+	/** The number of events in the bottom. */
+	private int bottomSize = 0;
+
+	/** The number of events in the queue. */
+	private int size = 0;
+
+	@Override
+	public void add(SimEvent event) {
+		size++;
+		double time = event.eventTime();
+		if (time >= topStart) {
+			if (top.isEmpty()) {
+				topMin = time;
+				topMax = time;
+			} else if (time < topMin) {
+				topMin = time;
+			} else if (time > topMax) {
+				topMax = time;
+			}
+			top.add(event);
+			return;
+		}
+		for (Rung rung : rungs) {
+			if (rung.accepts(time)) {
+				rung.add(event);
+				return;
+			}
+		}
+		addToBottom(event);
+	}
+
+	@Override
+	public SimEvent peek() {
+		return prepareBottom() ? bottom[bottomSize - 1] : null;
+	}
+
+	@Override
+	public SimEvent poll() {
+		if (!prepareBottom()) {
+			return null;
+		}
+		SimEvent first = bottom[--bottomSize];
+		bottom[bottomSize] = null;
+		size--;
+		return first;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		for (int i = 0; i < bottomSize; i++) {
+			if (bottom[i] == event) {
+				System.arraycopy(bottom, i + 1, bottom, i, bottomSize - i - 1);
+				bottom[--bottomSize] = null;
+				size--;
+				return true;
+			}
+		}
+		for (Rung rung : rungs) {
+			if (rung.remove(event)) {
+				size--;
+				return true;
+			}
+		}
+		for (int i = 0; i < top.size(); i++) {
+			if (top.get(i) == event) {
+				top.set(i, top.get(top.size() - 1));
+				top.remove(top.size() - 1);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		List<SimEvent> all = new ArrayList<SimEvent>(size);
+		all.addAll(Arrays.asList(bottom).subList(0, bottomSize));
+		for (Rung rung : rungs) {
+			rung.addAllTo(all);
+		}
+		all.addAll(top);
+		return Collections.unmodifiableList(all).iterator();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		top.clear();
+		rungs.clear();
+		Arrays.fill(bottom, 0, bottomSize, null);
+		bottomSize = 0;
+		topStart = Double.NEGATIVE_INFINITY;
+		size = 0;
+	}
+
+	/**
+	 * Makes sure the bottom holds the earliest events, pulling them down from the rungs or the top
+	 * as needed.
+	 *
+	 * @return true, if the queue is not empty
+	 */
+	private boolean prepareBottom() {
+		while (bottomSize == 0) {
+			if (rungs.isEmpty()) {
+				if (top.isEmpty()) {
+					topStart = Double.NEGATIVE_INFINITY;
+					return false;
+				}
+				spreadTop();
+				continue;
+			}
+
+			Rung rung = rungs.get(rungs.size() - 1);
+			int b = rung.nextBucket();
+			if (b < 0) {
+				rungs.remove(rungs.size() - 1);
+				continue;
+			}
+			List<SimEvent> bucket = rung.take(b);
+			if (bucket.size() > THRESHOLD && rungs.size() < MAX_RUNGS && !sameTime(bucket)) {
+				rungs.add(new Rung(bucket));
+			} else {
+				sortIntoBottom(bucket);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the top into a new first rung, or straight into the bottom if all its events share one
+	 * time.
+	 */
+	private void spreadTop() {
+		topStart = Math.nextUp(topMax);
+		if (topMin == topMax || top.size() <= THRESHOLD) {
+			sortIntoBottom(top);
+		} else {
+			rungs.add(new Rung(top));
+		}
+		top.clear();
+	}
+
+	/**
+	 * Sorts events into the (empty) bottom.
+	 *
+	 * @param events the events
+	 */
+	private void sortIntoBottom(List<SimEvent> events) {
+		int n = events.size();
+		if (bottom.length < n) {
+			bottom = new SimEvent[Math.max(n, bottom.length << 1)];
+		}
+		for (int i = 0; i < n; i++) {
+			bottom[i] = events.get(i);
+		}
+		Arrays.sort(bottom, 0, n, Collections.reverseOrder());
+		bottomSize = n;
+	}
+
+	/**
+	 * Inserts an event earlier than every rung event at its sorted position in the bottom.
+	 *
+	 * @param event the event
+	 */
+	private void addToBottom(SimEvent event) {
+		if (bottomSize == bottom.length) {
+			bottom = Arrays.copyOf(bottom, bottom.length << 1);
+		}
+		int pos = bottomSize;
+		while (pos > 0 && bottom[pos - 1].compareTo(event) < 0) {
+			pos--;
+		}
+		System.arraycopy(bottom, pos, bottom, pos + 1, bottomSize - pos);
+		bottom[pos] = event;
+		bottomSize++;
+	}
+
+	/**
+	 * Checks if all the events have the same time.
+	 *
+	 * @param events the events
+	 * @return true, if so
+	 */
+	private static boolean sameTime(List<SimEvent> events) {
+		double time = events.get(0).eventTime();
+		for (SimEvent event : events) {
+			if (event.eventTime() != time) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A rung: an array of unsorted buckets of equal width, consumed from the first one on.
+	 */
+	private static final class Rung {
+
+		/** The start time of the first bucket. */
+		private final double start;
+
+		/** The bucket width. */
+		private final double width;
+
+		/** The buckets. */
+		private final List<SimEvent>[] buckets;
+
+		/** The first bucket that has not been consumed yet. */
+		private int current = 0;
+
+		/**
+		 * Spreads events over a new rung with one bucket per event on average.
+		 *
+		 * @param events the events, with at least two distinct times
+		 */
+		@SuppressWarnings("unchecked")
+		Rung(List<SimEvent> events) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (SimEvent event : events) {
+				min = Math.min(min, event.eventTime());
+				max = Math.max(max, event.eventTime());
+			}
+			start = min;
+			double w = (max - min) / events.size();
+			width = w > 0 && !Double.isInfinite(w) ? w : Double.MAX_VALUE;
+			buckets = (List<SimEvent>[]) new List<?>[events.size() + 1];
+			for (SimEvent event : events) {
+				add(event);
+			}
+		}
+
+		/**
+		 * Gets the (unclamped) bucket number of a time. It never decreases with time.
+		 */
+		private double position(double time) {
+			return Math.floor((time - start) / width);
+		}
+
+		/**
+		 * Checks if a time falls into a bucket that has not been consumed yet.
+		 */
+		boolean accepts(double time) {
+			return current < buckets.length && position(time) >= current;
+		}
+
+		void add(SimEvent event) {
+			double p = position(event.eventTime());
+			int b = p >= buckets.length - 1 ? buckets.length - 1 : Math.max(current, (int) p);
+			if (buckets[b] == null) {
+				buckets[b] = new ArrayList<SimEvent>();
+			}
+			buckets[b].add(event);
+		}
+
+		/**
+		 * Advances to the first non-empty bucket.
+		 *
+		 * @return its index, or -1 if the rung is exhausted
+		 */
+		int nextBucket() {
+			while (current < buckets.length) {
+				if (buckets[current] != null && !buckets[current].isEmpty()) {
+					return current;
+				}
+				buckets[current++] = null;
+			}
+			return -1;
+		}
+
+		/**
+		 * Removes a bucket from the rung and marks it consumed.
+		 */
+		List<SimEvent> take(int b) {
+			List<SimEvent> bucket = buckets[b];
+			buckets[b] = null;
+			current = b + 1;
+			return bucket;
+		}
+
+		boolean remove(SimEvent event) {
+			for (int b = current; b < buckets.length; b++) {
+				if (buckets[b] != null && buckets[b].remove(event)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void addAllTo(List<SimEvent> all) {
+			for (int b = current; b < buckets.length; b++) {
+				if (buckets[b] != null) {
+					all.addAll(buckets[b]);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,412 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the entities of one clock tick on a fork-join pool (conservative parallel discrete event
+ * simulation). All the events handed to the entities in a tick have the same time, so entities that
+ * only touch their own state can process them concurrently.
+ * <p>
+ * The result is exactly the one of the sequential run. The ready entities are taken in id order and
+ * cut into <i>segments</i> of entities that are {@link SimEntity#isParallelSafe() parallel safe} and
+ * do not share event data; any other entity runs alone between two segments. Within a segment:
+ * <ul>
+ * <li>the events sent by an entity and the actions passed to {@link CloudSim#runInOrder(Runnable)}
+ * are buffered per entity and committed in id order, so they get the same serials and are applied
+ * in the same order as in the sequential run;</li>
+ * <li>what an entity prints to <tt>System.out</tt> is captured and written out in id order;</li>
+ * <li>an entity that needs a value from shared state calls {@link CloudSim#awaitTurn()}, which
+ * waits until all the entities before it are done and committed, and from then on lets it act
+ * directly on the shared state.</li>
+ * </ul>
+ * Entities are claimed by the workers in id order, so an entity waiting for its turn only ever
+ * waits for entities that are already running.
+ *
+ * @see CloudSim#setParallelism(int)
+ */
+final class ParallelEntityExecutor {
+
+	/** The pool running the workers. */
+	private final ForkJoinPool pool;
+
+	/** The number of threads, including the simulation thread. */
+	private final int parallelism;
+
+	/** The context of the entity run by the current thread, if any. */
+	private final ThreadLocal<Context> current = new ThreadLocal<Context>();
+
+	/** Guards the commit turn. */
+	private final Object lock = new Object();
+
+	/** The contexts of the current segment; reused from segment to segment. */
+	private Context[] contexts = new Context[0];
+
+	/** The number of entities in the current segment. */
+	private int segmentSize = 0;
+
+	/** The next entity of the segment to be claimed by a worker. */
+	private final AtomicInteger nextClaim = new AtomicInteger();
+
+	/** The entity of the segment whose turn it is; all before it are done and committed. */
+	private int turn = 0;
+
+	/** The number of workers started for the current segment that have not finished yet. */
+	private int activeWorkers = 0;
+
+	/** The first failure of the current segment. */
+	private RuntimeException failure;
+
+	/** The data objects of the events of the current segment. */
+	private final Map<Object, Boolean> segmentData = new IdentityHashMap<Object, Boolean>();
+
+	/** The stream that replaces <tt>System.out</tt> while a segment runs. */
+	private PrintStream capture;
+
+	/** The stream replaced by {@link #capture}. */
+	private PrintStream captured;
+
+	private final Runnable worker = new Runnable() {
+
+		@Override
+		public void run() {
+			try {
+				drain();
+			} finally {
+				synchronized (lock) {
+					activeWorkers--;
+					lock.notifyAll();
+				}
+			}
+		}
+	};
+
+	/**
+	 * Creates a new executor.
+	 *
+	 * @param parallelism the number of threads, at least 2
+	 */
+	ParallelEntityExecutor(int parallelism) {
+		this.parallelism = parallelism;
+		pool = new ForkJoinPool(parallelism - 1);
+	}
+
+	/**
+	 * Runs the ready entities of a clock tick, in the same order and with the same effects as the
+	 * sequential scan.
+	 *
+	 * @param ready the ready entities; cleared as they are run
+	 * @param entities all the entities
+	 * @param deferred the deferred event queue
+	 */
+	void runReadyEntities(BitSet ready, List<SimEntity> entities, DeferredQueue deferred) {
+		for (int i = ready.nextSetBit(0); i >= 0; i = ready.nextSetBit(i + 1)) {
+			ready.clear(i);
+			SimEntity ent = entities.get(i);
+			if (ent.getState() != SimEntity.RUNNABLE) {
+				continue;
+			}
+			if (ent.getEventBuffer() != null || !ent.isParallelSafe()) {
+				runSegment();
+				ent.run();
+				continue;
+			}
+			if (sharesData(ent.getId(), deferred)) {
+				runSegment();
+			}
+			addData(ent.getId(), deferred);
+			add(ent);
+		}
+		runSegment();
+	}
+
+	/**
+	 * Waits until all the entities before the current one are done and committed. Does nothing if
+	 * the current thread is not running an entity of a segment.
+	 */
+	void awaitTurn() {
+		Context ctx = current.get();
+		if (ctx == null || ctx.direct) {
+			return;
+		}
+		synchronized (lock) {
+			while (turn < ctx.index) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the commit turn.", e);
+				}
+			}
+			commit(ctx);
+			ctx.direct = true;
+		}
+	}
+
+	/**
+	 * Buffers an event or an action of the current entity until its turn.
+	 *
+	 * @param op a {@link SimEvent} to be added to the future queue, or a {@link Runnable}
+	 * @return false, if the current thread may act directly instead
+	 */
+	boolean defer(Object op) {
+		Context ctx = current.get();
+		if (ctx == null || ctx.direct) {
+			return false;
+		}
+		ctx.pending.add(op);
+		return true;
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Checks if the events deferred for an entity carry data that is also carried by events of the
+	 * current segment. Entities sharing a (mutable) tuple must not run concurrently.
+	 */
+	private boolean sharesData(int id, DeferredQueue deferred) {
+		if (segmentSize == 0) {
+			return false;
+		}
+		int n = deferred.count(id, CloudSim.SIM_ANY);
+		for (int k = 0; k < n; k++) {
+			Object data = deferred.get(id, k).getData();
+			if (data != null && segmentData.containsKey(data)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addData(int id, DeferredQueue deferred) {
+		int n = deferred.count(id, CloudSim.SIM_ANY);
+		for (int k = 0; k < n; k++) {
+			Object data = deferred.get(id, k).getData();
+			if (data != null) {
+				segmentData.put(data, Boolean.TRUE);
+			}
+		}
+	}
+
+	private void add(SimEntity ent) {
+		if (segmentSize == contexts.length) {
+			contexts = Arrays.copyOf(contexts, Math.max(16, contexts.length << 1));
+		}
+		if (contexts[segmentSize] == null) {
+			contexts[segmentSize] = new Context(segmentSize);
+		}
+		contexts[segmentSize++].entity = ent;
+	}
+
+	/**
+	 * Runs the current segment and starts a new one.
+	 */
+	private void runSegment() {
+		int n = segmentSize;
+		segmentSize = 0;
+		segmentData.clear();
+		if (n == 0) {
+			return;
+		}
+		if (n == 1) {
+			contexts[0].entity.run();
+			contexts[0].entity = null;
+			return;
+		}
+
+		PrintStream out = System.out;
+		if (capture == null || captured != out) {
+			captured = out;
+			capture = new PrintStream(new CaptureStream(out), true);
+		}
+		System.setOut(capture);
+		try {
+			int workers = Math.min(parallelism, n) - 1;
+			synchronized (lock) {
+				turn = 0;
+				failure = null;
+				activeWorkers = workers;
+			}
+			nextClaim.set(0);
+			segmentSize = n;
+			for (int t = 0; t < workers; t++) {
+				pool.execute(worker);
+			}
+			drain();
+			// the segment is over once every worker has left it
+			synchronized (lock) {
+				while (turn < n || activeWorkers > 0) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("Interrupted while running entities.", e);
+					}
+				}
+			}
+		} finally {
+			segmentSize = 0;
+			System.setOut(out);
+			out.flush();
+		}
+		for (int k = 0; k < n; k++) {
+			contexts[k].entity = null;
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Claims and runs entities of the segment, in id order, until none is left.
+	 */
+	private void drain() {
+		int n = segmentSize;
+		for (int k = nextClaim.getAndIncrement(); k < n; k = nextClaim.getAndIncrement()) {
+			Context ctx = contexts[k];
+			ctx.direct = false;
+			current.set(ctx);
+			try {
+				ctx.entity.run();
+			} catch (RuntimeException e) {
+				fail(e);
+			} catch (Error e) {
+				fail(new IllegalStateException(e));
+			} finally {
+				current.remove();
+				synchronized (lock) {
+					ctx.done = true;
+					while (turn < n && contexts[turn].done) {
+						commit(contexts[turn]);
+						contexts[turn].done = false;
+						turn++;
+					}
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	private void fail(RuntimeException e) {
+		synchronized (lock) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Applies the buffered events, actions and output of an entity. Called with the lock held, when
+	 * all the entities before it are committed.
+	 */
+	private void commit(Context ctx) {
+		for (Object op : ctx.pending) {
+			if (op instanceof SimEvent) {
+				CloudSim.future.addEvent((SimEvent) op);
+			} else {
+				((Runnable) op).run();
+			}
+		}
+		ctx.pending.clear();
+		if (ctx.output.size() > 0) {
+			try {
+				ctx.output.writeTo(captured);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			ctx.output.reset();
+		}
+	}
+
+	/**
+	 * The buffered effects of one entity run.
+	 */
+	private static final class Context {
+
+		/** The position in the segment. */
+		final int index;
+
+		/** The entity. */
+		SimEntity entity;
+
+		/** The buffered events and actions, in issue order. */
+		final List<Object> pending = new ArrayList<Object>();
+
+		/** The captured output. */
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		/** Whether it is the entity's turn, so that it acts directly. */
+		boolean direct;
+
+		/** Whether the entity has finished its run. */
+		boolean done;
+
+		Context(int index) {
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Sends the output of an entity to its buffer, unless it is the entity's turn.
+	 */
+	private final class CaptureStream extends OutputStream {
+
+		private final OutputStream target;
+
+		CaptureStream(OutputStream target) {
+			this.target = target;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			Context ctx = current.get();
+			if (ctx != null && !ctx.direct) {
+				ctx.output.write(b);
+			} else {
+				target.write(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			Context ctx = current.get();
+			if (ctx != null && !ctx.direct) {
+				ctx.output.write(b, off, len);
+			} else {
+				target.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			Context ctx = current.get();
+			if (ctx == null || ctx.direct) {
+				target.flush();
+			}
+		}
+	}
+
+}
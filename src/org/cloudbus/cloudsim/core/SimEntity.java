@@ -452,9 +452,23 @@ public abstract class SimEntity implements Cloneable {
 		return state;
 	}
 
+	/**
+	 * Checks if the events now deferred for this entity may be processed concurrently with those of
+	 * other entities in the same clock tick (see {@link CloudSim#setParallelism(int)}). The handlers
+	 * of such events may send events and change the entity's own state; any state shared with other
+	 * entities must be reached through {@link CloudSim#awaitTurn()} or
+	 * {@link CloudSim#runInOrder(Runnable)}. By default an entity is not parallel safe and is always
+	 * run on its own.
+	 *
+	 * @return true, if the entity may run in parallel
+	 */
+	protected boolean isParallelSafe() {
+		return false;
+	}
+
 	/**
 	 * Gets the event buffer.
-	 * 
+	 *
 	 * @return the event buffer
 	 */
 	protected SimEvent getEventBuffer() {
@@ -481,6 +495,9 @@ public abstract class SimEntity implements Cloneable {
 	 */
 	protected void setState(int state) {
 		this.state = state;
+		if (state == RUNNABLE) {
+			CloudSim.markReady(id);
+		}
 	}
 
 	/**
@@ -544,6 +561,35 @@ public abstract class SimEntity implements Cloneable {
 		schedule(entityId, delay, cloudSimTag, data);
 	}
 
+	/**
+	 * Sends an event/message to another entity, to be received a delay after the given time, as
+	 * {@link #send(int, double, int, Object)} would send it at that time.
+	 * 
+	 * @param entityId the id number of the destination entity
+	 * @param from the time the delay counts from, not before the current simulation time
+	 * @param delay how long from the given time the event should be sent
+	 * @param cloudSimTag an user-defined number representing the type of an event/message
+	 * @param data A reference to data to be sent with the event
+	 */
+	protected void sendFrom(int entityId, double from, double delay, int cloudSimTag, Object data) {
+		if (entityId < 0) {
+			return;
+		}
+		if (delay < 0) {
+			delay = 0;
+		}
+		if (Double.isInfinite(delay)) {
+			throw new IllegalArgumentException("The specified delay is infinite value");
+		}
+		if (entityId != getId()) {// does not delay self messages
+			delay += getNetworkDelay(getId(), entityId);
+		}
+		if (!CloudSim.running()) {
+			return;
+		}
+		CloudSim.sendFrom(id, entityId, from, delay, cloudSimTag, data);
+	}
+
 	/**
 	 * Sends an event/message to another entity by <tt>delaying</tt> the simulation time from the
 	 * current time, with a tag representing the event type.
@@ -40,6 +40,12 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 
 	private long serial = -1;
 
+	/** insertion sequence number, breaks ties between events with the same time and serial **/
+	private long sequence = -1;
+
+	/** position in the array of a {@link HeapEventQueue}, so that it can be removed without a search **/
+	int heapIndex = -1;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -86,6 +92,15 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		this.serial = serial;
 	}
 
+	/**
+	 * Used to set the order in which this event was inserted in the future queue
+	 * 
+	 * @param sequence
+	 */
+	protected void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
 	/**
 	 * Used to set the time at which this event finished waiting in the event
 	 * 
@@ -125,6 +140,10 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 			return 1;
 		} else if (serial < event.serial) {
 			return -1;
+		} else if (serial > event.serial) {
+			return 1;
+		} else if (sequence < event.sequence) {
+			return -1;
 		} else if (this == event) {
 			return 0;
 		} else {
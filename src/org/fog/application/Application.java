@@ -28,6 +28,15 @@ public class Application {
 	 * List of application modules in the application
 	 */
 	private List<AppModule> modules;
+
+	/**
+	 * Modules by name, built from <i>modules</i>; rebuilt when modules are added to the list. Replaced, never
+	 * changed, as the placement logics of several FONs may look modules up at the same time.
+	 */
+	private volatile ModuleIndex moduleIndex;
+
+	private volatile CompiledApplication compiled;
+	private long compiledShape;
 	
 	/**
 	 * List of application edges in the application
@@ -133,6 +142,7 @@ public class Application {
 	public void addTupleMapping(String moduleName, String inputTupleType, String outputTupleType, SelectivityModel selectivityModel){
 		AppModule module = getModuleByName(moduleName);
 		module.getSelectivityMap().put(new Pair<String, String>(inputTupleType, outputTupleType), selectivityModel);
+		invalidateCompiledApplication();
 	}
 	
 	/**
@@ -178,11 +188,34 @@ public class Application {
 	 * @return
 	 */
 	public AppModule getModuleByName(String name){
-		for(AppModule module : modules){
-			if(module.getName().equals(name))
-				return module;
+		ModuleIndex index = moduleIndex;
+		if(index == null || !index.isIndexOf(modules)){
+			index = new ModuleIndex(modules);
+			moduleIndex = index;
+		}
+		return index.moduleByName.get(name);
+	}
+	
+	private static class ModuleIndex {
+		private final List<AppModule> modules;
+		private final int size;
+		private final AppModule last;
+		private final Map<String, AppModule> moduleByName = new HashMap<String, AppModule>();
+		
+		ModuleIndex(List<AppModule> modules){
+			this.modules = modules;
+			size = modules.size();
+			last = size > 0 ? modules.get(size - 1) : null;
+			for(AppModule module : modules){
+				if(!moduleByName.containsKey(module.getName()))
+					moduleByName.put(module.getName(), module);
+			}
+		}
+		
+		boolean isIndexOf(List<AppModule> modules){
+			int size = modules.size();
+			return modules == this.modules && size == this.size && (size == 0 || modules.get(size - 1) == last);
 		}
-		return null;
 	}
 	
 	/**
@@ -193,67 +226,40 @@ public class Application {
 	 * @return
 	 */
 	public List<Tuple> getResultantTuples(String moduleName, Tuple inputTuple, int sourceDeviceId, int sourceModuleId){
-		List<Tuple> tuples = new ArrayList<Tuple>();
-		AppModule module = getModuleByName(moduleName);
-		for(AppEdge edge : getEdges()){
-			if(edge.getSource().equals(moduleName)){
-				Pair<String, String> pair = new Pair<String, String>(inputTuple.getTupleType(), edge.getTupleType());
-				
-				if(module.getSelectivityMap().get(pair)==null)
-					continue;
-				SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
-				if(selectivityModel.canSelect()){
-					//TODO check if the edge is ACTUATOR, then create multiple tuples
-					if(edge.getEdgeType() == AppEdge.ACTUATOR){
-						//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-							Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-									(long) (edge.getTupleCpuLength()),
-									inputTuple.getNumberOfPes(),
-									(long) (edge.getTupleNwLength()),
-									inputTuple.getCloudletOutputSize(),
-									inputTuple.getUtilizationModelCpu(),
-									inputTuple.getUtilizationModelRam(),
-									inputTuple.getUtilizationModelBw()
-									);
-							tuple.setActualTupleId(inputTuple.getActualTupleId());
-							tuple.setUserId(inputTuple.getUserId());
-							tuple.setAppId(inputTuple.getAppId());
-							tuple.setDestModuleName(edge.getDestination());
-							tuple.setSrcModuleName(edge.getSource());
-							tuple.setDirection(Tuple.ACTUATOR);
-							tuple.setTupleType(edge.getTupleType());
-							tuple.setSourceDeviceId(sourceDeviceId);
-							tuple.setSourceModuleId(sourceModuleId);
-							//tuple.setActuatorId(actuatorId);
-							
-							tuples.add(tuple);
-						//}
-					}else{
-						Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-								(long) (edge.getTupleCpuLength()),
-								inputTuple.getNumberOfPes(),
-								(long) (edge.getTupleNwLength()),
-								inputTuple.getCloudletOutputSize(),
-								inputTuple.getUtilizationModelCpu(),
-								inputTuple.getUtilizationModelRam(),
-								inputTuple.getUtilizationModelBw()
-								);
-						tuple.setActualTupleId(inputTuple.getActualTupleId());
-						tuple.setUserId(inputTuple.getUserId());
-						tuple.setAppId(inputTuple.getAppId());
-						tuple.setDestModuleName(edge.getDestination());
-						tuple.setSrcModuleName(edge.getSource());
-						tuple.setDirection(edge.getDirection());
-						tuple.setTupleType(edge.getTupleType());
-						tuple.setSourceModuleId(sourceModuleId);
-						tuple.setTraversedMicroservices(inputTuple.getTraversed());
-
-						tuples.add(tuple);
-					}
+		return getCompiledApplication().getResultantTuples(moduleName, inputTuple, sourceDeviceId, sourceModuleId);
+	}
+	
+	/**
+	 * The compiled form of the application used when tuples are executed. Built when the application is submitted
+	 * to a device and rebuilt if modules, edges, loops or tuple mappings have changed since.
+	 * @return
+	 */
+	public CompiledApplication getCompiledApplication(){
+		CompiledApplication result = compiled;
+		if(result == null || compiledShape != shape()){
+			synchronized(this){
+				if(compiled == null || compiledShape != shape()){
+					compiledShape = shape();
+					compiled = new CompiledApplication(this);
 				}
+				result = compiled;
 			}
 		}
-		return tuples;
+		return result;
+	}
+	
+	protected void invalidateCompiledApplication(){
+		compiled = null;
+	}
+	
+	/**
+	 * Sizes of the lists the compiled application is built from, to notice modules, edges or loops added directly
+	 * to the lists.
+	 */
+	private long shape(){
+		long shape = modules == null ? 0 : modules.size();
+		shape = shape * 31 + (edges == null ? 0 : edges.size());
+		return shape * 31 + (loops == null ? 0 : loops.size());
 	}
 	
 	/**
@@ -322,12 +328,15 @@ public class Application {
 	}
 	public void setModules(List<AppModule> modules) {
 		this.modules = modules;
+		this.moduleIndex = null;
+		invalidateCompiledApplication();
 	}
 	public List<AppEdge> getEdges() {
 		return edges;
 	}
 	public void setEdges(List<AppEdge> edges) {
 		this.edges = edges;
+		invalidateCompiledApplication();
 	}
 	public GeoCoverage getGeoCoverage() {
 		return geoCoverage;
@@ -342,6 +351,7 @@ public class Application {
 
 	public void setLoops(List<AppLoop> loops) {
 		this.loops = loops;
+		invalidateCompiledApplication();
 	}
 
 	public int getUserId() {
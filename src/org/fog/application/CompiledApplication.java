@@ -0,0 +1,256 @@
+package org.fog.application;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.util.Pair;
+import org.fog.application.selectivity.SelectivityModel;
+import org.fog.entities.Tuple;
+import org.fog.utils.FogUtils;
+
+/**
+ * Immutable view of an application, built once when it is submitted, for the code that runs on every tuple:
+ * emitting the resultant tuples of an execution and updating loop timings.
+ * <p>
+ * Tuple types are numbered; the selectivity of each module is a table indexed by (input type, output type), and
+ * the outgoing edges of each module are listed in application order. Loops are numbered in application order and
+ * every module-to-module edge knows, as bitsets, the loops it starts and the loops it ends.
+ * <p>
+ * Obtained through {@link Application#getCompiledApplication()}, which rebuilds it when the application changes.
+ */
+public class CompiledApplication {
+
+	private static final AppLoop[] NO_LOOPS = new AppLoop[0];
+
+	private final Application application;
+
+	/**
+	 * Tuple type name to type id
+	 */
+	private final Map<String, Integer> tupleTypeIds = new HashMap<String, Integer>();
+
+	private final Map<String, ModuleEmission> emissions = new HashMap<String, ModuleEmission>();
+
+	private final AppLoop[] loops;
+
+	/**
+	 * source module -> destination module -> loops containing the edge
+	 */
+	private final Map<String, Map<String, AppLoop[]>> edgeLoops = new HashMap<String, Map<String, AppLoop[]>>();
+	/**
+	 * source module -> destination module -> loops in which the edge leaves the start module / enters the end module
+	 */
+	private final Map<String, Map<String, AppLoop[]>> startingLoops = new HashMap<String, Map<String, AppLoop[]>>();
+	private final Map<String, Map<String, AppLoop[]>> endingLoops = new HashMap<String, Map<String, AppLoop[]>>();
+
+	CompiledApplication(Application application) {
+		this.application = application;
+		List<AppEdge> edges = application.getEdges() == null ? Collections.<AppEdge>emptyList() : application.getEdges();
+		List<AppModule> modules = application.getModules() == null ? Collections.<AppModule>emptyList() : application.getModules();
+
+		for (AppEdge edge : edges)
+			typeId(edge.getTupleType());
+		for (AppModule module : modules) {
+			for (Pair<String, String> pair : module.getSelectivityMap().keySet()) {
+				typeId(pair.getFirst());
+				typeId(pair.getSecond());
+			}
+		}
+
+		for (AppModule module : modules) {
+			if (emissions.containsKey(module.getName()))
+				continue; // the first module of a name is the one used, as in Application.getModuleByName
+			List<AppEdge> outgoing = new ArrayList<AppEdge>();
+			for (AppEdge edge : edges) {
+				if (edge.getSource().equals(module.getName()))
+					outgoing.add(edge);
+			}
+			emissions.put(module.getName(), new ModuleEmission(module, outgoing));
+		}
+
+		List<AppLoop> appLoops = application.getLoops() == null ? Collections.<AppLoop>emptyList() : application.getLoops();
+		loops = appLoops.toArray(new AppLoop[appLoops.size()]);
+		Map<String, BitSet> startsWith = new HashMap<String, BitSet>();
+		Map<String, BitSet> endsWith = new HashMap<String, BitSet>();
+		for (int l = 0; l < loops.length; l++) {
+			bits(startsWith, loops[l].getStartModule()).set(l);
+			bits(endsWith, loops[l].getEndModule()).set(l);
+		}
+		Map<String, Map<String, BitSet>> loopEdges = new HashMap<String, Map<String, BitSet>>();
+		for (int l = 0; l < loops.length; l++) {
+			List<String> loopModules = loops[l].getModules();
+			for (int i = 0; i < loopModules.size() - 1; i++) {
+				Map<String, BitSet> fromSource = loopEdges.get(loopModules.get(i));
+				if (fromSource == null) {
+					fromSource = new HashMap<String, BitSet>();
+					loopEdges.put(loopModules.get(i), fromSource);
+				}
+				bits(fromSource, loopModules.get(i + 1)).set(l);
+			}
+		}
+		for (Map.Entry<String, Map<String, BitSet>> source : loopEdges.entrySet()) {
+			for (Map.Entry<String, BitSet> dest : source.getValue().entrySet()) {
+				put(edgeLoops, source.getKey(), dest.getKey(), dest.getValue(), dest.getValue());
+				put(startingLoops, source.getKey(), dest.getKey(), dest.getValue(), startsWith.get(source.getKey()));
+				put(endingLoops, source.getKey(), dest.getKey(), dest.getValue(), endsWith.get(dest.getKey()));
+			}
+		}
+	}
+
+	public Application getApplication() {
+		return application;
+	}
+
+	/**
+	 * Id of a tuple type, or -1 if no edge or tuple mapping of the application uses it
+	 */
+	public int getTupleTypeId(String tupleType) {
+		Integer id = tupleTypeIds.get(tupleType);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Same as {@link Application#getResultantTuples(String, Tuple, int, int)}.
+	 */
+	public List<Tuple> getResultantTuples(String moduleName, Tuple inputTuple, int sourceDeviceId, int sourceModuleId) {
+		List<Tuple> tuples = new ArrayList<Tuple>();
+		ModuleEmission emission = emissions.get(moduleName);
+		int inputType = getTupleTypeId(inputTuple.getTupleType());
+		if (emission == null || inputType < 0)
+			return tuples;
+		SelectivityModel[] selectivity = emission.selectivity[inputType];
+		if (selectivity == null)
+			return tuples;
+		for (int e = 0; e < emission.edges.length; e++) {
+			SelectivityModel selectivityModel = selectivity[emission.outputTypes[e]];
+			if (selectivityModel == null || !selectivityModel.canSelect())
+				continue;
+			AppEdge edge = emission.edges[e];
+			Tuple tuple = new Tuple(application.getAppId(), FogUtils.generateTupleId(), edge.getDirection(),
+					(long) (edge.getTupleCpuLength()),
+					inputTuple.getNumberOfPes(),
+					(long) (edge.getTupleNwLength()),
+					inputTuple.getCloudletOutputSize(),
+					inputTuple.getUtilizationModelCpu(),
+					inputTuple.getUtilizationModelRam(),
+					inputTuple.getUtilizationModelBw()
+					);
+			tuple.setActualTupleId(inputTuple.getActualTupleId());
+			tuple.setUserId(inputTuple.getUserId());
+			tuple.setAppId(inputTuple.getAppId());
+			tuple.setDestModuleName(edge.getDestination());
+			tuple.setSrcModuleName(edge.getSource());
+			tuple.setTupleType(edge.getTupleType());
+			tuple.setSourceModuleId(sourceModuleId);
+			if (edge.getEdgeType() == AppEdge.ACTUATOR) {
+				tuple.setDirection(Tuple.ACTUATOR);
+				tuple.setSourceDeviceId(sourceDeviceId);
+			} else {
+				tuple.setDirection(edge.getDirection());
+				tuple.setTraversedMicroservices(inputTuple.getTraversed());
+			}
+			tuples.add(tuple);
+		}
+		return tuples;
+	}
+
+	/**
+	 * Loops, in application order, that start with the edge from <i>srcModule</i> to <i>destModule</i>. The array is
+	 * shared and must not be modified.
+	 */
+	public AppLoop[] getLoopsStartingWith(String srcModule, String destModule) {
+		return lookup(startingLoops, srcModule, destModule);
+	}
+
+	/**
+	 * First loop, in application order, containing the edge from <i>srcModule</i> to <i>destModule</i>; null if none
+	 */
+	public AppLoop getFirstLoopWithEdge(String srcModule, String destModule) {
+		AppLoop[] found = lookup(edgeLoops, srcModule, destModule);
+		return found.length == 0 ? null : found[0];
+	}
+
+	/**
+	 * First loop, in application order, that ends with the edge from <i>srcModule</i> to <i>destModule</i>; null if none
+	 */
+	public AppLoop getFirstLoopEndingWith(String srcModule, String destModule) {
+		AppLoop[] ending = lookup(endingLoops, srcModule, destModule);
+		return ending.length == 0 ? null : ending[0];
+	}
+
+	private int typeId(String tupleType) {
+		Integer id = tupleTypeIds.get(tupleType);
+		if (id == null) {
+			id = tupleTypeIds.size();
+			tupleTypeIds.put(tupleType, id);
+		}
+		return id;
+	}
+
+	private static BitSet bits(Map<String, BitSet> map, String key) {
+		BitSet bits = map.get(key);
+		if (bits == null) {
+			bits = new BitSet();
+			map.put(key, bits);
+		}
+		return bits;
+	}
+
+	private void put(Map<String, Map<String, AppLoop[]>> map, String src, String dest, BitSet edgeLoops, BitSet moduleLoops) {
+		if (moduleLoops == null)
+			return;
+		BitSet both = (BitSet) edgeLoops.clone();
+		both.and(moduleLoops);
+		if (both.isEmpty())
+			return;
+		Map<String, AppLoop[]> fromSource = map.get(src);
+		if (fromSource == null) {
+			fromSource = new HashMap<String, AppLoop[]>();
+			map.put(src, fromSource);
+		}
+		AppLoop[] result = new AppLoop[both.cardinality()];
+		for (int l = both.nextSetBit(0), i = 0; l >= 0; l = both.nextSetBit(l + 1))
+			result[i++] = loops[l];
+		fromSource.put(dest, result);
+	}
+
+	private static AppLoop[] lookup(Map<String, Map<String, AppLoop[]>> map, String src, String dest) {
+		Map<String, AppLoop[]> fromSource = map.get(src);
+		if (fromSource == null)
+			return NO_LOOPS;
+		AppLoop[] result = fromSource.get(dest);
+		return result == null ? NO_LOOPS : result;
+	}
+
+	/**
+	 * Outgoing edges of a module and its selectivity table
+	 */
+	private class ModuleEmission {
+		final AppEdge[] edges;
+		final int[] outputTypes;
+		/** [input type][output type]; a row is null if the input type maps to nothing */
+		final SelectivityModel[][] selectivity;
+
+		ModuleEmission(AppModule module, List<AppEdge> outgoing) {
+			edges = outgoing.toArray(new AppEdge[outgoing.size()]);
+			outputTypes = new int[edges.length];
+			for (int e = 0; e < edges.length; e++)
+				outputTypes[e] = tupleTypeIds.get(edges[e].getTupleType());
+			int types = tupleTypeIds.size();
+			selectivity = new SelectivityModel[types][];
+			for (Map.Entry<Pair<String, String>, SelectivityModel> mapping : module.getSelectivityMap().entrySet()) {
+				if (mapping.getValue() == null)
+					continue;
+				int in = tupleTypeIds.get(mapping.getKey().getFirst());
+				if (selectivity[in] == null)
+					selectivity[in] = new SelectivityModel[types];
+				selectivity[in][tupleTypeIds.get(mapping.getKey().getSecond())] = mapping.getValue();
+			}
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package org.fog.application.selectivity;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 /**
  * Generates an output tuple for an incoming input tuple with a fixed probability
  * @author Harshit Gupta
@@ -24,6 +26,7 @@ public class FractionalSelectivity implements SelectivityModel{
 	
 	@Override
 	public boolean canSelect() {
+		CloudSim.awaitTurn(); // the random sequence is shared by all devices
 		if(Math.random() < getSelectivity()) // if the probability condition is satisfied
 			return true;
 		return false;
@@ -1,6 +1,5 @@
 package org.fog.entities;
 
-import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.application.AppLoop;
@@ -42,6 +41,14 @@ public class Actuator extends SimEntity{
 		sendNow(gatewayDeviceId, FogEvents.ACTUATOR_JOINED, getLatency());
 	}
 
+	/**
+	 * An actuator only touches shared state through TimeKeeper, which keeps event order.
+	 */
+	@Override
+	protected boolean isParallelSafe() {
+		return true;
+	}
+
 	@Override
 	public void processEvent(SimEvent ev) {
 		switch(ev.getTag()){
@@ -53,31 +60,10 @@ public class Actuator extends SimEntity{
 
 	private void processTupleArrival(SimEvent ev) {
 		Tuple tuple = (Tuple)ev.getData();
-		Logger.debug(getName(), "Received tuple "+tuple.getCloudletId()+"on "+tuple.getDestModuleName());
-		String srcModule = tuple.getSrcModuleName();
-		String destModule = tuple.getDestModuleName();
-		Application app = getApp();
-		
-		for(AppLoop loop : app.getLoops()){
-			if(loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)){
-				
-				Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				if(startTime==null)
-					break;
-				if(!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())){
-					TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-					TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-				}
-				double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-				int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-				double delay = CloudSim.clock()- TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-				double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
-				TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-				TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount+1);
-				break;
-			}
-		}
+		Logger.debug(getName(), "Received tuple {}on {}", tuple.getCloudletId(), tuple.getDestModuleName());
+		AppLoop loop = getApp().getCompiledApplication().getFirstLoopEndingWith(tuple.getSrcModuleName(), tuple.getDestModuleName());
+		if(loop != null)
+			TimeKeeper.getInstance().tupleReceived(loop.getLoopId(), tuple.getActualTupleId());
 	}
 
 	@Override
@@ -1,10 +1,12 @@
 package org.fog.entities;
 
 import org.fog.application.Application;
+import org.fog.placement.IncrementalPlacementLogic;
 import org.fog.placement.MicroservicePlacementLogic;
 import org.fog.placement.PlacementLogicOutput;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +16,8 @@ import java.util.Map;
  */
 public class ControllerComponent {
 
+    private static final DiagnosticChannel SERVICE_DISCOVERY = Diagnostics.channel("service-discovery");
+
     protected LoadBalancer loadBalancer;
     protected MicroservicePlacementLogic microservicePlacementLogic = null;
     protected ServiceDiscovery serviceDiscoveryInfo;
@@ -90,7 +94,7 @@ public class ControllerComponent {
 
     public void addServiceDiscoveryInfo(String microserviceName, Integer deviceID) {
         this.serviceDiscoveryInfo.addServiceDIscoveryInfo(microserviceName, deviceID);
-        System.out.println("Service Discovery Info ADDED (device:" + this.deviceId + ") for microservice :" + microserviceName + " , destDevice : " + deviceID);
+        SERVICE_DISCOVERY.debug("Service Discovery Info ADDED (device:{}) for microservice :{} , destDevice : {}", this.deviceId, microserviceName, deviceID);
     }
 
     public int getDestinationDeviceId(String destModuleName) {
@@ -116,10 +120,17 @@ public class ControllerComponent {
             resources.put(resourceIdentifier, remainingResourceAmount);
             resourceAvailability.put(device, resources);
         }
+        resourcesUpdated(device);
     }
 
     public void updateResourceInfo(int deviceId, Map<String, Double> resources) {
         resourceAvailability.put(deviceId, resources);
+        resourcesUpdated(deviceId);
+    }
+
+    private void resourcesUpdated(int deviceId) {
+        if (microservicePlacementLogic instanceof IncrementalPlacementLogic)
+            ((IncrementalPlacementLogic) microservicePlacementLogic).resourcesUpdated(deviceId);
     }
 
     public void removeServiceDiscoveryInfo(String microserviceName, Integer deviceID) {
@@ -136,46 +147,3 @@ public class ControllerComponent {
 
 
 }
-
-class ServiceDiscovery {
-    protected Map<String, List<Integer>> serviceDiscoveryInfo = new HashMap<>();
-    int deviceId ;
-
-    public ServiceDiscovery(Integer deviceId) {
-        this.deviceId =deviceId;
-    }
-
-    public void addServiceDIscoveryInfo(String microservice, Integer device) {
-        if (serviceDiscoveryInfo.containsKey(microservice)) {
-            List<Integer> deviceList = serviceDiscoveryInfo.get(microservice);
-            deviceList.add(device);
-            serviceDiscoveryInfo.put(microservice, deviceList);
-        } else {
-            List<Integer> deviceList = new ArrayList<>();
-            deviceList.add(device);
-            serviceDiscoveryInfo.put(microservice, deviceList);
-        }
-    }
-
-    public Map<String, List<Integer>> getServiceDiscoveryInfo() {
-        return serviceDiscoveryInfo;
-    }
-
-    public void removeServiceDIscoveryInfo(String microserviceName, Integer deviceID) {
-        if (serviceDiscoveryInfo.containsKey(microserviceName) && serviceDiscoveryInfo.get(microserviceName).contains(new Integer(deviceID))) {
-            System.out.println("Service Discovery Info REMOVED (device:" + this.deviceId + ") for microservice :" + microserviceName + " , destDevice : " + deviceID);
-            serviceDiscoveryInfo.get(microserviceName).remove(new Integer(deviceID));
-            if (serviceDiscoveryInfo.get(microserviceName).size() == 0)
-                serviceDiscoveryInfo.remove(microserviceName);
-        }
-    }
-}
-
-
-
-
-
-
-
-
-
@@ -4,7 +4,10 @@ import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.*;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.EventTimer;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateNotType;
 import org.cloudbus.cloudsim.power.PowerDatacenter;
 import org.cloudbus.cloudsim.power.PowerHost;
 import org.cloudbus.cloudsim.power.models.PowerModel;
@@ -15,22 +18,56 @@ import org.fog.application.AppEdge;
 import org.fog.application.AppLoop;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
+import org.fog.application.CompiledApplication;
 import org.fog.mobilitydata.Clustering;
 import org.fog.policy.AppModuleAllocationPolicy;
 import org.fog.scheduler.StreamOperatorScheduler;
 import org.fog.utils.*;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 import org.json.simple.JSONObject;
 
 import java.util.*;
 
 public class FogDevice extends PowerDatacenter {
-    protected Queue<Tuple> northTupleQueue;
-    protected Queue<Pair<Tuple, Integer>> southTupleQueue;
+    private static final DiagnosticChannel ENERGY = Diagnostics.channel("energy");
+    private static final DiagnosticChannel MODULES = Diagnostics.channel("modules");
+
+    /**
+     * Events whose handling only touches this device. Tuple forwarding and execution are local, so
+     * devices with no other events pending can be run in parallel (see CloudSim.setParallelism).
+     */
+    private static final int[] LOCAL_EVENTS = {
+            FogEvents.TUPLE_ARRIVAL, FogEvents.TUPLE_ACK, FogEvents.SENSOR_JOINED, FogEvents.ACTUATOR_JOINED,
+            FogEvents.SEND_PERIODIC_TUPLE, FogEvents.RESOURCE_MGMT, FogEvents.UPDATE_NORTH_TUPLE_QUEUE,
+            FogEvents.UPDATE_SOUTH_TUPLE_QUEUE, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE,
+            CloudSimTags.VM_DATACENTER_EVENT};
+
+    /**
+     * Matches the events whose handling may touch other devices or the placement state.
+     */
+    private static final Predicate NON_LOCAL_EVENT = nonLocalEvents();
+
+    /**
+     * Completion wakeups of the device, created on first use
+     */
+    private EventTimer processingTimer;
 
     protected List<String> activeApplications;
 
     protected Map<String, Application> applicationMap;
     protected Map<String, List<String>> appToModulesMap;
+    private Map<String, List<AppModule>> hostedModules;
+    private int hostedModulesVmCount;
+    /**
+     * Modules given a share of the host by the last updateAllocatedMips; null if the scheduler does not keep the
+     * allocation.
+     */
+    private List<Vm> modulesWithShare;
+    /**
+     * Modules whose allocation the last updateAllocatedMips may have changed
+     */
+    private List<Vm> modulesToUpdate;
     protected Map<Integer, Double> childToLatencyMap;
 
 
@@ -54,16 +91,6 @@ public class FogDevice extends PowerDatacenter {
 
     protected Map<Integer, List<String>> childToOperatorsMap;
 
-    /**
-     * Flag denoting whether the link southwards from this FogDevice is busy
-     */
-    protected boolean isSouthLinkBusy;
-
-    /**
-     * Flag denoting whether the link northwards from this FogDevice is busy
-     */
-    protected boolean isNorthLinkBusy;
-
     protected double uplinkBandwidth;
     protected double downlinkBandwidth;
     protected double uplinkLatency;
@@ -85,10 +112,19 @@ public class FogDevice extends PowerDatacenter {
     protected boolean selfCluster = false; // IF there is only one fog device in one cluster without any sibling
     protected Map<Integer, Double> clusterMembersToLatencyMap; // latency to other cluster members
 
-    protected Queue<Pair<Tuple, Integer>> clusterTupleQueue;// tuple and destination cluster device ID
-    protected boolean isClusterLinkBusy; //Flag denoting whether the link connecting to cluster from this FogDevice is busy
     protected double clusterLinkBandwidth;
 
+    /**
+     * Links to the parent, the children and the cluster members. Unless Config.PER_CHILD_LINKS is set, the children
+     * share sharedSouthLink and the cluster members sharedClusterLink.
+     */
+    private final Link northLink = new Link(0);
+    private final Link sharedSouthLink = new Link(0);
+    private final Link sharedClusterLink = new Link(0);
+    private final Map<Integer, Link> southLinks = new HashMap<>();
+    private final Map<Integer, Link> clusterLinks = new HashMap<>();
+    private int linkScheduling = Link.FIFO;
+
 
     public FogDevice(
             String name,
@@ -123,10 +159,6 @@ public class FogDevice extends PowerDatacenter {
 
         applicationMap = new HashMap<String, Application>();
         appToModulesMap = new HashMap<String, List<String>>();
-        northTupleQueue = new LinkedList<Tuple>();
-        southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
-        setNorthLinkBusy(false);
-        setSouthLinkBusy(false);
 
 
         setChildrenIds(new ArrayList<Integer>());
@@ -142,8 +174,6 @@ public class FogDevice extends PowerDatacenter {
         setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
         setChildToLatencyMap(new HashMap<Integer, Double>());
 
-        clusterTupleQueue = new LinkedList<>();
-        setClusterLinkBusy(false);
 
     }
 
@@ -211,10 +241,6 @@ public class FogDevice extends PowerDatacenter {
 
         applicationMap = new HashMap<String, Application>();
         appToModulesMap = new HashMap<String, List<String>>();
-        northTupleQueue = new LinkedList<Tuple>();
-        southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
-        setNorthLinkBusy(false);
-        setSouthLinkBusy(false);
 
 
         setChildrenIds(new ArrayList<Integer>());
@@ -230,8 +256,57 @@ public class FogDevice extends PowerDatacenter {
         setChildToLatencyMap(new HashMap<Integer, Double>());
         setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
 
-        clusterTupleQueue = new LinkedList<>();
-        setClusterLinkBusy(false);
+    }
+
+    @Override
+    protected boolean isParallelSafe() {
+        return CloudSim.findFirstDeferred(getId(), nonLocalEventPredicate()) == null;
+    }
+
+    /**
+     * Matches the events that keep the device from running in parallel. Subclasses that handle more events on their
+     * own state only return a predicate built once with {@link #nonLocalEvents(int...)}; the FONs of the microservice
+     * devices add PROCESS_PRS and RECEIVE_PR, as they place their requests with their own controller component and
+     * the results are applied in FON id order.
+     */
+    protected Predicate nonLocalEventPredicate() {
+        return NON_LOCAL_EVENT;
+    }
+
+    @Override
+    public void processEvent(SimEvent ev) {
+        if (ev.getTag() == CloudSimTags.VM_DATACENTER_EVENT)
+            getProcessingTimer().fired(ev);
+        super.processEvent(ev);
+    }
+
+    /**
+     * Keeps only the earliest completion wakeups of the device in the future queue, and cancels them by handle
+     * rather than by scanning the queue.
+     */
+    @Override
+    protected void scheduleProcessingEvent(double delay) {
+        getProcessingTimer().schedule(delay);
+    }
+
+    @Override
+    protected void cancelProcessingEvents() {
+        getProcessingTimer().cancelAll();
+    }
+
+    private EventTimer getProcessingTimer() {
+        if (processingTimer == null)
+            processingTimer = new EventTimer(getId(), CloudSimTags.VM_DATACENTER_EVENT);
+        return processingTimer;
+    }
+
+    /**
+     * Matches the events other than the local events of a fog device and the given ones.
+     */
+    protected static Predicate nonLocalEvents(int... moreLocalEvents) {
+        int[] tags = Arrays.copyOf(LOCAL_EVENTS, LOCAL_EVENTS.length + moreLocalEvents.length);
+        System.arraycopy(moreLocalEvents, 0, tags, LOCAL_EVENTS.length, moreLocalEvents.length);
+        return new PredicateNotType(tags);
     }
 
     /**
@@ -270,7 +345,7 @@ public class FogDevice extends PowerDatacenter {
                 updateNorthTupleQueue();
                 break;
             case FogEvents.UPDATE_SOUTH_TUPLE_QUEUE:
-                updateSouthTupleQueue();
+                updateSouthTupleQueue((Integer) ev.getData());
                 break;
             case FogEvents.ACTIVE_APP_UPDATE:
                 updateActiveApplications(ev);
@@ -294,7 +369,7 @@ public class FogDevice extends PowerDatacenter {
                 manageResources(ev);
                 break;
             case FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE:
-                updateClusterTupleQueue();
+                updateClusterTupleQueue((Integer) ev.getData());
                 break;
             case FogEvents.START_DYNAMIC_CLUSTERING:
                 //This message is received by the devices to start their clustering
@@ -309,7 +384,7 @@ public class FogDevice extends PowerDatacenter {
         // TODO Auto-generated method stub
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
-        System.out.println(getName() + " is sending " + appModule.getName());
+        MODULES.debug("{} is sending {}", getName(), appModule.getName());
         NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
@@ -324,7 +399,7 @@ public class FogDevice extends PowerDatacenter {
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
         Application app = (Application) object.get("application");
-        System.out.println(getName() + " is receiving " + appModule.getName());
+        MODULES.debug("{} is receiving {}", getName(), appModule.getName());
         NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
@@ -353,18 +428,48 @@ public class FogDevice extends PowerDatacenter {
         if (!moduleInstanceCount.containsKey(appId))
             moduleInstanceCount.put(appId, new HashMap<String, Integer>());
         moduleInstanceCount.get(appId).put(config.getModule().getName(), config.getInstanceCount());
-        System.out.println(getName() + " Creating " + config.getInstanceCount() + " instances of module " + config.getModule().getName());
+        MODULES.debug("{} Creating {} instances of module {}", getName(), config.getInstanceCount(), config.getModule().getName());
     }
 
     private AppModule getModuleByName(String moduleName) {
-        AppModule module = null;
-        for (Vm vm : getHost().getVmList()) {
-            if (((AppModule) vm).getName().equals(moduleName)) {
-                module = (AppModule) vm;
-                break;
+        List<AppModule> modules = getHostedModules().get(moduleName);
+        return modules == null ? null : modules.get(0);
+    }
+
+    /**
+     * Id of the VM a tuple for the given module is executed on: the last instance of the module in the host's VM
+     * list, or -1 if the module is not hosted here.
+     */
+    protected int getHostedModuleVmId(String moduleName) {
+        List<AppModule> modules = getHostedModules().get(moduleName);
+        return modules == null ? -1 : modules.get(modules.size() - 1).getId();
+    }
+
+    /**
+     * Modules hosted on this device by name, each list in the order of the host's VM list. Built on first use and
+     * rebuilt after modules arrive, terminate or are released.
+     */
+    private Map<String, List<AppModule>> getHostedModules() {
+        List<Vm> vms = getHost().getVmList();
+        if (hostedModules == null || hostedModulesVmCount != vms.size()) {
+            Map<String, List<AppModule>> index = new HashMap<String, List<AppModule>>();
+            for (Vm vm : vms) {
+                AppModule module = (AppModule) vm;
+                List<AppModule> modules = index.get(module.getName());
+                if (modules == null) {
+                    modules = new ArrayList<AppModule>(1);
+                    index.put(module.getName(), modules);
+                }
+                modules.add(module);
             }
+            hostedModules = index;
+            hostedModulesVmCount = vms.size();
         }
-        return module;
+        return hostedModules;
+    }
+
+    protected void invalidateHostedModules() {
+        hostedModules = null;
     }
 
     /**
@@ -512,8 +617,10 @@ public class FogDevice extends PowerDatacenter {
                         cloudletCompleted = true;
                         Tuple tuple = (Tuple) cl;
                         TimeKeeper.getInstance().tupleEndedExecution(tuple);
+                        if (tuple.getDirection() == Tuple.UP)
+                            OutstandingTuples.executed(getId(), tuple.getDestModuleName());
                         Application application = getApplicationMap().get(tuple.getAppId());
-                        Logger.debug(getName(), "Completed execution of tuple " + tuple.getCloudletId() + " on " + tuple.getDestModuleName());
+                        Logger.debug(getName(), "Completed execution of tuple {} on {}", tuple.getCloudletId(), tuple.getDestModuleName());
                         List<Tuple> resultantTuples = application.getResultantTuples(tuple.getDestModuleName(), tuple, getId(), vm.getId());
                         for (Tuple resTuple : resultantTuples) {
                             resTuple.setModuleCopyMap(new HashMap<String, Integer>(tuple.getModuleCopyMap()));
@@ -535,18 +642,13 @@ public class FogDevice extends PowerDatacenter {
         // WILL NEED TO CHECK IF A NEW LOOP STARTS AND INSERT A UNIQUE TUPLE ID TO IT.
         String srcModule = resTuple.getSrcModuleName();
         String destModule = resTuple.getDestModuleName();
-        for (AppLoop loop : getApplicationMap().get(resTuple.getAppId()).getLoops()) {
-            if (loop.hasEdge(srcModule, destModule) && loop.isStartModule(srcModule)) {
-                int tupleId = TimeKeeper.getInstance().getUniqueId();
-                resTuple.setActualTupleId(tupleId);
-                if (!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-                    TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-                TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-                TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-
-                //Logger.debug(getName(), "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
+        CompiledApplication app = getApplicationMap().get(resTuple.getAppId()).getCompiledApplication();
+        for (AppLoop loop : app.getLoopsStartingWith(srcModule, destModule)) {
+            int tupleId = TimeKeeper.getInstance().getUniqueId();
+            resTuple.setActualTupleId(tupleId);
+            TimeKeeper.getInstance().tupleEmitted(loop.getLoopId(), tupleId);
 
-            }
+            //Logger.debug(getName(), "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
         }
     }
 
@@ -569,6 +671,12 @@ public class FogDevice extends PowerDatacenter {
     }
 
     protected void updateAllocatedMips(String incomingOperator) {
+        if (getHost().getVmScheduler() instanceof StreamOperatorScheduler
+                && updateSharedMips((StreamOperatorScheduler) getHost().getVmScheduler(), incomingOperator)) {
+            updateEnergyConsumption();
+            return;
+        }
+        modulesWithShare = null;
         getHost().getVmScheduler().deallocatePesForAllVms();
         for (final Vm vm : getHost().getVmList()) {
             if (vm.getCloudletScheduler().runningCloudlets() > 0 || ((AppModule) vm).getName().equals(incomingOperator)) {
@@ -594,15 +702,67 @@ public class FogDevice extends PowerDatacenter {
 
     }
 
+    /**
+     * Same allocation as above, kept by the scheduler and changed only for the modules that can have changed: the
+     * ones that had a share (their tuples may have finished) and the incoming operator. Other modules have no tuple
+     * executing and keep asking for nothing.
+     *
+     * @return false if the scheduler cannot keep the allocation, e.g. while modules are migrating
+     */
+    private boolean updateSharedMips(StreamOperatorScheduler scheduler, String incomingOperator) {
+        List<Vm> vms = getHost().getVmList();
+        if (!scheduler.canShare())
+            return false;
+        boolean restart = modulesWithShare == null || !scheduler.isSharing(vms);
+        Collection<? extends Vm> candidates = restart ? vms : modulesWithShare;
+        for (Vm vm : candidates) {
+            if (vm.isInMigration())
+                return false;
+        }
+        List<AppModule> incoming = incomingOperator == null ? null : getHostedModules().get(incomingOperator);
+
+        if (restart)
+            scheduler.startSharing(vms);
+        scheduler.resetShares();
+        List<Vm> withShare = new ArrayList<Vm>();
+        for (Vm vm : candidates) {
+            if ((vm.getCloudletScheduler().runningCloudlets() > 0 || ((AppModule) vm).getName().equals(incomingOperator))
+                    && scheduler.setFullShare(vm, true))
+                withShare.add(vm);
+        }
+        if (incoming != null) {
+            for (AppModule module : incoming) {
+                if (scheduler.setFullShare(module, true))
+                    withShare.add(module);
+            }
+        }
+        // the modules that lost their share must see it too
+        modulesToUpdate = new ArrayList<Vm>(withShare);
+        for (Vm vm : candidates) {
+            if (!scheduler.hasFullShare(vm))
+                modulesToUpdate.add(vm);
+        }
+        modulesWithShare = withShare;
+        return true;
+    }
+
     private void updateEnergyConsumption() {
         double totalMipsAllocated = 0;
-        for (final Vm vm : getHost().getVmList()) {
-            AppModule operator = (AppModule) vm;
-            operator.updateVmProcessing(
-                    CloudSim.clock(),
-                    getVmAllocationPolicy().getHost(operator).getVmScheduler().getAllocatedMipsForVm(operator)
-            );
-            totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
+        StreamOperatorScheduler scheduler = getHost().getVmScheduler() instanceof StreamOperatorScheduler ?
+                (StreamOperatorScheduler) getHost().getVmScheduler() : null;
+        if (scheduler != null && modulesWithShare != null && scheduler.isSharing(getHost().getVmList())) {
+            for (Vm vm : modulesToUpdate)
+                vm.updateVmProcessing(CloudSim.clock(), scheduler.getAllocatedMipsForVm(vm));
+            totalMipsAllocated = scheduler.getTotalAllocatedMips();
+        } else {
+            for (final Vm vm : getHost().getVmList()) {
+                AppModule operator = (AppModule) vm;
+                operator.updateVmProcessing(
+                        CloudSim.clock(),
+                        getVmAllocationPolicy().getHost(operator).getVmScheduler().getAllocatedMipsForVm(operator)
+                );
+                totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
+            }
         }
 
         double timeNow = CloudSim.clock();
@@ -622,18 +782,19 @@ public class FogDevice extends PowerDatacenter {
         setTotalCost(newcost);
 
         lastUtilization = Math.min(1, totalMipsAllocated / getHost().getTotalMips());
-        if (lastUtilization > 0) {
-            System.out.println("------------------------");
-            System.out.println("Device ID: " + getId());
-            System.out.println("Utilization = " + lastUtilization);
-            System.out.println("Power = " + getHost().getPowerModel().getPower(lastUtilization));
-            System.out.println("Time passed: " + (timeNow - lastUtilizationUpdateTime));
+        if (lastUtilization > 0 && ENERGY.isDebugEnabled()) {
+            ENERGY.debug("------------------------");
+            ENERGY.debug("Device ID: {}", getId());
+            ENERGY.debug("Utilization = {}", lastUtilization);
+            ENERGY.debug("Power = {}", getHost().getPowerModel().getPower(lastUtilization));
+            ENERGY.debug("Time passed: {}", timeNow - lastUtilizationUpdateTime);
         }
         lastUtilizationUpdateTime = timeNow;
     }
 
     protected void processAppSubmit(SimEvent ev) {
         Application app = (Application) ev.getData();
+        app.getCompiledApplication();
         applicationMap.put(app.getAppId(), app);
     }
 
@@ -692,14 +853,15 @@ public class FogDevice extends PowerDatacenter {
 		/*if(getName().equals("d-0") && tuple.getTupleType().equals("_SENSOR")){
 			System.out.println(++numClients);
 		}*/
-        Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
-                CloudSim.getEntityName(ev.getSource()) + "| Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        if (Logger.isDebugEnabled())
+            Logger.debug(getName(), "Received tuple {}with tupleType = {}\t| Source : {}| Dest : {}", tuple.getCloudletId(),
+                    tuple.getTupleType(), CloudSim.getEntityName(ev.getSource()), CloudSim.getEntityName(ev.getDestination()));
 		
 		/*if(CloudSim.getEntityName(ev.getSource()).equals("drone_0")||CloudSim.getEntityName(ev.getDestination()).equals("drone_0"))
 			System.out.println(CloudSim.clock()+" "+getName()+" Received tuple "+tuple.getCloudletId()+" with tupleType = "+tuple.getTupleType()+"\t| Source : "+
 		CloudSim.getEntityName(ev.getSource())+"|Dest : "+CloudSim.getEntityName(ev.getDestination()));*/
 
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        sendTupleAck(ev);
 
         // TODO Coordinate-based control flow
         if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
@@ -731,11 +893,7 @@ public class FogDevice extends PowerDatacenter {
 
         if (appToModulesMap.containsKey(tuple.getAppId())) {
             if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                int vmId = -1;
-                for (Vm vm : getHost().getVmList()) {
-                    if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                        vmId = vm.getId();
-                }
+                int vmId = getHostedModuleVmId(tuple.getDestModuleName());
                 if (vmId < 0
                         || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
                         tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -768,37 +926,27 @@ public class FogDevice extends PowerDatacenter {
     }
 
     protected void updateTimingsOnReceipt(Tuple tuple) {
-        Application app = getApplicationMap().get(tuple.getAppId());
-        String srcModule = tuple.getSrcModuleName();
-        String destModule = tuple.getDestModuleName();
-        List<AppLoop> loops = app.getLoops();
-        for (AppLoop loop : loops) {
-            if (loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)) {
-                Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                if (startTime == null)
-                    break;
-                if (!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())) {
-                    TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-                    TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-                }
-                double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-                int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-                double delay = CloudSim.clock() - TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-                double newAverage = (currentAverage * currentCount + delay) / (currentCount + 1);
-                TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-                TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount + 1);
-                break;
-            }
-        }
+        CompiledApplication app = getApplicationMap().get(tuple.getAppId()).getCompiledApplication();
+        AppLoop loop = app.getFirstLoopEndingWith(tuple.getSrcModuleName(), tuple.getDestModuleName());
+        if (loop != null)
+            TimeKeeper.getInstance().tupleReceived(loop.getLoopId(), tuple.getActualTupleId());
     }
 
     protected void processSensorJoining(SimEvent ev) {
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        sendTupleAck(ev);
+    }
+
+    /**
+     * Acknowledges a tuple or a sensor joining to the sender, unless in lean network mode: nothing uses the
+     * acknowledgements.
+     */
+    protected void sendTupleAck(SimEvent ev) {
+        if (!Config.LEAN_NETWORK)
+            send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
     }
 
     protected void executeTuple(SimEvent ev, String moduleName) {
-        Logger.debug(getName(), "Executing tuple on module " + moduleName);
+        Logger.debug(getName(), "Executing tuple on module {}", moduleName);
         Tuple tuple = (Tuple) ev.getData();
 
         AppModule module = getModuleByName(moduleName);
@@ -834,6 +982,7 @@ public class FogDevice extends PowerDatacenter {
         }
         appToModulesMap.get(appId).add(module.getName());
         processVmCreate(ev, false);
+        invalidateHostedModules();
         if (module.isBeingInstantiated()) {
             module.setBeingInstantiated(false);
         }
@@ -847,6 +996,7 @@ public class FogDevice extends PowerDatacenter {
 
     protected void processModuleTermination(SimEvent ev) {
         processVmDestroy(ev, false);
+        invalidateHostedModules();
     }
 
     protected void initializePeriodicTuples(AppModule module) {
@@ -860,67 +1010,166 @@ public class FogDevice extends PowerDatacenter {
 
     protected void processOperatorRelease(SimEvent ev) {
         this.processVmMigrate(ev, false);
+        invalidateHostedModules();
     }
 
 
     protected void updateNorthTupleQueue() {
-        if (!getNorthTupleQueue().isEmpty()) {
-            Tuple tuple = getNorthTupleQueue().poll();
-            sendUpFreeLink(tuple);
+        Pair<Tuple, Integer> pair = northLink.poll();
+        if (pair != null) {
+            sendUpFreeLink(pair.getFirst());
         } else {
-            setNorthLinkBusy(false);
+            northLink.setBusy(false);
         }
     }
 
     protected void sendUpFreeLink(Tuple tuple) {
-        double networkDelay = tuple.getCloudletFileSize() / getUplinkBandwidth();
-        setNorthLinkBusy(true);
-        send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);
-        send(parentId, networkDelay + getUplinkLatency(), FogEvents.TUPLE_ARRIVAL, tuple);
+        double networkDelay = occupyNorthLink(tuple);
+        sendOverNorthLink(parentId, networkDelay + getUplinkLatency(), FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(getUplinkLatency(), tuple.getCloudletFileSize());
     }
 
+    /**
+     * Makes the north link busy for the transmission of a tuple, which starts now or, in lean network mode, when the
+     * link becomes free.
+     *
+     * @return the time it takes to send the tuple
+     */
+    protected double occupyNorthLink(Tuple tuple) {
+        double networkDelay = northLink.transmit(tuple);
+        if (!northLink.isTimed()) {
+            northLink.setBusy(true);
+            send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);
+        }
+        return networkDelay;
+    }
+
+    /**
+     * Sends the tuple the north link was last occupied for, with a delay from the start of its transmission.
+     */
+    protected void sendOverNorthLink(int dest, double delay, int tag, Tuple tuple) {
+        sendOverLink(northLink, dest, delay, tag, tuple);
+    }
+
+    private void sendOverLink(Link link, int dest, double delay, int tag, Tuple tuple) {
+        if (link.isTimed())
+            sendFrom(dest, link.getTransmissionStart(), delay, tag, tuple);
+        else
+            send(dest, delay, tag, tuple);
+    }
+
     protected void sendUp(Tuple tuple) {
         if (parentId > 0) {
-            if (!isNorthLinkBusy()) {
+            if (northLink.isTimed() || !northLink.isBusy()) {
                 sendUpFreeLink(tuple);
             } else {
-                northTupleQueue.add(tuple);
+                northLink.enqueue(tuple, parentId);
             }
         }
     }
 
 
-    protected void updateSouthTupleQueue() {
-        if (!getSouthTupleQueue().isEmpty()) {
-            Pair<Tuple, Integer> pair = getSouthTupleQueue().poll();
+    protected void updateSouthTupleQueue(int childId) {
+        Link link = getSouthLink(childId);
+        Pair<Tuple, Integer> pair = link.poll();
+        if (pair != null) {
             sendDownFreeLink(pair.getFirst(), pair.getSecond());
         } else {
-            setSouthLinkBusy(false);
+            link.setBusy(false);
         }
     }
 
     protected void sendDownFreeLink(Tuple tuple, int childId) {
-        double networkDelay = tuple.getCloudletFileSize() / getDownlinkBandwidth();
         //Logger.debug(getName(), "Sending tuple with tupleType = "+tuple.getTupleType()+" DOWN");
-        setSouthLinkBusy(true);
         //System.out.println(getName()+" Sending tuple with tupleType = "+tuple.getTupleType()+" to "+childId);
         double latency = getChildToLatencyMap().get(childId);
-        send(getId(), networkDelay, FogEvents.UPDATE_SOUTH_TUPLE_QUEUE);
-        send(childId, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
+        double networkDelay = occupySouthLink(childId, tuple);
+        sendOverSouthLink(childId, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
     }
 
+    /**
+     * Makes the link to a child busy for the transmission of a tuple, which starts now or, in lean network mode, when
+     * the link becomes free.
+     *
+     * @return the time it takes to send the tuple
+     */
+    protected double occupySouthLink(int childId, Tuple tuple) {
+        Link link = getSouthLink(childId);
+        double networkDelay = link.transmit(tuple);
+        if (!link.isTimed()) {
+            link.setBusy(true);
+            send(getId(), networkDelay, FogEvents.UPDATE_SOUTH_TUPLE_QUEUE, childId);
+        }
+        return networkDelay;
+    }
+
+    /**
+     * Sends the tuple the link to a child was last occupied for, with a delay from the start of its transmission.
+     */
+    protected void sendOverSouthLink(int childId, double delay, int tag, Tuple tuple) {
+        sendOverLink(getSouthLink(childId), childId, delay, tag, tuple);
+    }
+
     protected void sendDown(Tuple tuple, int childId) {
         if (getChildrenIds().contains(childId)) {
-            if (!isSouthLinkBusy()) {
+            Link link = getSouthLink(childId);
+            if (link.isTimed() || !link.isBusy()) {
                 sendDownFreeLink(tuple, childId);
             } else {
-                southTupleQueue.add(new Pair<Tuple, Integer>(tuple, childId));
+                link.enqueue(tuple, childId);
             }
         }
     }
 
+    public Link getNorthLink() {
+        return northLink;
+    }
+
+    /**
+     * @return the link to the child, shared with the other children unless Config.PER_CHILD_LINKS is set
+     */
+    public Link getSouthLink(int childId) {
+        if (!Config.PER_CHILD_LINKS)
+            return sharedSouthLink;
+        Link link = southLinks.get(childId);
+        if (link == null) {
+            link = new Link(getDownlinkBandwidth());
+            link.setScheduling(linkScheduling);
+            southLinks.put(childId, link);
+        }
+        return link;
+    }
+
+    /**
+     * @return the link to the cluster member, shared with the other members unless Config.PER_CHILD_LINKS is set
+     */
+    public Link getClusterLink(int clusterMemberId) {
+        if (!Config.PER_CHILD_LINKS)
+            return sharedClusterLink;
+        Link link = clusterLinks.get(clusterMemberId);
+        if (link == null) {
+            link = new Link(getClusterLinkBandwidth());
+            link.setScheduling(linkScheduling);
+            clusterLinks.put(clusterMemberId, link);
+        }
+        return link;
+    }
+
+    /**
+     * Sets how all the links of the device send queued tuples, {@link Link#FIFO} or {@link Link#WEIGHTED_FAIR}.
+     */
+    public void setLinkScheduling(int scheduling) {
+        northLink.setScheduling(scheduling);
+        sharedSouthLink.setScheduling(scheduling);
+        sharedClusterLink.setScheduling(scheduling);
+        for (Link link : southLinks.values())
+            link.setScheduling(scheduling);
+        for (Link link : clusterLinks.values())
+            link.setScheduling(scheduling);
+        linkScheduling = scheduling;
+    }
+
 
     protected void sendToSelf(Tuple tuple) {
         send(getId(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ARRIVAL, tuple);
@@ -952,6 +1201,7 @@ public class FogDevice extends PowerDatacenter {
 
     public void setUplinkBandwidth(double uplinkBandwidth) {
         this.uplinkBandwidth = uplinkBandwidth;
+        northLink.setBandwidth(uplinkBandwidth);
     }
 
     public double getUplinkLatency() {
@@ -962,20 +1212,21 @@ public class FogDevice extends PowerDatacenter {
         this.uplinkLatency = uplinkLatency;
     }
 
+    /**
+     * @return whether a link to the children is busy
+     */
     public boolean isSouthLinkBusy() {
-        return isSouthLinkBusy;
+        if (sharedSouthLink.isBusy())
+            return true;
+        for (Link link : southLinks.values()) {
+            if (link.isBusy())
+                return true;
+        }
+        return false;
     }
 
     public boolean isNorthLinkBusy() {
-        return isNorthLinkBusy;
-    }
-
-    public void setSouthLinkBusy(boolean isSouthLinkBusy) {
-        this.isSouthLinkBusy = isSouthLinkBusy;
-    }
-
-    public void setNorthLinkBusy(boolean isNorthLinkBusy) {
-        this.isNorthLinkBusy = isNorthLinkBusy;
+        return northLink.isBusy();
     }
 
     public int getControllerId() {
@@ -1010,28 +1261,18 @@ public class FogDevice extends PowerDatacenter {
         this.applicationMap = applicationMap;
     }
 
-    public Queue<Tuple> getNorthTupleQueue() {
-        return northTupleQueue;
-    }
-
-    public void setNorthTupleQueue(Queue<Tuple> northTupleQueue) {
-        this.northTupleQueue = northTupleQueue;
-    }
-
-    public Queue<Pair<Tuple, Integer>> getSouthTupleQueue() {
-        return southTupleQueue;
-    }
-
-    public void setSouthTupleQueue(Queue<Pair<Tuple, Integer>> southTupleQueue) {
-        this.southTupleQueue = southTupleQueue;
-    }
-
     public double getDownlinkBandwidth() {
         return downlinkBandwidth;
     }
 
+    /**
+     * Sets the bandwidth of the links to all the children.
+     */
     public void setDownlinkBandwidth(double downlinkBandwidth) {
         this.downlinkBandwidth = downlinkBandwidth;
+        sharedSouthLink.setBandwidth(downlinkBandwidth);
+        for (Link link : southLinks.values())
+            link.setBandwidth(downlinkBandwidth);
     }
 
     public List<Pair<Integer, Double>> getAssociatedActuatorIds() {
@@ -1145,7 +1386,9 @@ public class FogDevice extends PowerDatacenter {
 
     protected void processClustering(int parentId, int nodeId, SimEvent ev) {
         JSONObject objectLocator = (JSONObject) ev.getData();
-        Clustering cms = new Clustering();
+        // shared by the devices of the clustering round, which then clusters each group of siblings once
+        Clustering cms = objectLocator.get("clustering") instanceof Clustering ?
+                (Clustering) objectLocator.get("clustering") : new Clustering();
         cms.createClusterMembers(this.getParentId(), this.getId(), objectLocator);
     }
 
@@ -1153,45 +1396,47 @@ public class FogDevice extends PowerDatacenter {
         return clusterLinkBandwidth;
     }
 
+    /**
+     * Sets the bandwidth of the links to all the cluster members.
+     */
     protected void setClusterLinkBandwidth(double clusterLinkBandwidth) {
         this.clusterLinkBandwidth = clusterLinkBandwidth;
+        sharedClusterLink.setBandwidth(clusterLinkBandwidth);
+        for (Link link : clusterLinks.values())
+            link.setBandwidth(clusterLinkBandwidth);
     }
 
     protected void sendToCluster(Tuple tuple, int clusterNodeID) {
         if (getClusterMembers().contains(clusterNodeID)) {
-            if (!isClusterLinkBusy) {
+            Link link = getClusterLink(clusterNodeID);
+            if (link.isTimed() || !link.isBusy()) {
                 sendThroughFreeClusterLink(tuple, clusterNodeID);
             } else {
-                clusterTupleQueue.add(new Pair<Tuple, Integer>(tuple, clusterNodeID));
+                link.enqueue(tuple, clusterNodeID);
             }
         }
     }
 
-    private void updateClusterTupleQueue() {
-        if (!getClusterTupleQueue().isEmpty()) {
-            Pair<Tuple, Integer> pair = getClusterTupleQueue().poll();
+    private void updateClusterTupleQueue(int clusterNodeID) {
+        Link link = getClusterLink(clusterNodeID);
+        Pair<Tuple, Integer> pair = link.poll();
+        if (pair != null) {
             sendThroughFreeClusterLink(pair.getFirst(), pair.getSecond());
         } else {
-            setClusterLinkBusy(false);
+            link.setBusy(false);
         }
     }
 
     private void sendThroughFreeClusterLink(Tuple tuple, Integer clusterNodeID) {
-        double networkDelay = tuple.getCloudletFileSize() / getClusterLinkBandwidth();
-        setClusterLinkBusy(true);
+        Link link = getClusterLink(clusterNodeID);
         double latency = (getClusterMembersToLatencyMap()).get(clusterNodeID);
-        send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE);
-        send(clusterNodeID, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
+        double networkDelay = link.transmit(tuple);
+        if (!link.isTimed()) {
+            link.setBusy(true);
+            send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE, clusterNodeID);
+        }
+        sendOverLink(link, clusterNodeID, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
     }
 
-    protected void setClusterLinkBusy(boolean busy) {
-        this.isClusterLinkBusy = busy;
-    }
-
-    public Queue<Pair<Tuple, Integer>> getClusterTupleQueue() {
-        return clusterTupleQueue;
-    }
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package org.fog.entities;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
+
+import java.util.Arrays;
+
+/**
+ * Spreads the tuples of a microservice over its instances in proportion to 1 / (1 + latency), the latency being
+ * that of the path up and down the device hierarchy from the sending device to the instance. Uses smooth weighted
+ * round robin: each pick, every instance gains its weight, and the one with the most gives back the total.
+ */
+public class LatencyAwareLoadBalancer implements LoadBalancer {
+    private static final DiagnosticChannel SERVICE_DISCOVERY = Diagnostics.channel("service-discovery");
+
+    /** service id -> current weight of each instance, reset when the instances change */
+    private double[][] currentWeights = new double[0][];
+    private int[] versions = new int[0];
+
+    public int getDeviceId(String microservice, ServiceDiscovery serviceDiscoveryInfo) {
+        ServiceDiscovery.Instances instances = serviceDiscoveryInfo.getInstances(microservice);
+        if (instances == null || instances.size() == 0) {
+            SERVICE_DISCOVERY.warn("Service Discovery Information Missing");
+            return -1;
+        }
+        int serviceId = instances.getServiceId();
+        if (serviceId >= currentWeights.length) {
+            currentWeights = Arrays.copyOf(currentWeights, Math.max(serviceId + 1, currentWeights.length * 2));
+            versions = Arrays.copyOf(versions, currentWeights.length);
+        }
+        double[] current = currentWeights[serviceId];
+        if (current == null || versions[serviceId] != instances.getVersion() || current.length != instances.size()) {
+            current = new double[instances.size()];
+            currentWeights[serviceId] = current;
+            versions[serviceId] = instances.getVersion();
+        }
+
+        int best = 0;
+        double total = 0;
+        for (int i = 0; i < current.length; i++) {
+            double weight = 1 / (1 + latency(serviceDiscoveryInfo.getDeviceId(), instances.get(i)));
+            current[i] += weight;
+            total += weight;
+            if (current[i] > current[best])
+                best = i;
+        }
+        current[best] -= total;
+        return instances.get(best);
+    }
+
+    /**
+     * Latency between two devices through their nearest common ancestor; infinite if they have none.
+     */
+    static double latency(int from, int to) {
+        FogDevice a = device(from);
+        FogDevice b = device(to);
+        int depthA = depth(a);
+        int depthB = depth(b);
+        double latency = 0;
+        for (; depthA > depthB; depthA--) {
+            latency += a.getUplinkLatency();
+            a = device(a.getParentId());
+        }
+        for (; depthB > depthA; depthB--) {
+            latency += b.getUplinkLatency();
+            b = device(b.getParentId());
+        }
+        while (a != b) {
+            if (a == null || b == null)
+                return Double.POSITIVE_INFINITY;
+            latency += a.getUplinkLatency() + b.getUplinkLatency();
+            a = device(a.getParentId());
+            b = device(b.getParentId());
+        }
+        return a == null ? Double.POSITIVE_INFINITY : latency;
+    }
+
+    private static int depth(FogDevice device) {
+        int depth = 0;
+        for (; device != null; device = device(device.getParentId()))
+            depth++;
+        return depth;
+    }
+
+    private static FogDevice device(int id) {
+        if (id < 0)
+            return null;
+        Object entity = CloudSim.getEntity(id);
+        return entity instanceof FogDevice ? (FogDevice) entity : null;
+    }
+}
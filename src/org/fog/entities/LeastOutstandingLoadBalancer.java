@@ -0,0 +1,42 @@
+package org.fog.entities;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
+
+/**
+ * Sends each tuple to the instance of the microservice with the fewest tuples sent to it, by any device, and not
+ * executed yet; ties go round robin. The counts are shared by all devices, so a device using them waits for its
+ * turn in the clock tick (see {@link CloudSim#awaitTurn()}).
+ */
+public class LeastOutstandingLoadBalancer implements LoadBalancer {
+    private static final DiagnosticChannel SERVICE_DISCOVERY = Diagnostics.channel("service-discovery");
+
+    public LeastOutstandingLoadBalancer() {
+        OutstandingTuples.startTracking();
+    }
+
+    public int getDeviceId(String microservice, ServiceDiscovery serviceDiscoveryInfo) {
+        ServiceDiscovery.Instances instances = serviceDiscoveryInfo.getInstances(microservice);
+        if (instances == null || instances.size() == 0) {
+            SERVICE_DISCOVERY.warn("Service Discovery Information Missing");
+            return -1;
+        }
+        int size = instances.size();
+        int start = instances.nextRoundRobin();
+        CloudSim.awaitTurn();
+        int best = start;
+        int fewest = Integer.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            int position = (start + k) % size;
+            int outstanding = OutstandingTuples.get(instances.get(position), instances.getServiceId());
+            if (outstanding < fewest) {
+                best = position;
+                fewest = outstanding;
+            }
+        }
+        int deviceId = instances.get(best);
+        OutstandingTuples.sent(deviceId, instances.getServiceId());
+        return deviceId;
+    }
+}
@@ -0,0 +1,213 @@
+package org.fog.entities;
+
+import org.apache.commons.math3.util.Pair;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.utils.Config;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ * A link out of a fog device: to its parent, to a child or to a cluster member, or shared by all the children or
+ * cluster members (see Config.PER_CHILD_LINKS). It sends one tuple at a time, at its bandwidth, and queues the tuples
+ * given to it while busy.
+ * <p>
+ * Queued tuples are sent in arrival order ({@link #FIFO}) or by self-clocked weighted fair queueing between
+ * applications ({@link #WEIGHTED_FAIR}), each application getting a share of the link in proportion to its weight.
+ * In lean network mode a FIFO link queues nothing: each tuple is sent ahead at the time the link becomes free.
+ * <p>
+ * The link counts the tuples and bytes sent on it and the time spent sending them, so that hot spots can be found.
+ */
+public class Link {
+
+    public static final int FIFO = 1;
+    public static final int WEIGHTED_FAIR = 2;
+
+    private double bandwidth;
+    private int scheduling = FIFO;
+    private final Map<String, Double> weights = new HashMap<>();
+
+    private boolean busy;
+    /** time the link is busy until, and the start of the last transmission */
+    private double freeAt, transmissionStart;
+
+    private final Queue<Pair<Tuple, Integer>> fifoQueue = new LinkedList<>();
+    private final PriorityQueue<Queued> fairQueue = new PriorityQueue<>();
+    /** application id -> finish tag of its last queued tuple */
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private double virtualTime;
+    private long queuedCount;
+
+    private long tuplesSent;
+    private double bytesSent;
+    private double busyTime;
+    private int maxQueueLength;
+
+    public Link(double bandwidth) {
+        this.bandwidth = bandwidth;
+    }
+
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+    public void setBandwidth(double bandwidth) {
+        this.bandwidth = bandwidth;
+    }
+
+    public int getScheduling() {
+        return scheduling;
+    }
+
+    /**
+     * Sets how queued tuples are sent, {@link #FIFO} or {@link #WEIGHTED_FAIR}; to be set before the simulation starts.
+     */
+    public void setScheduling(int scheduling) {
+        if (scheduling != FIFO && scheduling != WEIGHTED_FAIR)
+            throw new IllegalArgumentException("Unknown link scheduling " + scheduling);
+        this.scheduling = scheduling;
+    }
+
+    /**
+     * Sets the weight of an application in weighted fair scheduling. Applications have a weight of 1 by default.
+     */
+    public void setWeight(String appId, double weight) {
+        if (!(weight > 0))
+            throw new IllegalArgumentException("Link weights must be positive");
+        weights.put(appId, weight);
+    }
+
+    public double getWeight(String appId) {
+        Double weight = weights.get(appId);
+        return weight == null ? 1 : weight;
+    }
+
+    /**
+     * Whether tuples are sent ahead at the times the link becomes free instead of being queued
+     */
+    boolean isTimed() {
+        return Config.LEAN_NETWORK && scheduling == FIFO;
+    }
+
+    public boolean isBusy() {
+        return busy;
+    }
+
+    void setBusy(boolean busy) {
+        this.busy = busy;
+    }
+
+    double getTransmissionDelay(Tuple tuple) {
+        return tuple.getCloudletFileSize() / bandwidth;
+    }
+
+    /**
+     * Starts sending a tuple now, or when the link becomes free if it is timed.
+     *
+     * @return the time it takes to send the tuple
+     */
+    double transmit(Tuple tuple) {
+        double networkDelay = getTransmissionDelay(tuple);
+        transmissionStart = Math.max(CloudSim.clock(), freeAt);
+        freeAt = transmissionStart + networkDelay;
+        tuplesSent++;
+        bytesSent += tuple.getCloudletFileSize();
+        busyTime += networkDelay;
+        return networkDelay;
+    }
+
+    /**
+     * @return the time the last tuple given to {@link #transmit} starts to be sent
+     */
+    double getTransmissionStart() {
+        return transmissionStart;
+    }
+
+    /**
+     * Queues a tuple until the link is free.
+     */
+    void enqueue(Tuple tuple, int destinationId) {
+        Pair<Tuple, Integer> pair = new Pair<Tuple, Integer>(tuple, destinationId);
+        if (scheduling == FIFO) {
+            fifoQueue.add(pair);
+        } else {
+            String appId = tuple.getAppId();
+            Double last = lastFinish.get(appId);
+            double finish = Math.max(virtualTime, last == null ? 0 : last)
+                    + tuple.getCloudletFileSize() / getWeight(appId);
+            lastFinish.put(appId, finish);
+            fairQueue.add(new Queued(pair, finish, queuedCount++));
+        }
+        maxQueueLength = Math.max(maxQueueLength, getQueueLength());
+    }
+
+    /**
+     * @return the next queued tuple and its destination, or null if there is none
+     */
+    Pair<Tuple, Integer> poll() {
+        Pair<Tuple, Integer> pair = fifoQueue.poll();
+        if (pair != null)
+            return pair;
+        Queued queued = fairQueue.poll();
+        if (queued == null) {
+            // the busy period is over
+            virtualTime = 0;
+            lastFinish.clear();
+            return null;
+        }
+        virtualTime = queued.finish;
+        return queued.pair;
+    }
+
+    public int getQueueLength() {
+        return fifoQueue.size() + fairQueue.size();
+    }
+
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    public long getTuplesSent() {
+        return tuplesSent;
+    }
+
+    public double getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return the time spent sending the tuples started so far
+     */
+    public double getBusyTime() {
+        return busyTime;
+    }
+
+    /**
+     * @return the fraction of the simulation time spent sending tuples
+     */
+    public double getUtilization() {
+        double time = CloudSim.clock();
+        return time > 0 ? Math.min(1, busyTime / time) : 0;
+    }
+
+    private static class Queued implements Comparable<Queued> {
+        final Pair<Tuple, Integer> pair;
+        final double finish;
+        final long order;
+
+        Queued(Pair<Tuple, Integer> pair, double finish, long order) {
+            this.pair = pair;
+            this.finish = finish;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Queued other) {
+            int c = Double.compare(finish, other.finish);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+    }
+}
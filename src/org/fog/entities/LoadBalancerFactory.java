@@ -0,0 +1,25 @@
+package org.fog.entities;
+
+import org.fog.utils.Logger;
+
+public class LoadBalancerFactory {
+
+    public static final int ROUND_ROBIN = 1;
+    public static final int LEAST_OUTSTANDING_TUPLES = 2;
+    public static final int LATENCY_AWARE = 3;
+
+    public LoadBalancer getLoadBalancer(int loadBalancer) {
+        switch (loadBalancer) {
+            case ROUND_ROBIN:
+                return new RRLoadBalancer();
+            case LEAST_OUTSTANDING_TUPLES:
+                return new LeastOutstandingLoadBalancer();
+            case LATENCY_AWARE:
+                return new LatencyAwareLoadBalancer();
+        }
+
+        Logger.error("Load Balancer Error", "Error initializing load balancer");
+        return null;
+    }
+
+}
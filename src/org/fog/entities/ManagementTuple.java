@@ -3,8 +3,11 @@ package org.fog.entities;
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.fog.application.Application;
+import org.fog.utils.FogUtils;
 import org.fog.utils.ModuleLaunchConfig;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,12 +23,18 @@ public class ManagementTuple extends Tuple {
     public static final int SERVICE_DISCOVERY_INFO = 2;
     public static final int RESOURCE_UPDATE = 3;
     public static final int DEPLOYMENTREQUEST = 4;
+    // the deployment and service discovery updates of a placement round for one device
+    public static final int BATCH = 5;
+
+    // simulated size of one management message; a batch is as large as the messages it replaces
+    public static final long MESSAGE_SIZE = 50;
 
     public int managementTupleType;
     protected PlacementRequest placementRequest;
     protected Pair<String, Integer> serviceDiscoveryInfor;
     protected Map<Application, List<ModuleLaunchConfig>> deployementSet;
     protected Pair<Integer, Map<String, Double>> resourceData;
+    protected List<ServiceDiscoveryUpdate> serviceDiscoveryUpdates = new ArrayList<>();
 
     //todo check use of this
     public Double processingDelay = 0.0;
@@ -37,10 +46,53 @@ public class ManagementTuple extends Tuple {
     }
 
     public ManagementTuple(int cloudletId, int direction, int tupleType) {
-        super("Management Tuple", cloudletId, direction, 5, 1, 50, 50, new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+        this(cloudletId, direction, tupleType, 1);
+    }
+
+    /**
+     * A management tuple carrying the given number of messages
+     */
+    public ManagementTuple(int cloudletId, int direction, int tupleType, int messages) {
+        super("Management Tuple", cloudletId, direction, 5, 1, MESSAGE_SIZE * messages, MESSAGE_SIZE * messages, new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
         managementTupleType = tupleType;
     }
 
+    /**
+     * Batches the management messages of a placement round by destination device: each device placed on gets its
+     * deployment set, and each client device its service discovery entries, in one BATCH tuple.
+     *
+     * @param perDevice        device id -> modules to deploy on it
+     * @param serviceDiscovery client device id -> (microservice, device id) entries to add
+     * @return the batches, in the order the messages would have been sent
+     */
+    public static List<ManagementTuple> batch(Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice,
+                                              Map<Integer, List<Pair<String, Integer>>> serviceDiscovery) {
+        Map<Integer, List<ServiceDiscoveryUpdate>> updates = new LinkedHashMap<>();
+        for (int deviceId : perDevice.keySet())
+            updates.put(deviceId, new ArrayList<ServiceDiscoveryUpdate>());
+        for (int clientDevice : serviceDiscovery.keySet()) {
+            List<ServiceDiscoveryUpdate> deviceUpdates = updates.get(clientDevice);
+            if (deviceUpdates == null) {
+                deviceUpdates = new ArrayList<>();
+                updates.put(clientDevice, deviceUpdates);
+            }
+            for (Pair<String, Integer> entry : serviceDiscovery.get(clientDevice))
+                deviceUpdates.add(new ServiceDiscoveryUpdate(ServiceDiscoveryUpdate.ADD, entry.getFirst(), entry.getSecond()));
+        }
+
+        List<ManagementTuple> batches = new ArrayList<>(updates.size());
+        for (Map.Entry<Integer, List<ServiceDiscoveryUpdate>> e : updates.entrySet()) {
+            Map<Application, List<ModuleLaunchConfig>> deployment = perDevice.get(e.getKey());
+            int messages = e.getValue().size() + (deployment != null ? 1 : 0);
+            ManagementTuple batch = new ManagementTuple(FogUtils.generateTupleId(), NONE, BATCH, messages);
+            batch.setDeployementSet(deployment);
+            batch.serviceDiscoveryUpdates = e.getValue();
+            batch.setDestinationDeviceId(e.getKey());
+            batches.add(batch);
+        }
+        return batches;
+    }
+
     public void setData(PlacementRequest placementRequest) {
         this.placementRequest = placementRequest;
     }
@@ -72,4 +124,38 @@ public class ManagementTuple extends Tuple {
     public void setResourceData(Pair<Integer, Map<String, Double>> resourceData) {
         this.resourceData = resourceData;
     }
+
+    public List<ServiceDiscoveryUpdate> getServiceDiscoveryUpdates() {
+        return serviceDiscoveryUpdates;
+    }
+
+    /**
+     * Adds or removes the device hosting an instance of a microservice in the service discovery of a device
+     */
+    public static class ServiceDiscoveryUpdate {
+        public static final int ADD = 1;
+        public static final int REMOVE = 2;
+
+        private final int action;
+        private final String microservice;
+        private final int deviceId;
+
+        public ServiceDiscoveryUpdate(int action, String microservice, int deviceId) {
+            this.action = action;
+            this.microservice = microservice;
+            this.deviceId = deviceId;
+        }
+
+        public int getAction() {
+            return action;
+        }
+
+        public String getMicroservice() {
+            return microservice;
+        }
+
+        public int getDeviceId() {
+            return deviceId;
+        }
+    }
 }
@@ -6,12 +6,18 @@ import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
 import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
 import org.fog.placement.MicroservicePlacementLogic;
 import org.fog.placement.PlacementLogicOutput;
 import org.fog.utils.*;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
+import org.fog.utils.metrics.MetricsRegistry;
+import org.fog.utils.routing.DenseRoutingTable;
+import org.fog.utils.routing.RoutingTable;
 import org.json.simple.JSONObject;
 
 import java.util.*;
@@ -21,6 +27,11 @@ import java.util.*;
  */
 public class MyFogDevice extends FogDevice {
 
+	private static final DiagnosticChannel PLACEMENT = Diagnostics.channel("placement");
+	private static final DiagnosticChannel MODULES = Diagnostics.channel("modules");
+
+	private static final Predicate NON_LOCAL_EVENT = nonLocalEvents(FogEvents.PROCESS_PRS, FogEvents.RECEIVE_PR);
+
 	/**
 	 * Device type (1.client device 2.FCN 3.FON 4.Cloud)
 	 * in this work client device only holds the clientModule of the app and does not participate in processing and placement of microservices ( microservices can be shared among users,
@@ -45,9 +56,9 @@ public class MyFogDevice extends FogDevice {
 
 	/**
 	 * used to forward tuples towards the destination device
-	 * map of <destinationID,nextDeviceID> based on shortest path.
+	 * <destinationID,nextDeviceID> based on shortest path.
 	 */
-	protected Map<Integer, Integer> routingTable = new HashMap<>();
+	protected RoutingTable routingTable = new DenseRoutingTable();
 
 
 	protected ControllerComponent controllerComponent;
@@ -69,6 +80,11 @@ public class MyFogDevice extends FogDevice {
 
 	}
 
+	@Override
+	protected Predicate nonLocalEventPredicate() {
+		return NON_LOCAL_EVENT;
+	}
+
 	@Override
 	protected void processOtherEvent(SimEvent ev) {
 		switch (ev.getTag()) {
@@ -148,10 +164,14 @@ public class MyFogDevice extends FogDevice {
 	}
 
 	public void addRoutingTable(Map<Integer, Integer> routingTable) {
+		this.routingTable = new DenseRoutingTable(routingTable);
+	}
+
+	public void setRoutingTable(RoutingTable routingTable) {
 		this.routingTable = routingTable;
 	}
 
-	public Map<Integer, Integer> getRoutingTable() {
+	public RoutingTable getRoutingTable() {
 		return routingTable;
 	}
 
@@ -159,14 +179,15 @@ public class MyFogDevice extends FogDevice {
 
 		Tuple tuple = (Tuple) ev.getData();
 
-		Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + " with tupleType = " + tuple.getTupleType() + "\t| Source : " +
-				CloudSim.getEntityName(ev.getSource()) + " | Dest : " + CloudSim.getEntityName(ev.getDestination()));
+		if (Logger.isDebugEnabled())
+			Logger.debug(getName(), "Received tuple {} with tupleType = {}\t| Source : {} | Dest : {}", tuple.getCloudletId(),
+					tuple.getTupleType(), CloudSim.getEntityName(ev.getSource()), CloudSim.getEntityName(ev.getDestination()));
 
 		if (deviceType.equals(MyFogDevice.CLOUD)) {
 			updateCloudTraffic();
 		}
 
-		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+		sendTupleAck(ev);
 
 		if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
 		}
@@ -202,7 +223,7 @@ public class MyFogDevice extends FogDevice {
 			if (tuple.getDirection() == Tuple.UP) {
 				int destination = controllerComponent.getDestinationDeviceId(tuple.getDestModuleName());
 				if (destination == -1) {
-					System.out.println("Service DiscoveryInfo missing. Tuple routing stopped for : " + tuple.getDestModuleName());
+					PLACEMENT.warn("Service DiscoveryInfo missing. Tuple routing stopped for : {}", tuple.getDestModuleName());
 					return;
 				}
 				tuple.setDestinationDeviceId(destination);
@@ -215,11 +236,7 @@ public class MyFogDevice extends FogDevice {
 		}
 
 		if (tuple.getDestinationDeviceId() == getId()) {
-			int vmId = -1;
-			for (Vm vm : getHost().getVmList()) {
-				if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-					vmId = vm.getId();
-			}
+			int vmId = getHostedModuleVmId(tuple.getDestModuleName());
 			if (vmId < 0
 					|| (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
 					tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -233,7 +250,7 @@ public class MyFogDevice extends FogDevice {
 			executeTuple(ev, tuple.getDestModuleName());
 		} else {
 			if (tuple.getDestinationDeviceId() != -1) {
-				int nextDeviceToSend = routingTable.get(tuple.getDestinationDeviceId());
+				int nextDeviceToSend = routingTable.getNextHop(tuple.getDestinationDeviceId());
 				if (nextDeviceToSend == parentId)
 					sendUp(tuple);
 				else if (childrenIds.contains(nextDeviceToSend))
@@ -241,18 +258,14 @@ public class MyFogDevice extends FogDevice {
 				else if (getClusterMembers().contains(nextDeviceToSend))
 					sendToCluster(tuple, nextDeviceToSend);
 				else {
-					Logger.error("Routing error", "Routing table of " + getName() + "does not contain next device for destination Id" + tuple.getDestinationDeviceId());
+					Logger.error("Routing error", "Routing table of {}does not contain next device for destination Id{}", getName(), tuple.getDestinationDeviceId());
 
 				}
 			} else {
 				if (tuple.getDirection() == Tuple.DOWN) {
 					if (appToModulesMap.containsKey(tuple.getAppId())) {
 						if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-							int vmId = -1;
-							for (Vm vm : getHost().getVmList()) {
-								if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-									vmId = vm.getId();
-							}
+							int vmId = getHostedModuleVmId(tuple.getDestModuleName());
 							if (vmId < 0
 									|| (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
 									tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -288,7 +301,7 @@ public class MyFogDevice extends FogDevice {
 		if (getDeviceType() == MyFogDevice.FON || getDeviceType() == MyFogDevice.CLOUD) {
 			controllerComponent = new ControllerComponent(getId(), loadBalancer, mPlacement, resourceAvailability, applications, fogDevices);
 		} else
-			Logger.error("Controller init failed", "FON controller initialized for device " + getName() + " of type " + getDeviceType());
+			Logger.error("Controller init failed", "FON controller initialized for device {} of type {}", getName(), getDeviceType());
 	}
 
 	/**
@@ -334,7 +347,8 @@ public class MyFogDevice extends FogDevice {
 
 		PlacementLogicOutput placementLogicOutput = getControllerComponent().executeApplicationPlacementLogic(placementRequests);
 		long endTime = System.nanoTime();
-		System.out.println("Placement Algorithm Completed. Time : " + (endTime - startTime) / 1e6);
+		MetricsRegistry.record(MetricsRegistry.PLACEMENT_LATENCY, getId(), (endTime - startTime) / 1e6);
+		PLACEMENT.info("Placement Algorithm Completed. Time : {}", (endTime - startTime) / 1e6);
 
 		Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = placementLogicOutput.getPerDevice();
 		Map<Integer, List<Pair<String, Integer>>> serviceDicovery = placementLogicOutput.getServiceDiscoveryInfo();
@@ -362,28 +376,36 @@ public class MyFogDevice extends FogDevice {
 					}
 				}
 			}
-			if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC") {
+			if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC" && !MicroservicePlacementConfig.BATCH_MANAGEMENT_MESSAGES) {
 				//todo
 				transmitModulesToDeploy(deviceID, perDevice.get(deviceID));
 			}
 			placementString.append("\n");
 		}
-		System.out.println(placementString.toString());
-		for (int clientDevice : serviceDicovery.keySet()) {
-			for (Pair serviceData : serviceDicovery.get(clientDevice)) {
-				if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC") {
-					transmitServiceDiscoveryData(clientDevice, serviceData);
-				} else if (MicroservicePlacementConfig.SIMULATION_MODE == "STATIC") {
-					JSONObject serviceDiscoveryAdd = new JSONObject();
-					serviceDiscoveryAdd.put("service data", serviceData);
-					serviceDiscoveryAdd.put("action", "ADD");
-					sendNow(clientDevice, FogEvents.UPDATE_SERVICE_DISCOVERY, serviceDiscoveryAdd);
+		PLACEMENT.info(placementString.toString());
+		if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC" && MicroservicePlacementConfig.BATCH_MANAGEMENT_MESSAGES) {
+			for (ManagementTuple batch : ManagementTuple.batch(perDevice, serviceDicovery))
+				sendNow(getId(), FogEvents.MANAGEMENT_TUPLE_ARRIVAL, batch);
+		} else {
+			for (int clientDevice : serviceDicovery.keySet()) {
+				for (Pair serviceData : serviceDicovery.get(clientDevice)) {
+					if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC") {
+						transmitServiceDiscoveryData(clientDevice, serviceData);
+					} else if (MicroservicePlacementConfig.SIMULATION_MODE == "STATIC") {
+						JSONObject serviceDiscoveryAdd = new JSONObject();
+						serviceDiscoveryAdd.put("service data", serviceData);
+						serviceDiscoveryAdd.put("action", "ADD");
+						sendNow(clientDevice, FogEvents.UPDATE_SERVICE_DISCOVERY, serviceDiscoveryAdd);
+					}
 				}
 			}
 		}
 
 		for (PlacementRequest pr : placementRequestStatus.keySet()) {
-			if (placementRequestStatus.get(pr) != -1) {
+			if (placementRequestStatus.get(pr) == getId()) {
+				// not placed yet; retried after a placement interval rather than at once
+				send(getId(), MicroservicePlacementConfig.PLACEMENT_INTERVAL, FogEvents.RECEIVE_PR, pr);
+			} else if (placementRequestStatus.get(pr) != -1) {
 				if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC")
 					transmitPR(pr, placementRequestStatus.get(pr));
 
@@ -436,6 +458,13 @@ public class MyFogDevice extends FogDevice {
 			this.controllerComponent.removeServiceDiscoveryInfo(placement.getFirst(), placement.getSecond());
 	}
 
+	protected void updateServiceDiscovery(ManagementTuple.ServiceDiscoveryUpdate update) {
+		if (update.getAction() == ManagementTuple.ServiceDiscoveryUpdate.ADD)
+			this.controllerComponent.addServiceDiscoveryInfo(update.getMicroservice(), update.getDeviceId());
+		else if (update.getAction() == ManagementTuple.ServiceDiscoveryUpdate.REMOVE)
+			this.controllerComponent.removeServiceDiscoveryInfo(update.getMicroservice(), update.getDeviceId());
+	}
+
 	protected void processModuleArrival(SimEvent ev) {
 		// assumed that a new object of AppModule is sent
 		//todo what if an existing module is sent again in another placement cycle -> vertical scaling instead of having two vms
@@ -448,6 +477,7 @@ public class MyFogDevice extends FogDevice {
 			appToModulesMap.get(appId).add(module.getName());
 			processVmCreate(ev, false);
 			boolean result = getVmAllocationPolicy().allocateHostForVm(module);
+			invalidateHostedModules();
 			if (result) {
 				getVmList().add(module);
 				if (module.isBeingInstantiated()) {
@@ -458,14 +488,14 @@ public class MyFogDevice extends FogDevice {
 				module.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(module).getVmScheduler()
 						.getAllocatedMipsForVm(module));
 
-				System.out.println("Module " + module.getName() + "created on " + getName() + " under Launch module");
-				Logger.debug("Module deploy success", "Module " + module.getName() + " placement on " + getName() + " successful. vm id : " + module.getId());
+				MODULES.debug("Module {}created on {} under Launch module", module.getName(), getName());
+				Logger.debug("Module deploy success", "Module {} placement on {} successful. vm id : {}", module.getName(), getName(), module.getId());
 			} else {
-				Logger.error("Module deploy error", "Module " + module.getName() + " placement on " + getName() + " failed");
-				System.out.println("Module " + module.getName() + " placement on " + getName() + " failed");
+				Logger.error("Module deploy error", "Module {} placement on {} failed", module.getName(), getName());
+				MODULES.warn("Module {} placement on {} failed", module.getName(), getName());
 			}
 		} else {
-			System.out.println("Module " + module.getName() + " already deplyed on" + getName());
+			MODULES.debug("Module {} already deplyed on{}", module.getName(), getName());
 		}
 	}
 
@@ -474,7 +504,7 @@ public class MyFogDevice extends FogDevice {
 		JSONObject object = (JSONObject) ev.getData();
 		AppModule appModule = (AppModule) object.get("module");
 		Application app = (Application) object.get("application");
-		System.out.println(CloudSim.clock() + getName() + " is receiving " + appModule.getName());
+		MODULES.debug("{}{} is receiving {}", CloudSim.clock(), getName(), appModule.getName());
 
 		sendNow(getId(), FogEvents.APP_SUBMIT, app);
 		sendNow(getId(), FogEvents.LAUNCH_MODULE, appModule);
@@ -490,7 +520,7 @@ public class MyFogDevice extends FogDevice {
 	protected void moduleSend(SimEvent ev) {
 		JSONObject object = (JSONObject) ev.getData();
 		AppModule appModule = (AppModule) object.get("module");
-		System.out.println(getName() + " is sending " + appModule.getName());
+		MODULES.debug("{} is sending {}", getName(), appModule.getName());
 		NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
 		MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
@@ -557,11 +587,16 @@ public class MyFogDevice extends FogDevice {
 				sendNow(getId(), FogEvents.UPDATE_SERVICE_DISCOVERY, serviceDiscoveryAdd);
 			} else if (tuple.managementTupleType == ManagementTuple.DEPLOYMENTREQUEST) {
 				deployModules(tuple.getDeployementSet());
+			} else if (tuple.managementTupleType == ManagementTuple.BATCH) {
+				if (tuple.getDeployementSet() != null)
+					deployModules(tuple.getDeployementSet());
+				for (ManagementTuple.ServiceDiscoveryUpdate update : tuple.getServiceDiscoveryUpdates())
+					updateServiceDiscovery(update);
 			} else if (tuple.managementTupleType == ManagementTuple.RESOURCE_UPDATE) {
 				sendNow(getId(), FogEvents.UPDATE_RESOURCE_INFO, tuple.getResourceData());
 			}
 		} else if (tuple.getDestinationDeviceId() != -1) {
-			int nextDeviceToSend = routingTable.get(tuple.getDestinationDeviceId());
+			int nextDeviceToSend = routingTable.getNextHop(tuple.getDestinationDeviceId());
 			if (nextDeviceToSend == parentId)
 				sendUp(tuple);
 			else if (childrenIds.contains(nextDeviceToSend))
@@ -569,7 +604,7 @@ public class MyFogDevice extends FogDevice {
 			else if (getClusterMembers().contains(nextDeviceToSend))
 				sendToCluster(tuple, nextDeviceToSend);
 			else
-				Logger.error("Routing error", "Routing table of " + getName() + "does not contain next device for destination Id" + tuple.getDestinationDeviceId());
+				Logger.error("Routing error", "Routing table of {}does not contain next device for destination Id{}", getName(), tuple.getDestinationDeviceId());
 		} else
 			Logger.error("Routing error", "Management tuple destination id is -1");
 	}
@@ -635,11 +670,9 @@ public class MyFogDevice extends FogDevice {
 
 	protected void sendDownFreeLink(Tuple tuple, int childId) {
 		if (tuple instanceof ManagementTuple) {
-			double networkDelay = tuple.getCloudletFileSize() / getDownlinkBandwidth();
-			setSouthLinkBusy(true);
 			double latency = getChildToLatencyMap().get(childId);
-			send(getId(), networkDelay, FogEvents.UPDATE_SOUTH_TUPLE_QUEUE);
-			send(childId, networkDelay + latency + ((ManagementTuple) tuple).processingDelay, FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
+			double networkDelay = occupySouthLink(childId, tuple);
+			sendOverSouthLink(childId, networkDelay + latency + ((ManagementTuple) tuple).processingDelay, FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
 			//todo
 //            if (Config.ENABLE_NETWORK_USAGE_AT_PLACEMENT)
 //                NetworkUsageMonitor.sendingManagementTuple(latency, tuple.getCloudletFileSize());
@@ -649,10 +682,8 @@ public class MyFogDevice extends FogDevice {
 
 	protected void sendUpFreeLink(Tuple tuple) {
 		if (tuple instanceof ManagementTuple) {
-			double networkDelay = tuple.getCloudletFileSize() / getUplinkBandwidth();
-			setNorthLinkBusy(true);
-			send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);
-			send(parentId, networkDelay + getUplinkLatency() + ((ManagementTuple) tuple).processingDelay, FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
+			double networkDelay = occupyNorthLink(tuple);
+			sendOverNorthLink(parentId, networkDelay + getUplinkLatency() + ((ManagementTuple) tuple).processingDelay, FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
 			//todo
 //            if (Config.ENABLE_NETWORK_USAGE_AT_PLACEMENT)
 //                NetworkUsageMonitor.sendingManagementTuple(getUplinkLatency(), tuple.getCloudletFileSize());
@@ -663,12 +694,12 @@ public class MyFogDevice extends FogDevice {
 	}
 
 	public void updateRoutingTable(int destId, int nextId) {
-		routingTable.put(destId, nextId);
+		routingTable.setNextHop(destId, nextId);
 	}
 
 	private void updateClusterConsInRoutingTable() {
 		for(int deviceId:clusterMembers){
-			routingTable.put(deviceId,deviceId);
+			routingTable.setNextHop(deviceId,deviceId);
 		}
 	}
 
@@ -0,0 +1,56 @@
+package org.fog.entities;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+import java.util.Arrays;
+
+/**
+ * Tuples sent to each instance of a microservice and not executed yet, by device id and service id, for the
+ * {@link LeastOutstandingLoadBalancer}. Only tracked once such a balancer exists.
+ */
+class OutstandingTuples {
+
+    private static volatile boolean tracking = false;
+    /** device id -> service id -> outstanding tuples */
+    private static int[][] counts = new int[0][];
+
+    /**
+     * Starts tracking from no outstanding tuples; called when the balancers are created, before the simulation.
+     */
+    static void startTracking() {
+        tracking = true;
+        counts = new int[0][];
+    }
+
+    static int get(int deviceId, int serviceId) {
+        if (deviceId < 0 || deviceId >= counts.length || counts[deviceId] == null || serviceId >= counts[deviceId].length)
+            return 0;
+        return counts[deviceId][serviceId];
+    }
+
+    static void sent(int deviceId, int serviceId) {
+        if (deviceId < 0)
+            return;
+        if (deviceId >= counts.length)
+            counts = Arrays.copyOf(counts, Math.max(deviceId + 1, counts.length * 2));
+        if (counts[deviceId] == null)
+            counts[deviceId] = new int[serviceId + 1];
+        else if (serviceId >= counts[deviceId].length)
+            counts[deviceId] = Arrays.copyOf(counts[deviceId], Math.max(serviceId + 1, counts[deviceId].length * 2));
+        counts[deviceId][serviceId]++;
+    }
+
+    /**
+     * Records a tuple for the microservice executed on the device; called by the device, for UP tuples.
+     */
+    static void executed(int deviceId, String microservice) {
+        if (!tracking)
+            return;
+        int serviceId = ServiceDiscovery.findId(microservice);
+        if (serviceId < 0)
+            return;
+        CloudSim.awaitTurn();
+        if (get(deviceId, serviceId) > 0)
+            counts[deviceId][serviceId]--;
+    }
+}
@@ -1,7 +1,5 @@
 package org.fog.entities;
 
-import java.util.ArrayList;
-
 import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
@@ -92,7 +90,7 @@ public class Sensor extends SimEntity{
 		
 		tuple.setDestModuleName(_edge.getDestination());
 		tuple.setSrcModuleName(getSensorName());
-		Logger.debug(getName(), "Sending tuple with tupleId = "+ tuple.getCloudletId());
+		Logger.debug(getName(), "Sending tuple with tupleId = {}", tuple.getCloudletId());
 
 		tuple.setDestinationDeviceId(getGatewayDeviceId());
 
@@ -103,19 +101,12 @@ public class Sensor extends SimEntity{
 	}
 	
 	protected int updateTimings(String src, String dest){
-		Application application = getApp();
-		for(AppLoop loop : application.getLoops()){
-			if(loop.hasEdge(src, dest)){
-				
-				int tupleId = TimeKeeper.getInstance().getUniqueId();
-				if(!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-					TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-				TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-				TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-				return tupleId;
-			}
-		}
-		return -1;
+		AppLoop loop = getApp().getCompiledApplication().getFirstLoopWithEdge(src, dest);
+		if(loop == null)
+			return -1;
+		int tupleId = TimeKeeper.getInstance().getUniqueId();
+		TimeKeeper.getInstance().tupleEmitted(loop.getLoopId(), tupleId);
+		return tupleId;
 	}
 	
 	@Override
@@ -124,6 +115,14 @@ public class Sensor extends SimEntity{
 		send(getId(), getTransmitDistribution().getNextValue() + transmissionStartDelay, FogEvents.EMIT_TUPLE);
 	}
 
+	/**
+	 * A sensor only touches shared state through FogUtils and TimeKeeper, which keep event order.
+	 */
+	@Override
+	protected boolean isParallelSafe() {
+		return true;
+	}
+
 	@Override
 	public void processEvent(SimEvent ev) {
 		switch(ev.getTag()){
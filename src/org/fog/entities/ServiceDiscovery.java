@@ -0,0 +1,148 @@
+package org.fog.entities;
+
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The devices hosting each microservice, as known to one device. Microservice names are interned into ids shared by
+ * all devices, and the instances of a microservice are kept in an int array with the round-robin position among
+ * them, so that resolving the destination of a tuple neither allocates nor looks up more than once.
+ */
+class ServiceDiscovery {
+    private static final DiagnosticChannel SERVICE_DISCOVERY = Diagnostics.channel("service-discovery");
+
+    /** microservice name -> id, for all devices */
+    private static final Map<String, Integer> serviceIds = new ConcurrentHashMap<>();
+
+    /** service id -> instances, null for microservices never known to this device */
+    private Instances[] instances = new Instances[0];
+    int deviceId ;
+
+    public ServiceDiscovery(Integer deviceId) {
+        this.deviceId =deviceId;
+    }
+
+    /**
+     * @return the id of the microservice, interning its name if it has none yet
+     */
+    static int idOf(String microservice) {
+        Integer id = serviceIds.get(microservice);
+        if (id == null) {
+            synchronized (serviceIds) {
+                id = serviceIds.get(microservice);
+                if (id == null) {
+                    id = serviceIds.size();
+                    serviceIds.put(microservice, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the microservice, or -1 if its name was never interned
+     */
+    static int findId(String microservice) {
+        Integer id = serviceIds.get(microservice);
+        return id == null ? -1 : id;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public void addServiceDIscoveryInfo(String microservice, Integer device) {
+        int id = idOf(microservice);
+        if (id >= instances.length)
+            instances = Arrays.copyOf(instances, Math.max(id + 1, instances.length * 2));
+        if (instances[id] == null)
+            instances[id] = new Instances(id);
+        instances[id].add(device);
+    }
+
+    /**
+     * @return the instances of the microservice, possibly none, or null if it was never known to this device
+     */
+    Instances getInstances(String microservice) {
+        int id = findId(microservice);
+        return id < 0 || id >= instances.length ? null : instances[id];
+    }
+
+    public void removeServiceDIscoveryInfo(String microserviceName, Integer deviceID) {
+        Instances serviceInstances = getInstances(microserviceName);
+        if (serviceInstances != null && serviceInstances.remove(deviceID))
+            SERVICE_DISCOVERY.debug("Service Discovery Info REMOVED (device:{}) for microservice :{} , destDevice : {}", this.deviceId, microserviceName, deviceID);
+    }
+
+    /**
+     * The devices of the instances of a microservice, in the order they were added. Kept once created, with the
+     * round-robin position, even while the microservice has no instance.
+     */
+    static class Instances {
+        private final int serviceId;
+        private int[] devices = new int[2];
+        private int size = 0;
+        private int version = 0;
+        /** position of the instance last picked in round robin, -1 before the first */
+        private final AtomicInteger cursor = new AtomicInteger(-1);
+
+        Instances(int serviceId) {
+            this.serviceId = serviceId;
+        }
+
+        int getServiceId() {
+            return serviceId;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int position) {
+            return devices[position];
+        }
+
+        /**
+         * @return a number that changes whenever an instance is added or removed
+         */
+        int getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the position of the next instance in round robin; there must be one
+         */
+        int nextRoundRobin() {
+            while (true) {
+                int position = cursor.get();
+                int next = position + 1 > size - 1 ? 0 : position + 1;
+                if (cursor.compareAndSet(position, next))
+                    return next;
+            }
+        }
+
+        void add(int device) {
+            if (size == devices.length)
+                devices = Arrays.copyOf(devices, size * 2);
+            devices[size++] = device;
+            version++;
+        }
+
+        boolean remove(int device) {
+            for (int i = 0; i < size; i++) {
+                if (devices[i] == device) {
+                    System.arraycopy(devices, i + 1, devices, i, size - i - 1);
+                    size--;
+                    version++;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.fog.utils.Config;
 import org.json.simple.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,101 +15,258 @@ import java.util.Map;
 
 /**
  * @author Mohammad Goudarzi
+ * <p>
+ * Siblings (children of the same parent) within {@link Config#Node_Communication_RANGE} of each other form a
+ * cluster. The siblings of a parent are clustered together, the first time one of them asks: they are put in a
+ * uniform grid of cells as wide as the range, so each is only compared with the siblings of its own and the
+ * neighbouring cells, and the memberships and latency maps of all of them are written at once. Share one instance
+ * among the devices of a clustering round (the controllers put it in the START_DYNAMIC_CLUSTERING message) so that
+ * a level is clustered in one pass; when a clustered device moves, {@link #moveNode(int, int, int)} updates the
+ * clusters it leaves and joins.
  */
 public class Clustering {
+
+    private static final double EARTH_RADIUS = 6371; // Kilometers
+
+    private LocationHandler locator;
+    /** parent id -> grid of its clustered children */
+    private final Map<Integer, SiblingGrid> grids = new HashMap<>();
+
+    public Clustering() {
+    }
+
+    public Clustering(LocationHandler locator) {
+        this.locator = locator;
+    }
+
     public void createClusterMembers(int parentId, int nodeId, JSONObject locatorObject) {
-        List<Integer> SiblingListIDs = new ArrayList<>();
-        List<FogDevice> SiblingsList = new ArrayList<FogDevice>();
-        List<Integer> clusterMemberList = new ArrayList<>();
-        int fogId = nodeId;
-        LocationHandler locatorTemp = new LocationHandler();
-        locatorTemp = (LocationHandler) locatorObject.get("locationsInfo");
+        if (locator == null)
+            locator = (LocationHandler) locatorObject.get("locationsInfo");
         FogDevice parentDevice = (FogDevice) CloudSim.getEntity(parentId);
-        SiblingListIDs = parentDevice.getChildrenIds();
+        List<Integer> SiblingListIDs = parentDevice.getChildrenIds();
 
         if (SiblingListIDs.size() < 1 || SiblingListIDs.isEmpty()) {
-            //System.out.println("The node: " + nodeId + " with parent Id: " + parentId + " does not have any cluster members " + parentDevice.getChildrenIds());
             System.out.println("ERROR in clustering --> Pranet Node does not habe any children");
-            //Log.printLine("ERROR in clustering --> Pranet Node cannot be Found");
             return;
         }
 
-        for (int i = 0; i < SiblingListIDs.size(); i++) {
-            int tempId = SiblingListIDs.get(i);
-            FogDevice tempNode = (FogDevice) CloudSim.getEntity(tempId);
-            SiblingsList.add(tempNode);
-        }
-
-        double fogNodePositionX = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).latitude;
-        double fogNodePositionY = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).longitude;
-        Location L1 = new Location(fogNodePositionX, fogNodePositionY, 0);
-        for (FogDevice fogdevice : SiblingsList) {
+        if (!grids.containsKey(parentId))
+            clusterSiblings(parentId, SiblingListIDs);
 
-            if (fogId == fogdevice.getId()) {
-                continue;
-            }
-            // To check all siblings except itself
-            double tempX = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogdevice.getId())).latitude;
-            double tempY = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogdevice.getId())).longitude;
-
-            Location L2 = new Location(tempX, tempY, 0);
+        System.out.println("The Fog Device: " + locator.instanceToDataId.get(nodeId) + " with id: " + nodeId + " and parent id: " + parentId +
+                " has these cluster members: " + ((FogDevice) CloudSim.getEntity(nodeId)).getClusterMembers());
+    }
 
-            boolean clusterCheck = calculateInRange(L1, L2, Config.Node_Communication_RANGE);
+    /**
+     * Clusters all the children of a parent in one pass.
+     */
+    private void clusterSiblings(int parentId, List<Integer> siblingIds) {
+        SiblingGrid grid = new SiblingGrid(rangeInKm());
+        List<Location> locations = new ArrayList<>(siblingIds.size());
+        for (int id : siblingIds)
+            locations.add(locationOf(id));
+        grid.size(locations);
+        for (int i = 0; i < siblingIds.size(); i++)
+            grid.add(siblingIds.get(i), locations.get(i));
+        grids.put(parentId, grid);
 
-            //Clustering Policy
-            //double x = Math.pow((fogNodePositionX - tempX), 2) + Math.pow((fogNodePositionY - tempY), 2);
+        for (int id : siblingIds)
+            writeCluster((FogDevice) CloudSim.getEntity(id), grid.membersInRange(id));
+    }
 
-            /*if (Math.sqrt(x) <= Config.Node_Communication_RANGE / 1000) {
-                clusterMemberList.add(fogdevice.getId());
-            */
-            if (clusterCheck == true) {
-                clusterMemberList.add(fogdevice.getId());
-            }
+    /**
+     * Moves a clustered device from the children of one parent to the children of another: it leaves the clusters
+     * of its old siblings and joins those of its new siblings in range, both ways. Only the neighbouring cells of
+     * the two grids are visited.
+     */
+    public void moveNode(int nodeId, int oldParentId, int newParentId) {
+        SiblingGrid oldGrid = grids.get(oldParentId);
+        if (oldGrid != null && oldGrid.contains(nodeId)) {
+            for (int member : oldGrid.membersInRange(nodeId))
+                leaveCluster((FogDevice) CloudSim.getEntity(member), nodeId);
+            oldGrid.remove(nodeId);
         }
-        // Clustering Policy
-
+        SiblingGrid newGrid = grids.get(newParentId);
+        if (newGrid == null) {
+            // the new siblings are not clustered
+            FogDevice device = (FogDevice) CloudSim.getEntity(nodeId);
+            device.setIsInCluster(false);
+            device.setSelfCluster(false);
+            device.setClusterMembers(new ArrayList<Integer>());
+            device.setClusterMembersToLatencyMap(new HashMap<Integer, Double>());
+            return;
+        }
+        newGrid.add(nodeId, locationOf(nodeId));
+        List<Integer> members = newGrid.membersInRange(nodeId);
+        writeCluster((FogDevice) CloudSim.getEntity(nodeId), members);
+        for (int member : members)
+            joinCluster((FogDevice) CloudSim.getEntity(member), nodeId);
+    }
 
-        if (clusterMemberList.isEmpty() || clusterMemberList.size() < 1) {
-            ((FogDevice) CloudSim.getEntity(fogId)).setSelfCluster(true);
-            ((FogDevice) CloudSim.getEntity(fogId)).setIsInCluster(true);
+    private void writeCluster(FogDevice device, List<Integer> clusterMemberList) {
+        if (clusterMemberList.isEmpty()) {
+            device.setSelfCluster(true);
+            device.setIsInCluster(true);
+            device.setClusterMembers(new ArrayList<Integer>());
+            device.setClusterMembersToLatencyMap(new HashMap<Integer, Double>());
         } else {
-            ((FogDevice) CloudSim.getEntity(fogId)).setIsInCluster(true);
-            ((FogDevice) CloudSim.getEntity(fogId)).setSelfCluster(false);
-            ((FogDevice) CloudSim.getEntity(fogId)).setClusterMembers(clusterMemberList);
+            device.setIsInCluster(true);
+            device.setSelfCluster(false);
+            device.setClusterMembers(clusterMemberList);
             Map<Integer, Double> latencyMapL2 = new HashMap<>();
             // todo Simon says maybe clusteringLatency shouldn't be a constant!
             // todo In fact maybe there shouldn't be clustering at all...
             for (int id : clusterMemberList) {
                 latencyMapL2.put(id, Config.clusteringLatency);
             }
-            ((FogDevice) CloudSim.getEntity(fogId)).setClusterMembersToLatencyMap(latencyMapL2);
+            device.setClusterMembersToLatencyMap(latencyMapL2);
+        }
+    }
 
+    private void joinCluster(FogDevice device, int memberId) {
+        if (device.getSelfCluster() || device.getClusterMembersToLatencyMap() == null) {
+            List<Integer> members = new ArrayList<>();
+            members.add(memberId);
+            writeCluster(device, members);
+            return;
         }
-        System.out.println("The Fog Device: " + locatorTemp.instanceToDataId.get(fogId) + " with id: " + fogId + " and parent id: " + parentId +
-                " has these cluster members: " + ((FogDevice) CloudSim.getEntity(fogId)).getClusterMembers());
-        return;
+        device.getClusterMembers().add(memberId);
+        device.getClusterMembersToLatencyMap().put(memberId, Config.clusteringLatency);
     }
 
-    private static boolean calculateInRange(Location loc1, Location loc2, double fogRange) {
+    private void leaveCluster(FogDevice device, int memberId) {
+        device.getClusterMembers().remove(Integer.valueOf(memberId));
+        if (device.getClusterMembersToLatencyMap() != null)
+            device.getClusterMembersToLatencyMap().remove(memberId);
+        if (device.getClusterMembers().isEmpty())
+            device.setSelfCluster(true);
+    }
 
-        final int R = 6371; // Radius of the earth in Kilometers
+    private Location locationOf(int deviceId) {
+        Location location = locator.dataObject.resourceLocationData.get(locator.instanceToDataId.get(deviceId));
+        return new Location(location.latitude, location.longitude, 0);
+    }
 
-        double latDistance = Math.toRadians(loc1.latitude - loc2.latitude);
-        double lonDistance = Math.toRadians(loc1.longitude - loc2.longitude);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(loc1.latitude)) * Math.cos(Math.toRadians(loc2.latitude))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        double distance = R * c; // kms
+    private static double rangeInKm() {
+        return Config.Node_Communication_RANGE / 1000;
+    }
 
+    private static boolean calculateInRange(Location loc1, Location loc2, double fogRangeInKm) {
+        return ResourceIndex.calculateDistance(loc1, loc2) <= fogRangeInKm;
+    }
 
-        distance = Math.pow(distance, 2);
+    /**
+     * Siblings in cells of latitude x longitude at least as wide as the range, so that siblings in range of each
+     * other are in the same or neighbouring cells. Cells are keyed by their row and column.
+     */
+    private static class SiblingGrid {
+        private final double range;
+        private double cellLatitude;
+        /** Cell width in longitude; 0 if the siblings are too spread or too near a pole for columns to help */
+        private double cellLongitude;
+        /** bounds of the locations the cells are sized for */
+        private double maxLatitude = 0;
+        private double minLongitude = Double.POSITIVE_INFINITY;
+        private double maxLongitude = Double.NEGATIVE_INFINITY;
+        private final Map<Long, List<Integer>> cells = new HashMap<>();
+        private final Map<Integer, Location> locations = new HashMap<>();
+        /** position of each sibling in the children of the parent, which orders the cluster members */
+        private final Map<Integer, Integer> order = new HashMap<>();
+        private int nextOrder = 0;
 
-        if (Math.sqrt(distance) <= fogRange / 1000) {
-            return true;
-        } else {
-            return false;
+        SiblingGrid(double range) {
+            this.range = range;
+        }
+
+        /**
+         * Sizes the cells for the given siblings.
+         */
+        void size(Collection<Location> siblings) {
+            double angle = range / EARTH_RADIUS; // radians
+            // 1% wider than the range, against rounding
+            cellLatitude = Math.toDegrees(angle) * 1.01;
+            maxLatitude = 0;
+            minLongitude = Double.POSITIVE_INFINITY;
+            maxLongitude = Double.NEGATIVE_INFINITY;
+            for (Location l : siblings) {
+                maxLatitude = Math.max(maxLatitude, Math.abs(l.latitude));
+                minLongitude = Math.min(minLongitude, l.longitude);
+                maxLongitude = Math.max(maxLongitude, l.longitude);
+            }
+            // a path between two siblings in range stays within the range of their latitudes
+            double cos = Math.cos(Math.min(Math.PI / 2, Math.toRadians(maxLatitude) + angle));
+            if (cellLatitude == 0 || cos < 1e-6 || maxLongitude - minLongitude > 180)
+                cellLongitude = 0;
+            else
+                cellLongitude = Math.toDegrees(angle / cos) * 1.01;
+        }
+
+        boolean contains(int id) {
+            return locations.containsKey(id);
+        }
+
+        /**
+         * Adds a sibling; the cells are sized again and rebuilt if it lies outside the locations they were sized for.
+         */
+        void add(int id, Location location) {
+            locations.put(id, location);
+            order.put(id, nextOrder++);
+            if (Math.abs(location.latitude) > maxLatitude || location.longitude < minLongitude || location.longitude > maxLongitude) {
+                size(locations.values());
+                cells.clear();
+                for (Map.Entry<Integer, Location> e : locations.entrySet())
+                    cell(row(e.getValue()), column(e.getValue()), true).add(e.getKey());
+            } else {
+                cell(row(location), column(location), true).add(id);
+            }
         }
 
+        void remove(int id) {
+            Location location = locations.remove(id);
+            order.remove(id);
+            List<Integer> cell = cell(row(location), column(location), false);
+            cell.remove(Integer.valueOf(id));
+        }
+
+        /**
+         * Siblings in range of a sibling, in the order of the children of the parent.
+         */
+        List<Integer> membersInRange(int id) {
+            Location location = locations.get(id);
+            long row = row(location);
+            long column = column(location);
+            List<Integer> members = new ArrayList<>();
+            for (long r = row - 1; r <= row + 1; r++) {
+                for (long c = column - 1; c <= column + 1; c++) {
+                    List<Integer> cell = cell(r, c, false);
+                    if (cell == null)
+                        continue;
+                    for (int other : cell) {
+                        if (other != id && calculateInRange(location, locations.get(other), range))
+                            members.add(other);
+                    }
+                }
+            }
+            members.sort((a, b) -> Integer.compare(order.get(a), order.get(b)));
+            return members;
+        }
+
+        private long row(Location location) {
+            return cellLatitude == 0 ? 0 : (long) Math.floor(location.latitude / cellLatitude);
+        }
+
+        private long column(Location location) {
+            return cellLongitude == 0 ? 0 : (long) Math.floor(location.longitude / cellLongitude);
+        }
+
+        private List<Integer> cell(long row, long column, boolean create) {
+            Long key = (row << 32) ^ (column & 0xFFFFFFFFL);
+            List<Integer> cell = cells.get(key);
+            if (cell == null && create) {
+                cell = new ArrayList<>();
+                cells.put(key, cell);
+            }
+            return cell;
+        }
     }
 }
@@ -17,7 +17,7 @@ public class DataParser {
     public Map<String, Integer> levelID = new HashMap<String, Integer>();
     public Map<Integer, ArrayList<String>> levelwiseResources = new HashMap<Integer, ArrayList<String>>();
     public Map<String, Integer> resourceAndUserToLevel = new HashMap<String, Integer>();
-    public Map<String, Map<Double, Location>> usersLocation = new HashMap<String, Map<Double, Location>>();
+    public Map<String, MobilityTrace> usersLocation = new HashMap<String, MobilityTrace>();
 
 
     public DataParser() {
@@ -63,21 +63,22 @@ public class DataParser {
 
         for (int userID : userMobilityPattern.keySet()) {
 
-            Map<Double, Location> tempUserLocationInfo = new HashMap<Double, Location>();
+            MobilityTrace trace = new MobilityTrace();
             BufferedReader csvReader = new BufferedReader(new FileReader(datasetReference + userID + ".csv"));
             System.out.println("The Mobility dataset used in this simulation for user: " + userID + " is: " + datasetReference + userID + ".csv");
             String row;
             double eventTime = References.INIT_TIME;
+            boolean first = true;
             while ((row = csvReader.readLine()) != null) {
                 String[] data = row.split(",");
                 try {
-                    Location rl = new Location(Double.parseDouble(data[0]), Double.parseDouble(data[1]), References.NOT_SET);
-                    if (!tempUserLocationInfo.containsKey(eventTime))
-                        tempUserLocationInfo.put(eventTime, rl);
-                    else {
+                    double latitude = Double.parseDouble(data[0]);
+                    double longitude = Double.parseDouble(data[1]);
+                    // the first position is at INIT_TIME, each next one at the next mobilisation event
+                    if (!first)
                         eventTime = nextMobilisationEvent(eventTime, userMobilityPattern.get(userID));
-                        tempUserLocationInfo.put(eventTime, rl);
-                    }
+                    trace.add(eventTime, latitude, longitude);
+                    first = false;
 
                 } catch (NumberFormatException ex) {
                     //System.out.println("Given String is not parsable to double");
@@ -85,7 +86,7 @@ public class DataParser {
             }
 
             csvReader.close();
-            usersLocation.put("usr_" + userID, tempUserLocationInfo);
+            usersLocation.put("usr_" + userID, trace);
             resourceAndUserToLevel.put("usr_" + userID, levelID.get("User"));
 
         }
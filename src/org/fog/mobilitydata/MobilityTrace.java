@@ -0,0 +1,137 @@
+package org.fog.mobilitydata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Positions of a mobile user over time, sorted by time, in primitive arrays.
+ * <p>
+ * A trace is built by adding positions in any order; a position added at the time of an earlier one replaces it.
+ * Mobility controllers read it through a {@link Cursor}, one handover at a time.
+ */
+public class MobilityTrace {
+
+    private double[] times;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int size;
+    private boolean sorted = true;
+
+    public MobilityTrace() {
+        this(16);
+    }
+
+    public MobilityTrace(int expectedSize) {
+        times = new double[Math.max(1, expectedSize)];
+        latitudes = new double[times.length];
+        longitudes = new double[times.length];
+    }
+
+    public void add(double time, double latitude, double longitude) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            latitudes = Arrays.copyOf(latitudes, size * 2);
+            longitudes = Arrays.copyOf(longitudes, size * 2);
+        }
+        if (size > 0 && time <= times[size - 1])
+            sorted = false;
+        times[size] = time;
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        size++;
+    }
+
+    public int size() {
+        sort();
+        return size;
+    }
+
+    public double getTime(int index) {
+        sort();
+        return times[index];
+    }
+
+    public Location getLocation(int index) {
+        sort();
+        return new Location(latitudes[index], longitudes[index], References.NOT_SET);
+    }
+
+    /**
+     * @return the position at exactly that time, or null if the trace has none
+     */
+    public Location getLocationAt(double time) {
+        sort();
+        int index = Arrays.binarySearch(times, 0, size, time);
+        return index < 0 ? null : getLocation(index);
+    }
+
+    public List<Double> getTimes() {
+        sort();
+        List<Double> list = new ArrayList<Double>(size);
+        for (int i = 0; i < size; i++)
+            list.add(times[i]);
+        return list;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Sorts the positions by time, the last added winning among equal times, and trims the arrays.
+     */
+    private void sort() {
+        if (sorted)
+            return;
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        // stable, so positions of equal times keep the order they were added in
+        Arrays.sort(order, (a, b) -> Double.compare(times[a], times[b]));
+        double[] sortedTimes = new double[size];
+        double[] sortedLatitudes = new double[size];
+        double[] sortedLongitudes = new double[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            if (count > 0 && sortedTimes[count - 1] == times[from])
+                count--;
+            sortedTimes[count] = times[from];
+            sortedLatitudes[count] = latitudes[from];
+            sortedLongitudes[count] = longitudes[from];
+            count++;
+        }
+        times = Arrays.copyOf(sortedTimes, count);
+        latitudes = Arrays.copyOf(sortedLatitudes, count);
+        longitudes = Arrays.copyOf(sortedLongitudes, count);
+        size = count;
+        sorted = true;
+    }
+
+    /**
+     * Position of a reader in the trace, from the first position to the last.
+     */
+    public class Cursor {
+        private int index = 0;
+
+        public boolean isDone() {
+            return index >= size();
+        }
+
+        /**
+         * Time of the current position
+         */
+        public double time() {
+            return getTime(index);
+        }
+
+        public Location location() {
+            return getLocation(index);
+        }
+
+        public void advance() {
+            index++;
+        }
+    }
+}
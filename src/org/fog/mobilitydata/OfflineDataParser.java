@@ -4,7 +4,6 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
 
 
@@ -34,12 +33,10 @@ public class OfflineDataParser extends DataParser {
         while ((row = csvReader.readLine()) != null) {
             String[] data = row.split(",");
             //System.out.println(row);
-            Location rl = new Location(Double.parseDouble(data[0]), Double.parseDouble(data[1]), References.NOT_SET);
-
             resourcesOnLevel2.add("usr_" + i);
-            Map<Double, Location> singleLocationMap = new HashMap<>();
-            singleLocationMap.put(References.INIT_TIME, rl);
-            usersLocation.put("usr_" + i, singleLocationMap);
+            MobilityTrace singleLocation = new MobilityTrace(1);
+            singleLocation.add(References.INIT_TIME, Double.parseDouble(data[0]), Double.parseDouble(data[1]));
+            usersLocation.put("usr_" + i, singleLocation);
             resourceAndUserToLevel.put("usr_" + i, levelID.get("User"));
             i++;
         }
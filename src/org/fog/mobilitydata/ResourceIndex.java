@@ -0,0 +1,203 @@
+package org.fog.mobilitydata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index of the resources of one level, to find the parent of a device.
+ * <p>
+ * Resources are points on the unit sphere in a 3-d k-d tree: the straight-line (chord) distance between two points
+ * grows with their great-circle distance, so the nearest resource by chord is the nearest on the earth. The few
+ * resources at the nearest chord distance, give or take rounding, are then compared with
+ * {@link #calculateDistance(Location, Location)}, the first in level order winning ties, exactly as a scan of the
+ * level would.
+ */
+public class ResourceIndex {
+
+    private static final int EARTH_RADIUS = 6371; // Kilometers
+
+    /** Relative slack on the nearest chord distance within which resources are compared by great-circle distance */
+    private static final double TIE_SLACK = 1e-9;
+
+    private final List<String> level;
+    private final List<String> dataIds;
+    private final Location[] locations;
+    /** unit sphere coordinates, by level position */
+    private final double[][] points;
+    /** level positions, arranged as an implicit k-d tree: the median of a range splits it on axis depth % 3 */
+    private final int[] tree;
+    /** block -> level positions of its resources, in level order */
+    private final Map<Integer, int[]> blocks = new HashMap<Integer, int[]>();
+
+    /**
+     * @param dataIds the resources of the level, in level order
+     * @param resourceLocations locations of the resources by data id
+     */
+    public ResourceIndex(List<String> dataIds, Map<String, Location> resourceLocations) {
+        this.level = dataIds;
+        this.dataIds = new ArrayList<String>(dataIds);
+        int size = dataIds.size();
+        locations = new Location[size];
+        points = new double[size][];
+        Map<Integer, List<Integer>> byBlock = new HashMap<Integer, List<Integer>>();
+        int located = 0;
+        for (int i = 0; i < size; i++) {
+            locations[i] = resourceLocations.get(dataIds.get(i));
+            if (locations[i] == null)
+                continue; // not a resource, e.g. a user
+            located++;
+            points[i] = toPoint(locations[i]);
+            List<Integer> inBlock = byBlock.get(locations[i].block);
+            if (inBlock == null) {
+                inBlock = new ArrayList<Integer>();
+                byBlock.put(locations[i].block, inBlock);
+            }
+            inBlock.add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : byBlock.entrySet()) {
+            int[] positions = new int[entry.getValue().size()];
+            for (int k = 0; k < positions.length; k++)
+                positions[k] = entry.getValue().get(k);
+            blocks.put(entry.getKey(), positions);
+        }
+        tree = new int[located];
+        for (int i = 0, k = 0; i < size; i++) {
+            if (locations[i] != null)
+                tree[k++] = i;
+        }
+        build(0, located, 0);
+    }
+
+    public static double calculateDistance(Location loc1, Location loc2) {
+        double latDistance = Math.toRadians(loc1.latitude - loc2.latitude);
+        double lonDistance = Math.toRadians(loc1.longitude - loc2.longitude);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(loc1.latitude)) * Math.cos(Math.toRadians(loc2.latitude))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS * c; // kms
+    }
+
+    public int size() {
+        return dataIds.size();
+    }
+
+    public String getDataId(int position) {
+        return dataIds.get(position);
+    }
+
+    /**
+     * Whether the index was built from the given list of resources, and the list has not grown or shrunk since
+     */
+    public boolean isIndexOf(List<String> levelDataIds) {
+        return level == levelDataIds && dataIds.size() == levelDataIds.size();
+    }
+
+    /**
+     * Nearest resource of the level, the first in level order among equally near ones.
+     *
+     * @param maxDistance only resources nearer than this count, in km
+     * @return the level position of the resource, or -1 if none is near enough
+     */
+    public int nearest(Location location, double maxDistance) {
+        if (tree.length == 0)
+            return -1;
+        double[] point = toPoint(location);
+        double[] best = {Double.POSITIVE_INFINITY};
+        nearestChord(point, 0, tree.length, 0, best);
+
+        double radius = Math.sqrt(best[0]) * (1 + TIE_SLACK) + TIE_SLACK;
+        List<Integer> candidates = new ArrayList<Integer>();
+        within(point, radius * radius, 0, tree.length, 0, candidates);
+
+        int nearest = -1;
+        double minimumDistance = maxDistance;
+        int[] sorted = new int[candidates.size()];
+        for (int k = 0; k < sorted.length; k++)
+            sorted[k] = candidates.get(k);
+        Arrays.sort(sorted);
+        for (int position : sorted) {
+            double distance = calculateDistance(location, locations[position]);
+            if (distance < minimumDistance) {
+                nearest = position;
+                minimumDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Level positions of the resources in a block, in level order.
+     */
+    public int[] inBlock(int block) {
+        int[] positions = blocks.get(block);
+        return positions == null ? new int[0] : positions;
+    }
+
+    private static double[] toPoint(Location location) {
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        return new double[]{Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+    }
+
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1)
+            return;
+        final int axis = depth % 3;
+        Integer[] range = new Integer[to - from];
+        for (int i = from; i < to; i++)
+            range[i - from] = tree[i];
+        Arrays.sort(range, (a, b) -> Double.compare(points[a][axis], points[b][axis]));
+        for (int i = from; i < to; i++)
+            tree[i] = range[i - from];
+        int mid = (from + to) >>> 1;
+        build(from, mid, depth + 1);
+        build(mid + 1, to, depth + 1);
+    }
+
+    private void nearestChord(double[] point, int from, int to, int depth, double[] best) {
+        if (from >= to)
+            return;
+        int mid = (from + to) >>> 1;
+        int position = tree[mid];
+        double d = squaredDistance(point, points[position]);
+        if (d < best[0])
+            best[0] = d;
+        int axis = depth % 3;
+        double diff = point[axis] - points[position][axis];
+        if (diff < 0) {
+            nearestChord(point, from, mid, depth + 1, best);
+            if (diff * diff <= best[0])
+                nearestChord(point, mid + 1, to, depth + 1, best);
+        } else {
+            nearestChord(point, mid + 1, to, depth + 1, best);
+            if (diff * diff <= best[0])
+                nearestChord(point, from, mid, depth + 1, best);
+        }
+    }
+
+    private void within(double[] point, double squaredRadius, int from, int to, int depth, List<Integer> found) {
+        if (from >= to)
+            return;
+        int mid = (from + to) >>> 1;
+        int position = tree[mid];
+        if (squaredDistance(point, points[position]) <= squaredRadius)
+            found.add(position);
+        int axis = depth % 3;
+        double diff = point[axis] - points[position][axis];
+        if (diff <= 0 || diff * diff <= squaredRadius)
+            within(point, squaredRadius, from, mid, depth + 1, found);
+        if (diff >= 0 || diff * diff <= squaredRadius)
+            within(point, squaredRadius, mid + 1, to, depth + 1, found);
+    }
+
+    private static double squaredDistance(double[] a, double[] b) {
+        double dx = a[0] - b[0];
+        double dy = a[1] - b[1];
+        double dz = a[2] - b[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
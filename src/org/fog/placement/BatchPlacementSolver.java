@@ -0,0 +1,484 @@
+package org.fog.placement;
+
+import java.util.*;
+
+/**
+ * Assignment of the modules of a batch of placement requests to devices, minimising a sum of costs under CPU and RAM
+ * capacities.
+ * <p>
+ * Each module to place is an <i>item</i> with a domain of candidate devices. The cost of a solution is a constant,
+ * plus a cost per item and position in its domain (unary terms), plus a cost per pair of items and positions (binary
+ * terms). Two modes:
+ * <ul>
+ * <li>{@link #solveExact(long)}: depth-first branch and bound, exact unless the node limit is hit;</li>
+ * <li>{@link #solveSearch(long, int, long, long)}: edgeward first fit, improved by moving single items and then by
+ * large neighbourhood search, which frees the items of a few random groups (requests) and re-places them with the
+ * branch and bound, until a time or iteration budget runs out.</li>
+ * </ul>
+ * If no solution fits the capacities, items that do not fit are put on the last device of their domain.
+ */
+class BatchPlacementSolver {
+
+    private static final double EPSILON = 1e-9;
+
+    private final double[] cpuCapacity;
+    private final double[] ramCapacity;
+    /** load of the modules placed outside the solver */
+    private final double[] fixedCpu;
+    private final double[] fixedRam;
+    /** fixed load plus that of the items at their current positions */
+    private final double[] cpuLoad;
+    private final double[] ramLoad;
+
+    private double constant = 0;
+
+    private final List<double[]> mips = new ArrayList<>();
+    private final List<int[]> domains = new ArrayList<>();
+    private final List<Integer> groups = new ArrayList<>();
+    private final List<double[]> unaryCosts = new ArrayList<>();
+    private final List<BinaryTerm> binaryTerms = new ArrayList<>();
+
+    // built by prepare()
+    private int itemCount;
+    private double[] itemMips;
+    private double[] itemRam;
+    private int[][] domain;
+    private double[][] unary;
+    private double[] minUnary;
+    private int[][] termsOf;
+    private int[] position;
+
+    // branch and bound
+    private double bestCost;
+    private int[] bestPosition;
+    private long nodes;
+    private long nodeLimit;
+    private boolean aborted;
+
+    /**
+     * @param cpuCapacity CPU of each device
+     * @param ramCapacity RAM of each device, infinite if not limited
+     */
+    BatchPlacementSolver(double[] cpuCapacity, double[] ramCapacity) {
+        this.cpuCapacity = cpuCapacity;
+        this.ramCapacity = ramCapacity;
+        fixedCpu = new double[cpuCapacity.length];
+        fixedRam = new double[cpuCapacity.length];
+        cpuLoad = new double[cpuCapacity.length];
+        ramLoad = new double[cpuCapacity.length];
+    }
+
+    boolean fits(int device, double cpu, double ram) {
+        return cpu + cpuLoad[device] <= cpuCapacity[device] && ram + ramLoad[device] <= ramCapacity[device];
+    }
+
+    /**
+     * Adds the load of a module placed outside the solver.
+     */
+    void addLoad(int device, double cpu, double ram) {
+        fixedCpu[device] = cpu + fixedCpu[device];
+        fixedRam[device] = ram + fixedRam[device];
+        load(device, cpu, ram);
+    }
+
+    /**
+     * @param domain candidate devices, the edgeward first fit trying them in this order
+     * @param group items of a group are freed together by the neighbourhood search
+     * @return the item
+     */
+    int addItem(double cpu, double ram, int[] domain, int group) {
+        if (domain.length == 0)
+            throw new IllegalArgumentException("No candidate device for item " + mips.size());
+        mips.add(new double[]{cpu, ram});
+        domains.add(domain);
+        groups.add(group);
+        unaryCosts.add(new double[domain.length]);
+        return mips.size() - 1;
+    }
+
+    int getItemCount() {
+        return mips.size();
+    }
+
+    void addConstant(double cost) {
+        constant += cost;
+    }
+
+    /**
+     * @param cost cost of each position of the domain of the item
+     */
+    void addUnary(int item, double[] cost) {
+        double[] costs = unaryCosts.get(item);
+        for (int p = 0; p < costs.length; p++)
+            costs[p] += cost[p];
+    }
+
+    /**
+     * @param cost cost of each pair of positions of the domains of the items
+     */
+    void addBinary(int a, int b, double[][] cost) {
+        if (a == b)
+            throw new IllegalArgumentException("Binary term on a single item: " + a);
+        binaryTerms.add(new BinaryTerm(a, b, cost));
+    }
+
+    /**
+     * Branch and bound over all the items.
+     *
+     * @param nodeLimit positions tried before giving up proving optimality
+     */
+    Result solveExact(long nodeLimit) {
+        prepare();
+        Result start = firstFit();
+        if (itemCount == 0)
+            return start.proved(true);
+        int[] all = new int[itemCount];
+        for (int i = 0; i < itemCount; i++)
+            all[i] = i;
+        boolean improved = search(all, start.feasible ? start.cost : Double.POSITIVE_INFINITY, nodeLimit);
+        if (!improved)
+            return new Result(start.position, start.cost, start.feasible, !aborted && start.feasible, nodes, 0);
+        return new Result(bestPosition, bestCost, true, !aborted, nodes, 0);
+    }
+
+    /**
+     * Edgeward first fit improved by moves of single items and large neighbourhood search.
+     *
+     * @param timeBudget nanoseconds
+     * @param maxIterations neighbourhoods tried at most
+     * @param repairNodeLimit positions tried at most to re-place a neighbourhood
+     */
+    Result solveSearch(long timeBudget, int maxIterations, long repairNodeLimit, long seed) {
+        long deadline = System.nanoTime() + timeBudget;
+        prepare();
+        Result start = firstFit();
+        if (itemCount == 0)
+            return start;
+        double cost = start.cost;
+        if (!start.feasible) {
+            // first fit failed, which does not mean nothing fits
+            int[] all = new int[itemCount];
+            for (int i = 0; i < itemCount; i++)
+                all[i] = i;
+            if (!search(all, Double.POSITIVE_INFINITY, repairNodeLimit)) {
+                position = start.position.clone();
+                reloadItems();
+                return start;
+            }
+            position = bestPosition.clone();
+            cost = bestCost;
+            reloadItems();
+        }
+        cost += relocate(deadline);
+
+        List<Integer> groupIds = new ArrayList<>(new TreeSet<>(groups));
+        Map<Integer, List<Integer>> itemsOf = new HashMap<>();
+        for (int i = 0; i < itemCount; i++) {
+            List<Integer> items = itemsOf.get(groups.get(i));
+            if (items == null) {
+                items = new ArrayList<>();
+                itemsOf.put(groups.get(i), items);
+            }
+            items.add(i);
+        }
+        Random random = new Random(seed);
+        long totalNodes = 0;
+        int iterations = 0;
+        while (iterations < maxIterations && System.nanoTime() < deadline) {
+            iterations++;
+            // free the items of a few requests
+            int size = 1 + random.nextInt(Math.min(3, groupIds.size()));
+            Set<Integer> chosen = new TreeSet<>();
+            while (chosen.size() < size)
+                chosen.add(groupIds.get(random.nextInt(groupIds.size())));
+            List<Integer> freed = new ArrayList<>();
+            for (int g : chosen)
+                freed.addAll(itemsOf.get(g));
+            int[] free = new int[freed.size()];
+            for (int k = 0; k < free.length; k++)
+                free[k] = freed.get(k);
+
+            int[] previous = position.clone();
+            boolean improved = search(free, cost, repairNodeLimit);
+            totalNodes += nodes;
+            if (improved) {
+                position = bestPosition.clone();
+                cost = bestCost;
+            } else {
+                position = previous;
+            }
+            reloadItems();
+        }
+        return new Result(position.clone(), cost, true, false, totalNodes, iterations);
+    }
+
+    private void prepare() {
+        itemCount = mips.size();
+        itemMips = new double[itemCount];
+        itemRam = new double[itemCount];
+        domain = domains.toArray(new int[itemCount][]);
+        unary = unaryCosts.toArray(new double[itemCount][]);
+        minUnary = new double[itemCount];
+        List<List<Integer>> terms = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            itemMips[i] = mips.get(i)[0];
+            itemRam[i] = mips.get(i)[1];
+            minUnary[i] = min(unary[i]);
+            terms.add(new ArrayList<Integer>());
+        }
+        for (int t = 0; t < binaryTerms.size(); t++) {
+            terms.get(binaryTerms.get(t).a).add(t);
+            terms.get(binaryTerms.get(t).b).add(t);
+        }
+        termsOf = new int[itemCount][];
+        for (int i = 0; i < itemCount; i++) {
+            termsOf[i] = new int[terms.get(i).size()];
+            for (int k = 0; k < termsOf[i].length; k++)
+                termsOf[i][k] = terms.get(i).get(k);
+        }
+        position = new int[itemCount];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Lower bound of the cost of any solution: each term at its cheapest, capacities ignored.
+     */
+    double getLowerBound() {
+        double bound = constant;
+        for (double[] costs : unaryCosts)
+            bound += min(costs);
+        for (BinaryTerm term : binaryTerms)
+            bound += term.min;
+        return bound;
+    }
+
+    private Result firstFit() {
+        int[] start = new int[itemCount];
+        boolean feasible = true;
+        for (int i = 0; i < itemCount; i++) {
+            int p = 0;
+            while (p < domain[i].length && !fits(domain[i][p], itemMips[i], itemRam[i]))
+                p++;
+            if (p == domain[i].length) {
+                feasible = false;
+                p = domain[i].length - 1;
+            }
+            start[i] = p;
+            position[i] = p;
+            load(domain[i][p], itemMips[i], itemRam[i]);
+        }
+        double cost = cost();
+        return new Result(start, cost, feasible, false, 0, 0);
+    }
+
+    /**
+     * Moves single items to cheaper positions that fit, until none is left or the deadline passes.
+     *
+     * @return the change of cost
+     */
+    private double relocate(long deadline) {
+        double change = 0;
+        boolean moved = true;
+        while (moved && System.nanoTime() < deadline) {
+            moved = false;
+            for (int i = 0; i < itemCount; i++) {
+                int from = position[i];
+                double current = itemCost(i, from);
+                int best = from;
+                double bestDelta = -EPSILON;
+                removeLoad(domain[i][from], itemMips[i], itemRam[i]);
+                for (int p = 0; p < domain[i].length; p++) {
+                    if (p == from || !fits(domain[i][p], itemMips[i], itemRam[i]))
+                        continue;
+                    double delta = itemCost(i, p) - current;
+                    if (delta < bestDelta) {
+                        bestDelta = delta;
+                        best = p;
+                    }
+                }
+                position[i] = best;
+                load(domain[i][best], itemMips[i], itemRam[i]);
+                if (best != from) {
+                    change += bestDelta;
+                    moved = true;
+                }
+            }
+        }
+        return change;
+    }
+
+    /**
+     * Cost of the terms of an item at a position, the other items staying where they are.
+     */
+    private double itemCost(int i, int p) {
+        double cost = unary[i][p];
+        for (int t : termsOf[i]) {
+            BinaryTerm term = binaryTerms.get(t);
+            cost += term.a == i ? term.cost[p][position[term.b]] : term.cost[position[term.a]][p];
+        }
+        return cost;
+    }
+
+    private double cost() {
+        double cost = constant;
+        for (int i = 0; i < itemCount; i++)
+            cost += unary[i][position[i]];
+        for (BinaryTerm term : binaryTerms)
+            cost += term.cost[position[term.a]][position[term.b]];
+        return cost;
+    }
+
+    /**
+     * Branch and bound over the free items, the others staying where they are.
+     *
+     * @param incumbent cost to beat
+     * @return whether a solution cheaper than the incumbent was found, in bestPosition and bestCost
+     */
+    private boolean search(int[] free, double incumbent, long limit) {
+        for (int i : free) {
+            removeLoad(domain[i][position[i]], itemMips[i], itemRam[i]);
+            position[i] = -1;
+        }
+        double partial = constant;
+        double remaining = 0;
+        for (int i = 0; i < itemCount; i++) {
+            if (position[i] >= 0)
+                partial += unary[i][position[i]];
+            else
+                remaining += minUnary[i];
+        }
+        for (BinaryTerm term : binaryTerms) {
+            if (position[term.a] >= 0 && position[term.b] >= 0)
+                partial += term.cost[position[term.a]][position[term.b]];
+            else
+                remaining += term.min;
+        }
+        bestCost = incumbent;
+        bestPosition = null;
+        nodes = 0;
+        nodeLimit = limit;
+        aborted = false;
+        branch(free, 0, partial + remaining);
+        return bestPosition != null;
+    }
+
+    private void branch(int[] free, int depth, double bound) {
+        if (depth == free.length) {
+            if (bound < bestCost - EPSILON) {
+                bestCost = bound;
+                bestPosition = position.clone();
+            }
+            return;
+        }
+        int i = free[depth];
+        int n = domain[i].length;
+        int[] order = new int[n];
+        double[] delta = new double[n];
+        int count = 0;
+        for (int p = 0; p < n; p++) {
+            if (!fits(domain[i][p], itemMips[i], itemRam[i]))
+                continue;
+            double d = unary[i][p] - minUnary[i];
+            for (int t : termsOf[i]) {
+                BinaryTerm term = binaryTerms.get(t);
+                int other = term.a == i ? term.b : term.a;
+                if (position[other] >= 0)
+                    d += (term.a == i ? term.cost[p][position[other]] : term.cost[position[other]][p]) - term.min;
+            }
+            // insertion sort, cheapest first
+            int k = count++;
+            while (k > 0 && delta[k - 1] > d) {
+                delta[k] = delta[k - 1];
+                order[k] = order[k - 1];
+                k--;
+            }
+            delta[k] = d;
+            order[k] = p;
+        }
+        for (int k = 0; k < count; k++) {
+            if (bound + delta[k] >= bestCost - EPSILON)
+                break;
+            if (++nodes > nodeLimit) {
+                aborted = true;
+                return;
+            }
+            int p = order[k];
+            position[i] = p;
+            load(domain[i][p], itemMips[i], itemRam[i]);
+            branch(free, depth + 1, bound + delta[k]);
+            removeLoad(domain[i][p], itemMips[i], itemRam[i]);
+            position[i] = -1;
+            if (aborted)
+                return;
+        }
+    }
+
+    /**
+     * Sets the loads back to those of the current positions, after a search left some items free.
+     */
+    private void reloadItems() {
+        System.arraycopy(fixedCpu, 0, cpuLoad, 0, cpuLoad.length);
+        System.arraycopy(fixedRam, 0, ramLoad, 0, ramLoad.length);
+        for (int i = 0; i < itemCount; i++)
+            load(domain[i][position[i]], itemMips[i], itemRam[i]);
+    }
+
+    private void load(int device, double cpu, double ram) {
+        cpuLoad[device] = cpu + cpuLoad[device];
+        ramLoad[device] = ram + ramLoad[device];
+    }
+
+    private void removeLoad(int device, double cpu, double ram) {
+        cpuLoad[device] -= cpu;
+        ramLoad[device] -= ram;
+    }
+
+    private static double min(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        for (double v : values)
+            min = Math.min(min, v);
+        return values.length == 0 ? 0 : min;
+    }
+
+    private static class BinaryTerm {
+        final int a;
+        final int b;
+        final double[][] cost;
+        final double min;
+
+        BinaryTerm(int a, int b, double[][] cost) {
+            this.a = a;
+            this.b = b;
+            this.cost = cost;
+            double m = Double.POSITIVE_INFINITY;
+            for (double[] row : cost)
+                m = Math.min(m, min(row));
+            this.min = m;
+        }
+    }
+
+    static class Result {
+        /** position in its domain of each item */
+        final int[] position;
+        final double cost;
+        /** whether the capacities hold */
+        final boolean feasible;
+        /** whether the solution is proved optimal */
+        final boolean optimal;
+        final long nodes;
+        final int iterations;
+
+        Result(int[] position, double cost, boolean feasible, boolean optimal, long nodes, int iterations) {
+            this.position = position;
+            this.cost = cost;
+            this.feasible = feasible;
+            this.optimal = optimal;
+            this.nodes = nodes;
+            this.iterations = iterations;
+        }
+
+        Result proved(boolean optimal) {
+            return new Result(position, cost, feasible, optimal, nodes, iterations);
+        }
+    }
+}
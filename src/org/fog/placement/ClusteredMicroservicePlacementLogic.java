@@ -11,6 +11,8 @@ import org.fog.entities.MicroserviceFogDevice;
 import org.fog.entities.PlacementRequest;
 import org.fog.utils.Logger;
 import org.fog.utils.ModuleLaunchConfig;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 
 import java.util.*;
 
@@ -18,10 +20,15 @@ import java.util.*;
  * Created by Samodha Pallewatta on 5/27/2021.
  */
 public class ClusteredMicroservicePlacementLogic implements MicroservicePlacementLogic {
+
+    private static final DiagnosticChannel PLACEMENT = Diagnostics.channel("placement");
+
     /**
      * Fog network related details
      */
     List<FogDevice> fogDevices; //fog devices considered by FON for placements of requests
+    Map<Integer, FogDevice> deviceById = new HashMap<>();
+    Map<String, FogDevice> deviceByName = new HashMap<>();
     List<PlacementRequest> placementRequests; // requests to be processed
     protected Map<Integer, Map<String, Double>> resourceAvailability;
     private Map<String, Application> applicationInfo = new HashMap<>();
@@ -52,6 +59,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
     @Override
     public PlacementLogicOutput run(List<FogDevice> fogDevices, Map<String, Application> applicationInfo, Map<Integer, Map<String, Double>> resourceAvailability, List<PlacementRequest> pr) {
         this.fogDevices = fogDevices;
+        indexDevices();
         this.placementRequests = pr;
         this.resourceAvailability = resourceAvailability;
         this.applicationInfo = applicationInfo;
@@ -225,9 +233,9 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                     int deviceId = device.getId();
 
                     if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                        Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, device.getName());
                         getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                        PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, device.getName());
 
                         moduleToApp.put(microservice, app.getAppId());
 
@@ -286,9 +294,9 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                         for (String microservice : toPlace.get(placementRequest)) {
                             // try to place
                             if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                                Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                                Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, device.getName());
                                 getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                                System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                                PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, device.getName());
 
                                 moduleToApp.put(microservice, app.getAppId());
 
@@ -386,9 +394,9 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                                 // try to place
                                 if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id) <= resourceAvailability.get(id).get(ControllerComponent.CPU)) {
                                     FogDevice placedDevice = getDevice(id);
-                                    Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
+                                    Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, placedDevice.getName());
                                     getCurrentCpuLoad().put(id, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id));
-                                    System.out.println("Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
+                                    PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, placedDevice.getName());
 
                                     if (!currentModuleMap.get(id).contains(microservice))
                                         currentModuleMap.get(id).add(microservice);
@@ -432,12 +440,19 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
 
     }
 
-    private FogDevice getDeviceByName(String deviceName) {
+    private void indexDevices() {
+        deviceById.clear();
+        deviceByName.clear();
         for (FogDevice f : fogDevices) {
-            if (f.getName().equals(deviceName))
-                return f;
+            if (!deviceById.containsKey(f.getId()))
+                deviceById.put(f.getId(), f);
+            if (!deviceByName.containsKey(f.getName()))
+                deviceByName.put(f.getName(), f);
         }
-        return null;
+    }
+
+    private FogDevice getDeviceByName(String deviceName) {
+        return deviceByName.get(deviceName);
     }
 
     public Map<Integer, Double> getCurrentCpuLoad() {
@@ -445,19 +460,11 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
     }
 
     private AppModule getModule(String moduleName, Application app) {
-        for (AppModule appModule : app.getModules()) {
-            if (appModule.getName().equals(moduleName))
-                return appModule;
-        }
-        return null;
+        return app.getModuleByName(moduleName);
     }
 
     private FogDevice getDevice(int deviceId) {
-        for (FogDevice fogDevice : fogDevices) {
-            if (fogDevice.getId() == deviceId)
-                return fogDevice;
-        }
-        return null;
+        return deviceById.get(deviceId);
     }
 
     private List<String> getModulesToPlace(Set<String> placedModules, Application app) {
@@ -9,6 +9,7 @@ import org.fog.application.Application;
 import org.fog.entities.Actuator;
 import org.fog.entities.FogDevice;
 import org.fog.entities.Sensor;
+import org.fog.mobilitydata.Clustering;
 import org.fog.mobilitydata.References;
 import org.fog.utils.*;
 import org.json.simple.JSONObject;
@@ -33,6 +34,7 @@ public class ClusteringController extends SimEntity {
 
     private Map<String, Integer> appLaunchDelays;
     private List<Integer> clustering_levels;
+    private Clustering clustering;
 
 
     private Map<String, ModulePlacement> appModulePlacementPolicy;
@@ -170,8 +172,10 @@ public class ClusteringController extends SimEntity {
         }
     }
 
+    @SuppressWarnings("unchecked")
     public void clusteringSubmit(List Levels) {
         System.out.println(CloudSim.clock() + " Start sending Clustering Request to Fog Devices in level: " + Levels);
+        clustering = new Clustering(getLocator());
         for (int i = 0; i < Levels.size(); i++) {
             int clusterLevel = (int) Levels.get(i);
             for (FogDevice fogDevice : fogDevices) {
@@ -179,6 +183,7 @@ public class ClusteringController extends SimEntity {
                 if ((int) fogDevice.getLevel() == clusterLevel) {
                     JSONObject jsonMessage = new JSONObject();
                     jsonMessage.put("locationsInfo", getLocator());
+                    jsonMessage.put("clustering", clustering);
                     sendNow(fogDevice.getId(), FogEvents.START_DYNAMIC_CLUSTERING, jsonMessage);
                 }
             }
@@ -224,6 +229,8 @@ public class ClusteringController extends SimEntity {
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
             prevParent.removeChild(fogDevice.getId());
+            if (clustering != null && fogDevice.getIsInCluster())
+                clustering.moveNode(fogDevice.getId(), prevParent.getId(), newParent.getId());
             for (String applicationName : fogDevice.getActiveApplications()) {
                 migratingModules = getAppModulePlacementPolicy().get(applicationName).getModulesOnPath().get(fogDevice.getId()).get(prevParent.getId());
                 getAppModulePlacementPolicy().get(applicationName).getModulesOnPath().get(fogDevice.getId()).remove(prevParent.getId());
@@ -374,11 +381,17 @@ public class ClusteringController extends SimEntity {
         System.out.println("TUPLE CPU EXECUTION DELAY");
         System.out.println("=========================================");
 
-        for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
-            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+        for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getAverageCpuTime(tupleType));
         }
 
         System.out.println("=========================================");
+        System.out.println("TUPLE CPU EXECUTION DELAY PERCENTILES");
+        System.out.println("=========================================");
+        for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleCpuTime(tupleType));
+        }
+        System.out.println("=========================================");
     }
 
     protected void manageResources() {
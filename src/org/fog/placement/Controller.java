@@ -20,6 +20,7 @@ import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
 import org.fog.utils.NetworkUsageMonitor;
 import org.fog.utils.TimeKeeper;
+import org.fog.utils.metrics.LatencyHistogram;
 
 public class Controller extends SimEntity{
 	
@@ -148,7 +149,7 @@ public class Controller extends SimEntity{
 		System.out.println("=========================================");
 		System.out.println("APPLICATION LOOP DELAYS");
 		System.out.println("=========================================");
-		for(Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()){
+		for(Integer loopId : TimeKeeper.getInstance().getLoopIds()){
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
@@ -159,17 +160,31 @@ public class Controller extends SimEntity{
 				count += 1;
 			}
 			System.out.println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
-			System.out.println(getStringForLoopId(loopId) + " ---> "+TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+			System.out.println(getStringForLoopId(loopId) + " ---> "+TimeKeeper.getInstance().getAverageLoopDelay(loopId));
 		}
 		System.out.println("=========================================");
 		System.out.println("TUPLE CPU EXECUTION DELAY");
 		System.out.println("=========================================");
 		
-		for(String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()){
-			System.out.println(tupleType + " ---> "+TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+		for(String tupleType : TimeKeeper.getInstance().getTupleTypes()){
+			System.out.println(tupleType + " ---> "+TimeKeeper.getInstance().getAverageCpuTime(tupleType));
 		}
 		
 		System.out.println("=========================================");
+		System.out.println("APPLICATION LOOP DELAY PERCENTILES");
+		System.out.println("=========================================");
+		for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
+			LatencyHistogram delays = TimeKeeper.getInstance().getLoopDelay(loopId);
+			if (delays.getCount() > 0)
+				System.out.println(getStringForLoopId(loopId) + " ---> " + delays);
+		}
+		System.out.println("=========================================");
+		System.out.println("TUPLE CPU EXECUTION DELAY PERCENTILES");
+		System.out.println("=========================================");
+		for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+			System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleCpuTime(tupleType));
+		}
+		System.out.println("=========================================");
 	}
 
 	protected void manageResources(){
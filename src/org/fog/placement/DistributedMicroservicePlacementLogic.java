@@ -11,6 +11,8 @@ import org.fog.entities.MicroserviceFogDevice;
 import org.fog.entities.PlacementRequest;
 import org.fog.utils.Logger;
 import org.fog.utils.ModuleLaunchConfig;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 
 import java.util.*;
 
@@ -19,6 +21,9 @@ import java.util.*;
  * Per Placement Request Placement
  */
 public class DistributedMicroservicePlacementLogic implements MicroservicePlacementLogic {
+
+    private static final DiagnosticChannel PLACEMENT = Diagnostics.channel("placement");
+
     /**
      * Fog network related details
      */
@@ -154,9 +159,9 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
                             !app.getSpecialPlacementInfo().get(microservice).contains(fogDevice.getName())) {
                         failedMicroservices.add(microservice);
                     } else if (getModule(microservice, app).getMips() + currentCpuLoad <= resourceAvailability.get(fogDevice.getId()).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
+                        Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, fogDevice.getName());
                         currentCpuLoad = getModule(microservice, app).getMips() + currentCpuLoad;
-                        System.out.println("Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
+                        PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, fogDevice.getName());
 
                         moduleToApp.put(microservice, app.getAppId());
 
@@ -288,11 +293,7 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
     }
 
     private AppModule getModule(String moduleName, Application app) {
-        for (AppModule appModule : app.getModules()) {
-            if (appModule.getName().equals(moduleName))
-                return appModule;
-        }
-        return null;
+        return app.getModuleByName(moduleName);
     }
 
     public List<Integer> getClientServiceNodeIds(Application application, String
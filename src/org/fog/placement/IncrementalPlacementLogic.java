@@ -0,0 +1,9 @@
+package org.fog.placement;
+
+/**
+ * A placement logic that keeps its view of the devices between placement rounds, and so has to be told when the
+ * resources of a device change other than through its own {@link #updateResources}.
+ */
+public interface IncrementalPlacementLogic extends MicroservicePlacementLogic {
+    void resourcesUpdated(int deviceId);
+}
@@ -7,14 +7,20 @@ import java.util.Map;
 
 import org.fog.mobilitydata.Location;
 import org.fog.mobilitydata.DataParser;
+import org.fog.mobilitydata.MobilityTrace;
 import org.fog.mobilitydata.OfflineDataParser;
 import org.fog.mobilitydata.References;
+import org.fog.mobilitydata.ResourceIndex;
 import org.fog.utils.Config;
 
 public class LocationHandler {
 	
 	public DataParser dataObject;
 	public Map<Integer, String> instanceToDataId;
+	private Map<String, Integer> dataIdToInstance;
+	private int dataIdToInstanceSize;
+	/** level -> index of its resources */
+	private Map<Integer, ResourceIndex> resourceIndexes = new HashMap<Integer, ResourceIndex>();
 	
 
 	public LocationHandler(DataParser dataObject) {
@@ -34,21 +40,7 @@ public class LocationHandler {
 	}
 	
 	public static double calculateDistance(Location loc1, Location loc2) {
-
-	    final int R = 6371; // Radius of the earth in Kilometers
-
-	    double latDistance = Math.toRadians(loc1.latitude - loc2.latitude);
-	    double lonDistance = Math.toRadians(loc1.longitude - loc2.longitude);
-	    double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-	            + Math.cos(Math.toRadians(loc1.latitude)) * Math.cos(Math.toRadians(loc2.latitude))
-	            * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-	    double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-	    double distance = R * c; // kms
-
-
-	    distance = Math.pow(distance, 2);
-
-	    return Math.sqrt(distance);
+		return ResourceIndex.calculateDistance(loc1, loc2);
 	}
 	
 
@@ -62,54 +54,68 @@ public class LocationHandler {
 		else
 			resourceLoc = getUserLocationInfo(dataId,time);
 		
+		ResourceIndex parents = getResourceIndex(parentLevel);
 		int parentInstanceId = References.NOT_SET;	
-		String parentDataId = "";
-				
 	
 		if(time<References.INIT_TIME){
-			for(int i=0; i<getLevelWiseResources(parentLevel).size();i++){
-				Location potentialParentLoc = getResourceLocationInfo(getLevelWiseResources(parentLevel).get(i));
-				if(potentialParentLoc.block==resourceLoc.block) {
-					parentDataId = getLevelWiseResources(parentLevel).get(i);
-					for(int parentIdIterator: instanceToDataId.keySet())
-					{
-						if(instanceToDataId.get(parentIdIterator).equals(parentDataId))
-						{
-							parentInstanceId = parentIdIterator;
-						}
-					}
-				}	
+			// the last resource of the block that has an instance
+			for(int position : parents.inBlock(resourceLoc.block)){
+				Integer instanceId = getInstanceIdsByDataId().get(parents.getDataId(position));
+				if(instanceId != null)
+					parentInstanceId = instanceId;
 			}
 		}
 		else
 		{
-			double minmumDistance = Config.MAX_VALUE;
-			for(int i=0; i<getLevelWiseResources(parentLevel).size();i++){
-				Location potentialParentLoc = getResourceLocationInfo(getLevelWiseResources(parentLevel).get(i));
-				
-				double distance = calculateDistance(resourceLoc, potentialParentLoc);
-					if(distance<minmumDistance){
-						parentDataId = getLevelWiseResources(parentLevel).get(i);
-						minmumDistance = distance;
-					}
-			}
-			
-			for(int parentIdIterator: instanceToDataId.keySet())
-			{
-				if(instanceToDataId.get(parentIdIterator).equals(parentDataId))
-				{
-					parentInstanceId = parentIdIterator;
-				}
-			}
-			
+			int nearest = parents.nearest(resourceLoc, Config.MAX_VALUE);
+			Integer instanceId = nearest < 0 ? null : getInstanceIdsByDataId().get(parents.getDataId(nearest));
+			if(instanceId != null)
+				parentInstanceId = instanceId;
 		}
 		
 		return parentInstanceId;	
-	}	
+	}
+
+	/**
+	 * Parents of devices that move at the same time; same as calling determineParent for each.
+	 *
+	 * @return instance id -> parent instance id
+	 */
+	public Map<Integer, Integer> determineParents(List<Integer> resourceIds, double time) {
+		Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+		for(int resourceId : resourceIds)
+			parents.put(resourceId, determineParent(resourceId, time));
+		return parents;
+	}
+
+	/**
+	 * Index of the resources of a level, built when the resources are parsed and again if the level changes.
+	 */
+	private ResourceIndex getResourceIndex(int level) {
+		ResourceIndex index = resourceIndexes.get(level);
+		if(index == null || !index.isIndexOf(getLevelWiseResources(level))){
+			index = new ResourceIndex(getLevelWiseResources(level), getDataObject().resourceLocationData);
+			resourceIndexes.put(level, index);
+		}
+		return index;
+	}
+
+	/**
+	 * data id -> instance id; when several instances have the same data id, the last one listed by instanceToDataId
+	 */
+	private Map<String, Integer> getInstanceIdsByDataId() {
+		if(dataIdToInstance == null || dataIdToInstanceSize != instanceToDataId.size()){
+			dataIdToInstance = new HashMap<String, Integer>();
+			for(Map.Entry<Integer, String> entry : instanceToDataId.entrySet())
+				dataIdToInstance.put(entry.getValue(), entry.getKey());
+			dataIdToInstanceSize = instanceToDataId.size();
+		}
+		return dataIdToInstance;
+	}
 
 	private Location getUserLocationInfo(String dataId, double time) {
 		// TODO Auto-generated method stub
-		return getDataObject().usersLocation.get(dataId).get(time);
+		return getDataObject().usersLocation.get(dataId).getLocationAt(time);
 	}
 
 	private Location getResourceLocationInfo(String dataId) {
@@ -121,13 +127,21 @@ public class LocationHandler {
 	public List<Double> getTimeSheet(int instanceId) {
 		
 		String dataId = getDataIdByInstanceID(instanceId);
-		List<Double>timeSheet = new ArrayList<Double>(getDataObject().usersLocation.get(dataId).keySet());
+		List<Double>timeSheet = getDataObject().usersLocation.get(dataId).getTimes();
 		return timeSheet;
 	}
 
+	/**
+	 * Positions of a mobile device over time; read it with a cursor to follow the device one handover at a time.
+	 */
+	public MobilityTrace getTrace(int instanceId) {
+		return getDataObject().usersLocation.get(getDataIdByInstanceID(instanceId));
+	}
+
 	public void linkDataWithInstance(int instanceId, String dataID) {
 		// TODO Auto-generated method stub
 		instanceToDataId.put(instanceId, dataID);
+		dataIdToInstance = null;
 	}
 
 	public int getLevelID(String resourceType) {
@@ -148,6 +162,9 @@ public class LocationHandler {
 	public void parseResourceInfo() throws NumberFormatException, IOException {
 		// TODO Auto-generated method stub
 		getDataObject().parseResourceData();
+		resourceIndexes.clear();
+		for(int level : getDataObject().levelwiseResources.keySet())
+			getResourceIndex(level);
 	}
 
 	public List<String> getMobileUserDataId() {
@@ -9,6 +9,8 @@ import org.fog.application.AppModule;
 import org.fog.application.Application;
 import org.fog.entities.*;
 import org.fog.utils.*;
+import org.fog.utils.metrics.LatencyHistogram;
+import org.fog.utils.metrics.MetricsRegistry;
 
 import java.util.*;
 
@@ -21,6 +23,7 @@ public class MicroservicesController extends SimEntity {
     protected List<Sensor> sensors;
     protected Map<String, Application> applications = new HashMap<>();
     protected PlacementLogicFactory placementLogicFactory = new PlacementLogicFactory();
+    protected LoadBalancerFactory loadBalancerFactory = new LoadBalancerFactory();
     protected Map<PlacementRequest, Integer> placementRequestDelayMap = new HashMap<>();
     protected int placementLogic;
 
@@ -86,7 +89,7 @@ public class MicroservicesController extends SimEntity {
 
     protected void initializeControllers(int placementLogic) {
         for (FogDevice device : fogDevices) {
-            LoadBalancer loadBalancer = new RRLoadBalancer();
+            LoadBalancer loadBalancer = loadBalancerFactory.getLoadBalancer(MicroservicePlacementConfig.LOAD_BALANCER);
             MicroserviceFogDevice cdevice = (MicroserviceFogDevice) device;
 
             //responsible for placement decision making
@@ -102,7 +105,7 @@ public class MicroservicesController extends SimEntity {
 
     protected void initializeControllers(int placementLogic, Map<Integer, List<FogDevice>> monitored) {
         for (FogDevice device : fogDevices) {
-            LoadBalancer loadBalancer = new RRLoadBalancer();
+            LoadBalancer loadBalancer = loadBalancerFactory.getLoadBalancer(MicroservicePlacementConfig.LOAD_BALANCER);
             MicroserviceFogDevice cdevice = (MicroserviceFogDevice) device;
 
             //responsible for placement decision making
@@ -241,7 +244,7 @@ public class MicroservicesController extends SimEntity {
         double total = 0;
         for (Integer loopId : TimeKeeper.getInstance().getLoopIdToLatencyQoSSuccessCount().keySet()) {
             success += TimeKeeper.getInstance().getLoopIdToLatencyQoSSuccessCount().get(loopId);
-            total += TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loopId);
+            total += TimeKeeper.getInstance().getLoopCompletionCount(loopId);
         }
 
         double successPercentage = success / total * 100;
@@ -300,7 +303,7 @@ public class MicroservicesController extends SimEntity {
         System.out.println("=========================================");
         System.out.println("APPLICATION LOOP DELAYS");
         System.out.println("=========================================");
-        for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
@@ -311,17 +314,32 @@ public class MicroservicesController extends SimEntity {
 				count += 1;
 			}
 			System.out.println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
-            System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+            System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getAverageLoopDelay(loopId));
         }
         System.out.println("=========================================");
         System.out.println("TUPLE CPU EXECUTION DELAY");
         System.out.println("=========================================");
 
-        for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
-            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+        for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getAverageCpuTime(tupleType));
         }
 
         System.out.println("=========================================");
+        System.out.println("APPLICATION LOOP DELAY PERCENTILES");
+        System.out.println("=========================================");
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
+            LatencyHistogram delays = TimeKeeper.getInstance().getLoopDelay(loopId);
+            if (delays.getCount() > 0)
+                System.out.println(getStringForLoopId(loopId) + " ---> " + delays);
+        }
+        System.out.println("=========================================");
+        System.out.println("TUPLE CPU EXECUTION DELAY PERCENTILES");
+        System.out.println("=========================================");
+        for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleCpuTime(tupleType));
+        }
+        System.out.println("=========================================");
+        MetricsRegistry.printPlacementMetrics();
     }
 
     protected Map<Integer, Map<String, Double>> getResourceInfo(List<FogDevice> fogDevices) {
@@ -459,7 +477,7 @@ public class MicroservicesController extends SimEntity {
                 clusterString.append(device.getName() + ", ");
                 for (Integer deviceId : device.getClusterMembers()) {
                     if (!clusterNodes.contains(getFogDeviceById(deviceId))) {
-                        Logger.error("Cluster formation Error", "Error : " + getFogDeviceById(deviceId).getName() + " is added as a cluster node of " + device.getName());
+                        Logger.error("Cluster formation Error", "Error : {} is added as a cluster node of {}", getFogDeviceById(deviceId).getName(), device.getName());
                     }
                 }
                 if (count + 1 != clusterNodes.size())
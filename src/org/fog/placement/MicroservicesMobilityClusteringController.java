@@ -11,6 +11,7 @@ import org.fog.entities.Sensor;
 import org.fog.entities.Tuple;
 import org.fog.entities.MicroserviceFogDevice;
 import org.fog.entities.PlacementRequest;
+import org.fog.mobilitydata.Clustering;
 import org.fog.mobilitydata.References;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
@@ -30,6 +31,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
     private LocationHandler locator;
     private Map<Integer, Integer> parentReference;
+    private Clustering clustering;
 
 
     protected Map<Integer, Map<String, PlacementRequest>> perClientDevicePrs = new HashMap<>();  // clientDevice -> <Application -> PR>
@@ -188,6 +190,8 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
             prevParent.removeChild(fogDevice.getId());
+            if (clustering != null && fogDevice.getIsInCluster())
+                clustering.moveNode(fogDevice.getId(), prevParent.getId(), newParent.getId());
 
             for (String applicationName : fogDevice.getActiveApplications()) {
 
@@ -415,8 +419,10 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
     }
 
 
+    @SuppressWarnings("unchecked")
     public void clusteringSubmit(List Levels) {
         System.out.println(CloudSim.clock() + " Start sending Clustering Request to Fog Devices in level: " + Levels);
+        clustering = new Clustering(getLocator());
         for (int i = 0; i < Levels.size(); i++) {
             int clusterLevel = (int) Levels.get(i);
             for (FogDevice fogDevice : fogDevices) {
@@ -424,6 +430,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
                 if ((int) fogDevice.getLevel() == clusterLevel) {
                     JSONObject jsonMessage = new JSONObject();
                     jsonMessage.put("locationsInfo", getLocator());
+                    jsonMessage.put("clustering", clustering);
                     sendNow(fogDevice.getId(), FogEvents.START_DYNAMIC_CLUSTERING, jsonMessage);
                 }
             }
@@ -333,11 +333,17 @@ public class MobilityController extends SimEntity{
 		System.out.println("TUPLE CPU EXECUTION DELAY");
 		System.out.println("=========================================");
 		
-		for(String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()){
-			System.out.println(tupleType + " ---> "+TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+		for(String tupleType : TimeKeeper.getInstance().getTupleTypes()){
+			System.out.println(tupleType + " ---> "+TimeKeeper.getInstance().getAverageCpuTime(tupleType));
 		}
 		
 		System.out.println("=========================================");
+		System.out.println("TUPLE CPU EXECUTION DELAY PERCENTILES");
+		System.out.println("=========================================");
+		for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+			System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleCpuTime(tupleType));
+		}
+		System.out.println("=========================================");
 	}
 
 	protected void manageResources(){
@@ -8,9 +8,13 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
 import org.fog.entities.FogDevice;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 
 public abstract class ModulePlacement {
 
+	protected static final DiagnosticChannel PLACEMENT = Diagnostics.channel("placement");
+
 
 	public static int ONLY_CLOUD = 1;
 	public static int EDGEWARDS = 2;
@@ -52,7 +56,7 @@ public abstract class ModulePlacement {
 			module = _module;
 
 		if(canBeCreated(device, module)){
-			System.out.println("Creating "+module.getName()+" on device "+device.getName());
+			PLACEMENT.info("Creating {} on device {}", module.getName(), device.getName());
 
 			if(!getDeviceToModuleMap().containsKey(device.getId()))
 				getDeviceToModuleMap().put(device.getId(), new ArrayList<AppModule>());
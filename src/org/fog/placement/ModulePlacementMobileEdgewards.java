@@ -62,7 +62,7 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement{
 	protected void mapModules() {
 		
 		for(String deviceName : getModuleMapping().getModuleMapping().keySet()){
-			System.out.println("*****MapModules "+deviceName);
+			PLACEMENT.debug("*****MapModules {}", deviceName);
 			for(String moduleName : getModuleMapping().getModuleMapping().get(deviceName)){
 				int deviceId = CloudSim.getEntityId(deviceName);
 				getCurrentModuleMap().get(deviceId).add(moduleName);
@@ -223,7 +223,7 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement{
 							}
 						}
 						if(totalCpuLoad + getCurrentCpuLoad().get(deviceId) > device.getHost().getTotalMips()){
-							Logger.debug("ModulePlacementEdgeward", "Need to shift module "+moduleName+" upstream from device " + device.getName());
+							Logger.debug("ModulePlacementEdgeward", "Need to shift module {} upstream from device {}", moduleName, device.getName());
 							List<String> _placedOperators = shiftModuleNorth(moduleName, totalCpuLoad, deviceId, modulesToPlace);
 							for(String placedOperator : _placedOperators){
 								if(!placedModules.contains(placedOperator))
@@ -233,7 +233,7 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement{
 							placedModules.add(moduleName);
 							getCurrentCpuLoad().put(deviceId, getCurrentCpuLoad().get(deviceId)+totalCpuLoad);
 							getCurrentModuleInstanceNum().get(deviceId).put(moduleName, getCurrentModuleInstanceNum().get(deviceId).get(moduleName)+1);
-							Logger.debug("ModulePlacementEdgeward", "AppModule "+moduleName+" can be created on device "+device.getName());
+							Logger.debug("ModulePlacementEdgeward", "AppModule {} can be created on device {}", moduleName, device.getName());
 						}
 					}
 				}else{
@@ -246,12 +246,12 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement{
 					}
 						
 					if(totalCpuLoad + getCurrentCpuLoad().get(deviceId) > device.getHost().getTotalMips()){
-						Logger.debug("ModulePlacementEdgeward", "Placement of operator "+moduleName+ "NOT POSSIBLE on device "+device.getName());
+						Logger.debug("ModulePlacementEdgeward", "Placement of operator {}NOT POSSIBLE on device {}", moduleName, device.getName());
 					}
 					else{
-						Logger.debug("ModulePlacementEdgeward", "Placement of operator "+moduleName+ " on device "+device.getName() + " successful.");
+						Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", moduleName, device.getName());
 						getCurrentCpuLoad().put(deviceId, totalCpuLoad + getCurrentCpuLoad().get(deviceId));
-						System.out.println("Placement of operator "+moduleName+ " on device "+device.getName() + " successful.");
+						PLACEMENT.info("Placement of operator {} on device {} successful.", moduleName, device.getName());
 
 						if(!currentModuleMap.containsKey(deviceId))
 							currentModuleMap.put(deviceId, new ArrayList<String>());
@@ -286,7 +286,7 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement{
 	 * @param deviceId
 	 */
 	private List<String> shiftModuleNorth(String moduleName, double cpuLoad, Integer deviceId, List<String> operatorsToPlace) {
-		System.out.println(CloudSim.getEntityName(deviceId)+" is shifting "+moduleName+" north.");
+		PLACEMENT.info("{} is shifting {} north.", CloudSim.getEntityName(deviceId), moduleName);
 		List<String> modulesToShift = findModulesToShift(moduleName, deviceId);
 		
 		Map<String, Integer> moduleToNumInstances = new HashMap<String, Integer>(); // Map of number of instances of modules that need to be shifted
@@ -309,7 +309,7 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement{
 		while(true){ // Loop iterates over all devices in path upstream from current device. Tries to place modules (to be shifted northwards) on each of them.
 			if(id==-1){
 				// Loop has reached the apex fog device in hierarchy, and still could not place modules. 
-				Logger.debug("ModulePlacementEdgeward", "Could not place modules "+modulesToShift+" northwards.");
+				Logger.debug("ModulePlacementEdgeward", "Could not place modules {} northwards.", modulesToShift);
 				break;
 			}
 			FogDevice fogDevice = getFogDeviceById(id);
@@ -63,7 +63,7 @@ public class ModulePlacementOnlyCloud extends ModulePlacement{
 				getModuleInstanceCountMap().get(cloudId).put(module.getName(), maxInstances);
 			}
 		}
-		System.out.println(getModuleInstanceCountMap());
+		PLACEMENT.info("{}", getModuleInstanceCountMap());
 	}
 
 	private boolean isModuleInstanceCalculationComplete() {
@@ -1,21 +1,24 @@
 package org.fog.placement;
 
 import org.apache.commons.math3.util.Pair;
-import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
 import org.fog.entities.FogDevice;
-import org.fog.entities.Tuple;
 import org.fog.entities.ControllerComponent;
 import org.fog.entities.MicroserviceFogDevice;
 import org.fog.entities.PlacementRequest;
 import org.fog.utils.Logger;
 import org.fog.utils.ModuleLaunchConfig;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 
 import java.util.*;
 
 
 public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic {
+
+    private static final DiagnosticChannel PLACEMENT = Diagnostics.channel("placement");
+
     /**
      * Fog network related details
      */
@@ -35,6 +38,9 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
     Map<Integer, Map<String, Integer>> mappedMicroservices = new HashMap<>();
     ; //mappedMicroservice
 
+    // indexed devices, CPU loads and module dependencies of the round
+    private final PlacementState state = new PlacementState();
+
     public MyMicroservicePlacementLogic(int fonID) {
         setFONId(fonID);
     }
@@ -53,17 +59,17 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
         this.placementRequests = pr;
         this.resourceAvailability = resourceAvailability;
         this.applicationInfo = applicationInfo;
+        state.reset(fogDevices, resourceAvailability, pr);
 
-        setCurrentCpuLoad(new HashMap<Integer, Double>());
         setCurrentModuleMap(new HashMap<>());
         for (FogDevice dev : fogDevices) {
-            getCurrentCpuLoad().put(dev.getId(), 0.0);
             getCurrentModuleMap().put(dev.getId(), new ArrayList<>());
             currentModuleLoadMap.put(dev.getId(), new HashMap<String, Double>());
             currentModuleInstanceNum.put(dev.getId(), new HashMap<String, Integer>());
         }
 
         mapModules();
+        setCurrentCpuLoad(state.getCpuLoads());
         PlacementLogicOutput placement = generatePlacementMap();
         updateResources(resourceAvailability);
         postProcessing();
@@ -109,11 +115,7 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
         if (placement != null) {
             for (int prID : placement.keySet()) {
                 //retrieve application
-                PlacementRequest placementRequest = null;
-                for (PlacementRequest pr : placementRequests) {
-                    if (pr.getPlacementRequestId() == prID)
-                        placementRequest = pr;
-                }
+                PlacementRequest placementRequest = state.getRequest(prID);
                 Application application = applicationInfo.get(placementRequest.getApplicationId());
                 for (String microserviceName : placement.get(prID).keySet()) {
                     int deviceID = placement.get(prID).get(microserviceName);
@@ -178,15 +180,7 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
     }
 
     public List<String> getClientServices(Application application, String microservice) {
-        List<String> clientServices = new LinkedList<>();
-
-        for (AppEdge edge : application.getEdges()) {
-            if (edge.getDestination().equals(microservice) && edge.getDirection() == Tuple.UP)
-                clientServices.add(edge.getSource());
-        }
-
-
-        return clientServices;
+        return state.getClientServices(application, microservice);
     }
 
     @Override
@@ -217,15 +211,16 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
 
             //special modules  - predefined cloud placements
             Application app =  applicationInfo.get(placementRequest.getApplicationId());
+            state.startRequest(placementRequest, app, placementRequest.getPlacedMicroservices().keySet());
             for (String microservice : app.getSpecialPlacementInfo().keySet()) {
                 for (String deviceName : app.getSpecialPlacementInfo().get(microservice)) {
                     FogDevice device = getDeviceByName(deviceName);
                     int deviceId = device.getId();
 
-                    if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                        getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                    if (state.fits(deviceId, getModule(microservice, app).getMips())) {
+                        Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, device.getName());
+                        state.addCpuLoad(deviceId, getModule(microservice, app).getMips());
+                        PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, device.getName());
 
                         moduleToApp.put(microservice, app.getAppId());
 
@@ -233,6 +228,7 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
                             currentModuleMap.get(deviceId).add(microservice);
 
                         mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
+                        state.placed(placementRequest, microservice);
 
                         //currentModuleLoad
                         if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
@@ -261,12 +257,11 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
         while (placementCompleteCount < placementRequests.size()) {
             if (toPlace.isEmpty()) {
                 for (PlacementRequest placementRequest : placementRequests) {
-                    Application app = applicationInfo.get(placementRequest.getApplicationId());
                     // modulesToPlace returns all the modules from the APP which 1. Have not been placed 2. All their dependent modules (from UP or DOWN) within their PR have been placed
                     // NOTE: Every PR (primary key placementRequestId) has its own set of placed modules (stored in mappedMicroservices).
                     // Meaning each module in all PRs has a separate set of dependent modules, which are from the same PR
-                    // As argument we pass the list of set modules FOR THAT PR that have been placed. But in the function we are iterating through ALL modules in the app
-                    List<String> modulesToPlace = getModulesToPlace(mappedMicroservices.get(placementRequest.getPlacementRequestId()).keySet(), app);
+                    // The placement state counts, per PR and module, the dependent modules not placed yet, and keeps the ready ones
+                    List<String> modulesToPlace = state.getModulesToPlace(placementRequest);
                     if (modulesToPlace.isEmpty())
                         placementCompleteCount++;
                     else
@@ -283,10 +278,10 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
                     if (toPlace.containsKey(placementRequest)) {
                         for (String microservice : toPlace.get(placementRequest)) {
                             // try to place
-                            if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                                Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                                getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                                System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                            if (state.fits(deviceId, getModule(microservice, app).getMips())) {
+                                Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, device.getName());
+                                state.addCpuLoad(deviceId, getModule(microservice, app).getMips());
+                                PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, device.getName());
 
                                 moduleToApp.put(microservice, app.getAppId());
 
@@ -294,6 +289,7 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
                                     currentModuleMap.get(deviceId).add(microservice);
 
                                 mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
+                                state.placed(placementRequest, microservice);
 
                                 //currentModuleLoad
                                 if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
@@ -328,7 +324,7 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
                             toPlace.remove(placementRequest);
                     }
                 } else {
-                    System.out.println("CLUSTER ISSUE: deviceID is -1");
+                    PLACEMENT.warn("CLUSTER ISSUE: deviceID is -1");
 //                    if (toPlace.containsKey(placementRequest)) {
 ////                        int clusterDeviceId = clusterNode.get(placementRequest);
 //                        FogDevice device = getDevice(clusterDeviceId);
@@ -432,11 +428,7 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
     }
 
     private FogDevice getDeviceByName(String deviceName) {
-        for (FogDevice f : fogDevices) {
-            if (f.getName().equals(deviceName))
-                return f;
-        }
-        return null;
+        return state.getDeviceByName(deviceName);
     }
 
     public Map<Integer, Double> getCurrentCpuLoad() {
@@ -444,47 +436,11 @@ public class MyMicroservicePlacementLogic implements MicroservicePlacementLogic
     }
 
     private AppModule getModule(String moduleName, Application app) {
-        for (AppModule appModule : app.getModules()) {
-            if (appModule.getName().equals(moduleName))
-                return appModule;
-        }
-        return null;
+        return app.getModuleByName(moduleName);
     }
 
     private FogDevice getDevice(int deviceId) {
-        for (FogDevice fogDevice : fogDevices) {
-            if (fogDevice.getId() == deviceId)
-                return fogDevice;
-        }
-        return null;
-    }
-
-    private List<String> getModulesToPlace(Set<String> placedModules, Application app) {
-        List<String> modulesToPlace_1 = new ArrayList<String>();
-        List<String> modulesToPlace = new ArrayList<String>();
-        for (AppModule module : app.getModules()) {
-            if (!placedModules.contains(module.getName()))
-                modulesToPlace_1.add(module.getName());
-        }
-        /*
-         * Filtering based on whether modules (to be placed) lower in physical topology are already placed
-         */
-        for (String moduleName : modulesToPlace_1) {
-            boolean toBePlaced = true;
-
-            for (AppEdge edge : app.getEdges()) {
-                //CHECK IF OUTGOING DOWN EDGES ARE PLACED
-                if (edge.getSource().equals(moduleName) && edge.getDirection() == Tuple.DOWN && !placedModules.contains(edge.getDestination()))
-                    toBePlaced = false;
-                //CHECK IF INCOMING UP EDGES ARE PLACED
-                if (edge.getDestination().equals(moduleName) && edge.getDirection() == Tuple.UP && !placedModules.contains(edge.getSource()))
-                    toBePlaced = false;
-            }
-            if (toBePlaced)
-                modulesToPlace.add(moduleName);
-        }
-
-        return modulesToPlace;
+        return state.getDevice(deviceId);
     }
 
 
@@ -9,6 +9,9 @@ import org.fog.application.AppModule;
 import org.fog.application.Application;
 import org.fog.entities.*;
 import org.fog.utils.*;
+import org.fog.utils.metrics.LatencyHistogram;
+import org.fog.utils.metrics.MetricsRegistry;
+import org.fog.utils.routing.RoutingTable;
 
 import java.util.*;
 
@@ -19,6 +22,7 @@ public class MyMicroservicesController extends SimEntity {
     protected List<Sensor> sensors;
     protected Map<String, Application> applications = new HashMap<>();
     protected PlacementLogicFactory placementLogicFactory = new PlacementLogicFactory();
+    protected LoadBalancerFactory loadBalancerFactory = new LoadBalancerFactory();
     protected Map<PlacementRequest, Integer> placementRequestDelayMap = new HashMap<>();
     protected int placementLogic;
 
@@ -84,7 +88,7 @@ public class MyMicroservicesController extends SimEntity {
 
     protected void initializeControllers(int placementLogic) {
         for (FogDevice device : fogDevices) {
-            LoadBalancer loadBalancer = new RRLoadBalancer();
+            LoadBalancer loadBalancer = loadBalancerFactory.getLoadBalancer(MicroservicePlacementConfig.LOAD_BALANCER);
             MyFogDevice cdevice = (MyFogDevice) device;
 
             //responsible for placement decision making
@@ -103,7 +107,7 @@ public class MyMicroservicesController extends SimEntity {
 
     protected void initializeControllers(int placementLogic, Map<Integer, List<FogDevice>> monitored) {
         for (FogDevice device : fogDevices) {
-            LoadBalancer loadBalancer = new RRLoadBalancer();
+            LoadBalancer loadBalancer = loadBalancerFactory.getLoadBalancer(MicroservicePlacementConfig.LOAD_BALANCER);
             MyFogDevice cdevice = (MyFogDevice) device;
 
             //responsible for placement decision making
@@ -129,10 +133,10 @@ public class MyMicroservicesController extends SimEntity {
     }
 
     protected void generateRoutingTable() {
-        Map<Integer, Map<Integer, Integer>> routing = ShortestPathRoutingGenerator.generateRoutingTable(fogDevices);
+        Map<Integer, RoutingTable> routing = ShortestPathRoutingGenerator.generateRoutingTables(fogDevices);
 
         for (FogDevice f : fogDevices) {
-            ((MyFogDevice) f).addRoutingTable(routing.get(f.getId()));
+            ((MyFogDevice) f).setRoutingTable(routing.get(f.getId()));
         }
 
     }
@@ -258,7 +262,7 @@ public class MyMicroservicesController extends SimEntity {
         double total = 0;
         for (Integer loopId : TimeKeeper.getInstance().getLoopIdToLatencyQoSSuccessCount().keySet()) {
             success += TimeKeeper.getInstance().getLoopIdToLatencyQoSSuccessCount().get(loopId);
-            total += TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loopId);
+            total += TimeKeeper.getInstance().getLoopCompletionCount(loopId);
         }
 
         double successPercentage = success / total * 100;
@@ -318,7 +322,7 @@ public class MyMicroservicesController extends SimEntity {
         System.out.println("=========================================");
         System.out.println("APPLICATION LOOP DELAYS");
         System.out.println("=========================================");
-        for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
@@ -329,17 +333,32 @@ public class MyMicroservicesController extends SimEntity {
 				count += 1;
 			}
 			System.out.println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
-            System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+            System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getAverageLoopDelay(loopId));
         }
         System.out.println("=========================================");
         System.out.println("AVERAGE CPU EXECUTION DELAY PER TUPLE TYPE");
         System.out.println("=========================================");
 
-        for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
-            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+        for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getAverageCpuTime(tupleType));
         }
 
         System.out.println("=========================================");
+        System.out.println("APPLICATION LOOP DELAY PERCENTILES");
+        System.out.println("=========================================");
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
+            LatencyHistogram delays = TimeKeeper.getInstance().getLoopDelay(loopId);
+            if (delays.getCount() > 0)
+                System.out.println(getStringForLoopId(loopId) + " ---> " + delays);
+        }
+        System.out.println("=========================================");
+        System.out.println("TUPLE CPU EXECUTION DELAY PERCENTILES");
+        System.out.println("=========================================");
+        for (String tupleType : TimeKeeper.getInstance().getTupleTypes()) {
+            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleCpuTime(tupleType));
+        }
+        System.out.println("=========================================");
+        MetricsRegistry.printPlacementMetrics();
     }
 
     protected Map<Integer, Map<String, Double>> getResourceInfo(List<FogDevice> fogDevices) {
@@ -11,6 +11,7 @@ import org.fog.entities.Sensor;
 import org.fog.entities.Tuple;
 import org.fog.entities.MyFogDevice;
 import org.fog.entities.PlacementRequest;
+import org.fog.mobilitydata.MobilityTrace;
 import org.fog.mobilitydata.References;
 import org.fog.utils.FogEvents;
 import org.fog.utils.MigrationDelayMonitor;
@@ -20,6 +21,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.stream.Collectors;
 
 
@@ -27,6 +29,10 @@ public class MyMicroservicesMobilityController extends MyMicroservicesController
 
     private LocationHandler locator;
     private Map<Integer, Integer> parentReference;
+    /**
+     * Mobile devices by time of their next handover, then by their order in the device list
+     */
+    private PriorityQueue<MobileDevice> nextHandovers = new PriorityQueue<>();
 
 
     protected Map<Integer, Map<String, PlacementRequest>> perClientDevicePrs = new HashMap<>();  // clientDevice -> <Application -> PR>
@@ -89,7 +95,7 @@ public class MyMicroservicesMobilityController extends MyMicroservicesController
                 processMobilityData();
                 break;
             case FogEvents.MOBILITY_MANAGEMENT:
-                processMobility(ev);
+                processHandovers();
                 break;
             case FogEvents.STOP_SIMULATION:
                 CloudSim.stopSimulation();
@@ -159,12 +165,10 @@ public class MyMicroservicesMobilityController extends MyMicroservicesController
         }
     }
 
-    private void processMobility(SimEvent ev) {
+    private void processMobility(FogDevice fogDevice, int newParentId) {
 
-        // TODO Auto-generated method stub
-        FogDevice fogDevice = (FogDevice) ev.getData();
         FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
-        FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
+        FogDevice newParent = getFogDeviceById(newParentId);
         System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
         parentReference.put(fogDevice.getId(), newParent.getId());
         Map<String, Integer> migratingModules = new HashMap<>(); // migrating module -> its device (can be ancestor, but must be before common ancestor)
@@ -257,7 +261,7 @@ public class MyMicroservicesMobilityController extends MyMicroservicesController
                 ((MyFogDevice) fogDevice).updateRoutingTable(f.getId(), fogDevice.getParentId());
 
                 ////for other update route to mobile based on route to parent
-                int nextId = ((MyFogDevice) f).getRoutingTable().get(fogDevice.getParentId());
+                int nextId = ((MyFogDevice) f).getRoutingTable().getNextHop(fogDevice.getParentId());
                 if (f.getId() != nextId)
                     ((MyFogDevice) f).updateRoutingTable(fogDevice.getId(), nextId);
                 else
@@ -399,16 +403,48 @@ public class MyMicroservicesMobilityController extends MyMicroservicesController
         return path;
     }
 
+    /**
+     * Starts following the mobile devices through their traces. Only the earliest handover is scheduled; the
+     * devices wait in a queue ordered by the time of their next position, so the traces are read as the simulation
+     * goes and the event queue holds a single mobility event whatever their length.
+     */
     private void processMobilityData() {
-        // TODO Auto-generated method stub
-        List<Double> timeSheet = new ArrayList<Double>();
-        for (FogDevice fogDevice : fogDevices) {
+        for (int i = 0; i < fogDevices.size(); i++) {
+            FogDevice fogDevice = fogDevices.get(i);
             if (locator.isAMobileDevice(fogDevice.getId())) {
-                timeSheet = locator.getTimeSheet(fogDevice.getId());
-                for (double timeEntry : timeSheet)
-                    send(getId(), timeEntry, FogEvents.MOBILITY_MANAGEMENT, fogDevice);
+                MobilityTrace.Cursor cursor = locator.getTrace(fogDevice.getId()).cursor();
+                if (!cursor.isDone())
+                    nextHandovers.add(new MobileDevice(fogDevice, i, cursor));
             }
         }
+        scheduleNextHandovers();
+    }
+
+    private void scheduleNextHandovers() {
+        if (!nextHandovers.isEmpty())
+            send(getId(), Math.max(0, nextHandovers.peek().cursor.time() - CloudSim.clock()), FogEvents.MOBILITY_MANAGEMENT);
+    }
+
+    /**
+     * Moves every device whose next position is due, in device order.
+     */
+    private void processHandovers() {
+        // the time of the trace, not the clock: the clock may differ from it by rounding
+        double time = nextHandovers.peek().cursor.time();
+        List<FogDevice> moving = new ArrayList<>();
+        List<Integer> movingIds = new ArrayList<>();
+        while (!nextHandovers.isEmpty() && nextHandovers.peek().cursor.time() == time) {
+            MobileDevice mobile = nextHandovers.poll();
+            mobile.cursor.advance();
+            if (!mobile.cursor.isDone())
+                nextHandovers.add(mobile);
+            moving.add(mobile.device);
+            movingIds.add(mobile.device.getId());
+        }
+        Map<Integer, Integer> newParents = locator.determineParents(movingIds, time);
+        for (FogDevice fogDevice : moving)
+            processMobility(fogDevice, newParents.get(fogDevice.getId()));
+        scheduleNextHandovers();
     }
 
 
@@ -435,4 +471,22 @@ public class MyMicroservicesMobilityController extends MyMicroservicesController
         this.locator = locator;
     }
 
+
+    private static class MobileDevice implements Comparable<MobileDevice> {
+        final FogDevice device;
+        final int order;
+        final MobilityTrace.Cursor cursor;
+
+        MobileDevice(FogDevice device, int order, MobilityTrace.Cursor cursor) {
+            this.device = device;
+            this.order = order;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public int compareTo(MobileDevice other) {
+            int byTime = Double.compare(cursor.time(), other.cursor.time());
+            return byTime != 0 ? byTime : Integer.compare(order, other.order);
+        }
+    }
 }
@@ -1,19 +1,23 @@
 package org.fog.placement;
 
 import org.apache.commons.math3.util.Pair;
-import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
 import org.fog.entities.ControllerComponent;
 import org.fog.entities.FogDevice;
 import org.fog.entities.PlacementRequest;
-import org.fog.entities.Tuple;
 import org.fog.utils.Logger;
+import org.fog.utils.MicroservicePlacementConfig;
 import org.fog.utils.ModuleLaunchConfig;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 
 import java.util.*;
 
-public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
+public class MyOfflinePOCPlacementLogic implements IncrementalPlacementLogic {
+
+    private static final DiagnosticChannel PLACEMENT = Diagnostics.channel("placement");
+
     /**
      * Fog network related details
      */
@@ -33,6 +37,9 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
     Map<Integer, Map<String, Integer>> mappedMicroservices = new HashMap<>();
     ; //mappedMicroservice
 
+    // indexed devices, CPU loads and module dependencies of the round
+    private final PlacementState state = new PlacementState();
+
     public MyOfflinePOCPlacementLogic(int fonID) {
         setFONId(fonID);
     }
@@ -51,19 +58,22 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
         this.placementRequests = pr;
         this.resourceAvailability = resourceAvailability;
         this.applicationInfo = applicationInfo;
+        if (MicroservicePlacementConfig.INCREMENTAL_PLACEMENT)
+            state.update(fogDevices, resourceAvailability, pr);
+        else
+            state.reset(fogDevices, resourceAvailability, pr);
 
-        setCurrentCpuLoad(new HashMap<Integer, Double>());
+        // only the devices placed on in this round get entries
+        mappedMicroservices = new HashMap<>();
         setCurrentModuleMap(new HashMap<>());
-        for (FogDevice dev : fogDevices) {
-            getCurrentCpuLoad().put(dev.getId(), 0.0);
-            getCurrentModuleMap().put(dev.getId(), new ArrayList<>());
-            currentModuleLoadMap.put(dev.getId(), new HashMap<String, Double>());
-            currentModuleInstanceNum.put(dev.getId(), new HashMap<String, Integer>());
-        }
+        currentModuleLoadMap = new HashMap<>();
+        currentModuleInstanceNum = new HashMap<>();
 
         mapModules();
+        setCurrentCpuLoad(state.getCpuLoads());
         PlacementLogicOutput placement = generatePlacementMap();
         updateResources(resourceAvailability);
+        state.endRound();
         postProcessing();
         return placement;
     }
@@ -107,11 +117,7 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
         if (placement != null) {
             for (int prID : placement.keySet()) {
                 //retrieve application
-                PlacementRequest placementRequest = null;
-                for (PlacementRequest pr : placementRequests) {
-                    if (pr.getPlacementRequestId() == prID)
-                        placementRequest = pr;
-                }
+                PlacementRequest placementRequest = state.getRequest(prID);
                 Application application = applicationInfo.get(placementRequest.getApplicationId());
                 for (String microserviceName : placement.get(prID).keySet()) {
                     int deviceID = placement.get(prID).get(microserviceName);
@@ -176,15 +182,12 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
     }
 
     public List<String> getClientServices(Application application, String microservice) {
-        List<String> clientServices = new LinkedList<>();
-
-        for (AppEdge edge : application.getEdges()) {
-            if (edge.getDestination().equals(microservice) && edge.getDirection() == Tuple.UP)
-                clientServices.add(edge.getSource());
-        }
-
+        return state.getClientServices(application, microservice);
+    }
 
-        return clientServices;
+    @Override
+    public void resourcesUpdated(int deviceId) {
+        state.resourcesUpdated(deviceId);
     }
 
     @Override
@@ -215,35 +218,22 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
 
             //special modules  - predefined cloud placements
             Application app =  applicationInfo.get(placementRequest.getApplicationId());
+            state.startRequest(placementRequest, app, placementRequest.getPlacedMicroservices().keySet());
             for (String microservice : app.getSpecialPlacementInfo().keySet()) {
                 for (String deviceName : app.getSpecialPlacementInfo().get(microservice)) {
                     FogDevice device = getDeviceByName(deviceName);
                     int deviceId = device.getId();
 
-                    if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                        getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                    if (state.fits(deviceId, getModule(microservice, app).getMips())) {
+                        Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, device.getName());
+                        state.addCpuLoad(deviceId, getModule(microservice, app).getMips());
+                        PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, device.getName());
 
                         moduleToApp.put(microservice, app.getAppId());
 
-                        if (!currentModuleMap.get(deviceId).contains(microservice))
-                            currentModuleMap.get(deviceId).add(microservice);
-
                         mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
-
-                        //currentModuleLoad
-                        if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
-                            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
-                        else
-                            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice));
-
-
-                        //currentModuleInstance
-                        if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
-                            currentModuleInstanceNum.get(deviceId).put(microservice, 1);
-                        else
-                            currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
+                        state.placed(placementRequest, microservice);
+                        addToDevice(deviceId, microservice, app);
 
                         break;
                     }
@@ -259,12 +249,11 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
         while (placementCompleteCount < placementRequests.size()) {
             if (toPlace.isEmpty()) {
                 for (PlacementRequest placementRequest : placementRequests) {
-                    Application app = applicationInfo.get(placementRequest.getApplicationId());
                     // modulesToPlace returns all the modules from the APP which 1. Have not been placed 2. All their dependent modules (from UP or DOWN) within their PR have been placed
                     // NOTE: Every PR (primary key placementRequestId) has its own set of placed modules (stored in mappedMicroservices).
                     // Meaning each module in all PRs has a separate set of dependent modules, which are from the same PR
-                    // As argument we pass the list of set modules FOR THAT PR that have been placed. But in the function we are iterating through ALL modules in the app
-                    List<String> modulesToPlace = getModulesToPlace(mappedMicroservices.get(placementRequest.getPlacementRequestId()).keySet(), app);
+                    // The placement state counts, per PR and module, the dependent modules not placed yet, and keeps the ready ones
+                    List<String> modulesToPlace = state.getModulesToPlace(placementRequest);
                     if (modulesToPlace.isEmpty())
                         placementCompleteCount++;
                     else
@@ -281,30 +270,16 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
                     if (toPlace.containsKey(placementRequest)) {
                         for (String microservice : toPlace.get(placementRequest)) {
                             // try to place
-                            if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                                Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                                getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                                System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                            if (state.fits(deviceId, getModule(microservice, app).getMips())) {
+                                Logger.debug("ModulePlacementEdgeward", "Placement of operator {} on device {} successful.", microservice, device.getName());
+                                state.addCpuLoad(deviceId, getModule(microservice, app).getMips());
+                                PLACEMENT.info("Placement of operator {} on device {} successful.", microservice, device.getName());
 
                                 moduleToApp.put(microservice, app.getAppId());
 
-                                if (!currentModuleMap.get(deviceId).contains(microservice))
-                                    currentModuleMap.get(deviceId).add(microservice);
-
                                 mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
-
-                                //currentModuleLoad
-                                if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
-                                    currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
-                                else
-                                    currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice)); // todo Simon says isn't this already vertical scaling? But is on PR side not FogDevice side
-
-
-                                //currentModuleInstance
-                                if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
-                                    currentModuleInstanceNum.get(deviceId).put(microservice, 1);
-                                else
-                                    currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
+                                state.placed(placementRequest, microservice);
+                                addToDevice(deviceId, microservice, app);
 
                                 placed.add(microservice);
                             }
@@ -319,19 +294,37 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
                             toPlace.remove(placementRequest);
                     }
                 } else {
-                    System.out.println("CLUSTER ISSUE: deviceID is -1");
+                    PLACEMENT.warn("CLUSTER ISSUE: deviceID is -1");
                 }
             }
         }
 
     }
 
-    private FogDevice getDeviceByName(String deviceName) {
-        for (FogDevice f : fogDevices) {
-            if (f.getName().equals(deviceName))
-                return f;
+    private void addToDevice(int deviceId, String microservice, Application app) {
+        if (!currentModuleMap.containsKey(deviceId)) {
+            currentModuleMap.put(deviceId, new ArrayList<String>());
+            currentModuleLoadMap.put(deviceId, new HashMap<String, Double>());
+            currentModuleInstanceNum.put(deviceId, new HashMap<String, Integer>());
         }
-        return null;
+        if (!currentModuleMap.get(deviceId).contains(microservice))
+            currentModuleMap.get(deviceId).add(microservice);
+
+        //currentModuleLoad
+        if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
+            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
+        else
+            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice)); // todo Simon says isn't this already vertical scaling? But is on PR side not FogDevice side
+
+        //currentModuleInstance
+        if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
+            currentModuleInstanceNum.get(deviceId).put(microservice, 1);
+        else
+            currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
+    }
+
+    private FogDevice getDeviceByName(String deviceName) {
+        return state.getDeviceByName(deviceName);
     }
 
     public Map<Integer, Double> getCurrentCpuLoad() {
@@ -339,47 +332,11 @@ public class MyOfflinePOCPlacementLogic implements MicroservicePlacementLogic {
     }
 
     private AppModule getModule(String moduleName, Application app) {
-        for (AppModule appModule : app.getModules()) {
-            if (appModule.getName().equals(moduleName))
-                return appModule;
-        }
-        return null;
+        return app.getModuleByName(moduleName);
     }
 
     private FogDevice getDevice(int deviceId) {
-        for (FogDevice fogDevice : fogDevices) {
-            if (fogDevice.getId() == deviceId)
-                return fogDevice;
-        }
-        return null;
-    }
-
-    private List<String> getModulesToPlace(Set<String> placedModules, Application app) {
-        List<String> modulesToPlace_1 = new ArrayList<String>();
-        List<String> modulesToPlace = new ArrayList<String>();
-        for (AppModule module : app.getModules()) {
-            if (!placedModules.contains(module.getName()))
-                modulesToPlace_1.add(module.getName());
-        }
-        /*
-         * Filtering based on whether modules (to be placed) lower in physical topology are already placed
-         */
-        for (String moduleName : modulesToPlace_1) {
-            boolean toBePlaced = true;
-
-            for (AppEdge edge : app.getEdges()) {
-                //CHECK IF OUTGOING DOWN EDGES ARE PLACED
-                if (edge.getSource().equals(moduleName) && edge.getDirection() == Tuple.DOWN && !placedModules.contains(edge.getDestination()))
-                    toBePlaced = false;
-                //CHECK IF INCOMING UP EDGES ARE PLACED
-                if (edge.getDestination().equals(moduleName) && edge.getDirection() == Tuple.UP && !placedModules.contains(edge.getSource()))
-                    toBePlaced = false;
-            }
-            if (toBePlaced)
-                modulesToPlace.add(moduleName);
-        }
-
-        return modulesToPlace;
+        return state.getDevice(deviceId);
     }
 
 
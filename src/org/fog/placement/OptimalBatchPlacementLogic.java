@@ -0,0 +1,570 @@
+package org.fog.placement;
+
+import org.apache.commons.math3.util.Pair;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppEdge;
+import org.fog.application.AppLoop;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.entities.ControllerComponent;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PlacementRequest;
+import org.fog.utils.MicroservicePlacementConfig;
+import org.fog.utils.ModuleLaunchConfig;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
+import org.fog.utils.metrics.MetricsRegistry;
+
+import java.util.*;
+
+/**
+ * Places each batch of placement requests as a whole, minimising the total latency of the application loops of the
+ * requests under the CPU and RAM of the devices.
+ * <p>
+ * As with the edgeward placement, the modules of a request go on the devices between the parent of its gateway and
+ * the top of the FON's devices, and each request gets its own instances. The latency of a loop is, for every two
+ * consecutive modules, the network latency between their devices (uplink latencies up to the common ancestor) plus
+ * the execution time of the tuple on the device of the second one. Sensors and actuators are on the gateway; an
+ * application without loops counts each edge once.
+ * <p>
+ * Batches with at most {@link MicroservicePlacementConfig#OPTIMAL_EXACT_MAX_MODULES} modules to place are solved
+ * exactly by branch and bound; larger ones by local and large neighbourhood search within
+ * {@link MicroservicePlacementConfig#OPTIMAL_SEARCH_TIME_BUDGET}. The quality and solve time of each batch are
+ * logged, recorded in the {@link MetricsRegistry} and kept in {@link #getLastReport()}.
+ */
+public class OptimalBatchPlacementLogic implements MicroservicePlacementLogic {
+
+    private static final DiagnosticChannel PLACEMENT = Diagnostics.channel("placement");
+
+    /**
+     * Fog network related details
+     */
+    List<FogDevice> fogDevices; //fog devices considered by FON for placements of requests
+    List<PlacementRequest> placementRequests; // requests to be processed
+    protected Map<Integer, Map<String, Double>> resourceAvailability;
+    private Map<String, Application> applicationInfo = new HashMap<>();
+    private Map<String, String> moduleToApp = new HashMap<>();
+
+    int fonID;
+
+    protected Map<Integer, Map<String, Integer>> currentModuleInstanceNum = new HashMap<>();
+
+    Map<Integer, Map<String, Integer>> mappedMicroservices = new HashMap<>();
+    /** requests of the batch left unplaced, sent back to the FON to be placed in a later round */
+    private final Set<PlacementRequest> unplaced = new HashSet<>();
+    /** requests of the batch no device of the FON can host, dropped */
+    private final Set<PlacementRequest> dropped = new HashSet<>();
+
+    private final PlacementState state = new PlacementState();
+
+    // devices of the batch, by dense index
+    private final List<FogDevice> devices = new ArrayList<>();
+    private final Map<Integer, Integer> deviceIndex = new HashMap<>();
+    /** device id -> ancestor id -> latency up to it */
+    private final Map<Integer, Map<Integer, Double>> uplinkLatencies = new HashMap<>();
+
+    private BatchReport lastReport;
+
+    public OptimalBatchPlacementLogic(int fonID) {
+        setFONId(fonID);
+    }
+
+    public void setFONId(int id) {
+        fonID = id;
+    }
+
+    public int getFonID() {
+        return fonID;
+    }
+
+    /**
+     * @return quality and solve time of the last batch, null before the first
+     */
+    public BatchReport getLastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public PlacementLogicOutput run(List<FogDevice> fogDevices, Map<String, Application> applicationInfo, Map<Integer, Map<String, Double>> resourceAvailability, List<PlacementRequest> pr) {
+        this.fogDevices = fogDevices;
+        this.placementRequests = pr;
+        this.resourceAvailability = resourceAvailability;
+        this.applicationInfo = applicationInfo;
+        state.reset(fogDevices, resourceAvailability, pr);
+
+        for (FogDevice dev : fogDevices)
+            currentModuleInstanceNum.put(dev.getId(), new HashMap<String, Integer>());
+
+        mapModules();
+        PlacementLogicOutput placement = generatePlacementMap();
+        updateResources(resourceAvailability);
+        postProcessing();
+        return placement;
+    }
+
+    @Override
+    public void updateResources(Map<Integer, Map<String, Double>> resourceAvailability) {
+        for (int deviceId : currentModuleInstanceNum.keySet()) {
+            Map<String, Integer> moduleCount = currentModuleInstanceNum.get(deviceId);
+            for (String moduleName : moduleCount.keySet()) {
+                Application app = applicationInfo.get(moduleToApp.get(moduleName));
+                AppModule module = app.getModuleByName(moduleName);
+                double mips = resourceAvailability.get(deviceId).get(ControllerComponent.CPU) - (module.getMips() * moduleCount.get(moduleName));
+                resourceAvailability.get(deviceId).put(ControllerComponent.CPU, mips);
+                Double ram = resourceAvailability.get(deviceId).get(ControllerComponent.RAM);
+                if (ram != null)
+                    resourceAvailability.get(deviceId).put(ControllerComponent.RAM, ram - module.getRam() * moduleCount.get(moduleName));
+            }
+        }
+    }
+
+    @Override
+    public void postProcessing() {
+
+    }
+
+    public void mapModules() {
+        long startTime = System.nanoTime();
+        devices.clear();
+        deviceIndex.clear();
+        uplinkLatencies.clear();
+        for (FogDevice f : fogDevices) {
+            if (!deviceIndex.containsKey(f.getId())) {
+                deviceIndex.put(f.getId(), devices.size());
+                devices.add(f);
+            }
+        }
+        double[] cpu = new double[devices.size()];
+        double[] ram = new double[devices.size()];
+        for (int d = 0; d < devices.size(); d++) {
+            Map<String, Double> resources = resourceAvailability.get(devices.get(d).getId());
+            cpu[d] = resources.get(ControllerComponent.CPU);
+            Double r = resources.get(ControllerComponent.RAM);
+            ram[d] = r == null ? Double.POSITIVE_INFINITY : r;
+        }
+        BatchPlacementSolver solver = new BatchPlacementSolver(cpu, ram);
+        // load of the modules placed outside the solver
+        double[] cpuUsed = new double[devices.size()];
+        double[] ramUsed = new double[devices.size()];
+
+        unplaced.clear();
+        dropped.clear();
+        // request index -> special modules and their devices, placed once the request is
+        List<List<Pair<String, Integer>>> fixed = new ArrayList<>();
+        List<PlacementRequest> requests = new ArrayList<>();
+        List<String> itemModules = new ArrayList<>();
+        List<int[]> itemDomains = new ArrayList<>();
+        for (int r = 0; r < placementRequests.size(); r++) {
+            PlacementRequest placementRequest = placementRequests.get(r);
+            Application app = applicationInfo.get(placementRequest.getApplicationId());
+            Map<String, Integer> mapped = new HashMap<>(placementRequest.getPlacedMicroservices());
+            mappedMicroservices.put(placementRequest.getPlacementRequestId(), mapped);
+            state.startRequest(placementRequest, app, mapped.keySet());
+
+            //special modules  - predefined cloud placements
+            List<Pair<String, Integer>> special = new ArrayList<>();
+            fixed.add(special);
+            for (String microservice : app.getSpecialPlacementInfo().keySet()) {
+                AppModule module = app.getModuleByName(microservice);
+                for (String deviceName : app.getSpecialPlacementInfo().get(microservice)) {
+                    Integer d = deviceIndex.get(state.getDeviceByName(deviceName).getId());
+                    if (solver.fits(d, module.getMips(), module.getRam())) {
+                        solver.addLoad(d, module.getMips(), module.getRam());
+                        cpuUsed[d] = module.getMips() + cpuUsed[d];
+                        ramUsed[d] = module.getRam() + ramUsed[d];
+                        special.add(new Pair<>(microservice, devices.get(d).getId()));
+                        state.placed(placementRequest, microservice);
+                        break;
+                    }
+                }
+            }
+
+            // the modules the edgeward placement would place, clients first
+            List<String> toPlace = new ArrayList<>();
+            for (List<String> ready = state.getModulesToPlace(placementRequest); !ready.isEmpty(); ready = state.getModulesToPlace(placementRequest)) {
+                for (String microservice : ready) {
+                    toPlace.add(microservice);
+                    state.placed(placementRequest, microservice);
+                }
+            }
+            if (toPlace.isEmpty())
+                continue;
+            FogDevice gateway = (FogDevice) CloudSim.getEntity(placementRequest.getGatewayDeviceId());
+            int[] domain = candidates(gateway);
+            if (domain.length == 0) {
+                PLACEMENT.warn("No device of FON {} above gateway {} for placement request {}, dropped", fonID, gateway.getName(), placementRequest.getPlacementRequestId());
+                dropped.add(placementRequest);
+                continue;
+            }
+
+            Map<String, Integer> itemOf = new HashMap<>();
+            for (String microservice : toPlace) {
+                AppModule module = app.getModuleByName(microservice);
+                itemOf.put(microservice, solver.addItem(module.getMips(), module.getRam(), domain, r));
+                itemModules.add(microservice);
+                itemDomains.add(domain);
+                requests.add(placementRequest);
+            }
+            addLatencyTerms(solver, app, gateway.getId(), mapped, itemOf, domain);
+        }
+
+        int items = solver.getItemCount();
+        boolean exact = items <= MicroservicePlacementConfig.OPTIMAL_EXACT_MAX_MODULES;
+        BatchPlacementSolver.Result result = exact ?
+                solver.solveExact(MicroservicePlacementConfig.OPTIMAL_EXACT_NODE_LIMIT) :
+                solver.solveSearch((long) (MicroservicePlacementConfig.OPTIMAL_SEARCH_TIME_BUDGET * 1e6),
+                        MicroservicePlacementConfig.OPTIMAL_SEARCH_MAX_ITERATIONS,
+                        MicroservicePlacementConfig.OPTIMAL_REPAIR_NODE_LIMIT,
+                        MicroservicePlacementConfig.OPTIMAL_SEARCH_SEED);
+        if (!result.feasible) {
+            // keep the requests whose modules fit, in order, at the positions found
+            for (int i = 0; i < items; ) {
+                PlacementRequest placementRequest = requests.get(i);
+                Application app = applicationInfo.get(placementRequest.getApplicationId());
+                int end = i;
+                while (end < items && requests.get(end) == placementRequest)
+                    end++;
+                boolean fits = true;
+                for (int k = i; k < end; k++) {
+                    int d = itemDomains.get(k)[result.position[k]];
+                    AppModule module = app.getModuleByName(itemModules.get(k));
+                    cpuUsed[d] = module.getMips() + cpuUsed[d];
+                    ramUsed[d] = module.getRam() + ramUsed[d];
+                    if (cpuUsed[d] > cpu[d] || ramUsed[d] > ram[d])
+                        fits = false;
+                }
+                if (!fits) {
+                    for (int k = i; k < end; k++) {
+                        int d = itemDomains.get(k)[result.position[k]];
+                        AppModule module = app.getModuleByName(itemModules.get(k));
+                        cpuUsed[d] -= module.getMips();
+                        ramUsed[d] -= module.getRam();
+                    }
+                    unplaced.add(placementRequest);
+                }
+                i = end;
+            }
+            PLACEMENT.warn("Batch placement of FON {} exceeds the capacity of some devices, {} requests left unplaced", fonID, unplaced.size());
+        }
+
+        for (int r = 0; r < placementRequests.size(); r++) {
+            PlacementRequest placementRequest = placementRequests.get(r);
+            if (unplaced.contains(placementRequest) || dropped.contains(placementRequest))
+                continue;
+            Application app = applicationInfo.get(placementRequest.getApplicationId());
+            for (Pair<String, Integer> special : fixed.get(r))
+                place(placementRequest, app, special.getFirst(), special.getSecond());
+        }
+        for (int i = 0; i < items; i++) {
+            PlacementRequest placementRequest = requests.get(i);
+            if (unplaced.contains(placementRequest))
+                continue;
+            int deviceId = devices.get(itemDomains.get(i)[result.position[i]]).getId();
+            place(placementRequest, applicationInfo.get(placementRequest.getApplicationId()), itemModules.get(i), deviceId);
+        }
+
+        lastReport = new BatchReport(exact, placementRequests.size(), items, result, solver.getLowerBound(),
+                (System.nanoTime() - startTime) / 1e6);
+        MetricsRegistry.record(MetricsRegistry.PLACEMENT_SOLVE_TIME, fonID, lastReport.getSolveTime());
+        MetricsRegistry.record(MetricsRegistry.PLACEMENT_GAP, fonID, lastReport.getGap() * 100);
+        PLACEMENT.info("Batch placement of FON {}: {}", fonID, lastReport);
+    }
+
+    private void place(PlacementRequest placementRequest, Application app, String microservice, int deviceId) {
+        moduleToApp.put(microservice, app.getAppId());
+        mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
+        Map<String, Integer> instances = currentModuleInstanceNum.get(deviceId);
+        if (!instances.containsKey(microservice))
+            instances.put(microservice, 1);
+        else
+            instances.put(microservice, instances.get(microservice) + 1);
+    }
+
+    /**
+     * Devices of the FON from the parent of the gateway upwards, by dense index.
+     */
+    private int[] candidates(FogDevice gateway) {
+        List<Integer> path = new ArrayList<>();
+        Integer d = deviceIndex.get(gateway.getParentId());
+        while (d != null && !path.contains(d)) {
+            path.add(d);
+            d = deviceIndex.get(devices.get(d).getParentId());
+        }
+        int[] domain = new int[path.size()];
+        for (int k = 0; k < domain.length; k++)
+            domain[k] = path.get(k);
+        return domain;
+    }
+
+    /**
+     * Adds the latency of the loops of a request: a term per two consecutive modules of a loop, on the items or
+     * the devices of the modules.
+     */
+    private void addLatencyTerms(BatchPlacementSolver solver, Application app, int gatewayId, Map<String, Integer> placed,
+                                 Map<String, Integer> itemOf, int[] domain) {
+        Map<String, AppEdge> edges = new HashMap<>();
+        for (AppEdge edge : app.getEdges()) {
+            String key = edge.getSource() + "\u0000" + edge.getDestination();
+            if (!edges.containsKey(key))
+                edges.put(key, edge);
+        }
+        List<List<String>> paths = new ArrayList<>();
+        if (app.getLoops() != null && !app.getLoops().isEmpty()) {
+            for (AppLoop loop : app.getLoops())
+                paths.add(loop.getModules());
+        } else {
+            for (AppEdge edge : app.getEdges())
+                paths.add(Arrays.asList(edge.getSource(), edge.getDestination()));
+        }
+
+        int n = domain.length;
+        for (List<String> path : paths) {
+            for (int k = 1; k < path.size(); k++) {
+                String u = path.get(k - 1);
+                String v = path.get(k);
+                AppEdge edge = edges.get(u + "\u0000" + v);
+                double cpuLength = edge == null || app.getModuleByName(v) == null ? 0 : edge.getTupleCpuLength();
+                Integer itemU = itemOf.get(u);
+                Integer itemV = itemOf.get(v);
+                Integer deviceU = itemU == null ? deviceOf(app, u, placed, gatewayId) : null;
+                Integer deviceV = itemV == null ? deviceOf(app, v, placed, gatewayId) : null;
+                if ((itemU == null && deviceU == null) || (itemV == null && deviceV == null))
+                    continue; // a module that is not placed
+
+                if (itemU == null && itemV == null) {
+                    solver.addConstant(cost(deviceU, deviceV, cpuLength));
+                } else if (itemV == null) {
+                    double[] cost = new double[n];
+                    for (int p = 0; p < n; p++)
+                        cost[p] = cost(devices.get(domain[p]).getId(), deviceV, cpuLength);
+                    solver.addUnary(itemU, cost);
+                } else if (itemU == null || itemU.equals(itemV)) {
+                    double[] cost = new double[n];
+                    for (int p = 0; p < n; p++) {
+                        int at = devices.get(domain[p]).getId();
+                        cost[p] = cost(itemU == null ? deviceU : at, at, cpuLength);
+                    }
+                    solver.addUnary(itemV, cost);
+                } else {
+                    double[][] cost = new double[n][n];
+                    for (int p = 0; p < n; p++) {
+                        for (int q = 0; q < n; q++)
+                            cost[p][q] = cost(devices.get(domain[p]).getId(), devices.get(domain[q]).getId(), cpuLength);
+                    }
+                    solver.addBinary(itemU, itemV, cost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Device of a placed module, the gateway for sensors and actuators, or null for a module not placed.
+     */
+    private Integer deviceOf(Application app, String name, Map<String, Integer> placed, int gatewayId) {
+        if (placed.containsKey(name))
+            return placed.get(name);
+        return app.getModuleByName(name) == null ? gatewayId : null;
+    }
+
+    /**
+     * Latency of a tuple sent from one device to another and executed there.
+     */
+    private double cost(int from, int to, double cpuLength) {
+        FogDevice device = (FogDevice) CloudSim.getEntity(to);
+        return latency(from, to) + (cpuLength == 0 ? 0 : cpuLength / device.getHost().getTotalMips());
+    }
+
+    /**
+     * Network latency between two devices, through their nearest common ancestor.
+     */
+    private double latency(int from, int to) {
+        if (from == to)
+            return 0;
+        Map<Integer, Double> up = uplinkLatencies(from);
+        double latency = 0;
+        FogDevice device = (FogDevice) CloudSim.getEntity(to);
+        Set<Integer> visited = new HashSet<>();
+        while (device != null && visited.add(device.getId())) {
+            if (up.containsKey(device.getId()))
+                return latency + up.get(device.getId());
+            latency += device.getUplinkLatency();
+            device = device.getParentId() < 0 ? null : (FogDevice) CloudSim.getEntity(device.getParentId());
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private Map<Integer, Double> uplinkLatencies(int deviceId) {
+        Map<Integer, Double> up = uplinkLatencies.get(deviceId);
+        if (up == null) {
+            up = new HashMap<>();
+            double latency = 0;
+            FogDevice device = (FogDevice) CloudSim.getEntity(deviceId);
+            while (device != null && !up.containsKey(device.getId())) {
+                up.put(device.getId(), latency);
+                latency += device.getUplinkLatency();
+                device = device.getParentId() < 0 ? null : (FogDevice) CloudSim.getEntity(device.getParentId());
+            }
+            uplinkLatencies.put(deviceId, up);
+        }
+        return up;
+    }
+
+    private PlacementLogicOutput generatePlacementMap() {
+        Map<Integer, Map<String, Integer>> placement = new HashMap<>();
+        for (PlacementRequest placementRequest : placementRequests) {
+            List<String> toRemove = new ArrayList<>();
+            //placement should include newly placed ones
+            for (String microservice : mappedMicroservices.get(placementRequest.getPlacementRequestId()).keySet()) {
+                if (placementRequest.getPlacedMicroservices().containsKey(microservice))
+                    toRemove.add(microservice);
+                else
+                    placementRequest.getPlacedMicroservices().put(microservice, mappedMicroservices.get(placementRequest.getPlacementRequestId()).get(microservice));
+            }
+            for (String microservice : toRemove)
+                mappedMicroservices.get(placementRequest.getPlacementRequestId()).remove(microservice);
+
+            //update placed modules in placement request as well
+            placement.put(placementRequest.getPlacementRequestId(), mappedMicroservices.get(placementRequest.getPlacementRequestId()));
+        }
+
+        // <deviceid, < app, list of modules to deploy > this is to remove deploying same module more than once on a certain device.
+        Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = new HashMap<>();
+        Map<Integer, List<Pair<String, Integer>>> serviceDiscoveryInfo = new HashMap<>();
+        Map<PlacementRequest, Integer> prStatus = new HashMap<>();
+        for (int prID : placement.keySet()) {
+            PlacementRequest placementRequest = state.getRequest(prID);
+            Application application = applicationInfo.get(placementRequest.getApplicationId());
+            for (String microserviceName : placement.get(prID).keySet()) {
+                int deviceID = placement.get(prID).get(microserviceName);
+
+                //service discovery info propagation
+                List<Integer> clientDevices = getClientServiceNodeIds(application, microserviceName, placementRequest.getPlacedMicroservices(), placement.get(prID));
+                for (int clientDevice : clientDevices) {
+                    if (!serviceDiscoveryInfo.containsKey(clientDevice))
+                        serviceDiscoveryInfo.put(clientDevice, new ArrayList<Pair<String, Integer>>());
+                    serviceDiscoveryInfo.get(clientDevice).add(new Pair<>(microserviceName, deviceID));
+                }
+            }
+            // unplaced requests go back to the FON for a later round, dropped ones get no status
+            if (!dropped.contains(placementRequest))
+                prStatus.put(placementRequest, unplaced.contains(placementRequest) ? fonID : -1);
+        }
+
+        for (int deviceId : currentModuleInstanceNum.keySet()) {
+            for (String microservice : currentModuleInstanceNum.get(deviceId).keySet()) {
+                Application application = applicationInfo.get(moduleToApp.get(microservice));
+                AppModule appModule = new AppModule(application.getModuleByName(microservice));
+                ModuleLaunchConfig moduleLaunchConfig = new ModuleLaunchConfig(appModule, currentModuleInstanceNum.get(deviceId).get(microservice));
+                if (!perDevice.containsKey(deviceId))
+                    perDevice.put(deviceId, new HashMap<Application, List<ModuleLaunchConfig>>());
+                if (!perDevice.get(deviceId).containsKey(application))
+                    perDevice.get(deviceId).put(application, new ArrayList<ModuleLaunchConfig>());
+                perDevice.get(deviceId).get(application).add(moduleLaunchConfig);
+            }
+        }
+
+        return new PlacementLogicOutput(perDevice, serviceDiscoveryInfo, prStatus);
+    }
+
+    public List<Integer> getClientServiceNodeIds(Application application, String
+            microservice, Map<String, Integer> placed, Map<String, Integer> placementPerPr) {
+        List<String> clientServices = state.getClientServices(application, microservice);
+        List<Integer> nodeIDs = new LinkedList<>();
+        for (String clientService : clientServices) {
+            if (placed.get(clientService) != null)
+                nodeIDs.add(placed.get(clientService));
+            else if (placementPerPr.get(clientService) != null)
+                nodeIDs.add(placementPerPr.get(clientService));
+        }
+
+        return nodeIDs;
+    }
+
+    /**
+     * Quality and solve time of the placement of a batch.
+     */
+    public static class BatchReport {
+        private final boolean exact;
+        private final int requests;
+        private final int modules;
+        private final double latency;
+        private final double lowerBound;
+        private final boolean optimal;
+        private final boolean feasible;
+        private final long nodes;
+        private final int iterations;
+        private final double solveTime;
+
+        BatchReport(boolean exact, int requests, int modules, BatchPlacementSolver.Result result, double lowerBound, double solveTime) {
+            this.exact = exact;
+            this.requests = requests;
+            this.modules = modules;
+            this.latency = result.cost;
+            this.lowerBound = Math.min(lowerBound, result.cost);
+            this.optimal = result.optimal;
+            this.feasible = result.feasible;
+            this.nodes = result.nodes;
+            this.iterations = result.iterations;
+            this.solveTime = solveTime;
+        }
+
+        /**
+         * @return whether the batch was solved by branch and bound rather than by search
+         */
+        public boolean isExact() {
+            return exact;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        public int getModules() {
+            return modules;
+        }
+
+        /**
+         * @return the total loop latency of the placement
+         */
+        public double getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return a latency no placement can beat: each pair of consecutive modules on its best devices
+         */
+        public double getLowerBound() {
+            return optimal ? latency : lowerBound;
+        }
+
+        /**
+         * @return relative distance of the latency to the lower bound, 0 if proved optimal
+         */
+        public double getGap() {
+            return latency <= 0 ? 0 : (latency - getLowerBound()) / latency;
+        }
+
+        public boolean isOptimal() {
+            return optimal;
+        }
+
+        public boolean isFeasible() {
+            return feasible;
+        }
+
+        /**
+         * @return milliseconds of wall-clock time
+         */
+        public double getSolveTime() {
+            return solveTime;
+        }
+
+        @Override
+        public String toString() {
+            return (exact ? "branch and bound" : "local search") + ", " + requests + " requests, " + modules + " modules, latency "
+                    + latency + (optimal ? " (optimal)" : " (lower bound " + getLowerBound() + ", gap " + getGap() * 100 + "%)")
+                    + ", " + (exact ? nodes + " nodes" : iterations + " iterations") + ", " + solveTime + " ms";
+        }
+    }
+
+}
@@ -12,6 +12,7 @@ public class PlacementLogicFactory {
     public static final int DISTRIBUTED_MICROSERVICES_PLACEMENT = 3;
     public static final int MY_MICROSERVICES_PLACEMENT = 4;
     public static final int MY_OFFLINE_POC_PLACEMENT = 5;
+    public static final int OPTIMAL_BATCH_PLACEMENT = 6;
 
     public MicroservicePlacementLogic getPlacementLogic(int logic, int fonId) {
         switch (logic) {
@@ -25,6 +26,8 @@ public class PlacementLogicFactory {
                 return new MyMicroservicePlacementLogic(fonId);
             case MY_OFFLINE_POC_PLACEMENT:
                 return new MyOfflinePOCPlacementLogic(fonId);
+            case OPTIMAL_BATCH_PLACEMENT:
+                return new OptimalBatchPlacementLogic(fonId);
         }
 
         Logger.error("Placement Logic Error", "Error initializing placement logic");
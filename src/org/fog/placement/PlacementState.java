@@ -0,0 +1,328 @@
+package org.fog.placement;
+
+import org.fog.application.AppEdge;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.entities.ControllerComponent;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PlacementRequest;
+import org.fog.entities.Tuple;
+
+import java.util.*;
+
+/**
+ * Indexed state of the placement rounds of a FON, shared by the edgeward placement logics.
+ * <p>
+ * Devices of a round get dense indexes, and their CPU load and capacity are kept in arrays by index. The module
+ * dependencies of each application are compiled once into a graph: a module can be placed once the destinations of
+ * its DOWN edges and the sources of its UP edges are placed. Each placement request keeps, per module, the number of
+ * those dependencies still unplaced, so the modules ready to be placed are known without scanning the edges.
+ * <p>
+ * Between rounds the state can be kept with {@link #update}: the devices are only indexed again if the FON's device
+ * list changed, and only the capacities of the devices placed on in the last round, or reported changed by
+ * {@link #resourcesUpdated(int)}, are read again, so a round costs in the size of its batch.
+ */
+class PlacementState {
+
+    private FogDevice[] devices = new FogDevice[0];
+    private final Map<Integer, Integer> deviceIndex = new HashMap<>();
+    private final Map<String, FogDevice> deviceByName = new HashMap<>();
+    private double[] cpuLoad = new double[0];
+    private double[] cpuCapacity = new double[0];
+
+    // what the devices were indexed from, to tell whether update can keep them
+    private List<FogDevice> indexedDevices;
+    private int indexedDeviceCount;
+    private Map<Integer, Map<String, Double>> resourceAvailability;
+    /** indexes of the devices placed on in this round */
+    private final List<Integer> loaded = new ArrayList<>();
+    private boolean[] isLoaded = new boolean[0];
+    /** ids of the devices whose resources changed since their capacity was read */
+    private final Set<Integer> updated = new HashSet<>();
+
+    private final Map<Integer, PlacementRequest> requestById = new HashMap<>();
+    /** placement request id -> modules placed and ready to place */
+    private final Map<Integer, RequestProgress> progress = new HashMap<>();
+
+    private final Map<Application, ModuleGraph> graphs = new IdentityHashMap<>();
+
+    /**
+     * Starts a placement round: indexes the devices and requests and clears the CPU loads.
+     */
+    void reset(List<FogDevice> fogDevices, Map<Integer, Map<String, Double>> resourceAvailability, List<PlacementRequest> placementRequests) {
+        indexedDevices = fogDevices;
+        indexedDeviceCount = fogDevices.size();
+        this.resourceAvailability = resourceAvailability;
+        loaded.clear();
+        updated.clear();
+        deviceIndex.clear();
+        deviceByName.clear();
+        List<FogDevice> distinct = new ArrayList<>(fogDevices.size());
+        for (FogDevice f : fogDevices) {
+            if (!deviceIndex.containsKey(f.getId())) {
+                deviceIndex.put(f.getId(), distinct.size());
+                distinct.add(f);
+            }
+            if (!deviceByName.containsKey(f.getName()))
+                deviceByName.put(f.getName(), f);
+        }
+        devices = distinct.toArray(new FogDevice[distinct.size()]);
+        cpuLoad = new double[devices.length];
+        cpuCapacity = new double[devices.length];
+        isLoaded = new boolean[devices.length];
+        for (int i = 0; i < devices.length; i++)
+            readCapacity(i);
+        startRound(placementRequests);
+    }
+
+    /**
+     * Starts a placement round from the state of the last one, which {@link #endRound()} closed. Falls back to
+     * {@link #reset} if the devices or their resource map are not the ones indexed.
+     */
+    void update(List<FogDevice> fogDevices, Map<Integer, Map<String, Double>> resourceAvailability, List<PlacementRequest> placementRequests) {
+        if (fogDevices != indexedDevices || fogDevices.size() != indexedDeviceCount || resourceAvailability != this.resourceAvailability) {
+            reset(fogDevices, resourceAvailability, placementRequests);
+            return;
+        }
+        for (int deviceId : updated) {
+            Integer index = deviceIndex.get(deviceId);
+            if (index != null)
+                readCapacity(index);
+        }
+        updated.clear();
+        startRound(placementRequests);
+    }
+
+    /**
+     * Ends a placement round, once the placed modules are taken off the resource availability: the devices placed on
+     * get their capacity read again and no load.
+     */
+    void endRound() {
+        for (int index : loaded) {
+            readCapacity(index);
+            cpuLoad[index] = 0;
+            isLoaded[index] = false;
+        }
+        loaded.clear();
+    }
+
+    /**
+     * Records that the resources of a device changed outside the placement, to be read again next round.
+     */
+    void resourcesUpdated(int deviceId) {
+        updated.add(deviceId);
+    }
+
+    private void readCapacity(int index) {
+        Map<String, Double> resources = resourceAvailability.get(devices[index].getId());
+        Double cpu = resources == null ? null : resources.get(ControllerComponent.CPU);
+        cpuCapacity[index] = cpu == null ? Double.NaN : cpu;
+    }
+
+    private void startRound(List<PlacementRequest> placementRequests) {
+        requestById.clear();
+        progress.clear();
+        for (PlacementRequest placementRequest : placementRequests)
+            requestById.put(placementRequest.getPlacementRequestId(), placementRequest);
+    }
+
+    FogDevice getDevice(int deviceId) {
+        Integer index = deviceIndex.get(deviceId);
+        return index == null ? null : devices[index];
+    }
+
+    FogDevice getDeviceByName(String deviceName) {
+        return deviceByName.get(deviceName);
+    }
+
+    PlacementRequest getRequest(int placementRequestId) {
+        return requestById.get(placementRequestId);
+    }
+
+    /**
+     * Whether a module of the given MIPS fits on the device, on top of what was placed on it in this round
+     */
+    boolean fits(int deviceId, double mips) {
+        int index = deviceIndex.get(deviceId);
+        return mips + cpuLoad[index] <= cpuCapacity[index];
+    }
+
+    void addCpuLoad(int deviceId, double mips) {
+        int index = deviceIndex.get(deviceId);
+        if (!isLoaded[index]) {
+            isLoaded[index] = true;
+            loaded.add(index);
+        }
+        cpuLoad[index] = mips + cpuLoad[index];
+    }
+
+    /**
+     * @return device id -> CPU placed on it in this round, for the devices placed on
+     */
+    Map<Integer, Double> getCpuLoads() {
+        Map<Integer, Double> loads = new HashMap<>();
+        for (int index : loaded)
+            loads.put(devices[index].getId(), cpuLoad[index]);
+        return loads;
+    }
+
+    /**
+     * Starts tracking a placement request, some of whose modules are already placed.
+     */
+    void startRequest(PlacementRequest placementRequest, Application app, Collection<String> placedModules) {
+        RequestProgress p = new RequestProgress(getGraph(app));
+        for (String module : placedModules)
+            p.placed(module);
+        progress.put(placementRequest.getPlacementRequestId(), p);
+    }
+
+    /**
+     * Records a module of a request as placed, which may make the modules depending on it ready.
+     */
+    void placed(PlacementRequest placementRequest, String module) {
+        progress.get(placementRequest.getPlacementRequestId()).placed(module);
+    }
+
+    /**
+     * @return the modules of the request not placed yet whose dependencies all are, in application order
+     */
+    List<String> getModulesToPlace(PlacementRequest placementRequest) {
+        return progress.get(placementRequest.getPlacementRequestId()).ready();
+    }
+
+    /**
+     * @return the sources of the UP edges into the module, in application order
+     */
+    List<String> getClientServices(Application app, String microservice) {
+        List<String> clients = getGraph(app).clientServices.get(microservice);
+        return clients == null ? new LinkedList<String>() : new LinkedList<>(clients);
+    }
+
+    private ModuleGraph getGraph(Application app) {
+        ModuleGraph graph = graphs.get(app);
+        if (graph == null || !graph.isGraphOf(app)) {
+            graph = new ModuleGraph(app);
+            graphs.put(app, graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Module dependencies of an application. Nodes are the modules, in application order, then the other names the
+     * edges refer to (sensors, actuators), which only count as placed if a request says so.
+     */
+    private static class ModuleGraph {
+        private final List<AppModule> modules;
+        private final List<AppEdge> edges;
+        private final int moduleCount;
+        private final int edgeCount;
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nodes = new HashMap<>();
+        /** number of modules, each node being one of them or another edge end */
+        private final int moduleNodes;
+        /** node -> modules waiting for it, once per edge */
+        private final int[][] dependents;
+        /** module node -> dependencies, once per edge */
+        private final int[] inDegree;
+        private final Map<String, List<String>> clientServices = new HashMap<>();
+
+        ModuleGraph(Application app) {
+            modules = app.getModules();
+            edges = app.getEdges();
+            moduleCount = modules.size();
+            edgeCount = edges.size();
+
+            // the first module of a name is the one placed, as in Application.getModuleByName
+            for (AppModule module : modules)
+                node(module.getName());
+            moduleNodes = names.size();
+            List<int[]> dependencies = new ArrayList<>();
+            for (AppEdge edge : edges) {
+                if (edge.getDirection() == Tuple.DOWN && nodes.get(edge.getSource()) != null
+                        && nodes.get(edge.getSource()) < moduleNodes)
+                    dependencies.add(new int[]{nodes.get(edge.getSource()), node(edge.getDestination())});
+                if (edge.getDirection() == Tuple.UP) {
+                    Integer destination = nodes.get(edge.getDestination());
+                    if (destination != null && destination < moduleNodes)
+                        dependencies.add(new int[]{destination, node(edge.getSource())});
+                    List<String> clients = clientServices.get(edge.getDestination());
+                    if (clients == null) {
+                        clients = new ArrayList<>();
+                        clientServices.put(edge.getDestination(), clients);
+                    }
+                    clients.add(edge.getSource());
+                }
+            }
+
+            inDegree = new int[moduleNodes];
+            int[] dependentCount = new int[names.size()];
+            for (int[] d : dependencies) {
+                inDegree[d[0]]++;
+                dependentCount[d[1]]++;
+            }
+            dependents = new int[names.size()][];
+            for (int n = 0; n < names.size(); n++)
+                dependents[n] = new int[dependentCount[n]];
+            int[] filled = new int[names.size()];
+            for (int[] d : dependencies)
+                dependents[d[1]][filled[d[1]]++] = d[0];
+        }
+
+        private int node(String name) {
+            Integer node = nodes.get(name);
+            if (node == null) {
+                node = names.size();
+                names.add(name);
+                nodes.put(name, node);
+            }
+            return node;
+        }
+
+        boolean isGraphOf(Application app) {
+            return modules == app.getModules() && edges == app.getEdges()
+                    && moduleCount == modules.size() && edgeCount == edges.size();
+        }
+    }
+
+    /**
+     * Placement progress of one request: the placed nodes, the dependencies each module still waits for, and the
+     * modules ready to place.
+     */
+    private static class RequestProgress {
+        private final ModuleGraph graph;
+        private final boolean[] placed;
+        private final int[] waiting;
+        private final BitSet ready = new BitSet();
+
+        RequestProgress(ModuleGraph graph) {
+            this.graph = graph;
+            placed = new boolean[graph.names.size()];
+            waiting = graph.inDegree.clone();
+            for (int m = 0; m < graph.moduleNodes; m++) {
+                if (waiting[m] == 0)
+                    ready.set(m);
+            }
+        }
+
+        void placed(String name) {
+            Integer node = graph.nodes.get(name);
+            if (node == null || placed[node])
+                return;
+            placed[node] = true;
+            if (node < graph.moduleNodes)
+                ready.clear(node);
+            for (int m : graph.dependents[node]) {
+                if (--waiting[m] == 0 && !placed[m])
+                    ready.set(m);
+            }
+        }
+
+        List<String> ready() {
+            List<String> modules = new ArrayList<>(ready.cardinality());
+            for (int m = ready.nextSetBit(0); m >= 0; m = ready.nextSetBit(m + 1))
+                modules.add(graph.names.get(m));
+            return modules;
+        }
+    }
+}
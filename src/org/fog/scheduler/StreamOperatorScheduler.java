@@ -1,16 +1,326 @@
 package org.fog.scheduler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Pe;
-import org.cloudbus.cloudsim.VmSchedulerTimeShared;
-import org.cloudbus.cloudsim.VmSchedulerTimeSharedOverSubscription;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.lists.PeList;
 import org.cloudbus.cloudsim.sdn.overbooking.VmSchedulerTimeSharedOverbookingEnergy;
 
+/**
+ * VM scheduler of fog hosts.
+ * <p>
+ * Fog devices give each module either the whole host or nothing, and the modules given the whole host share it
+ * (see FogDevice.updateAllocatedMips). While the allocation has that form the scheduler keeps it in per-VM arrays:
+ * each VM asks for nothing, for no PE, or for the whole host, and the share of the VMs asking for the whole host
+ * is worked out from their number. Changing what one VM asks for is then O(1) instead of reallocating every VM on
+ * the host. Any other request fills the time-shared maps in again, with the same allocation as if every VM had been
+ * allocated one by one, and continues as a plain over-subscribed time-shared scheduler.
+ */
 public class StreamOperatorScheduler extends VmSchedulerTimeSharedOverbookingEnergy{
 
+	/** The VM asks for nothing: no allocation at all. */
+	private static final byte NONE = 0;
+	/** The VM asks for no PE. */
+	private static final byte EMPTY = 1;
+	/** The VM asks for one PE with no MIPS. */
+	private static final byte ZERO = 2;
+	/** The VM asks for one PE with the MIPS of the whole host. */
+	private static final byte FULL = 3;
+
+	private static final List<Double> NO_PE = Collections.emptyList();
+	private static final List<Double> NO_MIPS = Collections.singletonList(0.0);
+
+	/** Whether the per-VM arrays hold the allocation; if not, the time-shared maps do. */
+	private boolean sharing = false;
+
+	private Vm[] vms = new Vm[0];
+	/** vm id -> slot in the arrays */
+	private final Map<Integer, Integer> slots = new HashMap<Integer, Integer>();
+
+	/** What each VM asks for; only valid when the stamp of the slot is the current epoch, else it is bulkRequest. */
+	private byte[] request = new byte[0];
+	private int[] stamp = new int[0];
+	private int epoch = 0;
+	private byte bulkRequest = NONE;
+
+	/** Slots of the VMs asking for the whole host, and the position of each slot in it (-1 if not there). */
+	private int[] fullSlots = new int[0];
+	private int[] fullPosition = new int[0];
+	private int fullCount = 0;
+
+	/** Number of times each VM is listed by the host, and the sum of it over the VMs asking for the whole host. */
+	private int[] listed = new int[0];
+	private int fullListed = 0;
+
+	private double share = 0;
+	private List<Double> shareList = NO_MIPS;
+
 	public StreamOperatorScheduler(List<? extends Pe> pelist) {
 		super(pelist);
 	}
+
+	/**
+	 * Whether the allocation of the given VMs is held in the per-VM arrays.
+	 */
+	public boolean isSharing(List<? extends Vm> hostVms) {
+		return sharing && hostVms.size() == vms.length;
+	}
+
+	/**
+	 * Whether the per-VM arrays can hold the allocation; they cannot while VMs are migrating.
+	 */
+	public boolean canShare() {
+		return getVmsMigratingIn().isEmpty() && getVmsMigratingOut().isEmpty();
+	}
+
+	/**
+	 * Releases the PEs of all the VMs and holds the allocation of the given VMs in the per-VM arrays from now on.
+	 * No VM asks for anything yet.
+	 *
+	 * @param hostVms the VMs of the host, in order
+	 */
+	public void startSharing(List<? extends Vm> hostVms) {
+		super.deallocatePesForAllVms();
+		vms = hostVms.toArray(new Vm[hostVms.size()]);
+		slots.clear();
+		listed = new int[vms.length];
+		for (int i = 0; i < vms.length; i++) {
+			Integer first = slots.get(vms[i].getId());
+			if (first != null && vms[first] == vms[i]) {
+				listed[first]++;
+			} else {
+				slots.put(vms[i].getId(), i);
+				listed[i] = 1;
+			}
+		}
+		request = new byte[vms.length];
+		stamp = new int[vms.length];
+		epoch = 0;
+		bulkRequest = NONE;
+		fullSlots = new int[vms.length];
+		fullPosition = new int[vms.length];
+		Arrays.fill(fullPosition, -1);
+		fullCount = 0;
+		fullListed = 0;
+		sharing = true;
+		updateShare();
+	}
+
+	/**
+	 * Makes every VM ask for one PE with no MIPS, as if each had been allocated a share of 0.
+	 */
+	public void resetShares() {
+		setAllRequests(ZERO);
+	}
+
+	/**
+	 * Gives a VM a share of the whole host, or takes it away.
+	 *
+	 * @return true if what the VM asks for changed
+	 */
+	public boolean setFullShare(Vm vm, boolean full) {
+		int slot = slotOf(vm);
+		if (slot < 0)
+			return false;
+		byte wanted = full ? FULL : ZERO;
+		if (requestOf(slot) == wanted)
+			return false;
+		setRequest(slot, wanted);
+		return true;
+	}
+
+	public boolean hasFullShare(Vm vm) {
+		int slot = slotOf(vm);
+		return slot >= 0 && fullPosition[slot] >= 0;
+	}
+
+	/**
+	 * Total MIPS allocated to the VMs held in the per-VM arrays, summed over the host's VM list (a VM listed twice
+	 * by the host counts twice).
+	 */
+	public double getTotalAllocatedMips() {
+		return sharing ? fullListed * share : 0;
+	}
+
+	private int slotOf(Vm vm) {
+		Integer slot = slots.get(vm.getId());
+		return slot != null && vms[slot] == vm ? slot : -1;
+	}
+
+	private byte requestOf(int slot) {
+		return stamp[slot] == epoch ? request[slot] : bulkRequest;
+	}
+
+	private void setRequest(int slot, byte wanted) {
+		byte current = requestOf(slot);
+		request[slot] = wanted;
+		stamp[slot] = epoch;
+		if ((current == FULL) == (wanted == FULL))
+			return;
+		if (wanted == FULL) {
+			fullPosition[slot] = fullCount;
+			fullSlots[fullCount++] = slot;
+			fullListed += listed[slot];
+		} else {
+			fullListed -= listed[slot];
+			int last = fullSlots[--fullCount];
+			fullSlots[fullPosition[slot]] = last;
+			fullPosition[last] = fullPosition[slot];
+			fullPosition[slot] = -1;
+		}
+		updateShare();
+	}
+
+	private void setAllRequests(byte wanted) {
+		for (int i = 0; i < fullCount; i++)
+			fullPosition[fullSlots[i]] = -1;
+		fullCount = 0;
+		fullListed = 0;
+		epoch++;
+		bulkRequest = wanted;
+		updateShare();
+	}
+
+	/**
+	 * Works out the share of the VMs asking for the whole host the way over-subscribed time sharing does: each asks
+	 * for one PE, capped to the capacity of a PE, and the requests are scaled down if they do not all fit.
+	 */
+	private void updateShare() {
+		double totalMips = PeList.getTotalMips(getPeList());
+		double requested = Math.min(totalMips, getPeCapacity());
+		double available;
+		if (fullCount * requested <= totalMips) {
+			share = requested;
+			available = totalMips - fullCount * requested;
+		} else {
+			share = Math.floor(requested * (totalMips / (fullCount * requested)));
+			available = 0;
+		}
+		shareList = Collections.singletonList(share);
+		if (available != getAvailableMips())
+			setAvailableMips(available);
+	}
+
+	/**
+	 * Fills the time-shared maps with the allocation held in the arrays, and stops using the arrays.
+	 */
+	private void stopSharing() {
+		sharing = false;
+		super.deallocatePesForAllVms();
+		double totalMips = PeList.getTotalMips(getPeList());
+		for (int i = 0; i < vms.length; i++) {
+			byte r = requestOf(i);
+			if (r == NONE || listed[i] == 0)
+				continue;
+			List<Double> mipsShare = new ArrayList<Double>(1);
+			if (r == ZERO)
+				mipsShare.add(0.0);
+			else if (r == FULL)
+				mipsShare.add(totalMips);
+			super.allocatePesForVm(vms[i], mipsShare);
+		}
+	}
+
+	/**
+	 * What a VM asks for, if it is one of the requests the arrays can hold; -1 otherwise.
+	 */
+	private byte requestFor(Vm vm, List<Double> mipsShare) {
+		if (vm.isInMigration() || !canShare())
+			return -1;
+		if (mipsShare.isEmpty())
+			return EMPTY;
+		if (mipsShare.size() == 1) {
+			double mips = mipsShare.get(0);
+			if (mips == 0)
+				return ZERO;
+			if (mips == PeList.getTotalMips(getPeList()))
+				return FULL;
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean allocatePesForVm(Vm vm, List<Double> mipsShareRequested) {
+		if (sharing) {
+			int slot = slotOf(vm);
+			byte wanted = requestFor(vm, mipsShareRequested);
+			if (slot >= 0 && wanted >= 0 && requestOf(slot) == NONE) {
+				setRequest(slot, wanted);
+				return true;
+			}
+			stopSharing();
+		}
+		return super.allocatePesForVm(vm, mipsShareRequested);
+	}
+
+	@Override
+	public void deallocatePesForVm(Vm vm) {
+		if (sharing) {
+			int slot = slotOf(vm);
+			if (slot >= 0 && canShare()) {
+				setRequest(slot, NONE);
+				return;
+			}
+			stopSharing();
+		}
+		super.deallocatePesForVm(vm);
+	}
+
+	@Override
+	public void deallocatePesForAllVms() {
+		if (sharing && canShare()) {
+			setAllRequests(NONE);
+			return;
+		}
+		if (sharing)
+			stopSharing();
+		super.deallocatePesForAllVms();
+	}
+
+	@Override
+	public List<Double> getAllocatedMipsForVm(Vm vm) {
+		if (!sharing)
+			return super.getAllocatedMipsForVm(vm);
+		int slot = slotOf(vm);
+		if (slot < 0)
+			return null;
+		switch (requestOf(slot)) {
+		case FULL:
+			return shareList;
+		case ZERO:
+			return NO_MIPS;
+		case EMPTY:
+			return NO_PE;
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	public double getTotalAllocatedMipsForVm(Vm vm) {
+		if (!sharing)
+			return super.getTotalAllocatedMipsForVm(vm);
+		int slot = slotOf(vm);
+		return slot >= 0 && fullPosition[slot] >= 0 ? share : 0;
+	}
+
+	@Override
+	public List<Pe> getPesAllocatedForVM(Vm vm) {
+		if (sharing)
+			stopSharing();
+		return super.getPesAllocatedForVM(vm);
+	}
+
+	@Override
+	public Map<String, List<Pe>> getPeMap() {
+		if (sharing)
+			stopSharing();
+		return super.getPeMap();
+	}
 }
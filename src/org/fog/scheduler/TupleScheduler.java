@@ -1,9 +1,13 @@
 package org.fog.scheduler;
 
-import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.CloudletSchedulerProcessorSharing;
 import org.cloudbus.cloudsim.ResCloudlet;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
 
-public class TupleScheduler extends CloudletSchedulerTimeShared{
+public class TupleScheduler extends CloudletSchedulerProcessorSharing{
+
+	private static final DiagnosticChannel SCHEDULER = Diagnostics.channel("scheduler");
 
 	public TupleScheduler(double mips, int numberOfPes) {
 		//super(mips, numberOfPes);
@@ -24,7 +28,8 @@ public class TupleScheduler extends CloudletSchedulerTimeShared{
 		/*>>>>>>>>>>>>>>>>>>>>*/
 		/* edit made by HARSHIT GUPTA */
 		
-		System.out.println("ALLOCATED MIPS FOR CLOUDLET = "+getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
+		if (SCHEDULER.isDebugEnabled())
+			SCHEDULER.debug("ALLOCATED MIPS FOR CLOUDLET = {}", getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		return time
 				+ ((rcl.getRemainingCloudletLength()) / getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		
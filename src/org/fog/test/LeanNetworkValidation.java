@@ -0,0 +1,306 @@
+package org.fog.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.cloudbus.cloudsim.sdn.overbooking.BwProvisionerOverbooking;
+import org.cloudbus.cloudsim.sdn.overbooking.PeProvisionerOverbooking;
+import org.fog.application.AppEdge;
+import org.fog.application.AppLoop;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogBroker;
+import org.fog.entities.FogDevice;
+import org.fog.entities.FogDeviceCharacteristics;
+import org.fog.entities.Sensor;
+import org.fog.entities.Tuple;
+import org.fog.placement.Controller;
+import org.fog.placement.ModuleMapping;
+import org.fog.placement.ModulePlacementEdgewards;
+import org.fog.policy.AppModuleAllocationPolicy;
+import org.fog.scheduler.StreamOperatorScheduler;
+import org.fog.utils.Config;
+import org.fog.utils.FogLinearPowerModel;
+import org.fog.utils.FogUtils;
+import org.fog.utils.TimeKeeper;
+import org.fog.utils.distribution.DeterministicDistribution;
+
+/**
+ * Checks that the lean network mode (see {@link Config#LEAN_NETWORK}) gives the same results as the default one: a
+ * simulation is run in both modes, each in its own JVM since the controller exits at the end, and the results it
+ * prints (loop delays, tuple execution delays, energy, cost, network usage) are compared line by line.
+ * <p>
+ * With no arguments it runs a deterministic surveillance topology whose router uplinks are congested, so that tuples
+ * queue on the links. The arguments may instead name example classes to run, which only makes sense for examples
+ * that are deterministic, such as OfflinePOC. Exits with status 1 if any results differ.
+ */
+public class LeanNetworkValidation {
+	static List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+	static List<Sensor> sensors = new ArrayList<Sensor>();
+	static List<Actuator> actuators = new ArrayList<Actuator>();
+
+	static int numOfAreas = 2;
+	static int numOfCamerasPerArea = 6;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("--run")) {
+			Config.LEAN_NETWORK = Boolean.parseBoolean(args[1]);
+			if (args[2].equals("-"))
+				runScenario();
+			else
+				Class.forName(args[2]).getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+			return;
+		}
+
+		List<String> simulations = new ArrayList<String>();
+		for (String arg : args)
+			simulations.add(arg);
+		if (simulations.isEmpty())
+			simulations.add("-");
+
+		boolean same = true;
+		for (String simulation : simulations) {
+			List<String> expected = results(simulation, false);
+			List<String> actual = results(simulation, true);
+			String name = simulation.equals("-") ? "congested surveillance" : simulation;
+			if (expected.isEmpty()) {
+				System.out.println("FAIL " + name + ": no results");
+				same = false;
+			} else if (expected.equals(actual)) {
+				System.out.println("OK   " + name + ": " + expected.size() + " result lines identical");
+			} else {
+				same = false;
+				System.out.println("FAIL " + name);
+				for (int i = 0; i < Math.max(expected.size(), actual.size()); i++) {
+					String e = i < expected.size() ? expected.get(i) : "";
+					String a = i < actual.size() ? actual.get(i) : "";
+					if (!e.equals(a))
+						System.out.println("  default: " + e + "\n  lean:    " + a);
+				}
+			}
+		}
+		System.exit(same ? 0 : 1);
+	}
+
+	/**
+	 * Runs a simulation in a new JVM and returns the results it prints, without the wall-clock times.
+	 */
+	private static List<String> results(String simulation, boolean leanNetwork) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				LeanNetworkValidation.class.getName(), "--run", String.valueOf(leanNetwork), simulation);
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		List<String> results = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		boolean inResults = false;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.contains("APPLICATION LOOP DELAYS"))
+				inResults = true;
+			if (inResults && !line.contains("EXECUTION TIME"))
+				results.add(line);
+		}
+		process.waitFor();
+		return results;
+	}
+
+	private static void runScenario() {
+		try {
+			Log.disable();
+			int num_user = 1; // number of cloud users
+			Calendar calendar = Calendar.getInstance();
+			boolean trace_flag = false; // mean trace events
+
+			CloudSim.init(num_user, calendar, trace_flag);
+
+			String appId = "dcns"; // identifier of the application
+
+			FogBroker broker = new FogBroker("broker");
+
+			Application application = createApplication(appId, broker.getId());
+			application.setUserId(broker.getId());
+
+			createFogDevices(broker.getId(), appId);
+
+			ModuleMapping moduleMapping = ModuleMapping.createModuleMapping(); // initializing a module mapping
+			for(FogDevice device : fogDevices){
+				if(device.getName().startsWith("m")){ // names of all Smart Cameras start with 'm'
+					moduleMapping.addModuleToDevice("motion_detector", device.getName());  // fixing 1 instance of the Motion Detector module to each Smart Camera
+				}
+			}
+			moduleMapping.addModuleToDevice("user_interface", "cloud"); // fixing instances of User Interface module in the Cloud
+
+			Controller controller = new Controller("master-controller", fogDevices, sensors,
+					actuators);
+
+			controller.submitApplication(application, 0,
+					new ModulePlacementEdgewards(fogDevices, sensors, actuators, application, moduleMapping));
+
+			TimeKeeper.getInstance().setSimulationStartTime(Calendar.getInstance().getTimeInMillis());
+
+			CloudSim.startSimulation();
+
+			CloudSim.stopSimulation();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Log.printLine("Unwanted errors happen");
+		}
+	}
+
+	/**
+	 * Creates the fog devices in the physical topology of the simulation. The uplinks of the routers are too slow for
+	 * the tuples of all their cameras to be sent at once, so tuples queue on them.
+	 * @param userId
+	 * @param appId
+	 */
+	private static void createFogDevices(int userId, String appId) {
+		FogDevice cloud = createFogDevice("cloud", 44800, 40000, 100, 10000, 0, 0.01, 16*103, 16*83.25);
+		cloud.setParentId(-1);
+		fogDevices.add(cloud);
+		FogDevice proxy = createFogDevice("proxy-server", 2800, 4000, 10000, 10000, 1, 0.0, 107.339, 83.4333);
+		proxy.setParentId(cloud.getId());
+		proxy.setUplinkLatency(100); // latency of connection between proxy server and cloud is 100 ms
+		fogDevices.add(proxy);
+		for(int i=0;i<numOfAreas;i++){
+			addArea(i+"", userId, appId, proxy.getId());
+		}
+	}
+
+	private static FogDevice addArea(String id, int userId, String appId, int parentId){
+		FogDevice router = createFogDevice("d-"+id, 2800, 4000, 3000, 10000, 1, 0.0, 107.339, 83.4333);
+		fogDevices.add(router);
+		router.setUplinkLatency(2); // latency of connection between router and proxy server is 2 ms
+		for(int i=0;i<numOfCamerasPerArea;i++){
+			String mobileId = id+"-"+i;
+			FogDevice camera = addCamera(mobileId, userId, appId, router.getId());
+			camera.setUplinkLatency(2); // latency of connection between camera and router is 2 ms
+			fogDevices.add(camera);
+		}
+		router.setParentId(parentId);
+		return router;
+	}
+
+	private static FogDevice addCamera(String id, int userId, String appId, int parentId){
+		FogDevice camera = createFogDevice("m-"+id, 500, 1000, 10000, 10000, 3, 0, 87.53, 82.44);
+		camera.setParentId(parentId);
+		Sensor sensor = new Sensor("s-"+id, "CAMERA", userId, appId, new DeterministicDistribution(5)); // inter-transmission time of camera (sensor) follows a deterministic distribution
+		sensors.add(sensor);
+		Actuator ptz = new Actuator("ptz-"+id, userId, appId, "PTZ_CONTROL");
+		actuators.add(ptz);
+		sensor.setGatewayDeviceId(camera.getId());
+		sensor.setLatency(1.0);  // latency of connection between camera (sensor) and the parent Smart Camera is 1 ms
+		ptz.setGatewayDeviceId(camera.getId());
+		ptz.setLatency(1.0);  // latency of connection between PTZ Control and the parent Smart Camera is 1 ms
+		return camera;
+	}
+
+	/**
+	 * Creates a vanilla fog device
+	 * @param nodeName name of the device to be used in simulation
+	 * @param mips MIPS
+	 * @param ram RAM
+	 * @param upBw uplink bandwidth
+	 * @param downBw downlink bandwidth
+	 * @param level hierarchy level of the device
+	 * @param ratePerMips cost rate per MIPS used
+	 * @param busyPower
+	 * @param idlePower
+	 * @return
+	 */
+	private static FogDevice createFogDevice(String nodeName, long mips,
+			int ram, long upBw, long downBw, int level, double ratePerMips, double busyPower, double idlePower) {
+
+		List<Pe> peList = new ArrayList<Pe>();
+		peList.add(new Pe(0, new PeProvisionerOverbooking(mips))); // need to store Pe id and MIPS Rating
+
+		int hostId = FogUtils.generateEntityId();
+		long storage = 1000000; // host storage
+		int bw = 10000;
+
+		PowerHost host = new PowerHost(
+				hostId,
+				new RamProvisionerSimple(ram),
+				new BwProvisionerOverbooking(bw),
+				storage,
+				peList,
+				new StreamOperatorScheduler(peList),
+				new FogLinearPowerModel(busyPower, idlePower)
+			);
+
+		List<Host> hostList = new ArrayList<Host>();
+		hostList.add(host);
+
+		String arch = "x86"; // system architecture
+		String os = "Linux"; // operating system
+		String vmm = "Xen";
+		double time_zone = 10.0; // time zone this resource located
+		double cost = 3.0; // the cost of using processing in this resource
+		double costPerMem = 0.05; // the cost of using memory in this resource
+		double costPerStorage = 0.001; // the cost of using storage in this resource
+		double costPerBw = 0.0; // the cost of using bw in this resource
+		LinkedList<Storage> storageList = new LinkedList<Storage>(); // we are not adding SAN devices by now
+
+		FogDeviceCharacteristics characteristics = new FogDeviceCharacteristics(
+				arch, os, vmm, host, time_zone, cost, costPerMem,
+				costPerStorage, costPerBw);
+
+		FogDevice fogdevice = null;
+		try {
+			fogdevice = new FogDevice(nodeName, characteristics,
+					new AppModuleAllocationPolicy(hostList), storageList, 10, upBw, downBw, 0, ratePerMips);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		fogdevice.setLevel(level);
+		return fogdevice;
+	}
+
+	/**
+	 * The Intelligent Surveillance application, with all the selectivities 1.0 so that the simulation is deterministic.
+	 * @param appId unique identifier of the application
+	 * @param userId identifier of the user of the application
+	 * @return
+	 */
+	@SuppressWarnings({"serial" })
+	private static Application createApplication(String appId, int userId){
+
+		Application application = Application.createApplication(appId, userId);
+
+		application.addAppModule("object_detector", 10);
+		application.addAppModule("motion_detector", 10);
+		application.addAppModule("object_tracker", 10);
+		application.addAppModule("user_interface", 10);
+
+		application.addAppEdge("CAMERA", "motion_detector", 1000, 20000, "CAMERA", Tuple.UP, AppEdge.SENSOR);
+		application.addAppEdge("motion_detector", "object_detector", 2000, 2000, "MOTION_VIDEO_STREAM", Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("object_detector", "user_interface", 500, 2000, "DETECTED_OBJECT", Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("object_detector", "object_tracker", 1000, 100, "OBJECT_LOCATION", Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("object_tracker", "PTZ_CONTROL", 100, 28, 100, "PTZ_PARAMS", Tuple.DOWN, AppEdge.ACTUATOR);
+
+		application.addTupleMapping("motion_detector", "CAMERA", "MOTION_VIDEO_STREAM", new FractionalSelectivity(1.0));
+		application.addTupleMapping("object_detector", "MOTION_VIDEO_STREAM", "OBJECT_LOCATION", new FractionalSelectivity(1.0));
+		application.addTupleMapping("object_detector", "MOTION_VIDEO_STREAM", "DETECTED_OBJECT", new FractionalSelectivity(1.0));
+
+		final AppLoop loop1 = new AppLoop(new ArrayList<String>(){{add("motion_detector");add("object_detector");add("object_tracker");}});
+		final AppLoop loop2 = new AppLoop(new ArrayList<String>(){{add("object_tracker");add("PTZ_CONTROL");}});
+		List<AppLoop> loops = new ArrayList<AppLoop>(){{add(loop1);add(loop2);}};
+
+		application.setLoops(loops);
+		return application;
+	}
+}
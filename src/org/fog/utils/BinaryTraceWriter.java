@@ -0,0 +1,222 @@
+package org.fog.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log records to a memory-mapped ring file of fixed-width binary records, so that tracing
+ * can stay on in large runs. The simulation thread only puts a few words into an in-memory queue;
+ * a background thread copies them into the file. When the ring is full the oldest records are
+ * overwritten, so the file always holds the latest <tt>capacity</tt> records.
+ * <p>
+ * Names, patterns and string arguments are stored once, in a side file (<tt>path + ".strings"</tt>),
+ * and referred to by index. Numbers are stored as they are. Use {@link TraceDecoder} to turn a
+ * trace back into the text the Logger would have printed.
+ * <p>
+ * File layout: a {@value #HEADER_SIZE}-byte header (magic, record size, capacity, number of records
+ * written) followed by the ring of {@value #RECORD_SIZE}-byte records (sequence number, time, level,
+ * name, pattern, argument types, and up to {@value #MAX_ARGS} arguments).
+ */
+public class BinaryTraceWriter implements Closeable {
+
+	static final long MAGIC = 0x49464F4754524331L; // "IFOGTRC1"
+	static final int HEADER_SIZE = 64;
+	static final int RECORD_SIZE = 64;
+	static final int MAX_ARGS = 4;
+
+	static final int ARG_NULL = 0;
+	static final int ARG_LONG = 1;
+	static final int ARG_DOUBLE = 2;
+	static final int ARG_STRING = 3;
+
+	/** Header offset of the number of records written. */
+	static final int WRITTEN_OFFSET = 16;
+
+	/** Words per record in the in-memory queue: time, level+name, pattern+types, arguments. */
+	private static final int WORDS = 3 + MAX_ARGS;
+
+	private final int capacity;
+	private final RandomAccessFile file;
+	private final MappedByteBuffer ring;
+	private final DataOutputStream strings;
+
+	/** Strings already given an index; only touched by the (single) logging thread at a time. */
+	private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+	/** Strings not yet written to the side file. */
+	private final ConcurrentLinkedQueue<String> newStrings = new ConcurrentLinkedQueue<String>();
+
+	/** The queue between the logging thread and the writer thread. */
+	private final long[] queue;
+	private final int queueMask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	private long written = 0;
+	private volatile boolean closed = false;
+	private final Thread writer;
+
+	/**
+	 * Creates a trace file, replacing any existing one.
+	 *
+	 * @param path the trace file
+	 * @param capacity the number of records kept in the ring
+	 */
+	public BinaryTraceWriter(String path, int capacity) throws IOException {
+		if (capacity < 1 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE)
+			throw new IllegalArgumentException("Trace capacity out of range:" + capacity);
+		this.capacity = capacity;
+		file = new RandomAccessFile(path, "rw");
+		file.setLength(0);
+		ring = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+		ring.putLong(0, MAGIC);
+		ring.putInt(8, RECORD_SIZE);
+		ring.putInt(12, capacity);
+		ring.putLong(WRITTEN_OFFSET, 0);
+		strings = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path + ".strings")));
+
+		int queueRecords = Integer.highestOneBit(Math.max(1024, Math.min(capacity, 1 << 16)));
+		queue = new long[queueRecords * WORDS];
+		queueMask = queueRecords - 1;
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "trace-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Adds a record. Only one thread may call this at a time.
+	 *
+	 * @param time the simulation time
+	 * @param level the log level
+	 * @param name the entity or category name
+	 * @param pattern the message, with "{}" placeholders for the arguments
+	 * @param args the arguments, or null; only the first {@value #MAX_ARGS} are kept
+	 */
+	public void record(double time, int level, String name, String pattern, Object[] args) {
+		if (closed)
+			return;
+		long h = head.get();
+		while (h - tail.get() > queueMask) {
+			LockSupport.unpark(writer);
+			Thread.yield();
+		}
+		int base = (int) (h & queueMask) * WORDS;
+		int count = args == null ? 0 : Math.min(args.length, MAX_ARGS);
+		int types = count;
+		for (int i = 0; i < count; i++) {
+			Object arg = args[i];
+			long value;
+			int type;
+			if (arg == null) {
+				type = ARG_NULL;
+				value = 0;
+			} else if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+				type = ARG_LONG;
+				value = ((Number) arg).longValue();
+			} else if (arg instanceof Double || arg instanceof Float) {
+				type = ARG_DOUBLE;
+				value = Double.doubleToRawLongBits(((Number) arg).doubleValue());
+			} else {
+				type = ARG_STRING;
+				value = intern(arg.toString());
+			}
+			types |= type << (4 + 4 * i);
+			queue[base + 3 + i] = value;
+		}
+		queue[base] = Double.doubleToRawLongBits(time);
+		queue[base + 1] = ((long) level << 32) | (intern(name) & 0xFFFFFFFFL);
+		queue[base + 2] = ((long) intern(pattern) << 32) | (types & 0xFFFFFFFFL);
+		head.lazySet(h + 1);
+	}
+
+	/**
+	 * Writes out the pending records and closes the trace.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		ring.force();
+		strings.close();
+		file.close();
+	}
+
+	private int intern(String s) {
+		if (s == null)
+			s = "null";
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = stringIds.size();
+			stringIds.put(s, id);
+			newStrings.add(s);
+		}
+		return id;
+	}
+
+	private void drain() {
+		while (true) {
+			boolean stop = closed;
+			writeStrings();
+			long t = tail.get();
+			long h = head.get();
+			for (; t < h; t++) {
+				int base = (int) (t & queueMask) * WORDS;
+				int offset = HEADER_SIZE + (int) (written % capacity) * RECORD_SIZE;
+				ring.putLong(offset, written);
+				ring.putLong(offset + 8, queue[base]);
+				ring.putInt(offset + 16, (int) (queue[base + 1] >>> 32));
+				ring.putInt(offset + 20, (int) queue[base + 1]);
+				ring.putInt(offset + 24, (int) (queue[base + 2] >>> 32));
+				ring.putInt(offset + 28, (int) queue[base + 2]);
+				for (int i = 0; i < MAX_ARGS; i++)
+					ring.putLong(offset + 32 + 8 * i, queue[base + 3 + i]);
+				written++;
+				tail.lazySet(t + 1);
+			}
+			ring.putLong(WRITTEN_OFFSET, written);
+			if (stop && tail.get() == head.get())
+				return;
+			if (t == h)
+				LockSupport.parkNanos(100000);
+		}
+	}
+
+	private void writeStrings() {
+		String s = newStrings.poll();
+		if (s == null)
+			return;
+		try {
+			for (; s != null; s = newStrings.poll()) {
+				// writeUTF is limited to 64 KB of encoded text
+				strings.writeUTF(s.length() > 16384 ? s.substring(0, 16384) : s);
+			}
+			strings.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
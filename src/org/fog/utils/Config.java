@@ -22,5 +22,13 @@ public class Config {
 	public static double Node_Communication_RANGE = 300.0; // In terms of meter
 	public static double clusteringLatency = 2.0; //milisecond
 
+	// Lean network mode: no TUPLE_ACKs, and each link of a device sends its tuples at the times it becomes free instead
+	// of queueing them until an UPDATE_*_TUPLE_QUEUE event. Tuples arrive at the same times.
+	public static boolean LEAN_NETWORK = false;
+
+	// A link with its own queue from each device to each of its children and cluster members, instead of one link shared
+	// by all the children and one by all the cluster members
+	public static boolean PER_CHILD_LINKS = false;
+
 	public static final int TRANSMISSION_START_DELAY = 50;
 }
@@ -3,12 +3,15 @@ package org.fog.utils;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 public class FogUtils {
 	private static int TUPLE_ID = 1;
 	private static int ENTITY_ID = 1;
 	private static int ACTUAL_TUPLE_ID = 1;
 	
 	public static int generateTupleId(){
+		CloudSim.awaitTurn(); // ids are handed out in the sequential event order
 		return TUPLE_ID++;
 	}
 	
@@ -17,10 +20,12 @@ public class FogUtils {
 	}
 	
 	public static int generateEntityId(){
+		CloudSim.awaitTurn();
 		return ENTITY_ID++;
 	}
 	
 	public static int generateActualTupleId(){
+		CloudSim.awaitTurn();
 		return ACTUAL_TUPLE_ID++;
 	}
 	
@@ -1,34 +1,130 @@
 package org.fog.utils;
 
 import java.text.DecimalFormat;
+import java.util.function.Supplier;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 
+/**
+ * Simulation log. Messages are built only when their level is enabled: use the parameterized
+ * methods ("{}" placeholders) or a Supplier instead of concatenating the message at the call site.
+ * Messages go to System.out, or to a binary trace file when a {@link BinaryTraceWriter} is set.
+ */
 public class Logger {
-	
+
 	public static final int ERROR = 1;
 	public static final int DEBUG = 0;
-	
+
 	public static int LOG_LEVEL = Logger.DEBUG;
-	private static DecimalFormat df = new DecimalFormat("#.00"); 
+	private static final ThreadLocal<DecimalFormat> df = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("#.00");
+		}
+	};
 
 	public static boolean ENABLED = false;;
-	
+
+	private static BinaryTraceWriter traceWriter = null;
+
 	public static void setLogLevel(int level){
 		Logger.LOG_LEVEL = level;
 	}
-	
+
+	/**
+	 * Sends the log to a binary trace file instead of System.out, or back to System.out if null.
+	 * The writer is not closed by the Logger.
+	 */
+	public static void setTraceWriter(BinaryTraceWriter writer){
+		Logger.traceWriter = writer;
+	}
+
+	public static BinaryTraceWriter getTraceWriter(){
+		return traceWriter;
+	}
+
+	public static boolean isDebugEnabled(){
+		return ENABLED && LOG_LEVEL <= DEBUG;
+	}
+
+	public static boolean isErrorEnabled(){
+		return ENABLED && LOG_LEVEL <= ERROR;
+	}
+
 	public static void debug(String name, String message){
-		if(!ENABLED)
-			return;
-		if(Logger.LOG_LEVEL <= Logger.DEBUG)
-			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
+		if(isDebugEnabled())
+			log(DEBUG, name, message, null);
 	}
+
+	public static void debug(String name, Supplier<String> message){
+		if(isDebugEnabled())
+			log(DEBUG, name, message.get(), null);
+	}
+
+	public static void debug(String name, String pattern, Object arg){
+		if(isDebugEnabled())
+			log(DEBUG, name, pattern, new Object[]{arg});
+	}
+
+	public static void debug(String name, String pattern, Object arg1, Object arg2){
+		if(isDebugEnabled())
+			log(DEBUG, name, pattern, new Object[]{arg1, arg2});
+	}
+
+	public static void debug(String name, String pattern, Object... args){
+		if(isDebugEnabled())
+			log(DEBUG, name, pattern, args);
+	}
+
 	public static void error(String name, String message){
-		if(!ENABLED)
-			return;
-		if(Logger.LOG_LEVEL <= Logger.ERROR)
-			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
+		if(isErrorEnabled())
+			log(ERROR, name, message, null);
 	}
-	
+
+	public static void error(String name, Supplier<String> message){
+		if(isErrorEnabled())
+			log(ERROR, name, message.get(), null);
+	}
+
+	public static void error(String name, String pattern, Object arg){
+		if(isErrorEnabled())
+			log(ERROR, name, pattern, new Object[]{arg});
+	}
+
+	public static void error(String name, String pattern, Object... args){
+		if(isErrorEnabled())
+			log(ERROR, name, pattern, args);
+	}
+
+	private static void log(int level, String name, String pattern, Object[] args){
+		CloudSim.awaitTurn();
+		BinaryTraceWriter writer = traceWriter;
+		if(writer != null)
+			writer.record(CloudSim.clock(), level, name, pattern, args);
+		else
+			System.out.println(formatLine(CloudSim.clock(), name, format(pattern, args)));
+	}
+
+	static String formatLine(double time, String name, String message){
+		return df.get().format(time)+" : "+name+" : "+message;
+	}
+
+	/**
+	 * Replaces the "{}" placeholders of a pattern by the arguments, in order.
+	 */
+	public static String format(String pattern, Object[] args){
+		if(args == null || args.length == 0)
+			return pattern;
+		StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+		int from = 0;
+		for(Object arg : args){
+			int at = pattern.indexOf("{}", from);
+			if(at < 0)
+				break;
+			sb.append(pattern, from, at).append(arg);
+			from = at + 2;
+		}
+		return sb.append(pattern, from, pattern.length()).toString();
+	}
+
 }
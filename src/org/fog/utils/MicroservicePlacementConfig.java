@@ -1,5 +1,7 @@
 package org.fog.utils;
 
+import org.fog.entities.LoadBalancerFactory;
+
 public class MicroservicePlacementConfig {
 
     // simulation modes - STATIC - 1(initial placement happens before simulation start and placement related delays are not simulated)
@@ -13,10 +15,28 @@ public class MicroservicePlacementConfig {
 
     // For periodic placement
     public static final double PLACEMENT_INTERVAL = 1;
+    // keep the placement state of a FON between rounds and only update it with the changes (MyOfflinePOCPlacementLogic)
+    public static boolean INCREMENTAL_PLACEMENT = true;
 
     //Resource info sharing among cluster nodes
     public static Boolean ENABLE_RESOURCE_DATA_SHARING = false;
     public static double MODULE_DEPLOYMENT_TIME = 0.0;
 
+    // DYNAMIC mode: send the deployment and service discovery messages of a placement round in one management tuple per
+    // device, of the same total size, instead of one tuple per message
+    public static boolean BATCH_MANAGEMENT_MESSAGES = false;
+
+    // load balancer of the devices, see LoadBalancerFactory
+    public static int LOAD_BALANCER = LoadBalancerFactory.ROUND_ROBIN;
+
+    // For the optimal batch placement: batches of up to this many modules are solved exactly
+    public static int OPTIMAL_EXACT_MAX_MODULES = 16;
+    public static long OPTIMAL_EXACT_NODE_LIMIT = 2000000;
+    // larger batches are searched for this many milliseconds, or iterations, at most
+    public static double OPTIMAL_SEARCH_TIME_BUDGET = 100;
+    public static int OPTIMAL_SEARCH_MAX_ITERATIONS = 10000;
+    public static long OPTIMAL_REPAIR_NODE_LIMIT = 10000;
+    public static long OPTIMAL_SEARCH_SEED = 1;
+
 
 }
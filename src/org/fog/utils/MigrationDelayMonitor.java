@@ -1,14 +1,22 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 public class MigrationDelayMonitor {
 	
 	private static double migrationDelay = 0.0;
 	
 	public static double getMigrationDelay() {
+		CloudSim.awaitTurn();
 		return migrationDelay;
 	}
 
-	public static void setMigrationDelay(double migrationDelayReceived) {
-		migrationDelay += migrationDelayReceived;
+	public static void setMigrationDelay(final double migrationDelayReceived) {
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				migrationDelay += migrationDelayReceived;
+			}
+		});
 	}
 }
@@ -1,18 +1,35 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 public class NetworkUsageMonitor {
 
 	private static double networkUsage = 0.0;
 	
-	public static void sendingTuple(double latency, double tupleNwSize){
-		networkUsage += latency*tupleNwSize;
+	/*
+	 * Usage is added up in the sequential event order, so that the (floating point) total does
+	 * not depend on how many threads run the devices.
+	 */
+	public static void sendingTuple(final double latency, final double tupleNwSize){
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				networkUsage += latency*tupleNwSize;
+			}
+		});
 	}
 	
-	public static void sendingModule(double latency, long moduleSize){
-		networkUsage += latency*moduleSize;
+	public static void sendingModule(final double latency, final long moduleSize){
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				networkUsage += latency*moduleSize;
+			}
+		});
 	}
 	
 	public static double getNetworkUsage(){
+		CloudSim.awaitTurn();
 		return networkUsage;
 	}
 }
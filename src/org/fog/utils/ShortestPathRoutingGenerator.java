@@ -1,129 +1,127 @@
 package org.fog.utils;
 
-import org.apache.commons.math3.util.Pair;
 import org.fog.entities.FogDevice;
 import org.fog.entities.MicroserviceFogDevice;
+import org.fog.utils.diagnostics.DiagnosticChannel;
+import org.fog.utils.diagnostics.Diagnostics;
+import org.fog.utils.routing.DenseRoutingTable;
+import org.fog.utils.routing.DeviceIndex;
+import org.fog.utils.routing.Hierarchy;
+import org.fog.utils.routing.RoutingTable;
+import org.fog.utils.routing.TreeRoutingTable;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Created by Samodha Pallewatta on 6/18/2021.
  * Creates a routing table considering shortest path between devices.
+ * <p>
+ * The devices and their parent, child and cluster links form a sparse graph. A Dijkstra search is run from
+ * every device, in parallel, and the first hop towards every other device is kept in an int[] per device.
+ * Pure hierarchies need no search: their devices share the tree (see {@link Hierarchy}).
  */
 public class ShortestPathRoutingGenerator {
 
+    private static final DiagnosticChannel ROUTING = Diagnostics.channel("routing");
+
+    /**
+     * Number of sources searched by one task; the search buffers are shared within a block.
+     */
+    private static final int BLOCK_SIZE = 64;
+
     public static Map<Integer, Map<Integer, Integer>> generateRoutingTable(List<FogDevice> fogDevices) {
         // <source device id>  ->  <dest device id,next device to route to>
         Map<Integer, Map<Integer, Integer>> routing = new HashMap<>();
-        Map<String, Map<String, String>> routingString = new HashMap<>();
-        int size = fogDevices.size();
-
-        int[][] routingMatrix = new int[size][size];
-        double[][] distanceMatrix = new double[size][size];
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                routingMatrix[row][column] = -1;
-                distanceMatrix[row][column] = -1;
-            }
+        DeviceIndex index = new DeviceIndex(fogDevices);
+        Map<Integer, RoutingTable> tables = generateRoutingTables(index);
+        for (FogDevice f : fogDevices) {
+            routing.put(f.getId(), tables.get(f.getId()).toMap(index));
         }
+        return routing;
+    }
 
-        boolean change = true;
-        boolean firstIteration = true;
-        while (change || firstIteration) {
-            change = false;
-            for (int row = 0; row < size; row++) {
-                for (int column = 0; column < size; column++) {
-                    double dist = distanceMatrix[row][column];
-                    FogDevice rFog = fogDevices.get(row);
-                    FogDevice cFog = fogDevices.get(column);
-                    if (firstIteration && dist < 0) {
-                        if (row == column) {
-                            dist = 0;
-                        } else {
-                            dist = directlyConnectedDist(rFog, cFog);
-                        }
-                        if (dist >= 0) {
-                            change = true;
-                            distanceMatrix[row][column] = dist;
-                            distanceMatrix[column][row] = dist;
-
-                            // directly connected
-                            routingMatrix[row][column] = cFog.getId();
-                            routingMatrix[column][row] = rFog.getId();
-                        }
-                    }
-                    if (dist < 0) {
-                        Pair<Double, Integer> result = indirectDist(row, column, size, distanceMatrix);
-                        dist = result.getFirst();
-                        int mid = result.getSecond();
-                        if (dist >= 0) {
-                            change = true;
-                            distanceMatrix[row][column] = dist;
-                            routingMatrix[row][column] = routingMatrix[row][mid];
-                        }
-                    }
-                    if (dist > 0) {
-                        Pair<Double, Integer> result = indirectDist(row, column, size, distanceMatrix);
-                        double distNew = result.getFirst();
-                        int mid = result.getSecond();
-                        if (distNew < dist) {
-                            change = true;
-                            distanceMatrix[row][column] = distNew;
-                            routingMatrix[row][column] = routingMatrix[row][mid];
-                        }
-                    }
-                }
-            }
-            firstIteration = false;
-        }
-
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                int sourceId = fogDevices.get(row).getId();
-                int destId = fogDevices.get(column).getId();
-                if (routing.containsKey(sourceId)) {
-                    routing.get(sourceId).put(destId, routingMatrix[row][column]);
-                    routingString.get(fogDevices.get(row).getName()).put(fogDevices.get(column).getName(), getFogDeviceById(routingMatrix[row][column], fogDevices).getName());
-                } else {
-                    Map<Integer, Integer> route = new HashMap<>();
-                    route.put(destId, routingMatrix[row][column]);
-                    routing.put(sourceId, route);
-
-                    Map<String, String> routeS = new HashMap<>();
-                    routeS.put(fogDevices.get(column).getName(), getFogDeviceById(routingMatrix[row][column], fogDevices).getName());
-                    routingString.put(fogDevices.get(row).getName(), routeS);
-                }
-            }
-        }
+    /**
+     * Creates the routing table of every device. When the devices form a pure hierarchy the tables share the tree;
+     * otherwise each table holds the next hops computed by {@link #generateNextHops(DeviceIndex)}.
+     *
+     * @return map of <device id, routing table>
+     */
+    public static Map<Integer, RoutingTable> generateRoutingTables(List<FogDevice> fogDevices) {
+        return generateRoutingTables(new DeviceIndex(fogDevices));
+    }
 
-        System.out.println("Routing Table : ");
-        for (String deviceName : routingString.keySet()) {
-            System.out.println(deviceName + " : " + routingString.get(deviceName).toString());
+    private static Map<Integer, RoutingTable> generateRoutingTables(DeviceIndex index) {
+        Map<Integer, RoutingTable> tables = new HashMap<>();
+        Hierarchy hierarchy = Hierarchy.of(index);
+        if (hierarchy != null) {
+            for (int i = 0; i < index.size(); i++)
+                tables.put(index.idAt(i), new TreeRoutingTable(hierarchy, i));
+        } else {
+            int[][] nextHops = generateNextHops(index);
+            for (int i = 0; i < index.size(); i++)
+                tables.put(index.idAt(i), new DenseRoutingTable(index, nextHops[i]));
         }
-        System.out.println("\n");
 
-        return routing;
+        if (ROUTING.isDebugEnabled())
+            printRoutingTable(index, tables);
+
+        return tables;
     }
 
+    /**
+     * Computes the shortest path next hops between all the devices.
+     *
+     * @param index the devices
+     * @return for the device at index <i>s</i>, the id of the next device on the way to the device at index <i>d</i>
+     * is at [s][d]; the device's own id if s == d, and -1 if d cannot be reached
+     */
+    public static int[][] generateNextHops(DeviceIndex index) {
+        final int size = index.size();
+        final Graph graph = new Graph(index);
+        final int[][] nextHops = new int[size][];
 
-    private static Pair<Double, Integer> indirectDist(int row, int dest, int size, double[][] distanceMatrix) {
-        double minDistFromDirectConn = distanceMatrix[row][dest];
-        int midPoint = -1;
-        for (int column = 0; column < size; column++) {
-            if (distanceMatrix[row][column] >= 0 && distanceMatrix[column][dest] >= 0) {
-                double totalDist = distanceMatrix[row][column] + distanceMatrix[column][dest];
-                if (minDistFromDirectConn >= 0 && totalDist < minDistFromDirectConn) {
-                    minDistFromDirectConn = totalDist;
-                    midPoint = column;
-                } else if (minDistFromDirectConn < 0) {
-                    minDistFromDirectConn = totalDist;
-                    midPoint = column;
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(new IntConsumer() {
+            @Override
+            public void accept(int block) {
+                Search search = new Search(graph);
+                int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+                for (int source = block * BLOCK_SIZE; source < end; source++) {
+                    int[] firstHop = search.run(source);
+                    int[] row = new int[size];
+                    for (int dest = 0; dest < size; dest++) {
+                        row[dest] = firstHop[dest] < 0 ? -1 : graph.index.idAt(firstHop[dest]);
+                    }
+                    nextHops[source] = row;
                 }
             }
+        });
+        return nextHops;
+    }
+
+    private static void printRoutingTable(DeviceIndex index, Map<Integer, RoutingTable> tables) {
+        Map<String, Map<String, String>> routingString = new HashMap<>();
+        for (int s = 0; s < index.size(); s++) {
+            FogDevice source = index.deviceAt(s);
+            RoutingTable table = tables.get(source.getId());
+            Map<String, String> routeS = new HashMap<>();
+            for (int d = 0; d < index.size(); d++) {
+                int next = index.indexOf(table.getNextHop(index.idAt(d)));
+                routeS.put(index.deviceAt(d).getName(), next < 0 ? null : index.deviceAt(next).getName());
+            }
+            routingString.put(source.getName(), routeS);
+        }
+
+        ROUTING.debug("Routing Table : ");
+        for (String deviceName : routingString.keySet()) {
+            ROUTING.debug("{} : {}", deviceName, routingString.get(deviceName));
         }
-        return new Pair<>(minDistFromDirectConn, midPoint);
+        ROUTING.debug("\n");
     }
 
     private static double directlyConnectedDist(FogDevice rFog, FogDevice cFog) {
@@ -140,11 +138,211 @@ public class ShortestPathRoutingGenerator {
         return -1;
     }
 
-    private static FogDevice getFogDeviceById(int id, List<FogDevice> fogDevices) {
-        for (FogDevice f : fogDevices) {
-            if (f.getId() == id)
-                return f;
+    /**
+     * The links between the devices, in compressed sparse row form over the device index. A link is used both
+     * ways; its latency is the one seen by the device that comes first in the index, or by the other one if the
+     * first does not know the link.
+     */
+    private static class Graph {
+        final int size;
+        final DeviceIndex index;
+        final int[] start;
+        final int[] target;
+        final double[] latency;
+
+        Graph(DeviceIndex index) {
+            size = index.size();
+            this.index = index;
+
+            // the links each device knows of, with the latency it sees
+            int[][] known = new int[size][];
+            double[][] knownLatency = new double[size][];
+            Map<Long, Double> links = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                FogDevice f = index.deviceAt(i);
+                int[] neighbours = new int[4];
+                int count = 0;
+                count = addNeighbour(index, f.getParentId(), i, neighbours, count);
+                neighbours = ensure(neighbours, count + sizeOf(f.getChildrenIds()) + sizeOf(f.getClusterMembers()));
+                if (f.getChildrenIds() != null)
+                    for (int childId : f.getChildrenIds())
+                        count = addNeighbour(index, childId, i, neighbours, count);
+                if (f.getClusterMembers() != null)
+                    for (int memberId : f.getClusterMembers())
+                        count = addNeighbour(index, memberId, i, neighbours, count);
+                known[i] = Arrays.copyOf(neighbours, count);
+                knownLatency[i] = new double[count];
+                for (int k = 0; k < count; k++) {
+                    knownLatency[i][k] = directlyConnectedDist(f, index.deviceAt(known[i][k]));
+                    links.put(key(i, known[i][k]), knownLatency[i][k]);
+                }
+            }
+
+            // undirected links, each once
+            int[] degree = new int[size];
+            for (int i = 0; i < size; i++) {
+                for (int k = 0; k < known[i].length; k++) {
+                    int j = known[i][k];
+                    if (owns(i, j, links)) {
+                        degree[i]++;
+                        degree[j]++;
+                    }
+                }
+            }
+            start = new int[size + 1];
+            for (int i = 0; i < size; i++)
+                start[i + 1] = start[i] + degree[i];
+            target = new int[start[size]];
+            latency = new double[start[size]];
+            int[] fill = Arrays.copyOf(start, size);
+            for (int i = 0; i < size; i++) {
+                for (int k = 0; k < known[i].length; k++) {
+                    int j = known[i][k];
+                    if (owns(i, j, links)) {
+                        double l = knownLatency[i][k];
+                        target[fill[i]] = j;
+                        latency[fill[i]++] = l;
+                        target[fill[j]] = i;
+                        latency[fill[j]++] = l;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Whether the latency of the link between i and j is the one seen by i.
+         */
+        private static boolean owns(int i, int j, Map<Long, Double> links) {
+            if (links.get(key(i, j)) < 0)
+                return false;
+            if (i < j)
+                return true;
+            Double other = links.get(key(j, i));
+            return other == null || other < 0;
+        }
+
+        private static long key(int i, int j) {
+            return ((long) i << 32) | j;
+        }
+
+        private static int addNeighbour(DeviceIndex index, int id, int self, int[] neighbours, int count) {
+            int j = index.indexOf(id);
+            if (j < 0 || j == self)
+                return count;
+            for (int k = 0; k < count; k++)
+                if (neighbours[k] == j)
+                    return count;
+            neighbours[count] = j;
+            return count + 1;
+        }
+
+        private static int sizeOf(List<Integer> list) {
+            return list == null ? 0 : list.size();
+        }
+
+        private static int[] ensure(int[] array, int length) {
+            return array.length >= length ? array : Arrays.copyOf(array, length);
+        }
+    }
+
+    /**
+     * Dijkstra search from one device with a binary heap; the buffers are reused from one source to the next.
+     */
+    private static class Search {
+        private final Graph graph;
+        private final double[] dist;
+        private final int[] firstHop;
+        private final int[] heap;
+        private final int[] heapPos;
+        private int heapSize;
+
+        Search(Graph graph) {
+            this.graph = graph;
+            dist = new double[graph.size];
+            firstHop = new int[graph.size];
+            heap = new int[graph.size];
+            heapPos = new int[graph.size];
+        }
+
+        /**
+         * @return the position of the first device on the way to each device; the source itself for the source,
+         * -1 for devices that cannot be reached. Valid until the next run.
+         */
+        int[] run(int source) {
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            Arrays.fill(firstHop, -1);
+            Arrays.fill(heapPos, -1);
+            heapSize = 0;
+            dist[source] = 0;
+            firstHop[source] = source;
+            push(source);
+            while (heapSize > 0) {
+                int u = pop();
+                for (int e = graph.start[u]; e < graph.start[u + 1]; e++) {
+                    int v = graph.target[e];
+                    double d = dist[u] + graph.latency[e];
+                    if (d < dist[v]) {
+                        dist[v] = d;
+                        firstHop[v] = u == source ? v : firstHop[u];
+                        if (heapPos[v] >= 0)
+                            siftUp(heapPos[v]);
+                        else if (heapPos[v] == -1)
+                            push(v);
+                    }
+                }
+            }
+            return firstHop;
+        }
+
+        private void push(int v) {
+            heap[heapSize] = v;
+            heapPos[v] = heapSize;
+            siftUp(heapSize++);
+        }
+
+        private int pop() {
+            int top = heap[0];
+            heapPos[top] = -2; // settled
+            int last = heap[--heapSize];
+            if (heapSize > 0) {
+                heap[0] = last;
+                heapPos[last] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                int p = heap[parent];
+                if (dist[p] <= dist[v])
+                    break;
+                heap[i] = p;
+                heapPos[p] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            heapPos[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < heapSize && dist[heap[right]] < dist[heap[child]])
+                    child = right;
+                if (dist[v] <= dist[heap[child]])
+                    break;
+                heap[i] = heap[child];
+                heapPos[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            heapPos[v] = i;
         }
-        return null;
     }
 }
@@ -1,28 +1,44 @@
 package org.fog.utils;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.fog.entities.Tuple;
+import org.fog.utils.metrics.LatencyHistogram;
+import org.fog.utils.metrics.LongDoubleMap;
 
+/**
+ * Timing records of the simulation: delays of the application loops and CPU times of the tuples.
+ * <p>
+ * Only the tuples in flight are remembered; a delay is recorded in a {@link LatencyHistogram} of its loop or tuple
+ * type when it completes, so memory does not grow with the length of the run. The controllers report from
+ * {@link #getLoopIds()}, {@link #getLoopDelay(int)}, {@link #getTupleTypes()} and {@link #getTupleCpuTime(String)}.
+ * <p>
+ * The records are shared by the devices. When devices run in parallel (see CloudSim.setParallelism) the timings
+ * they record are applied in event order through CloudSim.runInOrder, at the times they were recorded; only
+ * {@link #getUniqueId()}, whose result is needed at once, waits for the turn of the calling device. The results are
+ * read by the controllers, which never run in parallel.
+ */
 public class TimeKeeper {
 
 	private static TimeKeeper instance;
 	
 	private long simulationStartTime;
 	private int count; 
-	private Map<Integer, Double> emitTimes;
-	private Map<Integer, Double> endTimes;
-	private Map<Integer, List<Integer>> loopIdToTupleIds;
-	private Map<Integer, Double> tupleIdToCpuStartTime;
+	/** actual tuple id -> time at which the tuple started its loop, until the loop completes */
+	private final LongDoubleMap emitTimes = new LongDoubleMap();
+	/** tuple id -> time at which the tuple started executing, until it ends */
+	private final LongDoubleMap cpuStartTimes = new LongDoubleMap();
+	/** loop id -> delays of the loop; a loop is listed from its first emitted tuple */
+	private final Map<Integer, LatencyHistogram> loopDelays = new HashMap<Integer, LatencyHistogram>();
+	private final Map<String, LatencyHistogram> tupleCpuTimes = new HashMap<String, LatencyHistogram>();
 	private Map<String, Double> tupleTypeToAverageCpuTime;
 	private Map<String, Integer> tupleTypeToExecutedTupleCount;
-	
-	private Map<Integer, Double> loopIdToCurrentAverage;
-	private Map<Integer, Integer> loopIdToCurrentNum;
 
 	private Map<Integer, Integer> loopIdToLatencyQoSSuccessCount = new HashMap<>();
 
@@ -38,73 +54,162 @@ public class TimeKeeper {
 	}
 	
 	public int getUniqueId(){
+		CloudSim.awaitTurn();
 		return count++;
 	}
 	
 	public void tupleStartedExecution(Tuple tuple){
-		tupleIdToCpuStartTime.put(tuple.getCloudletId(), CloudSim.clock());
+		final int tupleId = tuple.getCloudletId();
+		final double time = CloudSim.clock();
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				cpuStartTimes.put(tupleId, time);
+			}
+		});
 	}
 	
 	public void tupleEndedExecution(Tuple tuple){
-		if(!tupleIdToCpuStartTime.containsKey(tuple.getCloudletId()))
+		final int tupleId = tuple.getCloudletId();
+		final String tupleType = tuple.getTupleType();
+		final double time = CloudSim.clock();
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				recordCpuTime(tupleId, tupleType, time);
+			}
+		});
+	}
+
+	private void recordCpuTime(int tupleId, String tupleType, double endTime){
+		double startTime = cpuStartTimes.remove(tupleId, Double.NaN);
+		if(Double.isNaN(startTime))
 			return;
-		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.get(tuple.getCloudletId());
-		if(!tupleTypeToAverageCpuTime.containsKey(tuple.getTupleType())){
-			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), executionTime);
-			tupleTypeToExecutedTupleCount.put(tuple.getTupleType(), 1);
+		double executionTime = endTime - startTime;
+		LatencyHistogram cpuTimes = tupleCpuTimes.get(tupleType);
+		if(cpuTimes == null){
+			cpuTimes = new LatencyHistogram();
+			tupleCpuTimes.put(tupleType, cpuTimes);
+		}
+		cpuTimes.record(executionTime);
+		if(!tupleTypeToAverageCpuTime.containsKey(tupleType)){
+			tupleTypeToAverageCpuTime.put(tupleType, executionTime);
+			tupleTypeToExecutedTupleCount.put(tupleType, 1);
 		} else{
-			double currentAverage = tupleTypeToAverageCpuTime.get(tuple.getTupleType());
-			int currentCount = tupleTypeToExecutedTupleCount.get(tuple.getTupleType());
-			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), (currentAverage*currentCount+executionTime)/(currentCount+1));
+			double currentAverage = tupleTypeToAverageCpuTime.get(tupleType);
+			int currentCount = tupleTypeToExecutedTupleCount.get(tupleType);
+			tupleTypeToAverageCpuTime.put(tupleType, (currentAverage*currentCount+executionTime)/(currentCount+1));
 		}
 	}
-	
-	public Map<Integer, List<Integer>> loopIdToTupleIds(){
-		return getInstance().getLoopIdToTupleIds();
+
+	/**
+	 * A tuple starts a loop now.
+	 */
+	public void tupleEmitted(final int loopId, final int actualTupleId){
+		final double time = CloudSim.clock();
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				if(!loopDelays.containsKey(loopId))
+					loopDelays.put(loopId, new LatencyHistogram());
+				emitTimes.put(actualTupleId, time);
+			}
+		});
 	}
-	
-	private TimeKeeper(){
-		count = 1;
-		setEmitTimes(new HashMap<Integer, Double>());
-		setEndTimes(new HashMap<Integer, Double>());
-		setLoopIdToTupleIds(new HashMap<Integer, List<Integer>>());
-		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
-		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
-		setTupleIdToCpuStartTime(new HashMap<Integer, Double>());
-		setLoopIdToCurrentAverage(new HashMap<Integer, Double>());
-		setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
+
+	/**
+	 * A tuple ends a loop now; records the delay of the loop since the tuple was emitted, unless the tuple was not
+	 * emitted or has already ended its loop.
+	 */
+	public void tupleReceived(final int loopId, final int actualTupleId){
+		final double time = CloudSim.clock();
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				recordLoopDelay(loopId, actualTupleId, time);
+			}
+		});
 	}
-	
-	public int getCount() {
-		return count;
+
+	private void recordLoopDelay(int loopId, int actualTupleId, double endTime){
+		double startTime = emitTimes.remove(actualTupleId, Double.NaN);
+		if(Double.isNaN(startTime))
+			return;
+		LatencyHistogram delays = loopDelays.get(loopId);
+		if(delays == null){
+			delays = new LatencyHistogram();
+			loopDelays.put(loopId, delays);
+		}
+		delays.record(endTime - startTime);
 	}
 
-	public void setCount(int count) {
-		this.count = count;
+	/**
+	 * Loops that have emitted tuples, in the order the results list them.
+	 */
+	public Set<Integer> getLoopIds(){
+		return Collections.unmodifiableSet(loopDelays.keySet());
+	}
+
+	/**
+	 * @return the delays of the loop, or null if it emitted no tuple
+	 */
+	public LatencyHistogram getLoopDelay(int loopId){
+		return loopDelays.get(loopId);
+	}
+
+	/**
+	 * @return the average delay of the loop, or null if no tuple has completed it
+	 */
+	public Double getAverageLoopDelay(int loopId){
+		LatencyHistogram delays = loopDelays.get(loopId);
+		return delays == null || delays.getCount() == 0 ? null : delays.getMean();
 	}
 
-	public Map<Integer, Double> getEmitTimes() {
-		return emitTimes;
+	public long getLoopCompletionCount(int loopId){
+		LatencyHistogram delays = loopDelays.get(loopId);
+		return delays == null ? 0 : delays.getCount();
 	}
 
-	public void setEmitTimes(Map<Integer, Double> emitTimes) {
-		this.emitTimes = emitTimes;
+	/**
+	 * Number of tuples that have started a loop and not ended it yet.
+	 */
+	public int getTuplesInFlight(){
+		return emitTimes.size();
 	}
 
-	public Map<Integer, Double> getEndTimes() {
-		return endTimes;
+	/**
+	 * Tuple types that have completed an execution, in the order the results list them.
+	 */
+	public Set<String> getTupleTypes(){
+		return Collections.unmodifiableSet(tupleTypeToAverageCpuTime.keySet());
 	}
 
-	public void setEndTimes(Map<Integer, Double> endTimes) {
-		this.endTimes = endTimes;
+	/**
+	 * @return the CPU execution times of the tuple type, or null if none has completed
+	 */
+	public LatencyHistogram getTupleCpuTime(String tupleType){
+		return tupleCpuTimes.get(tupleType);
 	}
 
-	public Map<Integer, List<Integer>> getLoopIdToTupleIds() {
-		return loopIdToTupleIds;
+	/**
+	 * Average CPU execution time of the tuple type as reported by the results, or null if none has completed.
+	 */
+	public Double getAverageCpuTime(String tupleType){
+		return tupleTypeToAverageCpuTime.get(tupleType);
+	}
+	
+	private TimeKeeper(){
+		count = 1;
+		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
+		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
+	}
+	
+	public int getCount() {
+		return count;
 	}
 
-	public void setLoopIdToTupleIds(Map<Integer, List<Integer>> loopIdToTupleIds) {
-		this.loopIdToTupleIds = loopIdToTupleIds;
+	public void setCount(int count) {
+		this.count = count;
 	}
 
 	public Map<String, Double> getTupleTypeToAverageCpuTime() {
@@ -125,14 +230,6 @@ public class TimeKeeper {
 		this.tupleTypeToExecutedTupleCount = tupleTypeToExecutedTupleCount;
 	}
 
-	public Map<Integer, Double> getTupleIdToCpuStartTime() {
-		return tupleIdToCpuStartTime;
-	}
-
-	public void setTupleIdToCpuStartTime(Map<Integer, Double> tupleIdToCpuStartTime) {
-		this.tupleIdToCpuStartTime = tupleIdToCpuStartTime;
-	}
-
 	public long getSimulationStartTime() {
 		return simulationStartTime;
 	}
@@ -141,22 +238,6 @@ public class TimeKeeper {
 		this.simulationStartTime = simulationStartTime;
 	}
 
-	public Map<Integer, Double> getLoopIdToCurrentAverage() {
-		return loopIdToCurrentAverage;
-	}
-
-	public void setLoopIdToCurrentAverage(Map<Integer, Double> loopIdToCurrentAverage) {
-		this.loopIdToCurrentAverage = loopIdToCurrentAverage;
-	}
-
-	public Map<Integer, Integer> getLoopIdToCurrentNum() {
-		return loopIdToCurrentNum;
-	}
-
-	public void setLoopIdToCurrentNum(Map<Integer, Integer> loopIdToCurrentNum) {
-		this.loopIdToCurrentNum = loopIdToCurrentNum;
-	}
-
 	public Map<Integer, Integer> getLoopIdToLatencyQoSSuccessCount() {
 		return loopIdToLatencyQoSSuccessCount;
 	}
@@ -0,0 +1,97 @@
+package org.fog.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a trace written by {@link BinaryTraceWriter} back to the lines the Logger would have
+ * printed, oldest first.
+ * <p>
+ * Usage: <tt>java org.fog.utils.TraceDecoder &lt;trace file&gt;</tt>
+ */
+public class TraceDecoder {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: java " + TraceDecoder.class.getName() + " <trace file>");
+			System.exit(1);
+		}
+		decode(args[0], System.out);
+	}
+
+	/**
+	 * Decodes a trace.
+	 *
+	 * @param path the trace file
+	 * @param out where to print the lines
+	 * @return the number of records decoded
+	 */
+	public static long decode(String path, PrintStream out) throws IOException {
+		List<String> strings = readStrings(path + ".strings");
+		try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+			MappedByteBuffer ring = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			if (ring.getLong(0) != BinaryTraceWriter.MAGIC)
+				throw new IOException(path + " is not a trace file");
+			int recordSize = ring.getInt(8);
+			int capacity = ring.getInt(12);
+			long written = ring.getLong(BinaryTraceWriter.WRITTEN_OFFSET);
+			long first = Math.max(0, written - capacity);
+			Object[] values = new Object[BinaryTraceWriter.MAX_ARGS];
+			for (long seq = first; seq < written; seq++) {
+				int offset = BinaryTraceWriter.HEADER_SIZE + (int) (seq % capacity) * recordSize;
+				if (ring.getLong(offset) != seq)
+					throw new IOException("Record " + seq + " is missing or overwritten");
+				double time = ring.getDouble(offset + 8);
+				String name = lookup(strings, ring.getInt(offset + 20));
+				String pattern = lookup(strings, ring.getInt(offset + 24));
+				int types = ring.getInt(offset + 28);
+				int count = types & 0xF;
+				for (int i = 0; i < count; i++) {
+					long value = ring.getLong(offset + 32 + 8 * i);
+					switch ((types >>> (4 + 4 * i)) & 0xF) {
+					case BinaryTraceWriter.ARG_LONG:
+						values[i] = value;
+						break;
+					case BinaryTraceWriter.ARG_DOUBLE:
+						values[i] = Double.longBitsToDouble(value);
+						break;
+					case BinaryTraceWriter.ARG_STRING:
+						values[i] = lookup(strings, (int) value);
+						break;
+					default:
+						values[i] = null;
+					}
+				}
+				Object[] messageArgs = new Object[count];
+				System.arraycopy(values, 0, messageArgs, 0, count);
+				out.println(Logger.formatLine(time, name, Logger.format(pattern, messageArgs)));
+			}
+			return written - first;
+		}
+	}
+
+	private static List<String> readStrings(String path) throws IOException {
+		List<String> strings = new ArrayList<String>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+			while (true)
+				strings.add(in.readUTF());
+		} catch (EOFException e) {
+			// end of the table
+		}
+		return strings;
+	}
+
+	private static String lookup(List<String> strings, int id) {
+		return id >= 0 && id < strings.size() ? strings.get(id) : "?";
+	}
+
+}
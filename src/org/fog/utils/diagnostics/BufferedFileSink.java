@@ -0,0 +1,58 @@
+package org.fog.utils.diagnostics;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the messages to a file through a large buffer, one line per message prefixed by the
+ * channel name. The file is only complete once the sink is flushed or closed.
+ */
+public class BufferedFileSink implements DiagnosticSink {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Writer out;
+
+	/**
+	 * Creates the file, replacing any existing one.
+	 *
+	 * @param path the file
+	 */
+	public BufferedFileSink(String path) throws IOException {
+		out = new BufferedWriter(new FileWriter(path), BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(String channel, int level, String message) {
+		try {
+			out.write('[');
+			out.write(channel);
+			out.write("] ");
+			out.write(message);
+			out.write(System.lineSeparator());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void flush() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,28 @@
+package org.fog.utils.diagnostics;
+
+import java.io.PrintStream;
+
+/**
+ * Prints the messages to System.out, as they are. This is the default sink, so the examples
+ * print what they always did.
+ */
+public class ConsoleSink implements DiagnosticSink {
+
+	@Override
+	public void write(String channel, int level, String message) {
+		// looked up on every write, the parallel executor swaps System.out while devices run
+		PrintStream out = System.out;
+		out.println(message);
+	}
+
+	@Override
+	public void flush() {
+		System.out.flush();
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.fog.utils.diagnostics;
+
+import java.util.function.Supplier;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.utils.Logger;
+
+/**
+ * A named stream of diagnostic messages, e.g. "energy" or "placement". Get channels from
+ * {@link Diagnostics#channel(String)}.
+ * <p>
+ * A channel has a level and a sink; both default to the ones set on {@link Diagnostics}. Messages
+ * below the level, or going to {@link DiagnosticSink#NONE}, are dropped before they are built:
+ * use the "{}" placeholders or a Supplier, and check {@link #isEnabled(int)} before computing
+ * anything costly for a message.
+ */
+public class DiagnosticChannel {
+
+	private final String name;
+	private int level = Diagnostics.DEFAULT;
+	private DiagnosticSink sink = null;
+
+	DiagnosticChannel(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Sets the lowest level written by this channel, or {@link Diagnostics#DEFAULT} to follow
+	 * {@link Diagnostics#setLevel(int)}.
+	 */
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public int getLevel() {
+		return level == Diagnostics.DEFAULT ? Diagnostics.getLevel() : level;
+	}
+
+	/**
+	 * Sets the sink of this channel, or null to follow {@link Diagnostics#setSink(DiagnosticSink)}.
+	 */
+	public void setSink(DiagnosticSink sink) {
+		this.sink = sink;
+	}
+
+	public DiagnosticSink getSink() {
+		return sink == null ? Diagnostics.getSink() : sink;
+	}
+
+	public boolean isEnabled(int level) {
+		return level >= getLevel() && getSink() != DiagnosticSink.NONE;
+	}
+
+	public boolean isDebugEnabled() {
+		return isEnabled(Diagnostics.DEBUG);
+	}
+
+	public void debug(String message) {
+		if (isEnabled(Diagnostics.DEBUG))
+			write(Diagnostics.DEBUG, message);
+	}
+
+	public void debug(String pattern, Object arg) {
+		if (isEnabled(Diagnostics.DEBUG))
+			write(Diagnostics.DEBUG, Logger.format(pattern, new Object[]{arg}));
+	}
+
+	public void debug(String pattern, Object... args) {
+		if (isEnabled(Diagnostics.DEBUG))
+			write(Diagnostics.DEBUG, Logger.format(pattern, args));
+	}
+
+	public void info(String message) {
+		if (isEnabled(Diagnostics.INFO))
+			write(Diagnostics.INFO, message);
+	}
+
+	public void info(String pattern, Object arg) {
+		if (isEnabled(Diagnostics.INFO))
+			write(Diagnostics.INFO, Logger.format(pattern, new Object[]{arg}));
+	}
+
+	public void info(String pattern, Object... args) {
+		if (isEnabled(Diagnostics.INFO))
+			write(Diagnostics.INFO, Logger.format(pattern, args));
+	}
+
+	public void warn(String message) {
+		if (isEnabled(Diagnostics.WARN))
+			write(Diagnostics.WARN, message);
+	}
+
+	public void warn(String pattern, Object arg) {
+		if (isEnabled(Diagnostics.WARN))
+			write(Diagnostics.WARN, Logger.format(pattern, new Object[]{arg}));
+	}
+
+	public void warn(String pattern, Object... args) {
+		if (isEnabled(Diagnostics.WARN))
+			write(Diagnostics.WARN, Logger.format(pattern, args));
+	}
+
+	public void log(int level, Supplier<String> message) {
+		if (isEnabled(level))
+			write(level, message.get());
+	}
+
+	private void write(int level, String message) {
+		// sinks see the messages in event order, also when devices run in parallel
+		CloudSim.awaitTurn();
+		getSink().write(name, level, message);
+	}
+
+}
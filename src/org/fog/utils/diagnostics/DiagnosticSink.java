@@ -0,0 +1,42 @@
+package org.fog.utils.diagnostics;
+
+/**
+ * Where the messages of the diagnostic channels end up.
+ * <p>
+ * Messages are handed to a sink one at a time and in event order, also when devices run in
+ * parallel, so a sink does not need to be thread safe.
+ */
+public interface DiagnosticSink {
+
+	/**
+	 * Discards everything. Channels writing to this sink are disabled, so that their messages are
+	 * not even built.
+	 */
+	DiagnosticSink NONE = new DiagnosticSink() {
+		@Override
+		public void write(String channel, int level, String message) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	/**
+	 * Writes a message.
+	 *
+	 * @param channel the name of the channel
+	 * @param level the level of the message, see {@link Diagnostics}
+	 * @param message the message; may span several lines
+	 */
+	void write(String channel, int level, String message);
+
+	void flush();
+
+	void close();
+
+}
@@ -0,0 +1,114 @@
+package org.fog.utils.diagnostics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of the diagnostic channels, with the level and sink used by the channels that do not
+ * set their own.
+ * <p>
+ * By default every message is printed to the console, as the simulator always did. For a quiet
+ * run call {@link #quiet()}, or start the JVM with <tt>-Dorg.fog.diagnostics=off</tt>.
+ * Other values of that property are <tt>console</tt> and <tt>file:&lt;path&gt;</tt>.
+ * The CloudSim {@link org.cloudbus.cloudsim.Log} and the {@link org.fog.utils.Logger} keep their own
+ * switches.
+ */
+public class Diagnostics {
+
+	public static final int DEBUG = 0;
+	public static final int INFO = 1;
+	public static final int WARN = 2;
+	public static final int ERROR = 3;
+	/** Level above all the others; disables a channel. */
+	public static final int OFF = 4;
+	/** Channel level meaning "use the default level". */
+	static final int DEFAULT = -1;
+
+	public static final String PROPERTY = "org.fog.diagnostics";
+
+	private static final Map<String, DiagnosticChannel> channels = new LinkedHashMap<String, DiagnosticChannel>();
+
+	private static int level = DEBUG;
+	private static DiagnosticSink sink = sinkFromProperty();
+
+	/**
+	 * Returns the channel with the given name, creating it if needed.
+	 */
+	public static synchronized DiagnosticChannel channel(String name) {
+		DiagnosticChannel channel = channels.get(name);
+		if (channel == null) {
+			channel = new DiagnosticChannel(name);
+			channels.put(name, channel);
+		}
+		return channel;
+	}
+
+	public static synchronized List<DiagnosticChannel> getChannels() {
+		return new ArrayList<DiagnosticChannel>(channels.values());
+	}
+
+	public static void setLevel(int level) {
+		if (level < DEBUG || level > OFF)
+			throw new IllegalArgumentException("Unknown level:" + level);
+		Diagnostics.level = level;
+	}
+
+	public static int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Sets the default sink. The previous sink is flushed but not closed.
+	 */
+	public static void setSink(DiagnosticSink sink) {
+		if (sink == null)
+			throw new IllegalArgumentException("Sink must not be null, use DiagnosticSink.NONE");
+		Diagnostics.sink.flush();
+		Diagnostics.sink = sink;
+	}
+
+	public static DiagnosticSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Drops every message of the channels that use the default sink.
+	 */
+	public static void quiet() {
+		setSink(DiagnosticSink.NONE);
+	}
+
+	/**
+	 * Flushes the default sink and the sinks of the channels.
+	 */
+	public static synchronized void flush() {
+		sink.flush();
+		for (DiagnosticChannel channel : channels.values())
+			channel.getSink().flush();
+	}
+
+	private static DiagnosticSink sinkFromProperty() {
+		String value = System.getProperty(PROPERTY, "console");
+		if (value.equals("off"))
+			return DiagnosticSink.NONE;
+		if (value.startsWith("file:")) {
+			try {
+				final BufferedFileSink file = new BufferedFileSink(value.substring("file:".length()));
+				Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						file.close();
+					}
+				}));
+				return file;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return new ConsoleSink();
+	}
+
+}
@@ -0,0 +1,78 @@
+package org.fog.utils.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the messages in memory, e.g. to check them at the end of a run. At most
+ * <tt>capacity</tt> messages are kept; later ones are counted but dropped.
+ */
+public class MemorySink implements DiagnosticSink {
+
+	private final int capacity;
+	private final List<String> channels = new ArrayList<String>();
+	private final List<String> messages = new ArrayList<String>();
+	private long dropped = 0;
+
+	public MemorySink() {
+		this(Integer.MAX_VALUE);
+	}
+
+	public MemorySink(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Capacity must not be negative:" + capacity);
+		this.capacity = capacity;
+	}
+
+	@Override
+	public void write(String channel, int level, String message) {
+		if (messages.size() >= capacity) {
+			dropped++;
+			return;
+		}
+		channels.add(channel);
+		messages.add(message);
+	}
+
+	/**
+	 * Returns the messages kept so far, in the order they were written.
+	 */
+	public List<String> getMessages() {
+		return Collections.unmodifiableList(messages);
+	}
+
+	/**
+	 * Returns the messages of one channel kept so far, in the order they were written.
+	 */
+	public List<String> getMessages(String channel) {
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < messages.size(); i++) {
+			if (channels.get(i).equals(channel))
+				result.add(messages.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of messages dropped because the sink was full.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	public void clear() {
+		channels.clear();
+		messages.clear();
+		dropped = 0;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
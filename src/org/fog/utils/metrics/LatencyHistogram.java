@@ -0,0 +1,128 @@
+package org.fog.utils.metrics;
+
+/**
+ * Histogram of delays with log-scaled buckets, in the manner of HdrHistogram: every power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so any percentile is known to within 1/{@value #SUB_BUCKETS} of its value whatever
+ * the number of samples. The buckets of a power of two are allocated the first time a delay falls in it.
+ * <p>
+ * Count, mean, minimum and maximum are exact. The mean is updated as the controllers have always computed
+ * their running averages.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Delays below 2^MIN_EXPONENT are counted as 0 */
+	private static final int MIN_EXPONENT = -32;
+	/** Delays of 2^MAX_EXPONENT and more are counted in the last bucket */
+	private static final int MAX_EXPONENT = 62;
+
+	private static final long MANTISSA_MASK = (1L << 52) - 1;
+
+	/** [exponent - MIN_EXPONENT][sub-bucket]; null until a delay falls in the power of two */
+	private final long[][] buckets = new long[MAX_EXPONENT - MIN_EXPONENT + 1][];
+	private long zeros = 0;
+
+	private long count = 0;
+	private double mean = 0;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+
+	public void record(double delay) {
+		mean = (mean * count + delay) / (count + 1);
+		count++;
+		if (count == 1 || delay < min)
+			min = delay;
+		if (count == 1 || delay > max)
+			max = delay;
+
+		if (!(delay > 0)) {
+			zeros++;
+			return;
+		}
+		int exponent = Math.getExponent(delay);
+		if (exponent < MIN_EXPONENT) {
+			zeros++;
+			return;
+		}
+		int sub = (int) ((Double.doubleToRawLongBits(delay) & MANTISSA_MASK) >>> (52 - SUB_BUCKET_BITS));
+		if (exponent > MAX_EXPONENT) {
+			exponent = MAX_EXPONENT;
+			sub = SUB_BUCKETS - 1;
+		}
+		long[] row = buckets[exponent - MIN_EXPONENT];
+		if (row == null) {
+			row = new long[SUB_BUCKETS];
+			buckets[exponent - MIN_EXPONENT] = row;
+		}
+		row[sub]++;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the mean delay, NaN if none was recorded
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Delay below which the given percentage of the delays fall: the highest delay of the bucket holding that rank,
+	 * capped to the maximum.
+	 *
+	 * @param percentile between 0 and 100
+	 * @return the delay, NaN if none was recorded
+	 */
+	public double getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("Percentile out of range:" + percentile);
+		if (count == 0)
+			return Double.NaN;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		if (rank >= count)
+			return max;
+		long seen = zeros;
+		if (seen >= rank)
+			return Math.max(0, min);
+		for (int e = 0; e < buckets.length; e++) {
+			long[] row = buckets[e];
+			if (row == null)
+				continue;
+			for (int sub = 0; sub < SUB_BUCKETS; sub++) {
+				seen += row[sub];
+				if (seen >= rank)
+					return Math.min(max, Math.scalb(1 + (sub + 1) / (double) SUB_BUCKETS, e + MIN_EXPONENT));
+			}
+		}
+		return max;
+	}
+
+	public double getP50() {
+		return getValueAtPercentile(50);
+	}
+
+	public double getP95() {
+		return getValueAtPercentile(95);
+	}
+
+	public double getP99() {
+		return getValueAtPercentile(99);
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " p50=" + getP50() + " p95=" + getP95() + " p99=" + getP99() + " max=" + max;
+	}
+
+}
@@ -0,0 +1,131 @@
+package org.fog.utils.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of long keys to double values, for records that are added and removed all the time, such as
+ * the emit times of the tuples in flight. Removing an entry frees its slot, so the table only grows with the number
+ * of entries present at the same time.
+ */
+public class LongDoubleMap {
+
+	private static final long FREE = Long.MIN_VALUE;
+
+	private long[] keys;
+	private double[] values;
+	private int size = 0;
+
+	public LongDoubleMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expected number of entries the map should hold without growing
+	 */
+	public LongDoubleMap(int expected) {
+		int capacity = 8;
+		while (capacity < expected * 2)
+			capacity *= 2;
+		keys = new long[capacity];
+		values = new double[capacity];
+		Arrays.fill(keys, FREE);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(long key) {
+		return key != FREE && keys[slotOf(key)] == key;
+	}
+
+	/**
+	 * @return the value of the key, or <tt>missing</tt> if there is none
+	 */
+	public double get(long key, double missing) {
+		if (key == FREE)
+			return missing;
+		int i = slotOf(key);
+		return keys[i] == key ? values[i] : missing;
+	}
+
+	public void put(long key, double value) {
+		if (key == FREE)
+			throw new IllegalArgumentException("Unsupported key:" + key);
+		int i = slotOf(key);
+		if (keys[i] == key) {
+			values[i] = value;
+			return;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length)
+			grow();
+	}
+
+	/**
+	 * Removes the key.
+	 *
+	 * @return the value the key had, or <tt>missing</tt> if there was none
+	 */
+	public double remove(long key, double missing) {
+		if (key == FREE)
+			return missing;
+		int i = slotOf(key);
+		if (keys[i] != key)
+			return missing;
+		double value = values[i];
+		size--;
+		// shift back the entries that probed past the freed slot
+		int mask = keys.length - 1;
+		int free = i;
+		for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+			int home = mix(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				keys[free] = keys[j];
+				values[free] = values[j];
+				free = j;
+			}
+		}
+		keys[free] = FREE;
+		return value;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	/**
+	 * Slot of the key if present, else the free slot where it would go.
+	 */
+	private int slotOf(long key) {
+		int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		while (keys[i] != FREE && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new double[oldKeys.length * 2];
+		Arrays.fill(keys, FREE);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != FREE)
+				put(oldKeys[i], oldValues[i]);
+	}
+
+	private static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
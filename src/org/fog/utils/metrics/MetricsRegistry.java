@@ -0,0 +1,83 @@
+package org.fog.utils.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * Measurements of the simulator itself rather than of the simulated system, such as the wall-clock time the
+ * placement logic of each FON takes. A metric is a histogram per entity id.
+ * <p>
+ * Values are recorded in the sequential event order (see {@link CloudSim#runInOrder(Runnable)}), so devices run in
+ * parallel may record them. The microservice controllers print the placement metrics after their results, through
+ * {@link #printPlacementMetrics()}; other readers take the histograms of a metric from {@link #getHistograms(String)}.
+ */
+public class MetricsRegistry {
+
+	/** Wall-clock milliseconds of a run of the placement logic of a FON, by FON id */
+	public static final String PLACEMENT_LATENCY = "placement-latency";
+	/** Wall-clock milliseconds the optimal batch placement takes to solve a batch, by FON id */
+	public static final String PLACEMENT_SOLVE_TIME = "placement-solve-time";
+	/** Percentage by which a batch placement may be worse than the optimum, by FON id */
+	public static final String PLACEMENT_GAP = "placement-gap";
+
+	private static final Map<String, Map<Integer, LatencyHistogram>> metrics = new HashMap<String, Map<Integer, LatencyHistogram>>();
+
+	public static void record(final String metric, final int id, final double value) {
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				getHistogram(metric, id).record(value);
+			}
+		});
+	}
+
+	public static synchronized LatencyHistogram getHistogram(String metric, int id) {
+		Map<Integer, LatencyHistogram> histograms = metrics.get(metric);
+		if (histograms == null) {
+			histograms = new HashMap<Integer, LatencyHistogram>();
+			metrics.put(metric, histograms);
+		}
+		LatencyHistogram histogram = histograms.get(id);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			histograms.put(id, histogram);
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return entity id -> histogram of the metric, by increasing id
+	 */
+	public static synchronized Map<Integer, LatencyHistogram> getHistograms(String metric) {
+		Map<Integer, LatencyHistogram> histograms = metrics.get(metric);
+		return histograms == null ? new TreeMap<Integer, LatencyHistogram>() : new TreeMap<Integer, LatencyHistogram>(histograms);
+	}
+
+	public static synchronized void clear() {
+		metrics.clear();
+	}
+
+	/**
+	 * Prints a section per placement metric recorded, with the histogram of each FON, in the layout of the results.
+	 */
+	public static void printPlacementMetrics() {
+		printSection("PLACEMENT LATENCY PER FON (ms)", PLACEMENT_LATENCY);
+		printSection("BATCH PLACEMENT SOLVE TIME PER FON (ms)", PLACEMENT_SOLVE_TIME);
+		printSection("BATCH PLACEMENT GAP PER FON (%)", PLACEMENT_GAP);
+	}
+
+	private static void printSection(String title, String metric) {
+		Map<Integer, LatencyHistogram> histograms = getHistograms(metric);
+		if (histograms.isEmpty())
+			return;
+		System.out.println(title);
+		System.out.println("=========================================");
+		for (Map.Entry<Integer, LatencyHistogram> entry : histograms.entrySet())
+			System.out.println(CloudSim.getEntityName(entry.getKey()) + " ---> " + entry.getValue());
+		System.out.println("=========================================");
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.fog.utils.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.entities.FogDevice;
+
+/**
+ * Routing table holding the next hop of every destination of a {@link DeviceIndex} in an int[].
+ * Destinations outside the index (devices added later) are kept apart.
+ */
+public class DenseRoutingTable extends RoutingTable {
+
+	private final DeviceIndex index;
+	private final int[] nextHops;
+	private IntIntMap others = null;
+
+	/**
+	 * Creates an empty table.
+	 */
+	public DenseRoutingTable() {
+		this(DeviceIndex.EMPTY, new int[0]);
+	}
+
+	/**
+	 * Creates a table from a map of <destination id, next device id>, indexing the fog devices among its
+	 * destinations.
+	 */
+	public DenseRoutingTable(Map<Integer, Integer> routes) {
+		this(indexOf(routes.keySet()), routes);
+	}
+
+	/**
+	 * @param nextHops the next hop ids by destination index; used as is, not copied
+	 */
+	public DenseRoutingTable(DeviceIndex index, int[] nextHops) {
+		if (nextHops.length != index.size())
+			throw new IllegalArgumentException("Expected " + index.size() + " next hops, got " + nextHops.length);
+		this.index = index;
+		this.nextHops = nextHops;
+	}
+
+	/**
+	 * Creates a table from a map of <destination id, next device id>.
+	 */
+	public DenseRoutingTable(DeviceIndex index, Map<Integer, Integer> routes) {
+		this.index = index;
+		this.nextHops = new int[index.size()];
+		Arrays.fill(nextHops, -1);
+		for (Map.Entry<Integer, Integer> route : routes.entrySet())
+			setNextHop(route.getKey(), route.getValue());
+	}
+
+	private static DeviceIndex indexOf(Collection<Integer> destIds) {
+		List<FogDevice> devices = new ArrayList<FogDevice>(destIds.size());
+		for (int id : destIds) {
+			SimEntity entity = CloudSim.getEntity(id);
+			if (entity instanceof FogDevice)
+				devices.add((FogDevice) entity);
+		}
+		return new DeviceIndex(devices);
+	}
+
+	@Override
+	public int getNextHop(int destId) {
+		int i = index.indexOf(destId);
+		if (i >= 0)
+			return nextHops[i];
+		return others == null ? -1 : others.get(destId, -1);
+	}
+
+	@Override
+	public void setNextHop(int destId, int nextId) {
+		int i = index.indexOf(destId);
+		if (i >= 0) {
+			nextHops[i] = nextId;
+		} else {
+			if (others == null)
+				others = new IntIntMap();
+			others.put(destId, nextId);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package org.fog.utils.routing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.fog.entities.FogDevice;
+
+/**
+ * Numbers a set of devices 0..n-1, in list order, so that per-device data can be kept in arrays. A device
+ * listed more than once keeps its first number. Device ids are entity ids, which are small and dense, so the
+ * id to index lookup is an array too.
+ */
+public class DeviceIndex {
+
+	static final DeviceIndex EMPTY = new DeviceIndex(Collections.<FogDevice>emptyList());
+
+	private final FogDevice[] devices;
+	private final int[] ids;
+	private final int minId;
+	private final int[] indexById;
+
+	public DeviceIndex(List<FogDevice> fogDevices) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (FogDevice f : fogDevices) {
+			min = Math.min(min, f.getId());
+			max = Math.max(max, f.getId());
+		}
+		minId = fogDevices.isEmpty() ? 0 : min;
+		indexById = new int[fogDevices.isEmpty() ? 0 : max - min + 1];
+		Arrays.fill(indexById, -1);
+		int size = 0;
+		for (FogDevice f : fogDevices) {
+			if (indexById[f.getId() - minId] < 0)
+				indexById[f.getId() - minId] = size++;
+		}
+		devices = new FogDevice[size];
+		ids = new int[size];
+		for (FogDevice f : fogDevices) {
+			int i = indexById[f.getId() - minId];
+			devices[i] = f;
+			ids[i] = f.getId();
+		}
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @return the index of a device, or -1 if it is not in the index
+	 */
+	public int indexOf(int id) {
+		int k = id - minId;
+		return k >= 0 && k < indexById.length ? indexById[k] : -1;
+	}
+
+	public int idAt(int index) {
+		return ids[index];
+	}
+
+	public FogDevice deviceAt(int index) {
+		return devices[index];
+	}
+
+}
@@ -0,0 +1,137 @@
+package org.fog.utils.routing;
+
+import org.fog.entities.FogDevice;
+
+/**
+ * A topology made only of parent-child links, shared by the {@link TreeRoutingTable}s of all its devices.
+ * There is a single path between two devices of a tree, so the next hop follows from the tree itself: down
+ * to the child whose subtree holds the destination, or else up to the parent. Subtrees are told apart by
+ * their depth-first numbering.
+ */
+public class Hierarchy {
+
+	private final DeviceIndex index;
+	private final int[] parent;
+	private final int[] root;
+	/** Depth-first entry number of each device; the subtree of a device is numbered [enter, exit). */
+	private final int[] enter;
+	private final int[] exit;
+	/** The children of device i are children[childStart[i]..childStart[i+1]), in increasing entry number. */
+	private final int[] childStart;
+	private final int[] children;
+
+	private Hierarchy(DeviceIndex index, int[] parent) {
+		this.index = index;
+		this.parent = parent;
+		int size = index.size();
+
+		childStart = new int[size + 1];
+		for (int i = 0; i < size; i++)
+			if (parent[i] >= 0)
+				childStart[parent[i] + 1]++;
+		for (int i = 0; i < size; i++)
+			childStart[i + 1] += childStart[i];
+		children = new int[childStart[size]];
+		int[] fill = new int[size];
+		for (int i = 0; i < size; i++)
+			if (parent[i] >= 0)
+				children[childStart[parent[i]] + fill[parent[i]]++] = i;
+
+		root = new int[size];
+		enter = new int[size];
+		exit = new int[size];
+		int[] stack = new int[size];
+		int[] next = new int[size];
+		int counter = 0;
+		for (int r = 0; r < size; r++) {
+			if (parent[r] >= 0)
+				continue;
+			int depth = 0;
+			stack[0] = r;
+			next[r] = childStart[r];
+			root[r] = r;
+			enter[r] = counter++;
+			while (depth >= 0) {
+				int u = stack[depth];
+				if (next[u] < childStart[u + 1]) {
+					int c = children[next[u]++];
+					root[c] = r;
+					enter[c] = counter++;
+					next[c] = childStart[c];
+					stack[++depth] = c;
+				} else {
+					exit[u] = counter;
+					depth--;
+				}
+			}
+		}
+		if (counter != size)
+			throw new IllegalStateException("Parent links form a cycle");
+	}
+
+	/**
+	 * Builds the hierarchy of the devices, if their links are parent-child links only.
+	 *
+	 * @return the hierarchy, or null if there are cluster links, child links that are not parent links, or cycles
+	 */
+	public static Hierarchy of(DeviceIndex index) {
+		int size = index.size();
+		int[] parent = new int[size];
+		for (int i = 0; i < size; i++) {
+			FogDevice f = index.deviceAt(i);
+			parent[i] = index.indexOf(f.getParentId());
+			if (parent[i] == i)
+				parent[i] = -1;
+			if (parent[i] >= 0 && f.getUplinkLatency() < 0)
+				return null;
+			if (f.getClusterMembers() != null)
+				for (int memberId : f.getClusterMembers())
+					if (index.indexOf(memberId) >= 0 && memberId != f.getId())
+						return null;
+		}
+		for (int i = 0; i < size; i++) {
+			FogDevice f = index.deviceAt(i);
+			if (f.getChildrenIds() != null)
+				for (int childId : f.getChildrenIds()) {
+					int c = index.indexOf(childId);
+					if (c >= 0 && c != i && parent[c] != i)
+						return null;
+				}
+		}
+		try {
+			return new Hierarchy(index, parent);
+		} catch (IllegalStateException e) {
+			return null;
+		}
+	}
+
+	public DeviceIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the id of the next device from one device to another, given by index; -1 if they are not
+	 * connected
+	 */
+	public int nextHop(int from, int to) {
+		if (from == to)
+			return index.idAt(from);
+		if (root[from] != root[to])
+			return -1;
+		if (enter[from] < enter[to] && enter[to] < exit[from]) {
+			// the last child entered before the destination
+			int lo = childStart[from];
+			int hi = childStart[from + 1] - 1;
+			while (lo < hi) {
+				int mid = (lo + hi + 1) >>> 1;
+				if (enter[children[mid]] <= enter[to])
+					lo = mid;
+				else
+					hi = mid - 1;
+			}
+			return index.idAt(children[lo]);
+		}
+		return index.idAt(parent[from]);
+	}
+
+}
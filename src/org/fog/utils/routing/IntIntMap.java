@@ -0,0 +1,84 @@
+package org.fog.utils.routing;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of int keys to int values, for the few routes that differ from a shared or dense table.
+ */
+class IntIntMap {
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys = new int[8];
+	private int[] values = new int[8];
+	private int size = 0;
+
+	IntIntMap() {
+		Arrays.fill(keys, FREE);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the value of the key, or <tt>missing</tt> if there is none
+	 */
+	int get(int key, int missing) {
+		int mask = keys.length - 1;
+		for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return values[i];
+			if (keys[i] == FREE)
+				return missing;
+		}
+	}
+
+	void put(int key, int value) {
+		if (key == FREE)
+			throw new IllegalArgumentException("Unsupported key:" + key);
+		int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		for (; keys[i] != FREE; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length)
+			grow();
+	}
+
+	/**
+	 * Calls the visitor for every entry, in no particular order.
+	 */
+	void forEach(Visitor visitor) {
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != FREE)
+				visitor.visit(keys[i], values[i]);
+	}
+
+	interface Visitor {
+		void visit(int key, int value);
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		Arrays.fill(keys, FREE);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != FREE)
+				put(oldKeys[i], oldValues[i]);
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
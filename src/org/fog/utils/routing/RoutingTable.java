@@ -0,0 +1,34 @@
+package org.fog.utils.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The routing table of one device: the next device on the way to every destination device.
+ */
+public abstract class RoutingTable {
+
+	/**
+	 * @return the id of the next device on the way to the destination, the own id if the destination is the
+	 * device itself, or -1 if the destination is not known
+	 */
+	public abstract int getNextHop(int destId);
+
+	/**
+	 * Changes the next device on the way to a destination, e.g. after a handover.
+	 */
+	public abstract void setNextHop(int destId, int nextId);
+
+	/**
+	 * Returns the routes to the given destinations as a map of <destination id, next device id>.
+	 */
+	public Map<Integer, Integer> toMap(DeviceIndex destinations) {
+		Map<Integer, Integer> map = new HashMap<>();
+		for (int i = 0; i < destinations.size(); i++) {
+			int destId = destinations.idAt(i);
+			map.put(destId, getNextHop(destId));
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.fog.utils.routing;
+
+/**
+ * Routing table of a device of a {@link Hierarchy}. Routes are read from the shared hierarchy; the routes changed
+ * afterwards (handovers) are kept per device, and once they are many the table switches to an int[] of its own.
+ */
+public class TreeRoutingTable extends RoutingTable {
+
+	private static final int MISSING = Integer.MIN_VALUE;
+
+	private final Hierarchy hierarchy;
+	private final int self;
+	private IntIntMap changed = null;
+	private int[] nextHops = null;
+
+	/**
+	 * @param self the index of the device in the hierarchy
+	 */
+	public TreeRoutingTable(Hierarchy hierarchy, int self) {
+		this.hierarchy = hierarchy;
+		this.self = self;
+	}
+
+	@Override
+	public int getNextHop(int destId) {
+		if (changed != null) {
+			int next = changed.get(destId, MISSING);
+			if (next != MISSING)
+				return next;
+		}
+		int i = hierarchy.getIndex().indexOf(destId);
+		if (i < 0)
+			return -1;
+		return nextHops != null ? nextHops[i] : hierarchy.nextHop(self, i);
+	}
+
+	@Override
+	public void setNextHop(int destId, int nextId) {
+		if (nextId == MISSING)
+			throw new IllegalArgumentException("Unsupported next hop:" + nextId);
+		DeviceIndex index = hierarchy.getIndex();
+		int i = index.indexOf(destId);
+		if (nextHops != null && i >= 0) {
+			nextHops[i] = nextId;
+			return;
+		}
+		if (changed == null)
+			changed = new IntIntMap();
+		changed.put(destId, nextId);
+		if (nextHops == null && changed.size() * 4 > index.size())
+			copyRoutes();
+	}
+
+	/**
+	 * Moves to an int[] of next hops, keeping in the map only the destinations outside the hierarchy.
+	 */
+	private void copyRoutes() {
+		final DeviceIndex index = hierarchy.getIndex();
+		final int[] routes = new int[index.size()];
+		for (int i = 0; i < routes.length; i++)
+			routes[i] = hierarchy.nextHop(self, i);
+		final IntIntMap others = new IntIntMap();
+		changed.forEach(new IntIntMap.Visitor() {
+			@Override
+			public void visit(int destId, int nextId) {
+				int i = index.indexOf(destId);
+				if (i >= 0)
+					routes[i] = nextId;
+				else
+					others.put(destId, nextId);
+			}
+		});
+		nextHops = routes;
+		changed = others.size() > 0 ? others : null;
+	}
+
+}